@@ -0,0 +1,42 @@
+import com.typesafe.config.Config;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import play.Environment;
+import play.api.OptionalSourceMapper;
+import play.api.routing.Router;
+import play.http.DefaultHttpErrorHandler;
+import play.mvc.Http.RequestHeader;
+import play.mvc.Result;
+import repository.BulkheadFullException;
+import util.ExceptionUtil;
+
+/**
+ * Handles the errors not handled by the controllers. Requests turned away by a full database
+ * bulkhead before reaching a controller's own error handling are answered with a 503 rather than
+ * a 500, so clients know to try again.
+ */
+@Singleton
+public class ErrorHandler extends DefaultHttpErrorHandler {
+
+  @Inject
+  public ErrorHandler(
+      Config config,
+      Environment environment,
+      OptionalSourceMapper sourceMapper,
+      Provider<Router> routes) {
+    super(config, environment, sourceMapper, routes);
+  }
+
+  @Override
+  public CompletionStage<Result> onServerError(RequestHeader request, Throwable exception) {
+    for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+      if (cause instanceof BulkheadFullException) {
+        return CompletableFuture.completedFuture(ExceptionUtil.getOverloadedResult());
+      }
+    }
+    return super.onServerError(request, exception);
+  }
+}
@@ -2,6 +2,7 @@ package actions;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import play.libs.Json;
+import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.Action;
 import play.mvc.Http;
 import play.mvc.Result;
@@ -16,14 +17,17 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
  */
 public class LoggedIn extends Action.Simple {
     private final AuthRepository authRepository;
+    private final HttpExecutionContext httpExecutionContext;
 
     /**
      * Inject an auth repository for checking tokens etc.
      * @param authRepository repository for authentication related calls.
+     * @param httpExecutionContext the context to carry on with the request on.
      */
     @Inject
-    public LoggedIn(AuthRepository authRepository) {
+    public LoggedIn(AuthRepository authRepository, HttpExecutionContext httpExecutionContext) {
         this.authRepository = authRepository;
+        this.httpExecutionContext = httpExecutionContext;
     }
 
     /**
@@ -41,14 +45,15 @@ public class LoggedIn extends Action.Simple {
                 JsonNode response = Json.newObject().put("error", "Unauthorized");
                 return supplyAsync(() -> unauthorized(response));
             }
+            // The request carries on on the request threads, rather than holding an auth thread
             return authRepository.getByToken(token)
-            .thenCompose(user -> {
+            .thenComposeAsync(user -> {
                if (!user.isPresent()) {
                    JsonNode response = Json.newObject().put("error", "Unauthorized");
                    return supplyAsync(() -> unauthorized(response));
                }
 
                return delegate.call(request.addAttr(ActionState.USER, user.get()));
-            });
+            }, httpExecutionContext.current());
     }
 }
@@ -0,0 +1,67 @@
+package actions;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import javax.inject.Inject;
+import play.libs.Json;
+import play.mvc.Action;
+import play.mvc.Http;
+import play.mvc.Result;
+
+/**
+ * Middleware to only let the metrics be scraped from an allowed address, or with the scrape token
+ * sent as a bearer token. The metrics give away how busy the server is and who is using it, so
+ * they are not public.
+ */
+public class MetricsScraper extends Action.Simple {
+    private static final String BEARER = "Bearer ";
+
+    private final Set<String> allowedAddresses;
+    private final byte[] scrapeToken;
+
+    /**
+     * Reads who may scrape the metrics from the metrics section of the configuration.
+     * @param config the configuration.
+     */
+    @Inject
+    public MetricsScraper(Config config) {
+        Config metricsConfig = config.getConfig("metrics");
+        this.allowedAddresses = new HashSet<>(metricsConfig.getStringList("allowedAddresses"));
+        this.scrapeToken = metricsConfig.getString("scrapeToken").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The call to check if the metrics may be scraped
+     * @param request Request object to get the remote address and authorization header from
+     * @return The controller if the scraper is allowed, otherwise forbidden
+     */
+    @Override
+    public CompletionStage<Result> call(Http.Request request) {
+        if (allowedAddresses.contains(request.remoteAddress()) || hasScrapeToken(request)) {
+            return delegate.call(request);
+        }
+
+        JsonNode response = Json.newObject().put("error", "Forbidden");
+        return completedFuture(forbidden(response));
+    }
+
+    private boolean hasScrapeToken(Http.Request request) {
+        Optional<String> authorization = request.getHeaders().get(Http.HeaderNames.AUTHORIZATION);
+        if (scrapeToken.length == 0
+            || !authorization.isPresent()
+            || !authorization.get().startsWith(BEARER)) {
+            return false;
+        }
+        // Compared in constant time, so the token can't be guessed a byte at a time
+        String token = authorization.get().substring(BEARER.length());
+        return MessageDigest.isEqual(scrapeToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -13,7 +13,8 @@ import models.Message;
 import models.User;
 import modules.voice.VoiceServerApi;
 import modules.websocket.ChatEvents;
-import modules.websocket.ConnectedUsers;
+import modules.websocket.FrameDeliveries;
+import modules.websocket.FrameDelivery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.libs.Json;
@@ -125,7 +126,7 @@ public class ChatController extends Controller {
     JsonNode jsonBody = request.body().asJson();
 
     return chatRepository
-        .getChatById(chatGroupId)
+        .getChatByIdToEdit(chatGroupId)
         .thenComposeAsync(
             chatGroup -> {
               if (chatGroup == null) {
@@ -204,10 +205,10 @@ public class ChatController extends Controller {
                     new ForbiddenRequestException(
                         "You do not have permission to perform this request."));
               }
-              ConnectedUsers connectedUsers = ConnectedUsers.getInstance();
+              FrameDelivery frameDelivery = FrameDeliveries.getInstance();
               ArrayNode currentConnectedUsers = Json.newArray();
               for (User user : chatUsers) {
-                if (connectedUsers.isUserConnected(user)) {
+                if (frameDelivery.isUserConnected(user)) {
                   currentConnectedUsers.add(Json.toJson(user));
                 }
               }
@@ -284,7 +285,7 @@ public class ChatController extends Controller {
     User userFromMiddleware = request.attrs().get(ActionState.USER);
 
     return chatRepository
-        .getChatById(chatGroupId)
+        .getChatByIdToEdit(chatGroupId)
         .thenComposeAsync(
             chatGroup -> {
               if (chatGroup == null) {
@@ -337,18 +338,23 @@ public class ChatController extends Controller {
               String messageContents = jsonBody.get(MESSAGE_KEY).asText();
               Message message = new Message(chatGroup, messageContents, userFromMiddleware);
 
-              return chatRepository.createMessage(message);
-            })
-        .thenApplyAsync(
-            createdMessage -> {
-              ChatEvents chatEvents = new ChatEvents();
-              chatEvents.sendMessageToChatGroup(
-                  userFromMiddleware,
-                  createdMessage.getChatGroup(),
-                  createdMessage.getContents(),
-                  createdMessage.getMessageId());
-              return created(Json.toJson(createdMessage));
+              // The message is only sent to the group once it is committed, so a message that
+              // fails to be written is never seen by anyone. Sending it off the writer thread
+              // keeps the writer free for the next batch
+              return chatRepository
+                  .createMessage(message)
+                  .thenApplyAsync(
+                      committedMessage -> {
+                        ChatEvents chatEvents = new ChatEvents();
+                        chatEvents.sendMessageToChatGroup(
+                            userFromMiddleware,
+                            chatGroup,
+                            messageContents,
+                            committedMessage.getMessageId());
+                        return committedMessage;
+                      });
             })
+        .thenApplyAsync(createdMessage -> created(Json.toJson(createdMessage)))
         .exceptionally(exceptionUtil::getResultFromError);
   }
 
@@ -402,7 +408,7 @@ public class ChatController extends Controller {
     long pluginHandleId = jsonBody.get("pluginHandleId").asLong();
 
     return chatRepository
-        .getChatById(chatGroupId)
+        .getChatByIdToEdit(chatGroupId)
         .thenComposeAsync(
             chatGroup -> {
               if (chatGroup == null) {
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import models.Country;
@@ -31,8 +32,10 @@ import org.slf4j.LoggerFactory;
 import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.*;
+import repository.DestinationRead;
 import repository.DestinationRepository;
 import repository.PhotoRepository;
+import repository.UserRepository;
 import util.DestinationUtil;
 import util.ExceptionUtil;
 import util.Security;
@@ -45,6 +48,7 @@ public class DestinationController extends Controller {
   private static final String TRAVELLER_TYPE_IDS_KEY = "travellerTypeIds";
   private final DestinationRepository destinationRepository;
   private final PhotoRepository photoRepository;
+  private final UserRepository userRepository;
   private HttpExecutionContext httpExecutionContext;
   private final DestinationUtil destinationUtil;
   private final Logger log = LoggerFactory.getLogger(this.getClass());
@@ -58,8 +62,10 @@ public class DestinationController extends Controller {
       HttpExecutionContext httpExecutionContext,
       PhotoRepository photoRepository,
       DestinationUtil destinationUtil,
-      ExceptionUtil exceptionUtil) {
+      ExceptionUtil exceptionUtil,
+      UserRepository userRepository) {
     this.photoRepository = photoRepository;
+    this.userRepository = userRepository;
     this.destinationRepository = destinationRepository;
     this.httpExecutionContext = httpExecutionContext;
     this.destinationUtil = destinationUtil;
@@ -142,7 +148,7 @@ public class DestinationController extends Controller {
                 return notFound(message);
               }
 
-              Destination destination = optionalDestination.get();
+              DestinationRead destination = optionalDestination.get();
 
               try {
                 if (!user.isAdmin()
@@ -157,9 +163,7 @@ public class DestinationController extends Controller {
                 log.error(e.getMessage());
               }
 
-              JsonNode destAsJson = Json.toJson(destination);
-
-              return ok(destAsJson);
+              return ok(destination.getJson());
             },
             httpExecutionContext.current());
   }
@@ -239,44 +243,52 @@ public class DestinationController extends Controller {
         throw new BadRequestException("One or more fields are missing.");
       }
 
-      DestinationType destinationTypeAdd = DestinationType.find.byId(destinationTypeId);
-      Country countryAdd = Country.find.byId(countryId);
-
-      if (destinationTypeAdd == null || countryAdd == null) {
-        throw new BadRequestException("One of the fields you have selected does not exist.");
-      }
-
-      List<TravellerType> allTravellerTypes = TravellerType.find.all();
-      List<TravellerType> travellerTypes =
-          destinationUtil.transformTravellerTypes(travellerTypeIds, allTravellerTypes);
-
-      Destination destinationToAdd =
-          new Destination(
-              destinationName,
-              destinationTypeAdd,
-              districtName,
-              latitude,
-              longitude,
-              countryAdd,
-              userId,
-              travellerTypes,
-              false);
-
       return destinationRepository
-          .getDuplicateDestinations(destinationToAdd, userId)
-          .thenComposeAsync(
-              destinations -> {
-                for (Destination dest : destinations) {
-                  boolean ownsDestination =
-                      dest.getDestinationOwner() != null && dest.getDestinationOwner() == userId;
-                  if (dest.getIsPublic() || ownsDestination) {
-                    throw new CompletionException(
-                        new ConflictingRequestException("Destination already exists."));
-                  }
+          .getDestinationTypeById(destinationTypeId)
+          .thenCombine(
+              destinationRepository.getCountryById(countryId),
+              (destinationType, country) -> {
+                if (!destinationType.isPresent() || !country.isPresent()) {
+                  throw new CompletionException(
+                      new BadRequestException(
+                          "One of the fields you have selected does not exist."));
                 }
-                return destinationRepository.insert(destinationToAdd);
-              },
-              httpExecutionContext.current())
+                return new Destination(
+                    destinationName,
+                    destinationType.get(),
+                    districtName,
+                    latitude,
+                    longitude,
+                    country.get(),
+                    userId,
+                    new ArrayList<>(),
+                    false);
+              })
+          .thenCombine(
+              destinationRepository.getTravellerTypes(),
+              (destinationToAdd, allTravellerTypes) -> {
+                destinationToAdd.setTravellerTypes(
+                    destinationUtil.transformTravellerTypes(travellerTypeIds, allTravellerTypes));
+                return destinationToAdd;
+              })
+          .thenCompose(
+              destinationToAdd ->
+                  destinationRepository
+                      .getDuplicateDestinations(destinationToAdd, userId)
+                      .thenComposeAsync(
+                          destinations -> {
+                            for (Destination dest : destinations) {
+                              boolean ownsDestination =
+                                  dest.getDestinationOwner() != null
+                                      && dest.getDestinationOwner() == userId;
+                              if (dest.getIsPublic() || ownsDestination) {
+                                throw new CompletionException(
+                                    new ConflictingRequestException("Destination already exists."));
+                              }
+                            }
+                            return destinationRepository.insert(destinationToAdd);
+                          },
+                          httpExecutionContext.current()))
           .thenApplyAsync(insertedDestination -> created(Json.toJson(insertedDestination)))
           .exceptionally(exceptionUtil::getResultFromError);
 
@@ -299,9 +311,10 @@ public class DestinationController extends Controller {
   public CompletionStage<Result> updateDestination(Http.Request request, int destinationId) {
     User user = request.attrs().get(ActionState.USER);
     return destinationRepository
-        .getDestinationById(destinationId)
-        .thenComposeAsync(
-            optionalDest -> {
+        .getDestinationByIdToEdit(destinationId)
+        .thenCombineAsync(
+            destinationRepository.getTravellerTypes(),
+            (optionalDest, allTravellerTypes) -> {
               if (!optionalDest.isPresent()) {
                 throw new CompletionException(new NotFoundException());
               }
@@ -326,7 +339,6 @@ public class DestinationController extends Controller {
               double longitude = jsonBody.get("longitude").asDouble();
               boolean isPublic = jsonBody.get("isPublic").asBoolean();
               JsonNode travellerTypeIds = jsonBody.get(TRAVELLER_TYPE_IDS_KEY);
-              List<TravellerType> allTravellerTypes = TravellerType.find.all();
               List<TravellerType> travellerTypes =
                   destinationUtil.transformTravellerTypes(travellerTypeIds, allTravellerTypes);
 
@@ -394,6 +406,7 @@ public class DestinationController extends Controller {
                       });
             },
             httpExecutionContext.current())
+        .thenCompose(Function.identity())
         .thenApplyAsync(destination -> ok(Json.toJson(destination)), httpExecutionContext.current())
         .exceptionally(exceptionUtil::getResultFromError);
   }
@@ -415,7 +428,7 @@ public class DestinationController extends Controller {
               if (!optionalDestination.isPresent()) {
                 throw new CompletionException(new NotFoundException());
               }
-              Destination destination = optionalDestination.get();
+              DestinationRead destination = optionalDestination.get();
               if (destination.getDestinationOwner() == null && !user.isAdmin()) {
                 throw new CompletionException(
                     new ForbiddenRequestException(
@@ -535,7 +548,7 @@ public class DestinationController extends Controller {
     }
 
     return destinationRepository
-        .getDestinationById(destinationId)
+        .getDestinationByIdToEdit(destinationId)
         .thenComposeAsync(
             optionalDestination -> {
               if (!optionalDestination.isPresent()) {
@@ -616,22 +629,10 @@ public class DestinationController extends Controller {
                 res.put(MESSAGE_KEY, "Destination " + destinationId + " does not exist");
                 return notFound(res);
               }
-              Destination destination = optionalDestination.get();
-              List<DestinationPhoto> destinationPhotos = destination.getDestinationPhotos();
-
-              if (user.isAdmin() || user.isDefaultAdmin()) {
-                return ok(Json.toJson(destinationPhotos));
-              }
-
-              List<DestinationPhoto> photosToReturn = new ArrayList<>();
-              List<DestinationPhoto> publicDestinationPhotos =
-                  destination.getPublicDestinationPhotos();
-              List<DestinationPhoto> privatePhotosForUser =
-                  destination.getPrivatePhotosForUserWithId(user.getUserId());
-              photosToReturn.addAll(publicDestinationPhotos);
-              photosToReturn.addAll(privatePhotosForUser);
-
-              return ok(Json.toJson(photosToReturn));
+              DestinationRead destination = optionalDestination.get();
+              return ok(
+                  destination.getPhotosFor(
+                      user.getUserId(), user.isAdmin() || user.isDefaultAdmin()));
             }),
             httpExecutionContext.current());
   }
@@ -737,43 +738,51 @@ public class DestinationController extends Controller {
   public CompletionStage<Result> addProposal(int userId, Http.Request request, int destinationId) {
     User userFromMiddleware = request.attrs().get(ActionState.USER);
 
-    User user = User.find.byId(userId);
-
     if (Security.userHasPermission(userFromMiddleware, userId)) {
       return supplyAsync(Controller::forbidden);
     }
 
-    if (user == null) {
-      return supplyAsync(() -> notFound("User not found"));
-    }
-
-    return destinationRepository
-        .getDestinationById(destinationId)
+    return userRepository
+        .getUserById(userId)
         .thenComposeAsync(
-            optionalDestination -> {
-              if (!optionalDestination.isPresent()) {
-                throw new CompletionException(new BadRequestException("Destination not found"));
+            optionalUser -> {
+              if (!optionalUser.isPresent()) {
+                return supplyAsync(() -> notFound("User not found"));
               }
+              User user = optionalUser.get();
 
-              Destination destination = optionalDestination.get();
+              // The traveller types are looked up on the database threads alongside the destination
+              return destinationRepository
+                  .getDestinationByIdToEdit(destinationId)
+                  .thenCombine(
+                      destinationRepository.getTravellerTypes(),
+                      (optionalDestination, allTravellerTypes) -> {
+                        if (!optionalDestination.isPresent()) {
+                          throw new CompletionException(
+                              new BadRequestException("Destination not found"));
+                        }
 
-              // Cannot make proposals for destinations that are not public
-              if (!destination.getIsPublic()) {
-                throw new CompletionException(
-                    new ForbiddenRequestException("Destination is not public"));
-              }
+                        Destination destination = optionalDestination.get();
 
-              // Get traveller type objects from ID's
-              JsonNode travellerTypeIds = request.body().asJson().get(TRAVELLER_TYPE_IDS_KEY);
-              List<TravellerType> allTravellerTypes = TravellerType.find.all();
-              List<TravellerType> travellerTypes =
-                  destinationUtil.transformTravellerTypes(travellerTypeIds, allTravellerTypes);
+                        // Cannot make proposals for destinations that are not public
+                        if (!destination.getIsPublic()) {
+                          throw new CompletionException(
+                              new ForbiddenRequestException("Destination is not public"));
+                        }
 
-              DestinationProposal proposal =
-                  new DestinationProposal(destination, travellerTypes, user);
-              return destinationRepository.createProposal(proposal);
-            })
-        .thenApplyAsync(proposal -> ok(Json.toJson(proposal)))
+                        // Get traveller type objects from ID's
+                        JsonNode travellerTypeIds =
+                            request.body().asJson().get(TRAVELLER_TYPE_IDS_KEY);
+                        List<TravellerType> travellerTypes =
+                            destinationUtil.transformTravellerTypes(
+                                travellerTypeIds, allTravellerTypes);
+
+                        return new DestinationProposal(destination, travellerTypes, user);
+                      })
+                  .thenCompose(destinationRepository::createProposal)
+                  .thenApplyAsync(proposal -> ok(Json.toJson(proposal)));
+            },
+            httpExecutionContext.current())
         .exceptionally(exceptionUtil::getResultFromError);
   }
 
@@ -790,21 +799,22 @@ public class DestinationController extends Controller {
   public CompletionStage<Result> modifyProposal(int destinationProposalId, Http.Request request) {
     return destinationRepository
         .getDestinationProposalById(destinationProposalId)
-        .thenComposeAsync(
-            optionalDestinationProposal -> {
+        .thenCombine(
+            destinationRepository.getTravellerTypes(),
+            (optionalDestinationProposal, allTravellerTypes) -> {
               if (!optionalDestinationProposal.isPresent()) {
                 throw new CompletionException(
                     new NotFoundException("Destination proposal not found"));
               }
               DestinationProposal destinationProposal = optionalDestinationProposal.get();
               JsonNode travellerTypeIds = request.body().asJson().get(TRAVELLER_TYPE_IDS_KEY);
-              List<TravellerType> allTravellerTypes = TravellerType.find.all();
               List<TravellerType> travellerTypes =
                   destinationUtil.transformTravellerTypes(travellerTypeIds, allTravellerTypes);
 
               destinationProposal.setTravellerTypes(travellerTypes);
-              return destinationRepository.updateDestinationProposal(destinationProposal);
+              return destinationProposal;
             })
+        .thenCompose(destinationRepository::updateDestinationProposal)
         .thenApplyAsync(destinationProposal -> ok(Json.toJson(destinationProposal)))
         .exceptionally(exceptionUtil::getResultFromError);
   }
@@ -867,39 +877,48 @@ public class DestinationController extends Controller {
       int userId, int destinationProposalId, Http.Request request) {
     User userFromMiddleware = request.attrs().get(ActionState.USER);
 
-    User user = User.find.byId(userId);
     if (Security.userHasPermission(userFromMiddleware, userId)) {
       return supplyAsync(() -> forbidden("Not authorized to reject proposal"));
     }
 
-    if (user == null) {
-      return supplyAsync(() -> notFound("User not found"));
-    }
-
-    return destinationRepository
-        .getDestinationProposalById(destinationProposalId)
+    return userRepository
+        .getUserById(userId)
         .thenComposeAsync(
-            optionalDestinationProposal -> {
-              if (!optionalDestinationProposal.isPresent()) {
-                throw new CompletionException(
-                    new NotFoundException(
-                        "The destination proposal you want to reject does not exist."));
+            optionalUser -> {
+              if (!optionalUser.isPresent()) {
+                return supplyAsync(() -> notFound("User not found"));
               }
-              DestinationProposal destinationProposal = optionalDestinationProposal.get();
+              User user = optionalUser.get();
 
-              if (!user.isAdmin()
-                  && destinationProposal.getUser().getUserId() != user.getUserId()) {
-                throw new CompletionException(
-                    new ForbiddenRequestException(
-                        "User is not permitted to reject other proposals"));
-              }
+              return destinationRepository
+                  .getDestinationProposalById(destinationProposalId)
+                  .thenComposeAsync(
+                      optionalDestinationProposal -> {
+                        if (!optionalDestinationProposal.isPresent()) {
+                          throw new CompletionException(
+                              new NotFoundException(
+                                  "The destination proposal you want to reject does not exist."));
+                        }
+                        DestinationProposal destinationProposal = optionalDestinationProposal.get();
 
-              ObjectNode success = Json.newObject();
-              success.put(MESSAGE_KEY, "Successfully rejected the given destination proposal");
-              return this.destinationRepository.deleteDestinationProposal(destinationProposal);
+                        if (!user.isAdmin()
+                            && destinationProposal.getUser().getUserId() != user.getUserId()) {
+                          throw new CompletionException(
+                              new ForbiddenRequestException(
+                                  "User is not permitted to reject other proposals"));
+                        }
+
+                        ObjectNode success = Json.newObject();
+                        success.put(
+                            MESSAGE_KEY, "Successfully rejected the given destination proposal");
+                        return this.destinationRepository.deleteDestinationProposal(
+                            destinationProposal);
+                      },
+                      httpExecutionContext.current())
+                  .thenApplyAsync(
+                      destinationProposal -> (Result) ok(), httpExecutionContext.current());
             },
             httpExecutionContext.current())
-        .thenApplyAsync(destinationProposal -> (Result) ok(), httpExecutionContext.current())
         .exceptionally(exceptionUtil::getResultFromError);
   }
 
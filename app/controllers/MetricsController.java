@@ -0,0 +1,293 @@
+package controllers;
+
+import actions.MetricsScraper;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import modules.admission.ConcurrencyLimit;
+import modules.admission.RateLimiter;
+import modules.admission.RouteClass;
+import modules.metrics.PrometheusWriter;
+import modules.metrics.RequestMetrics;
+import modules.profiling.BlockingCallDetector;
+import modules.replicas.ReplicaRouter;
+import modules.photos.PhotoCacheMetrics;
+import modules.photos.ThumbnailExecutionContext;
+import modules.photos.ThumbnailRenderer;
+import modules.websocket.OutboundBufferMetrics;
+import modules.websocket.PingMapRelay;
+import modules.websocket.PresenceAggregator;
+import play.db.DBApi;
+import play.db.Database;
+import play.mvc.Controller;
+import play.mvc.Result;
+import play.mvc.With;
+import repository.Bulkheads;
+import repository.DatabaseExecutionContext;
+import repository.MessageWriteBuffer;
+import repository.SingleFlight;
+import repository.SingleFlights;
+import tasks.expiry.ExpiryMetrics;
+import tasks.storage.StorageGcMetrics;
+
+/**
+ * Serves the metrics of this server in the Prometheus text format, to be scraped.
+ */
+public class MetricsController extends Controller {
+
+  private final DBApi dbApi;
+  private final MessageWriteBuffer messageWriteBuffer;
+  private final ThumbnailRenderer thumbnailRenderer;
+  private final ThumbnailExecutionContext thumbnailExecutionContext;
+
+  @Inject
+  public MetricsController(
+      DBApi dbApi,
+      MessageWriteBuffer messageWriteBuffer,
+      ThumbnailRenderer thumbnailRenderer,
+      ThumbnailExecutionContext thumbnailExecutionContext) {
+    this.dbApi = dbApi;
+    this.messageWriteBuffer = messageWriteBuffer;
+    this.thumbnailRenderer = thumbnailRenderer;
+    this.thumbnailExecutionContext = thumbnailExecutionContext;
+  }
+
+  /**
+   * Gets the metrics of this server.
+   *
+   * @return the metrics, in the Prometheus text format.
+   */
+  @With(MetricsScraper.class)
+  public Result getMetrics() {
+    PrometheusWriter writer = new PrometheusWriter();
+    RequestMetrics.getInstance().write(writer);
+    writeAdmissionMetrics(writer);
+    writeDatabaseMetrics(writer);
+    writeWebSocketMetrics(writer);
+    writePhotoMetrics(writer);
+    writeTaskMetrics(writer);
+    return ok(writer.toString()).as(PrometheusWriter.CONTENT_TYPE);
+  }
+
+  private void writeAdmissionMetrics(PrometheusWriter writer) {
+    List<RouteClass> routeClasses = RateLimiter.getInstance().getRouteClasses();
+    writer.counter("admission_rate_limited_total", "Requests refused with a 429, by route class");
+    for (RouteClass routeClass : routeClasses) {
+      writer.sample(
+          "admission_rate_limited_total", routeClass.getLimited(), "class", routeClass.getName());
+    }
+    writer.gauge("admission_rate_limited_clients", "Clients with a token bucket, by route class");
+    for (RouteClass routeClass : routeClasses) {
+      writer.sample(
+          "admission_rate_limited_clients", routeClass.getClients(), "class", routeClass.getName());
+    }
+
+    ConcurrencyLimit concurrencyLimit = ConcurrencyLimit.getInstance();
+    writer
+        .counter("admission_shed_total", "Requests shed with a 503 over the concurrency limit")
+        .sample("admission_shed_total", concurrencyLimit.getShed())
+        .gauge("admission_concurrency_limit", "Most requests to the api served at once")
+        .sample("admission_concurrency_limit", concurrencyLimit.getLimit())
+        .gauge("admission_in_flight", "Requests to the api being served")
+        .sample("admission_in_flight", concurrencyLimit.getInFlight());
+  }
+
+  private void writeDatabaseMetrics(PrometheusWriter writer) {
+    writer.gauge("database_bulkhead_queue_depth", "Database tasks waiting for a thread");
+    sampleBulkheads(
+        writer, "database_bulkhead_queue_depth", DatabaseExecutionContext::getQueueDepth);
+    writer.gauge("database_bulkhead_queue_limit", "Most tasks that may wait, by bulkhead");
+    sampleBulkheads(
+        writer, "database_bulkhead_queue_limit", DatabaseExecutionContext::getQueueLimit);
+    writer.gauge("database_bulkhead_running", "Database tasks running, by bulkhead");
+    sampleBulkheads(writer, "database_bulkhead_running", DatabaseExecutionContext::getRunning);
+    writer.gauge("database_bulkhead_connections", "Connections each bulkhead may hold");
+    sampleBulkheads(
+        writer, "database_bulkhead_connections", DatabaseExecutionContext::getConnections);
+    writer.counter("database_bulkhead_completed_total", "Database tasks run, by bulkhead");
+    sampleBulkheads(
+        writer, "database_bulkhead_completed_total", DatabaseExecutionContext::getCompleted);
+    writer.counter("database_bulkhead_rejected_total", "Tasks rejected as the queue was full");
+    sampleBulkheads(
+        writer, "database_bulkhead_rejected_total", DatabaseExecutionContext::getRejected);
+    writer.counter(
+        "database_bulkhead_queue_wait_seconds_total", "Time database tasks waited for a thread");
+    sampleBulkheads(
+        writer,
+        "database_bulkhead_queue_wait_seconds_total",
+        bulkhead -> bulkhead.getQueueWaitNanos() / 1e9);
+    writer
+        .counter("database_blocking_calls_total", "JDBC calls made from threads serving requests")
+        .sample("database_blocking_calls_total", BlockingCallDetector.getInstance().getDetected());
+
+    writer.counter("repository_reads_total", "Reads asked for, by read and how they were served");
+    for (SingleFlight<?, ?> reads : SingleFlights.getInstance().getAll()) {
+      String read = reads.getName();
+      writer
+          .sample("repository_reads_total", reads.getLoads(), "read", read, "served", "loaded")
+          .sample(
+              "repository_reads_total", reads.getCoalesced(), "read", read, "served", "coalesced")
+          .sample("repository_reads_total", reads.getCached(), "read", read, "served", "kept");
+    }
+
+    ReplicaRouter replicas = ReplicaRouter.getInstance();
+    writer
+        .counter("database_reads_total", "Reads outside a transaction, by the database read from")
+        .sample("database_reads_total", replicas.getReplicaReads(), "database", "replica")
+        .sample("database_reads_total", replicas.getPrimaryReads(), "database", "primary")
+        .counter("database_replica_failures_total", "Failed connections and lag checks")
+        .sample("database_replica_failures_total", replicas.getFailures())
+        .gauge("database_replica_lag_seconds", "How far the replica was behind when last checked")
+        .sample("database_replica_lag_seconds", replicas.getLagSeconds())
+        .gauge("database_replica_available", "Whether reads may go to the replica")
+        .sample("database_replica_available", replicas.isReplicaAvailable() ? 1 : 0);
+
+    writer.gauge("hikari_connections_active", "Connections in use, by pool");
+    forEachPool(
+        (name, dataSource, pool) ->
+            writer.sample("hikari_connections_active", pool.getActiveConnections(), "pool", name));
+    writer.gauge("hikari_connections_idle", "Connections waiting to be used, by pool");
+    forEachPool(
+        (name, dataSource, pool) ->
+            writer.sample("hikari_connections_idle", pool.getIdleConnections(), "pool", name));
+    writer.gauge("hikari_connections_max", "Most connections the pool will open, by pool");
+    forEachPool(
+        (name, dataSource, pool) ->
+            writer.sample(
+                "hikari_connections_max", dataSource.getMaximumPoolSize(), "pool", name));
+    writer.gauge("hikari_threads_awaiting_connection", "Threads waiting for a connection, by pool");
+    forEachPool(
+        (name, dataSource, pool) ->
+            writer.sample(
+                "hikari_threads_awaiting_connection",
+                pool.getThreadsAwaitingConnection(),
+                "pool",
+                name));
+
+    writer
+        .counter("chat_messages_written_total", "Chat messages committed")
+        .sample("chat_messages_written_total", messageWriteBuffer.getMessagesWritten())
+        .counter("chat_message_batches_written_total", "Transactions chat messages were committed in")
+        .sample("chat_message_batches_written_total", messageWriteBuffer.getBatchesWritten())
+        .gauge("chat_message_queue_depth", "Chat messages waiting to be written")
+        .sample("chat_message_queue_depth", messageWriteBuffer.getQueueDepth());
+  }
+
+  private void writeWebSocketMetrics(PrometheusWriter writer) {
+    OutboundBufferMetrics outbound = OutboundBufferMetrics.getInstance();
+    PresenceAggregator presence = PresenceAggregator.getInstance();
+    writer
+        .gauge("websocket_connections", "Websockets open to this server")
+        .sample("websocket_connections", outbound.getConnections().size())
+        .gauge("websocket_outbound_queue_depth", "Frames waiting to be written to websockets")
+        .sample("websocket_outbound_queue_depth", outbound.getTotalQueueDepth())
+        .counter("websocket_frames_dropped_total", "Frames dropped for slow clients")
+        .sample("websocket_frames_dropped_total", outbound.getTotalFramesDropped())
+        .counter("websocket_resyncs_total", "Clients told to resync after falling behind")
+        .sample("websocket_resyncs_total", outbound.getTotalResyncs())
+        .counter("websocket_presence_changes_total", "Users connecting or disconnecting")
+        .sample("websocket_presence_changes_total", presence.getStatusChanges())
+        .counter("websocket_presence_frames_sent_total", "Presence snapshots sent")
+        .sample("websocket_presence_frames_sent_total", presence.getFramesSent())
+        .counter("websocket_map_pings_received_total", "Map pings sent by users")
+        .sample("websocket_map_pings_received_total", PingMapRelay.getPingsReceived())
+        .counter("websocket_map_pings_relayed_total", "Map pings sent on to other users")
+        .sample("websocket_map_pings_relayed_total", PingMapRelay.getPingsRelayed());
+  }
+
+  private void writePhotoMetrics(PrometheusWriter writer) {
+    PhotoCacheMetrics cache = PhotoCacheMetrics.getInstance();
+    writer
+        .counter("photo_cache_hits_total", "Photos served from the cache")
+        .sample("photo_cache_hits_total", cache.getHits())
+        .counter("photo_cache_misses_total", "Photos not found in the cache")
+        .sample("photo_cache_misses_total", cache.getMisses())
+        .counter("photo_cache_evictions_total", "Photos evicted from the cache")
+        .sample("photo_cache_evictions_total", cache.getEvictions())
+        .gauge("photo_cache_resident_bytes", "Bytes of photos in the cache")
+        .sample("photo_cache_resident_bytes", cache.getResidentBytes())
+        .gauge("photo_cache_capacity_bytes", "Bytes the cache can hold")
+        .sample("photo_cache_capacity_bytes", cache.getCapacityBytes())
+        .gauge("photo_decode_pixels_in_use", "Pixels being decoded to make thumbnails")
+        .sample("photo_decode_pixels_in_use", thumbnailRenderer.getPixelsInUse())
+        .gauge("photo_decode_pixel_budget", "Most pixels that can be decoded at once")
+        .sample("photo_decode_pixel_budget", thumbnailRenderer.getPixelBudget())
+        .counter("photo_decode_waits_total", "Thumbnails that waited for the pixel budget")
+        .sample("photo_decode_waits_total", thumbnailRenderer.getRendersWaited())
+        .gauge("photo_render_queue_depth", "Uploads waiting for a thumbnail thread")
+        .sample("photo_render_queue_depth", thumbnailExecutionContext.getQueueDepth())
+        .counter("photo_render_rejected_total", "Uploads refused as too many were waiting")
+        .sample("photo_render_rejected_total", thumbnailExecutionContext.getRejected());
+  }
+
+  private void writeTaskMetrics(PrometheusWriter writer) {
+    ExpiryMetrics expiry = ExpiryMetrics.getInstance();
+    writer
+        .counter("expiry_runs_total", "Runs of the expiry task")
+        .sample("expiry_runs_total", expiry.getRuns())
+        .counter("expiry_failed_runs_total", "Runs of the expiry task with failures")
+        .sample("expiry_failed_runs_total", expiry.getFailedRuns());
+    writer.counter("expiry_rows_deleted_total", "Expired rows deleted, by type");
+    for (Map.Entry<String, Long> type : expiry.getRowsDeleted().entrySet()) {
+      writer.sample("expiry_rows_deleted_total", type.getValue(), "type", type.getKey());
+    }
+
+    StorageGcMetrics storageGc = StorageGcMetrics.getInstance();
+    writer
+        .counter("storage_gc_runs_total", "Runs of the storage garbage collector")
+        .sample("storage_gc_runs_total", storageGc.getRuns())
+        .counter("storage_gc_files_deleted_total", "Unreferenced photos deleted")
+        .sample("storage_gc_files_deleted_total", storageGc.getFilesDeleted())
+        .counter("storage_gc_bytes_reclaimed_total", "Bytes of unreferenced photos deleted")
+        .sample("storage_gc_bytes_reclaimed_total", storageGc.getBytesReclaimed())
+        .counter("storage_gc_delete_failures_total", "Unreferenced photos that failed to delete")
+        .sample("storage_gc_delete_failures_total", storageGc.getDeleteFailures());
+  }
+
+  /**
+   * Writes a sample of a metric for each database bulkhead.
+   *
+   * @param writer the writer to write the samples to.
+   * @param name the name of the metric.
+   * @param value gets the value of the metric for a bulkhead.
+   */
+  private void sampleBulkheads(
+      PrometheusWriter writer, String name, ToDoubleFunction<DatabaseExecutionContext> value) {
+    for (DatabaseExecutionContext bulkhead : Bulkheads.getInstance().getAll()) {
+      writer.sample(name, value.applyAsDouble(bulkhead), "bulkhead", bulkhead.getName());
+    }
+  }
+
+  /**
+   * Runs an action for each database whose connections are pooled by Hikari and whose pool has
+   * started.
+   *
+   * @param action the action to run.
+   */
+  private void forEachPool(PoolAction action) {
+    for (Database database : dbApi.getDatabases()) {
+      try {
+        DataSource dataSource = database.getDataSource();
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+          HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+          HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+          if (pool != null) {
+            action.run(database.getName(), hikari, pool);
+          }
+        }
+      } catch (SQLException e) {
+        // Not a Hikari pool
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface PoolAction {
+    void run(String name, HikariDataSource dataSource, HikariPoolMXBean pool);
+  }
+}
@@ -2,18 +2,29 @@ package controllers;
 
 import actions.ActionState;
 import actions.LoggedIn;
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
 import exceptions.BadRequestException;
 import exceptions.ForbiddenRequestException;
 import exceptions.NotFoundException;
 import exceptions.ServerErrorException;
-import java.nio.file.StandardCopyOption;
 import models.PersonalPhoto;
 import models.User;
+import modules.photos.ImageFormat;
+import modules.photos.PhotoStore;
+import modules.photos.PhotoUploadBodyParser;
+import modules.photos.StagedPhoto;
+import modules.photos.ThumbnailExecutionContext;
+import modules.photos.ThumbnailRenderer;
+import modules.photos.UploadRejectedException;
+import modules.profiling.QueryBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import play.libs.Files;
 import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.*;
@@ -21,19 +32,26 @@ import repository.PhotoRepository;
 import repository.UserRepository;
 import util.ExceptionUtil;
 import util.Security;
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 
 /**
@@ -45,15 +63,20 @@ public class PhotoController extends Controller {
   private static final String IS_PUBLIC_KEY = "isPublic";
   private static final String MESSAGE_KEY = "message";
   private static final String IS_PRIMARY_KEY = "isPrimary";
-  private static final String STORAGE_PHOTOS = "/storage/photos";
   private static final String PHOTO_NOT_FOUND_MESSAGE = "Photo not found";
   private static final String THUMB = "_thumb";
+  private static final String THUMBNAIL_BATCH_CONTENT_TYPE = "application/vnd.flockr.thumbnails";
+  private static final String BLOCKING_IO_DISPATCHER = "akka.stream.default-blocking-io-dispatcher";
   private static final String USER_DOES_NOT_HAVE_PERMISSION_TO_PERFORM_THIS_REQUEST = "User does not have permission to perform this request";
 
   private final PhotoRepository photoRepository;
   private final UserRepository userRepository;
   private final HttpExecutionContext httpExecutionContext;
   private final ExceptionUtil exceptionUtil;
+  private final PhotoStore photoStore;
+  private final ThumbnailRenderer thumbnailRenderer;
+  private final ThumbnailExecutionContext thumbnailExecutionContext;
+  private final int thumbnailBatchSize;
 
   private final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -62,11 +85,19 @@ public class PhotoController extends Controller {
       PhotoRepository photoRepository,
       UserRepository userRepository,
       HttpExecutionContext httpExecutionContext,
-      ExceptionUtil exceptionUtil) {
+      ExceptionUtil exceptionUtil,
+      PhotoStore photoStore,
+      ThumbnailRenderer thumbnailRenderer,
+      ThumbnailExecutionContext thumbnailExecutionContext,
+      Config config) {
     this.photoRepository = photoRepository;
     this.httpExecutionContext = httpExecutionContext;
     this.userRepository = userRepository;
     this.exceptionUtil = exceptionUtil;
+    this.photoStore = photoStore;
+    this.thumbnailRenderer = thumbnailRenderer;
+    this.thumbnailExecutionContext = thumbnailExecutionContext;
+    this.thumbnailBatchSize = config.getInt("photos.thumbnailBatchSize");
   }
 
   /**
@@ -228,38 +259,43 @@ public class PhotoController extends Controller {
   public CompletionStage<Result> getPhotos(int userId, Http.Request request) {
     User userFromMiddleware = request.attrs().get(ActionState.USER);
     // Check user exists
-    if (User.find.byId(userId) == null) {
-      JsonNode response = Json.newObject().put("error", "Not Found");
-      return supplyAsync(() -> notFound(response));
-    } else {
-      return photoRepository
-          .getPhotosById(userId)
-          .thenApplyAsync(
-              photos -> {
-                List<PersonalPhoto> userPhotos =
-                    photos.stream()
-                        .filter(
-                            photo -> {
-                              // Don't add primary photo to list of photos
-                              if (photo.isPrimary()) {
-                                return false;
-                              }
-
-                              // If user is admin, then display even private photos
-                              if (userFromMiddleware.isAdmin()) {
-                                return true;
-                              }
-
-                              // Don't add private photo's if user not the logged in user
-                              return !(userFromMiddleware.getUserId() != userId
-                                  && !photo.isPublic());
-                            })
-                        .collect(Collectors.toList());
-
-                JsonNode photosAsJSON = Json.toJson(userPhotos);
-                return ok(photosAsJSON);
-              });
-    }
+    return userRepository
+        .getUserById(userId)
+        .thenComposeAsync(
+            user -> {
+              if (!user.isPresent()) {
+                JsonNode response = Json.newObject().put("error", "Not Found");
+                return supplyAsync(() -> notFound(response));
+              }
+              return photoRepository
+                  .getPhotosById(userId)
+                  .thenApplyAsync(
+                      photos -> {
+                        List<PersonalPhoto> userPhotos =
+                            photos.stream()
+                                .filter(
+                                    photo -> {
+                                      // Don't add primary photo to list of photos
+                                      if (photo.isPrimary()) {
+                                        return false;
+                                      }
+
+                                      // If user is admin, then display even private photos
+                                      if (userFromMiddleware.isAdmin()) {
+                                        return true;
+                                      }
+
+                                      // Don't add private photo's if user not the logged in user
+                                      return !(userFromMiddleware.getUserId() != userId
+                                          && !photo.isPublic());
+                                    })
+                                .collect(Collectors.toList());
+
+                        JsonNode photosAsJSON = Json.toJson(userPhotos);
+                        return ok(photosAsJSON);
+                      });
+            },
+            httpExecutionContext.current());
   }
 
   /**
@@ -272,6 +308,7 @@ public class PhotoController extends Controller {
    *     have permission to 500 server error for any other server related error
    */
   @With(LoggedIn.class)
+  @QueryBudget(10)
   public CompletionStage<Result> getPhoto(int photoId, Http.Request request) {
     User user = request.attrs().get(ActionState.USER);
     return photoRepository
@@ -282,26 +319,48 @@ public class PhotoController extends Controller {
                 throw new CompletionException(
                     new NotFoundException(
                         "Please provide a valid request body according to the API spec"));
-              } else if (!user.isAdmin()
-                  && !photo.get().isPublic()
-                  && user.getUserId() != photo.get().getUser().getUserId()) {
+              } else if (!canView(user, photo.get())) {
                 return forbidden();
               } else {
-                String path = System.getProperty(USER_DIR) + STORAGE_PHOTOS;
-                File photoToBeSent = new File(path, photo.get().getFilenameHash());
-                if (!photoToBeSent.exists()) {
-                  // here for the last of sprint 4 where we can't seem to access photos
-                  // but we can access the thumbnails
-                  ObjectNode res = Json.newObject();
-                  res.put(MESSAGE_KEY, "Did not find the photo..." + photoToBeSent);
-                  return internalServerError(res);
-                }
-                return ok().sendFile(photoToBeSent);
+                return sendStoredFile(photo.get().getFilenameHash());
               }
             })
         .exceptionally(exceptionUtil::getResultFromError);
   }
 
+  /**
+   * Sends a file from the photo store, from memory if it is cached, otherwise straight from disk
+   * if the store is local.
+   *
+   * @param name the name of the file.
+   * @return the response with the file, or an internal server error if the file is missing.
+   */
+  private Result sendStoredFile(String name) {
+    String mimeType = name.endsWith(".png") ? "image/png" : "image/jpeg";
+    try {
+      Optional<byte[]> cachedContents = photoStore.cachedContents(name);
+      if (cachedContents.isPresent()) {
+        return ok(cachedContents.get()).as(mimeType);
+      }
+
+      Optional<Path> localFile = photoStore.localPath(name);
+      if (localFile.isPresent()) {
+        return ok().sendPath(localFile.get());
+      }
+
+      long size = photoStore.size(name);
+      InputStream contents = photoStore.open(name);
+      return ok().sendInputStream(contents, size).as(mimeType);
+    } catch (NoSuchFileException e) {
+      ObjectNode res = Json.newObject();
+      res.put(MESSAGE_KEY, "Did not find the photo..." + name);
+      return internalServerError(res);
+    } catch (IOException e) {
+      log.error("Could not read photo " + name, e);
+      throw new CompletionException(new ServerErrorException());
+    }
+  }
+
   /**
    * Determine whether the user doing an upload can upload a photo for receiving user
    *
@@ -341,6 +400,7 @@ public class PhotoController extends Controller {
    * @return the result for the request
    */
   @With(LoggedIn.class)
+  @BodyParser.Of(PhotoUploadBodyParser.class)
   public CompletionStage<Result> uploadPhotoForUser(int userId, Http.Request request) {
     User userUploadingPhoto = request.attrs().get(ActionState.USER);
     ObjectNode response = Json.newObject();
@@ -357,27 +417,11 @@ public class PhotoController extends Controller {
                 throw new CompletionException(new ForbiddenRequestException(message));
               }
 
-              Optional<String> optionalContentType = request.contentType();
-
-              // check that a content type is specified
-              if (!optionalContentType.isPresent()) {
-                response.put(
-                    messageKey, "Please specify the Content Type as specified in the API spec");
-                return supplyAsync(() -> badRequest(response), httpExecutionContext.current());
-              }
-
-              String contentType = optionalContentType.get();
-
-              // check that the content type is allowed
-              if (!contentType.equals("multipart/form-data")) {
-                response.put(
-                    messageKey, "Please specify the Content Type as specified in the API spec");
-                return supplyAsync(() -> badRequest(response), httpExecutionContext.current());
-              }
-
-              // parse request body to multipart form data
-              Http.MultipartFormData multipartFormData = request.body().asMultipartFormData();
-              Http.MultipartFormData.FilePart photo = multipartFormData.getFile("image");
+              // the photo has already been checked and staged by the body parser
+              Http.MultipartFormData<StagedPhoto> multipartFormData =
+                  request.body().asMultipartFormData();
+              Http.MultipartFormData.FilePart<StagedPhoto> photo =
+                  multipartFormData.getFile(PhotoUploadBodyParser.IMAGE_PART);
               Map<String, String[]> textFields = multipartFormData.asFormUrlEncoded();
 
               // check that the body includes fields as specified in the API spec
@@ -393,14 +437,6 @@ public class PhotoController extends Controller {
                 return supplyAsync(() -> badRequest(response), httpExecutionContext.current());
               }
 
-              // check for the photo's content type
-              String photoContentType = photo.getContentType();
-              if (!(photoContentType.equals("image/png")
-                  || photoContentType.equals("image/jpeg"))) {
-                response.put(messageKey, "Your photo must be a .png or .jpg file");
-                return supplyAsync(() -> badRequest(response), httpExecutionContext.current());
-              }
-
               // initialise the text components of the request
               String isPrimaryAsText = textFields.get(IS_PRIMARY_KEY)[0];
               String isPublicAsText = textFields.get(IS_PUBLIC_KEY)[0];
@@ -413,60 +449,17 @@ public class PhotoController extends Controller {
                 return supplyAsync(() -> forbidden(response), httpExecutionContext.current());
               }
 
-              log.debug("Extracting photo from request");
-
-              // get the photo as a file from the request
-              Files.TemporaryFile temporaryPhotoFile = (Files.TemporaryFile) photo.getRef();
-
-              checkForAndCreatePhotosDirectory();
-
-              // start copying the file to file system
-              String path = System.getProperty(USER_DIR) + STORAGE_PHOTOS;
-              String token = Security.generateToken();
-              String extension = photoContentType.equals("image/png") ? ".png" : ".jpg";
-              String filename = token + extension;
-              String thumbFilename = token + THUMB + extension;
-              File fileDestination = new File(path, filename);
-              File thumbFileDestination = new File(path, thumbFilename);
-
-              // if the file path already exists, generate another token
-              while (fileDestination.exists()) {
-                token = Security.generateToken();
-                filename = token + extension;
-                thumbFilename = token + THUMB + extension;
-                fileDestination = new File(path, filename);
-                thumbFileDestination = new File(path, thumbFilename);
-              }
-
-              // save to filesystem
-              temporaryPhotoFile.moveFileTo(fileDestination);
-              log.info("Saved file to filesystem: {}", temporaryPhotoFile);
-
-              // resize and save a thumbnail.
-              try {
-                log.info(
-                    "Saving thumbnail of photo {} as {}", fileDestination, thumbFileDestination);
-                saveThumbnail(fileDestination, thumbFileDestination, contentType);
-                log.info("Thumbnail {} created successfully", thumbFileDestination);
-              } catch (IOException e) {
-                log.error("Internal Server Error when generating a thumbnail", e);
-                return supplyAsync(Results::internalServerError, httpExecutionContext.current());
-              }
-              // save to filesystem
-              temporaryPhotoFile.moveFileTo(fileDestination);
-              // resize and save a thumbnail.
-              try {
-                saveThumbnail(
-                    fileDestination, thumbFileDestination, photoContentType.split("/")[1]);
-              } catch (IOException e) {
-                return supplyAsync(Results::internalServerError, httpExecutionContext.current());
-              }
+              // Decoding the photo and waiting for the pixel budget block, so the photo is rendered
+              // and stored on the thumbnail threads rather than the default dispatcher
+              StagedPhoto stagedPhoto = photo.getRef();
+              String extension = stagedPhoto.getFormat().getExtension();
+              CompletableFuture<String> storedToken =
+                  supplyAsync(() -> storeUpload(stagedPhoto), thumbnailExecutionContext);
 
               // create photo model in database
-              final String usedFilename = filename;
-              String finalThumbFilename = thumbFilename;
-              return userRepository
-                  .getUserById(userId)
+              return storedToken
+                  .thenComposeAsync(
+                      token -> userRepository.getUserById(userId), httpExecutionContext.current())
                   .thenComposeAsync(
                       optionalReceivingUser -> {
                         if (!optionalReceivingUser.isPresent()) {
@@ -474,6 +467,9 @@ public class PhotoController extends Controller {
                           return supplyAsync(() -> notFound(response));
                         }
 
+                        String token = storedToken.join();
+                        String usedFilename = token + extension;
+                        String finalThumbFilename = token + THUMB + extension;
                         User receivingUser = optionalReceivingUser.get();
                         PersonalPhoto personalPhoto =
                             new PersonalPhoto(
@@ -485,27 +481,13 @@ public class PhotoController extends Controller {
                                 false);
                         return photoRepository
                             .insert(personalPhoto)
-                            .thenApplyAsync(
-                                insertedPhoto -> {
-                                  if (isPrimary) {
-                                    // If old profile photo exists, delete thumbnail and photo of
-                                    // old profile photo
-                                    if (receivingUser.getProfilePhoto() != null) {
-                                      PersonalPhoto oldProfilePhoto =
-                                          receivingUser.getProfilePhoto();
-
-                                      // Soft delete profile photo row in db
-                                      if (oldProfilePhoto != null) {
-                                        oldProfilePhoto.delete();
-                                      }
-                                    }
-
-                                    receivingUser.setProfilePhoto(insertedPhoto);
-                                    receivingUser.save();
-                                  }
-
-                                  return created(Json.toJson(insertedPhoto));
-                                });
+                            .thenCompose(
+                                insertedPhoto ->
+                                    isPrimary
+                                        ? photoRepository.setProfilePhoto(
+                                            receivingUser, insertedPhoto)
+                                        : completedFuture(insertedPhoto))
+                            .thenApply(insertedPhoto -> created(Json.toJson(insertedPhoto)));
                       });
             },
             httpExecutionContext.current())
@@ -513,15 +495,48 @@ public class PhotoController extends Controller {
   }
 
   /**
-   * Checks if the photo directories are created and creates them if not.
+   * Renders the thumbnail of an uploaded photo, then moves the photo and its thumbnail into the
+   * photo store under a new token. This blocks, so it runs on the thumbnail threads.
+   *
+   * @param stagedPhoto the photo, checked and staged by the body parser.
+   * @return the token the photo and its thumbnail are stored under.
+   * @throws UploadRejectedException if the photo can't be rendered.
+   * @throws CompletionException if the photo or thumbnail can't be written.
    */
-  public void checkForAndCreatePhotosDirectory() {
-      String path = System.getProperty(USER_DIR) + STORAGE_PHOTOS;
-      File file = new File(path);
-
-      if (!file.exists()) {
-        file.mkdir();
+  private String storeUpload(StagedPhoto stagedPhoto) {
+    ImageFormat format = stagedPhoto.getFormat();
+    String extension = format.getExtension();
+    try {
+      // if the file name is already taken, generate another token
+      String token;
+      String filename;
+      do {
+        token = Security.generateToken();
+        filename = token + extension;
+      } while (photoStore.exists(filename));
+      String thumbFilename = token + THUMB + extension;
+
+      // resize and save a thumbnail, then store both files.
+      Path photoFile = stagedPhoto.getPath();
+      Path thumbFile = java.nio.file.Files.createTempFile("thumbnail", extension);
+      try {
+        log.info("Saving thumbnail of photo {} as {}", filename, thumbFilename);
+        thumbnailRenderer.render(photoFile, thumbFile, format);
+        photoStore.put(filename, photoFile);
+        photoStore.put(thumbFilename, thumbFile);
+      } finally {
+        java.nio.file.Files.deleteIfExists(thumbFile);
       }
+      log.info(
+          "Stored photo {} ({} bytes, sha256 {}) and thumbnail {}",
+          filename,
+          stagedPhoto.getSize(),
+          stagedPhoto.getSha256(),
+          thumbFilename);
+      return token;
+    } catch (IOException e) {
+      throw new CompletionException(e);
+    }
   }
 
   /**
@@ -534,6 +549,7 @@ public class PhotoController extends Controller {
    *     profile. - 404 - when the photo does not exist.
    */
   @With(LoggedIn.class)
+  @QueryBudget(10)
   public CompletionStage<Result> getThumbnail(int photoId, Http.Request request) {
     User user = request.attrs().get(ActionState.USER);
     return photoRepository
@@ -544,22 +560,146 @@ public class PhotoController extends Controller {
                 throw new CompletionException(
                     new NotFoundException(
                         "Please provide a valid request body according to the API spec"));
-              } else if (!user.isAdmin()
-                  && !photo.get().isPublic()
-                  && user.getUserId() != photo.get().getUser().getUserId()) {
+              } else if (!canView(user, photo.get())) {
                 return forbidden();
               } else {
-                int dotIndex = photo.get().getFilenameHash().lastIndexOf('.');
-                String fileType = photo.get().getFilenameHash().substring(dotIndex);
-                String filename = photo.get().getFilenameHash().substring(0, dotIndex);
-                String path = System.getProperty(USER_DIR) + STORAGE_PHOTOS;
-                filename += THUMB + fileType;
-                return ok().sendFile(new File(path, filename));
+                return sendStoredFile(thumbnailNameOf(photo.get()));
               }
             })
         .exceptionally(exceptionUtil::getResultFromError);
   }
 
+  /**
+   * Returns the thumbnails of many photos in one response, so a page showing many avatars or
+   * photos does not need a request for each one. Photos that do not exist or that the user cannot
+   * see are left out.
+   *
+   * <p>The response is a stream of thumbnails in the order they were requested. Each one is the
+   * id of the photo as a 4 byte integer, the length of its content type as 1 byte, the content
+   * type, the length of the thumbnail as a 4 byte integer, then the thumbnail. Integers are big
+   * endian.
+   *
+   * @param ids the comma separated ids of the photos.
+   * @param request the Http request.
+   * @return a Http response with one of the following: - 200 - with the thumbnails in the body. -
+   *     400 - when the ids are not valid or there are too many. - 401 - when the user is not
+   *     authenticated.
+   */
+  @With(LoggedIn.class)
+  @QueryBudget(10)
+  public CompletionStage<Result> getThumbnails(String ids, Http.Request request) {
+    User user = request.attrs().get(ActionState.USER);
+    List<Integer> photoIds;
+    try {
+      photoIds =
+          Arrays.stream(ids.split(","))
+              .map(String::trim)
+              .filter(id -> !id.isEmpty())
+              .map(Integer::valueOf)
+              .distinct()
+              .collect(Collectors.toList());
+    } catch (NumberFormatException e) {
+      return supplyAsync(() -> badRequest("Photo ids must be numbers"));
+    }
+    if (photoIds.isEmpty() || photoIds.size() > thumbnailBatchSize) {
+      return supplyAsync(
+          () ->
+              badRequest(
+                  String.format("Please request between 1 and %d thumbnails", thumbnailBatchSize)));
+    }
+
+    return photoRepository
+        .getPhotosByIds(photoIds)
+        .thenApplyAsync(
+            photos -> {
+              Map<Integer, PersonalPhoto> photosById =
+                  photos.stream()
+                      .collect(Collectors.toMap(PersonalPhoto::getPhotoId, Function.identity()));
+              List<PersonalPhoto> visiblePhotos =
+                  photoIds.stream()
+                      .map(photosById::get)
+                      .filter(Objects::nonNull)
+                      .filter(photo -> canView(user, photo))
+                      .collect(Collectors.toList());
+
+              // Reading the thumbnails may block, so it is kept off the default dispatcher
+              Source<ByteString, NotUsed> thumbnails =
+                  Source.from(visiblePhotos)
+                      .map(this::encodeThumbnail)
+                      .async(BLOCKING_IO_DISPATCHER);
+              return ok().chunked(thumbnails).as(THUMBNAIL_BATCH_CONTENT_TYPE);
+            },
+            httpExecutionContext.current())
+        .exceptionally(exceptionUtil::getResultFromError);
+  }
+
+  /**
+   * Reads the thumbnail of a photo and frames it for a batch of thumbnails.
+   *
+   * @param photo the photo.
+   * @return the framed thumbnail, or nothing if the thumbnail could not be read.
+   */
+  private ByteString encodeThumbnail(PersonalPhoto photo) {
+    String name = thumbnailNameOf(photo);
+    byte[] contents;
+    try {
+      Optional<byte[]> cachedContents = photoStore.cachedContents(name);
+      if (cachedContents.isPresent()) {
+        contents = cachedContents.get();
+      } else {
+        try (InputStream in = photoStore.open(name)) {
+          ByteStringBuilder builder = new ByteStringBuilder();
+          byte[] buffer = new byte[8192];
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            builder.putBytes(buffer, 0, read);
+          }
+          contents = builder.result().toArray();
+        }
+      }
+    } catch (IOException e) {
+      // The response has already started, so the thumbnail is left out
+      log.warn("Could not read thumbnail " + name, e);
+      return ByteString.empty();
+    }
+
+    byte[] contentType =
+        (name.endsWith(".png") ? "image/png" : "image/jpeg").getBytes(StandardCharsets.US_ASCII);
+    return new ByteStringBuilder()
+        .putInt(photo.getPhotoId(), ByteOrder.BIG_ENDIAN)
+        .putByte((byte) contentType.length)
+        .putBytes(contentType)
+        .putInt(contents.length, ByteOrder.BIG_ENDIAN)
+        .putBytes(contents)
+        .result();
+  }
+
+  /**
+   * Checks whether a user can see a photo.
+   *
+   * @param user the user.
+   * @param photo the photo.
+   * @return true if the photo is public, the user owns it or the user is an admin.
+   */
+  private static boolean canView(User user, PersonalPhoto photo) {
+    return user.isAdmin()
+        || photo.isPublic()
+        || user.getUserId() == photo.getUser().getUserId();
+  }
+
+  /**
+   * Gets the name of the thumbnail file of a photo.
+   *
+   * @param photo the photo.
+   * @return the name of the thumbnail.
+   */
+  private static String thumbnailNameOf(PersonalPhoto photo) {
+    int dotIndex = photo.getFilenameHash().lastIndexOf('.');
+    String fileType = photo.getFilenameHash().substring(dotIndex);
+    String filename = photo.getFilenameHash().substring(0, dotIndex);
+    return filename + THUMB + fileType;
+  }
+
   /**
    * Undoes a photo deletion.
    * Http Status codes:
@@ -580,88 +720,40 @@ public class PhotoController extends Controller {
     if (Security.userHasPermission(userFromMiddleware, userId)) {
       return supplyAsync(Controller::forbidden);
     }
-    User user = User.find.byId(userId);
-
-    if (user == null) {
-      return supplyAsync(() -> notFound("Could not find "));
-    }
-
-    return photoRepository
-        .getPhotoByIdWithSoftDelete(photoId)
+    return userRepository
+        .getUserById(userId)
         .thenComposeAsync(
-            optionalPhoto -> {
-              if (!optionalPhoto.isPresent()) {
-                throw new CompletionException(new NotFoundException(PHOTO_NOT_FOUND_MESSAGE));
+            optionalUser -> {
+              if (!optionalUser.isPresent()) {
+                return supplyAsync(() -> notFound("Could not find "));
               }
+              User user = optionalUser.get();
 
-              PersonalPhoto photo = optionalPhoto.get();
-              if (!user.isAdmin() && user.getUserId() != photo.getOwnerId()) {
-                throw new CompletionException(
-                    new ForbiddenRequestException("You can't undo photo"));
-              }
-              if (!photo.isDeleted()) {
-                throw new CompletionException(
-                    new BadRequestException("This photo has not been deleted"));
-              }
-              return photoRepository.undoPhotoDelete(photo);
-            })
-        .thenApplyAsync(
-            photo -> {
-              PersonalPhoto personalPhoto = user.getProfilePhoto();
-              user.setProfilePhoto(photo);
-              user.save();
-              // Only delete personal photo if it is already set
-              if (personalPhoto != null) {
-                personalPhoto.delete();
-              }
-              return (Result) ok();
-            })
-        .exceptionally(exceptionUtil::getResultFromError);
-  }
+              return photoRepository
+                  .getPhotoByIdWithSoftDelete(photoId)
+                  .thenComposeAsync(
+                      optionalPhoto -> {
+                        if (!optionalPhoto.isPresent()) {
+                          throw new CompletionException(
+                              new NotFoundException(PHOTO_NOT_FOUND_MESSAGE));
+                        }
 
-  /**
-   * Saves a thumbnail of the given image file in the given destination.
-   *
-   * @param originalImage        the file containing the original image.
-   * @param thumbFileDestination the file containing the destination path and filename.
-   * @param photoContentType     the type of image.
-   * @throws IOException thrown when the thumbnail cannot be written to disk.
-   */
-  private void saveThumbnail(File originalImage, File thumbFileDestination, String photoContentType) throws IOException {
-    BufferedImage bufferedImage = ImageIO.read(originalImage);
-    ImageIO.write(bufferedImage, photoContentType, originalImage);
-
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    int midWidth = bufferedImage.getWidth() / 2;
-    int midHeight = bufferedImage.getHeight() / 2;
-    Image img;
-    if (midWidth > 150 && midHeight > 150) {
-      if (midHeight > midWidth) {
-        img =
-            bufferedImage
-                .getSubimage(0, midHeight - midWidth, width, width)
-                .getScaledInstance(300, 300, BufferedImage.SCALE_SMOOTH);
-      } else {
-        img =
-            bufferedImage
-                .getSubimage(midWidth - midHeight, 0, height, height)
-                .getScaledInstance(300, 300, BufferedImage.SCALE_SMOOTH);
-      }
-    } else if (midWidth > midHeight) {
-      img =
-          bufferedImage
-              .getSubimage(midWidth - midHeight, 0, height, height)
-              .getScaledInstance(300, 300, BufferedImage.SCALE_SMOOTH);
-    } else {
-      img =
-          bufferedImage
-              .getSubimage(0, midHeight - midWidth, width, width)
-              .getScaledInstance(300, 300, BufferedImage.SCALE_SMOOTH);
-    }
-    BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
-    image.createGraphics().drawImage(img, 0, 0, null);
-    ImageIO.write(image, photoContentType, thumbFileDestination);
+                        PersonalPhoto photo = optionalPhoto.get();
+                        if (!user.isAdmin() && user.getUserId() != photo.getOwnerId()) {
+                          throw new CompletionException(
+                              new ForbiddenRequestException("You can't undo photo"));
+                        }
+                        if (!photo.isDeleted()) {
+                          throw new CompletionException(
+                              new BadRequestException("This photo has not been deleted"));
+                        }
+                        return photoRepository.undoPhotoDelete(photo);
+                      })
+                  .thenCompose(photo -> photoRepository.setProfilePhoto(user, photo))
+                  .thenApply(photo -> (Result) ok());
+            },
+            httpExecutionContext.current())
+        .exceptionally(exceptionUtil::getResultFromError);
   }
 
   /**
@@ -800,33 +892,20 @@ public class PhotoController extends Controller {
                                   });
                         } else {
 
-                          // start copying the file to file system
+                          // start copying the file in the photo store
                           String[] filenameArray = photo.getFilenameHash().split("\\.");
                           String extension = "." + filenameArray[filenameArray.length - 1];
 
-                          String path = System.getProperty(USER_DIR) + STORAGE_PHOTOS;
+                          String filename;
+                          try {
+                            // if the file name is already taken, generate another token
+                            do {
+                              filename = Security.generateToken() + extension;
+                            } while (photoStore.exists(filename));
 
-                          File currentPhoto = new File(path, photo.getFilenameHash());
-                          if (!currentPhoto.exists()) {
+                            photoStore.copy(photo.getFilenameHash(), filename);
+                          } catch (NoSuchFileException e) {
                             throw new CompletionException(new NotFoundException("File Not Found"));
-                          }
-
-                          String token = Security.generateToken();
-                          String filename = token + extension;
-                          File fileDestination = new File(path, filename);
-
-                          // if the file path already exists, generate another token
-                          while (fileDestination.exists()) {
-                            token = Security.generateToken();
-                            filename = token + extension;
-                            fileDestination = new File(path, filename);
-                          }
-
-                          try {
-                            java.nio.file.Files.copy(
-                                currentPhoto.toPath(),
-                                fileDestination.toPath(),
-                                StandardCopyOption.COPY_ATTRIBUTES);
                           } catch (IOException e) {
                             log.error("File Error", e);
                             throw new CompletionException(new ServerErrorException());
@@ -14,6 +14,7 @@ import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import repository.DatabaseExecutionContext;
+import repository.TripExecutionContext;
 import play.mvc.With;
 import repository.TreasureHuntRepository;
 import repository.UserRepository;
@@ -56,7 +57,7 @@ public class TreasureHuntController extends Controller {
   public TreasureHuntController(
       TreasureHuntRepository treasureHuntRepository,
       UserRepository userRepository,
-      DatabaseExecutionContext executionContext,
+      TripExecutionContext executionContext,
       ExceptionUtil exceptionUtil) {
     this.treasureHuntRepository = treasureHuntRepository;
     this.userRepository = userRepository;
@@ -4,7 +4,8 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
 import actions.ActionState;
 import actions.LoggedIn;
 import models.*;
-import modules.websocket.ConnectedUsers;
+import modules.websocket.FrameDeliveries;
+import modules.websocket.FrameDelivery;
 import modules.websocket.TripNotifier;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -26,7 +27,9 @@ import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.With;
+import repository.DatabaseExecutionContext;
 import repository.DestinationRepository;
+import repository.TripExecutionContext;
 import repository.TripRepository;
 import repository.UserRepository;
 import util.ExceptionUtil;
@@ -47,6 +50,8 @@ public class TripController extends Controller {
     private final DestinationRepository destinationRepository;
     private final TripNotifier tripNotifier;
     private final ExceptionUtil exceptionUtil;
+    // Runs the stages that walk the trip graph, which is loaded from the database as it is read
+    private final DatabaseExecutionContext executionContext;
 
     @Inject
     public TripController(
@@ -56,7 +61,8 @@ public class TripController extends Controller {
         TripUtil tripUtil,
         DestinationRepository destinationRepository,
         TripNotifier tripNotifier,
-        ExceptionUtil exceptionUtil) {
+        ExceptionUtil exceptionUtil,
+        TripExecutionContext executionContext) {
         this.tripRepository = tripRepository;
         this.httpExecutionContext = httpExecutionContext;
         this.tripUtil = tripUtil;
@@ -64,6 +70,7 @@ public class TripController extends Controller {
         this.destinationRepository = destinationRepository;
         this.tripNotifier = tripNotifier;
         this.exceptionUtil = exceptionUtil;
+        this.executionContext = executionContext;
     }
 
     /**
@@ -149,7 +156,7 @@ public class TripController extends Controller {
                   .thenApplyAsync(updatedTrip -> created(Json.toJson(updatedTrip)))
                   .exceptionally(exceptionUtil::getResultFromError);
             },
-            httpExecutionContext.current());
+            executionContext);
     }
 
     /**
@@ -179,11 +186,11 @@ public class TripController extends Controller {
                             JsonNode tripJson = Json.toJson(trip);
                             List<User> connectedUsersInTrip = new ArrayList<>();
                             List<User> usersInTrip = trip.getUsers();
-                            ConnectedUsers connectedUsers = ConnectedUsers.getInstance();
+                            FrameDelivery frameDelivery = FrameDeliveries.getInstance();
 
 
                             for (User currentUser : usersInTrip) {
-                                if (connectedUsers.isUserConnected(currentUser)) {
+                                if (frameDelivery.isUserConnected(currentUser)) {
                                     connectedUsersInTrip.add(currentUser);
                                 }
                             }
@@ -210,7 +217,7 @@ public class TripController extends Controller {
         }
 
         return tripRepository
-                .getTripByIds(tripId, userId)
+                .getTripByIdsToEdit(tripId, userId)
                 .thenComposeAsync(
                         optionalTrip -> {
                             if (!optionalTrip.isPresent()) {
@@ -228,7 +235,7 @@ public class TripController extends Controller {
 
                             return tripRepository.deleteTrip(trip);
                         },
-                        httpExecutionContext.current())
+                        executionContext)
                 .thenApplyAsync(trip -> (Result) ok(), httpExecutionContext.current())
                 // Exceptions / error checking
                 .exceptionally(exceptionUtil::getResultFromError);
@@ -300,7 +307,7 @@ public class TripController extends Controller {
         }
 
         return tripRepository
-                .getTripByIds(tripId, userId)
+                .getTripByIdsToEdit(tripId, userId)
                 .thenComposeAsync(
                         optionalTrip -> {
                             if (!optionalTrip.isPresent()) {
@@ -388,7 +395,7 @@ public class TripController extends Controller {
                                         return ok();
                                     });
                         },
-                        httpExecutionContext.current())
+                        executionContext)
                 .exceptionally(exceptionUtil::getResultFromError);
     }
 
@@ -426,7 +433,7 @@ public class TripController extends Controller {
         for (TripNode tripDestination : tripDestinations) {
             if (tripDestination.getNodeType().equals("TripDestinationLeaf")) {
                 CompletionStage<Destination> updateDestination =
-                        destinationRepository.getDestinationById(
+                        destinationRepository.getDestinationByIdToEdit(
                                 tripDestination.getDestination().getDestinationId())
                                 .thenApplyAsync(destination -> {
                                             if (destination.isPresent() &&  // The destination exists
@@ -473,7 +480,7 @@ public class TripController extends Controller {
                             JsonNode tripsJson = Json.toJson(trips);
                             return ok(tripsJson);
                         },
-                        httpExecutionContext.current());
+                        executionContext);
     }
 
     /**
@@ -523,6 +530,6 @@ public class TripController extends Controller {
                             String tripsJson = Ebean.json().toJson(tripComposites, pathProperties);
                             return ok(Json.parse(tripsJson));
                         },
-                        httpExecutionContext.current());
+                        executionContext);
     }
 }
@@ -129,42 +129,11 @@ public class UserController extends Controller {
                 user.get().setGender(jsonBody.get(GENDER_KEY).asText());
               }
 
-              if (jsonBody.has("nationalities")) {
-                JsonNode arrNode = jsonBody.get("nationalities");
-                ArrayList<Nationality> nationalities = new ArrayList<>();
-                for (JsonNode id : arrNode) {
-
-                  Nationality nationality = Nationality.find.byId(id.asInt());
-                  nationalities.add(nationality);
-                }
-                user.get().setNationalities(nationalities);
-              }
-
-              if (jsonBody.has("passports")) {
-                JsonNode arrNode = jsonBody.get("passports");
-                ArrayList<Passport> passports = new ArrayList<>();
-                for (JsonNode id : arrNode) {
-
-                  Passport passport = Passport.find.byId(id.asInt());
-                  passports.add(passport);
-                }
-                user.get().setPassports(passports);
-              }
-
-              if (jsonBody.has("travellerTypes")) {
-                JsonNode arrNode = jsonBody.get("travellerTypes");
-                ArrayList<TravellerType> travellerTypes = new ArrayList<>();
-                for (JsonNode id : arrNode) {
-                  TravellerType travellerType = TravellerType.find.byId(id.asInt());
-                  travellerTypes.add(travellerType);
-                }
-                user.get().setTravellerTypes(travellerTypes);
-              }
-
               if (jsonBody.has(GENDER_KEY)) {
                 user.get().setGender(jsonBody.get(GENDER_KEY).asText());
               }
-              return userRepository.updateUser(user.get());
+              return linkTravellerDetails(user.get(), jsonBody)
+                  .thenCompose(userRepository::updateUser);
             },
             httpExecutionContext.current())
         .thenApplyAsync(
@@ -172,6 +141,65 @@ public class UserController extends Controller {
         .exceptionally(exceptionUtil::getResultFromError);
     }
 
+    /**
+     * Links a user to the nationalities, passports and traveller types given in the request body.
+     * They are looked up on the database threads, so an id that doesn't exist is refused rather
+     * than failing the update on a foreign key.
+     * @param user the user to link
+     * @param jsonBody the request body, which may have lists of ids to link
+     * @return the user, once linked, or a BadRequestException if an id doesn't exist
+     */
+    private CompletionStage<User> linkTravellerDetails(User user, JsonNode jsonBody) {
+        CompletionStage<User> linked = CompletableFuture.completedFuture(user);
+
+        if (jsonBody.has("nationalities")) {
+            List<Integer> ids = idsOf(jsonBody.get("nationalities"));
+            linked = linked.thenCombine(userRepository.getNationalitiesByIds(ids),
+                    (linkedUser, nationalities) -> {
+                        checkAllExist(ids, nationalities, "nationalities");
+                        linkedUser.setNationalities(nationalities);
+                        return linkedUser;
+                    });
+        }
+
+        if (jsonBody.has("passports")) {
+            List<Integer> ids = idsOf(jsonBody.get("passports"));
+            linked = linked.thenCombine(userRepository.getPassportsByIds(ids),
+                    (linkedUser, passports) -> {
+                        checkAllExist(ids, passports, "passports");
+                        linkedUser.setPassports(passports);
+                        return linkedUser;
+                    });
+        }
+
+        if (jsonBody.has("travellerTypes")) {
+            List<Integer> ids = idsOf(jsonBody.get("travellerTypes"));
+            linked = linked.thenCombine(userRepository.getTravellerTypesByIds(ids),
+                    (linkedUser, travellerTypes) -> {
+                        checkAllExist(ids, travellerTypes, "traveller types");
+                        linkedUser.setTravellerTypes(travellerTypes);
+                        return linkedUser;
+                    });
+        }
+
+        return linked;
+    }
+
+    private static List<Integer> idsOf(JsonNode arrNode) {
+        List<Integer> ids = new ArrayList<>();
+        for (JsonNode id : arrNode) {
+            ids.add(id.asInt());
+        }
+        return ids;
+    }
+
+    private static void checkAllExist(List<Integer> ids, List<?> found, String name) {
+        if (ids.stream().distinct().count() != found.size()) {
+            throw new CompletionException(
+                    new BadRequestException("One or more of the " + name + " do not exist"));
+        }
+    }
+
     /**
      * A function that gets a list of all the passports and returns a 200 ok code to the HTTP client
      *
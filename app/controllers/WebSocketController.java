@@ -1,19 +1,30 @@
 package controllers;
 
+import com.typesafe.config.Config;
+import models.User;
+import modules.websocket.OutboundBufferSettings;
+import modules.websocket.OutboundBufferStats;
+import modules.websocket.OutboundFrameBuffer;
 import modules.websocket.TripNotifier;
 import modules.websocket.WebSocket;
 import akka.actor.ActorSystem;
-import akka.actor.Props;
 import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
 import akka.stream.javadsl.Flow;
+import modules.websocket.frames.Frame;
+import modules.websocket.frames.FrameCodec;
+import modules.websocket.frames.InboundFrame;
+import play.http.websocket.Message;
 import play.libs.F;
 import play.libs.streams.ActorFlow;
 import play.mvc.Controller;
+import play.mvc.Http;
 import play.mvc.Result;
 import repository.AuthRepository;
 import repository.ChatRepository;
 import repository.TripRepository;
 
+import java.util.concurrent.CompletionStage;
 import javax.inject.Inject;
 
 /**
@@ -25,6 +36,8 @@ public class WebSocketController extends Controller {
     private final AuthRepository authRepository;
     private final TripRepository tripRepository;
     private final ChatRepository chatRepository;
+    private final OutboundBufferSettings outboundBufferSettings;
+    private final Config config;
 
 
     /**
@@ -33,32 +46,53 @@ public class WebSocketController extends Controller {
      * @param materializer Executes the actors
      * @param authRepository authentication repository
      * @param chatRepository the chat repository
+     * @param config the application config, used for the outbound buffer and websocket settings
      */
     @Inject
-    public WebSocketController(ActorSystem actorSystem, Materializer materializer, AuthRepository authRepository, TripNotifier tripNotifier, TripRepository tripRepository, ChatRepository chatRepository) {
+    public WebSocketController(ActorSystem actorSystem, Materializer materializer, AuthRepository authRepository, TripNotifier tripNotifier, TripRepository tripRepository, ChatRepository chatRepository, Config config) {
         this.actorSystem = actorSystem;
         this.materializer = materializer;
         this.authRepository = authRepository;
         this.tripRepository = tripRepository;
         this.chatRepository = chatRepository;
+        this.outboundBufferSettings = OutboundBufferSettings.fromConfig(config);
+        this.config = config;
     }
 
     /**
-     * Handles and authenticates a new client websocket request
+     * Handles and authenticates a new client websocket request. Frames are sent as JSON text unless
+     * the client asks for the CBOR subprotocol, in which case they are sent as binary messages.
      * @return A websocket or a forbidden response
      */
     public play.mvc.WebSocket socket() {
-        return play.mvc.WebSocket.Text.acceptOrResult(request -> {
-             String authToken = request.getQueryString("Authorization");
+        return new play.mvc.WebSocket() {
+            @Override
+            public CompletionStage<F.Either<Result, Flow<Message, Message, ?>>> apply(
+                Http.RequestHeader request) {
+                String authToken = request.getQueryString("Authorization");
+                FrameCodec codec = FrameCodec.forSubprotocols(request.header("Sec-WebSocket-Protocol"));
 
-             return authRepository.getByToken(authToken)
-                     .thenApplyAsync(user -> user.<F.Either<Result, Flow<String, String, ?>>>map(user1 -> F.Either
-                         .Right(ActorFlow.actorRef(actorRef -> Props
-                             .create(WebSocket.class, actorRef, user1, tripRepository,
-                                 chatRepository), actorSystem, materializer)))
-                         .orElseGet(() -> F.Either.Left(unauthorized())));
-        });
+                return authRepository.getByToken(authToken)
+                    .thenApplyAsync(user -> user.<F.Either<Result, Flow<Message, Message, ?>>>map(user1 -> F.Either
+                        .Right(createFlow(user1, codec)))
+                        .orElseGet(() -> F.Either.Left(unauthorized())));
+            }
+        };
     }
 
+    /**
+     * Creates the flow of a websocket for a user. Frames sent to the user are held in an outbound
+     * buffer which decides what to drop if the user is not reading them fast enough.
+     * @param user the user that owns the websocket
+     * @param codec the codec to read and write frames with
+     * @return the flow of websocket messages
+     */
+    private Flow<Message, Message, ?> createFlow(User user, FrameCodec codec) {
+        Flow<InboundFrame, Frame, ?> frameFlow = ActorFlow.<InboundFrame, Frame>actorRef(
+            actorRef -> WebSocket.props(actorRef, user, tripRepository, chatRepository, config),
+            outboundBufferSettings.getBufferSize(), OverflowStrategy.dropNew(), actorSystem, materializer);
 
+        OutboundBufferStats stats = new OutboundBufferStats(user.getUserId());
+        return codec.wrap(frameFlow.via(new OutboundFrameBuffer(outboundBufferSettings, stats)));
+    }
 }
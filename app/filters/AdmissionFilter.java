@@ -0,0 +1,81 @@
+package filters;
+
+import com.typesafe.config.Config;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import modules.admission.ConcurrencyLimit;
+import modules.admission.RateLimiter;
+import modules.admission.RouteClass;
+import play.libs.streams.Accumulator;
+import play.mvc.EssentialAction;
+import play.mvc.EssentialFilter;
+import util.ExceptionUtil;
+
+/**
+ * Decides whether to serve each request to the api. A client over the rate limit of its class of
+ * routes is told to slow down with a 429, and once the server is serving as many requests as the
+ * database keeps up with, the requests over that are shed with a 503. Requests outside the classes
+ * of routes, such as assets, are always served.
+ */
+@Singleton
+public class AdmissionFilter extends EssentialFilter {
+
+  private static final Executor SAME_THREAD = Runnable::run;
+
+  private final boolean enabled;
+  private final RateLimiter rateLimiter = RateLimiter.getInstance();
+  private final ConcurrencyLimit concurrencyLimit = ConcurrencyLimit.getInstance();
+
+  @Inject
+  public AdmissionFilter(Config config) {
+    this.enabled = config.getBoolean("admission.enabled");
+  }
+
+  @Override
+  public EssentialAction apply(EssentialAction next) {
+    return EssentialAction.of(
+        request -> {
+          if (!enabled) {
+            return next.apply(request);
+          }
+          Optional<RouteClass> routeClass = rateLimiter.classify(request);
+          if (!routeClass.isPresent()) {
+            return next.apply(request);
+          }
+
+          long wait = rateLimiter.tryAcquire(routeClass.get(), request);
+          if (wait > 0) {
+            long seconds = (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            return Accumulator.done(ExceptionUtil.getRateLimitedResult(seconds));
+          }
+          if (!concurrencyLimit.tryAcquire()) {
+            return Accumulator.done(ExceptionUtil.getOverloadedResult());
+          }
+
+          try {
+            return next.apply(request)
+                .map(
+                    result -> {
+                      concurrencyLimit.release();
+                      return result;
+                    },
+                    SAME_THREAD)
+                .recover(
+                    error -> {
+                      concurrencyLimit.release();
+                      throw error instanceof CompletionException
+                          ? (CompletionException) error
+                          : new CompletionException(error);
+                    },
+                    SAME_THREAD);
+          } catch (RuntimeException e) {
+            concurrencyLimit.release();
+            throw e;
+          }
+        });
+  }
+}
@@ -0,0 +1,69 @@
+package filters;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.inject.Singleton;
+import modules.metrics.RequestMetrics;
+import modules.metrics.RouteMetrics;
+import play.mvc.EssentialAction;
+import play.mvc.EssentialFilter;
+import play.mvc.Http;
+
+/**
+ * Records the latency, status and body sizes of every request, by route. Latency is measured to
+ * when the response headers are ready, as streamed bodies may take as long as the client likes to
+ * read. The recording runs on the thread that produced the result, as it only updates counters.
+ */
+@Singleton
+public class MetricsFilter extends EssentialFilter {
+
+  private static final Executor SAME_THREAD = Runnable::run;
+
+  private final RequestMetrics requestMetrics = RequestMetrics.getInstance();
+
+  @Override
+  public EssentialAction apply(EssentialAction next) {
+    return EssentialAction.of(
+        request -> {
+          long start = System.nanoTime();
+          RouteMetrics route = requestMetrics.forRequest(request);
+          long requestSize = contentLength(request);
+          route.started();
+
+          return next.apply(request)
+              .map(
+                  result -> {
+                    route.finished(
+                        result.status(),
+                        System.nanoTime() - start,
+                        requestSize,
+                        result.body().contentLength().orElse(-1L));
+                    return result;
+                  },
+                  SAME_THREAD)
+              .recover(
+                  error -> {
+                    // The error handler turns this into a server error further out
+                    route.finished(
+                        Http.Status.INTERNAL_SERVER_ERROR,
+                        System.nanoTime() - start,
+                        requestSize,
+                        -1);
+                    throw error instanceof CompletionException
+                        ? (CompletionException) error
+                        : new CompletionException(error);
+                  },
+                  SAME_THREAD);
+        });
+  }
+
+  private static long contentLength(Http.RequestHeader request) {
+    Optional<String> header = request.header(Http.HeaderNames.CONTENT_LENGTH);
+    try {
+      return header.map(Long::parseLong).orElse(-1L);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -60,6 +60,10 @@ public class Message extends Model {
         this.user = user;
     }
 
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
     public ChatGroup getChatGroup() {
         return chatGroup;
     }
@@ -0,0 +1,21 @@
+package modules.admission;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import play.Environment;
+
+/** Sets up the rate limiter and concurrency limit from the application config. */
+public class AdmissionModule extends AbstractModule {
+
+  private final Config config;
+
+  public AdmissionModule(Environment environment, Config config) {
+    this.config = config;
+  }
+
+  @Override
+  protected void configure() {
+    RateLimiter.initialise(config);
+    ConcurrencyLimit.initialise(config);
+  }
+}
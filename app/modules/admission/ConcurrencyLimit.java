@@ -0,0 +1,154 @@
+package modules.admission;
+
+import com.typesafe.config.Config;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import repository.Bulkheads;
+import repository.DatabaseExecutionContext;
+
+/**
+ * Limits the requests being served at once, shedding the requests over the limit. The limit
+ * adapts to the database: it is cut back while tasks wait longer than the target for a database
+ * thread, and raised a step at a time while they don't, between a floor and a ceiling.
+ */
+public class ConcurrencyLimit {
+
+  private static final String CONFIG_KEY = "admission.concurrency";
+
+  private static ConcurrencyLimit instance;
+
+  private final int min;
+  private final int max;
+  private final int increase;
+  private final double decrease;
+  private final long targetQueueWaitNanos;
+  private final long adjustIntervalNanos;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int limit;
+  private final AtomicLong lastAdjusted = new AtomicLong(System.nanoTime());
+  private long lastQueueWaitNanos;
+  private long lastStarted;
+  private final LongAdder shed = new LongAdder();
+
+  /**
+   * Creates a concurrency limit, starting at its ceiling.
+   *
+   * @param config the admission.concurrency section of the application config.
+   */
+  public ConcurrencyLimit(Config config) {
+    this.min = config.getInt("min");
+    this.max = config.getInt("max");
+    this.increase = config.getInt("increase");
+    this.decrease = config.getDouble("decrease");
+    this.targetQueueWaitNanos = config.getDuration("targetQueueWait", TimeUnit.NANOSECONDS);
+    this.adjustIntervalNanos = config.getDuration("adjustInterval", TimeUnit.NANOSECONDS);
+    this.limit = max;
+  }
+
+  /**
+   * Creates the singleton concurrency limit, configured from the application config.
+   *
+   * @param applicationConfig the application config.
+   */
+  public static synchronized void initialise(Config applicationConfig) {
+    instance = new ConcurrencyLimit(applicationConfig.getConfig(CONFIG_KEY));
+  }
+
+  /**
+   * Singleton getter for the concurrency limit.
+   *
+   * @return the instance of the concurrency limit.
+   * @throws IllegalStateException if the concurrency limit has not been initialised.
+   */
+  public static synchronized ConcurrencyLimit getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The concurrency limit has not been initialised");
+    }
+    return instance;
+  }
+
+  /**
+   * Admits a request if there are fewer than the limit being served. An admitted request must be
+   * released once it is served.
+   *
+   * @return true if the request is admitted, false if it is shed.
+   */
+  public boolean tryAcquire() {
+    long now = System.nanoTime();
+    long adjusted = lastAdjusted.get();
+    if (now - adjusted >= adjustIntervalNanos && lastAdjusted.compareAndSet(adjusted, now)) {
+      adjustToDatabase();
+    }
+
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        shed.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** Releases a request that was admitted, once it has been served. */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  private void adjustToDatabase() {
+    long queueWaitNanos = 0;
+    long started = 0;
+    long queued = 0;
+    for (DatabaseExecutionContext bulkhead : Bulkheads.getInstance().getAll()) {
+      queueWaitNanos += bulkhead.getQueueWaitNanos();
+      started += bulkhead.getCompleted() + bulkhead.getRunning();
+      queued += bulkhead.getQueueDepth();
+    }
+    adjust(queueWaitNanos, started, queued);
+  }
+
+  /**
+   * Adjusts the limit to how long database tasks waited for a thread since the last adjustment.
+   * Only one thread adjusts the limit at a time.
+   *
+   * @param queueWaitNanos the total time database tasks have waited for a thread.
+   * @param started the total number of database tasks that have started running.
+   * @param queued the number of database tasks waiting for a thread now.
+   */
+  public synchronized void adjust(long queueWaitNanos, long started, long queued) {
+    long waited = queueWaitNanos - lastQueueWaitNanos;
+    long tasks = started - lastStarted;
+    lastQueueWaitNanos = queueWaitNanos;
+    lastStarted = started;
+
+    // With no task getting a thread, tasks still waiting mean the database is stuck
+    boolean overloaded = tasks > 0 ? waited / tasks > targetQueueWaitNanos : queued > 0;
+    if (overloaded) {
+      limit = Math.max(min, (int) (limit * decrease));
+    } else {
+      limit = Math.min(max, limit + increase);
+    }
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Gets the number of requests shed as the limit was reached since the server started.
+   *
+   * @return the requests shed.
+   */
+  public long getShed() {
+    return shed.sum();
+  }
+}
@@ -0,0 +1,108 @@
+package modules.admission;
+
+import com.typesafe.config.Config;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import play.mvc.Http;
+
+/**
+ * Limits the rate each client may make requests at, for each class of routes. Clients are told
+ * apart by their address.
+ */
+public class RateLimiter {
+
+  private static final String CONFIG_KEY = "admission.rateLimits";
+
+  private static RateLimiter instance;
+
+  private final List<RouteClass> routeClasses;
+
+  /**
+   * Creates a rate limiter.
+   *
+   * @param routeClasses the classes of routes, in the order they are matched in.
+   */
+  public RateLimiter(List<RouteClass> routeClasses) {
+    this.routeClasses = routeClasses;
+  }
+
+  /**
+   * Creates the singleton rate limiter, with the classes of routes read from the application
+   * config.
+   *
+   * @param applicationConfig the application config.
+   */
+  public static synchronized void initialise(Config applicationConfig) {
+    Config config = applicationConfig.getConfig(CONFIG_KEY);
+    int maxClients = config.getInt("maxClients");
+    instance =
+        new RateLimiter(
+            config.getConfigList("classes").stream()
+                .map(
+                    routeClass ->
+                        new RouteClass(
+                            routeClass.getString("name"),
+                            routeClass.getStringList("routes"),
+                            routeClass.getDouble("rate"),
+                            routeClass.getInt("burst"),
+                            maxClients))
+                .collect(Collectors.toList()));
+  }
+
+  /**
+   * Singleton getter for the rate limiter.
+   *
+   * @return the instance of the rate limiter.
+   * @throws IllegalStateException if the rate limiter has not been initialised.
+   */
+  public static synchronized RateLimiter getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The rate limiter has not been initialised");
+    }
+    return instance;
+  }
+
+  /**
+   * Gets the class of routes a request belongs to.
+   *
+   * @param request the request.
+   * @return the first class with a route matching the request, or nothing if it is not limited.
+   */
+  public Optional<RouteClass> classify(Http.RequestHeader request) {
+    String route = request.method() + ' ' + request.path();
+    for (RouteClass routeClass : routeClasses) {
+      if (routeClass.matches(route)) {
+        return Optional.of(routeClass);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Takes a token for a request from the bucket of its client.
+   *
+   * @param routeClass the class of routes the request belongs to.
+   * @param request the request.
+   * @return zero if the request may go ahead, or how long the client must wait in nanoseconds.
+   */
+  public long tryAcquire(RouteClass routeClass, Http.RequestHeader request) {
+    return routeClass.tryTake(clientOf(request), System.nanoTime());
+  }
+
+  /**
+   * Gets the client that made a request, from its address. The token is not used, as it has not
+   * been checked yet when the request is limited, and a client could send a new made up token with
+   * every request to get a new bucket each time.
+   *
+   * @param request the request.
+   * @return the client.
+   */
+  static String clientOf(Http.RequestHeader request) {
+    return request.remoteAddress();
+  }
+
+  public List<RouteClass> getRouteClasses() {
+    return routeClasses;
+  }
+}
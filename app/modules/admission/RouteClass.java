@@ -0,0 +1,114 @@
+package modules.admission;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A class of routes that share a rate limit, with a token bucket for each client. A bucket is kept
+ * as a single number, the time it will next be full: each request takes the time of one token
+ * from it, and is refused if that would leave the bucket emptier than its burst allows. The buckets
+ * of the clients seen longest ago are dropped once there are too many, so a flood of new clients
+ * can't run the server out of memory.
+ */
+public class RouteClass {
+
+  private final String name;
+  private final List<Pattern> routes;
+  private final long tokenNanos;
+  private final long burstNanos;
+  private final Map<String, AtomicLong> buckets;
+  private final LongAdder limited = new LongAdder();
+
+  /**
+   * Creates a class of routes.
+   *
+   * @param name the name of the class.
+   * @param routes regular expressions matching the "VERB /path" of the requests in the class.
+   * @param rate the requests a client may make each second, once its burst is used up.
+   * @param burst the requests a client may make at once.
+   * @param maxClients the most buckets kept, after which the least recently used is dropped.
+   */
+  public RouteClass(String name, List<String> routes, double rate, int burst, int maxClients) {
+    this.name = name;
+    this.routes = routes.stream().map(Pattern::compile).collect(Collectors.toList());
+    this.tokenNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    this.burstNanos = tokenNanos * (burst - 1);
+    this.buckets =
+        Collections.synchronizedMap(
+            new LinkedHashMap<String, AtomicLong>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, AtomicLong> eldest) {
+                return size() > maxClients;
+              }
+            });
+  }
+
+  /**
+   * Checks whether a request belongs to this class.
+   *
+   * @param route the verb and path of the request, separated by a space.
+   * @return true if one of the routes of the class matches.
+   */
+  boolean matches(String route) {
+    for (Pattern pattern : routes) {
+      if (pattern.matcher(route).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Takes a token from the bucket of a client.
+   *
+   * @param client the address of the client.
+   * @param now the time of the request, from System.nanoTime.
+   * @return zero if a token was taken, or how long the client must wait for one in nanoseconds.
+   */
+  public long tryTake(String client, long now) {
+    // A dropped bucket starts again full, as one that is full again is the same as having none
+    AtomicLong bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+
+    while (true) {
+      long fullAt = bucket.get();
+      long takenFrom = fullAt - now > 0 ? fullAt : now;
+      long wait = takenFrom - now - burstNanos;
+      if (wait > 0) {
+        limited.increment();
+        return wait;
+      }
+      if (bucket.compareAndSet(fullAt, takenFrom + tokenNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the number of requests refused as their client had no tokens left.
+   *
+   * @return the requests refused.
+   */
+  public long getLimited() {
+    return limited.sum();
+  }
+
+  /**
+   * Gets the number of clients buckets are kept for.
+   *
+   * @return the clients.
+   */
+  public int getClients() {
+    return buckets.size();
+  }
+}
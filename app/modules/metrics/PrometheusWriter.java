@@ -0,0 +1,101 @@
+package modules.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format. Each metric is started with its help
+ * and type, followed by its samples.
+ */
+public class PrometheusWriter {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final StringBuilder text = new StringBuilder();
+
+  /**
+   * Starts a counter, a value that only goes up.
+   *
+   * @param name the name of the counter, which should end in _total.
+   * @param help what the counter counts.
+   * @return this writer.
+   */
+  public PrometheusWriter counter(String name, String help) {
+    return start(name, "counter", help);
+  }
+
+  /**
+   * Starts a gauge, a value that can go up and down.
+   *
+   * @param name the name of the gauge.
+   * @param help what the gauge measures.
+   * @return this writer.
+   */
+  public PrometheusWriter gauge(String name, String help) {
+    return start(name, "gauge", help);
+  }
+
+  /**
+   * Starts a summary, a distribution given as quantiles, a sum and a count.
+   *
+   * @param name the name of the summary.
+   * @param help what the summary measures.
+   * @return this writer.
+   */
+  public PrometheusWriter summary(String name, String help) {
+    return start(name, "summary", help);
+  }
+
+  /**
+   * Writes a sample of the metric that was last started.
+   *
+   * @param name the name of the sample, which is the metric name with any suffix.
+   * @param value the value.
+   * @param labels the names and values of the labels, in pairs.
+   * @return this writer.
+   */
+  public PrometheusWriter sample(String name, double value, String... labels) {
+    text.append(name);
+    if (labels.length > 0) {
+      text.append('{');
+      for (int i = 0; i < labels.length; i += 2) {
+        if (i > 0) {
+          text.append(',');
+        }
+        text.append(labels[i]).append("=\"");
+        escape(labels[i + 1]);
+        text.append('"');
+      }
+      text.append('}');
+    }
+    text.append(' ');
+    if (value == Math.rint(value) && !Double.isInfinite(value)) {
+      text.append((long) value);
+    } else {
+      text.append(value);
+    }
+    text.append('\n');
+    return this;
+  }
+
+  private PrometheusWriter start(String name, String type, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    return this;
+  }
+
+  private void escape(String labelValue) {
+    for (int i = 0; i < labelValue.length(); i++) {
+      char c = labelValue.charAt(i);
+      if (c == '\\' || c == '"') {
+        text.append('\\').append(c);
+      } else if (c == '\n') {
+        text.append("\\n");
+      } else {
+        text.append(c);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+}
@@ -0,0 +1,184 @@
+package modules.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.HdrHistogram.Histogram;
+import play.api.routing.HandlerDef;
+import play.mvc.Http;
+import play.routing.Router;
+
+/**
+ * Keeps the metrics of the requests served by each route. Requests are grouped by the route
+ * pattern in conf/routes rather than their path, so there is one set of metrics per route however
+ * many users and photos there are.
+ */
+public class RequestMetrics {
+
+  public static final String UNMATCHED = "unmatched";
+
+  // Route parameters are compiled to $name<regex>, and are shown as :name as in conf/routes
+  private static final Pattern DYNAMIC_PART = Pattern.compile("\\$(\\w+)<[^>]+>");
+
+  private static RequestMetrics instance;
+
+  private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+  RequestMetrics() {}
+
+  /**
+   * Singleton getter for the request metrics.
+   *
+   * @return the instance of the request metrics.
+   */
+  public static synchronized RequestMetrics getInstance() {
+    if (instance == null) {
+      instance = new RequestMetrics();
+    }
+    return instance;
+  }
+
+  /**
+   * Gets the metrics of the route a request was routed to.
+   *
+   * @param request the request.
+   * @return the metrics of its route.
+   */
+  public RouteMetrics forRequest(Http.RequestHeader request) {
+    Optional<HandlerDef> handler = request.attrs().getOptional(Router.Attrs.HANDLER_DEF);
+    if (!handler.isPresent()) {
+      return forRoute(UNMATCHED);
+    }
+    return forRoute(handler.get().verb() + ' ' + handler.get().path());
+  }
+
+  /**
+   * Gets the metrics of a route, creating them the first time the route is used.
+   *
+   * @param pattern the verb and compiled pattern of the route.
+   * @return the metrics of the route.
+   */
+  public RouteMetrics forRoute(String pattern) {
+    // Looked up without locking first, as the route is almost always there already
+    RouteMetrics route = routes.get(pattern);
+    if (route == null) {
+      route = routes.computeIfAbsent(pattern, key -> new RouteMetrics(routeLabel(key)));
+    }
+    return route;
+  }
+
+  /**
+   * Gets the metrics of every route that has been used, in order of route.
+   *
+   * @return the metrics of the routes.
+   */
+  public List<RouteMetrics> getRoutes() {
+    List<RouteMetrics> sorted = new ArrayList<>(routes.values());
+    sorted.sort(Comparator.comparing(RouteMetrics::getRoute));
+    return sorted;
+  }
+
+  /**
+   * Writes the metrics of every route.
+   *
+   * @param writer the writer to write to.
+   */
+  public void write(PrometheusWriter writer) {
+    List<RouteMetrics> used = getRoutes();
+
+    writer.summary(
+        "http_request_duration_seconds",
+        "Time from receiving a request to sending the response headers, by route");
+    for (RouteMetrics route : used) {
+      Histogram latencies = route.getLatencies();
+      for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+        writer.sample(
+            "http_request_duration_seconds",
+            latencies.getValueAtPercentile(quantile * 100) / 1e6,
+            "route", route.getRoute(),
+            "quantile", Double.toString(quantile));
+      }
+      writer.sample(
+          "http_request_duration_seconds_sum",
+          route.getLatencySumMicros() / 1e6,
+          "route", route.getRoute());
+      writer.sample(
+          "http_request_duration_seconds_count",
+          latencies.getTotalCount(),
+          "route", route.getRoute());
+    }
+
+    writer.counter("http_requests_total", "Requests answered, by route and status");
+    for (RouteMetrics route : used) {
+      for (Map.Entry<Integer, Long> status : route.getStatuses().entrySet()) {
+        writer.sample(
+            "http_requests_total",
+            status.getValue(),
+            "route", route.getRoute(),
+            "status", status.getKey().toString());
+      }
+    }
+
+    writer.gauge("http_requests_in_flight", "Requests being served, by route");
+    for (RouteMetrics route : used) {
+      writer.sample("http_requests_in_flight", route.getInFlight(), "route", route.getRoute());
+    }
+
+    writer.counter(
+        "http_request_bytes_total", "Bytes of request bodies with a known length, by route");
+    for (RouteMetrics route : used) {
+      writer.sample("http_request_bytes_total", route.getRequestBytes(), "route", route.getRoute());
+    }
+
+    writer.counter(
+        "http_response_bytes_total", "Bytes of response bodies with a known length, by route");
+    for (RouteMetrics route : used) {
+      writer.sample(
+          "http_response_bytes_total", route.getResponseBytes(), "route", route.getRoute());
+    }
+
+    writer.counter("http_request_queries_total", "Database queries run by requests, by route");
+    for (RouteMetrics route : used) {
+      writer.sample("http_request_queries_total", route.getQueries(), "route", route.getRoute());
+    }
+
+    writer.counter(
+        "http_request_database_seconds_total",
+        "Time the database took to run the queries of requests, by route");
+    for (RouteMetrics route : used) {
+      writer.sample(
+          "http_request_database_seconds_total",
+          route.getDatabaseNanos() / 1e9,
+          "route", route.getRoute());
+    }
+
+    writer.counter(
+        "http_request_repeated_queries_total",
+        "Requests that ran the same shape of query many times, by route");
+    for (RouteMetrics route : used) {
+      writer.sample(
+          "http_request_repeated_queries_total",
+          route.getRepeatedQueryRequests(),
+          "route", route.getRoute());
+    }
+  }
+
+  /**
+   * Gets how a route is shown, with its parameters written as in conf/routes.
+   *
+   * @param pattern the verb and compiled pattern of the route.
+   * @return the route as it is shown.
+   */
+  static String routeLabel(String pattern) {
+    return DYNAMIC_PART.matcher(pattern).replaceAll(":$1");
+  }
+
+  /** Forgets all routes. Used between tests. */
+  public void clear() {
+    routes.clear();
+  }
+}
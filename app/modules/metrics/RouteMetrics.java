@@ -0,0 +1,134 @@
+package modules.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The requests served by one route. Latencies are recorded without locking into an HdrHistogram
+ * recorder, and only gathered into the histogram since startup when the metrics are read.
+ */
+public class RouteMetrics {
+
+  // Two significant digits keeps each histogram to a few kilobytes, to within 1%
+  private static final int SIGNIFICANT_DIGITS = 2;
+
+  private final String route;
+  private final Recorder latencyRecorder = new Recorder(SIGNIFICANT_DIGITS);
+  private final Histogram latencies = new Histogram(SIGNIFICANT_DIGITS);
+  private final LongAdder latencySumMicros = new LongAdder();
+  private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+  private final AtomicLong inFlight = new AtomicLong();
+  private final LongAdder queries = new LongAdder();
+  private final LongAdder databaseNanos = new LongAdder();
+  private final LongAdder repeatedQueryRequests = new LongAdder();
+
+  private Histogram intervalLatencies;
+
+  RouteMetrics(String route) {
+    this.route = route;
+  }
+
+  /** Records that a request for the route has started. */
+  public void started() {
+    inFlight.incrementAndGet();
+  }
+
+  /**
+   * Records that a request for the route has been answered.
+   *
+   * @param status the status of the response.
+   * @param latencyNanos the time taken to answer.
+   * @param requestSize the size of the request body, or a negative number if it is not known.
+   * @param responseSize the size of the response body, or a negative number if it is not known.
+   */
+  public void finished(int status, long latencyNanos, long requestSize, long responseSize) {
+    inFlight.decrementAndGet();
+    long latencyMicros = Math.max(1, latencyNanos / 1000);
+    latencyRecorder.recordValue(latencyMicros);
+    latencySumMicros.add(latencyMicros);
+    statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    if (requestSize > 0) {
+      requestBytes.add(requestSize);
+    }
+    if (responseSize > 0) {
+      responseBytes.add(responseSize);
+    }
+  }
+
+  /**
+   * Records the queries run by a request for the route.
+   *
+   * @param requestQueries the number of queries run.
+   * @param requestDatabaseNanos the time the database took to run them.
+   * @param repeatedQueries whether the request ran the same shape of query many times.
+   */
+  public void queriesFinished(
+      int requestQueries, long requestDatabaseNanos, boolean repeatedQueries) {
+    queries.add(requestQueries);
+    databaseNanos.add(requestDatabaseNanos);
+    if (repeatedQueries) {
+      repeatedQueryRequests.increment();
+    }
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public long getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getRequestBytes() {
+    return requestBytes.sum();
+  }
+
+  public long getResponseBytes() {
+    return responseBytes.sum();
+  }
+
+  public long getQueries() {
+    return queries.sum();
+  }
+
+  public long getDatabaseNanos() {
+    return databaseNanos.sum();
+  }
+
+  public long getRepeatedQueryRequests() {
+    return repeatedQueryRequests.sum();
+  }
+
+  public long getLatencySumMicros() {
+    return latencySumMicros.sum();
+  }
+
+  /**
+   * Gets the number of responses of each status.
+   *
+   * @return the number of responses, by status.
+   */
+  public Map<Integer, Long> getStatuses() {
+    Map<Integer, Long> counts = new TreeMap<>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return counts;
+  }
+
+  /**
+   * Gets the latencies recorded since startup, in microseconds.
+   *
+   * @return a copy of the latency histogram.
+   */
+  public synchronized Histogram getLatencies() {
+    intervalLatencies = latencyRecorder.getIntervalHistogram(intervalLatencies);
+    latencies.add(intervalLatencies);
+    return latencies.copy();
+  }
+}
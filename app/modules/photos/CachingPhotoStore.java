@@ -0,0 +1,132 @@
+package modules.photos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A photo store that keeps the contents of recently served small files, such as thumbnails and
+ * avatars, in a {@link PhotoCache}. Files are removed from the cache whenever they are changed or
+ * deleted through the store.
+ *
+ * <p>Only this server's cache is invalidated. Photos are always checked against the database
+ * before they are served, so a photo deleted by another server is not served from here either.
+ */
+public class CachingPhotoStore implements PhotoStore {
+
+  private final PhotoStore store;
+  private final PhotoCache cache;
+
+  /**
+   * Creates a caching photo store.
+   *
+   * @param store the store to read files from.
+   * @param cache the cache to keep files in.
+   */
+  public CachingPhotoStore(PhotoStore store, PhotoCache cache) {
+    this.store = store;
+    this.cache = cache;
+  }
+
+  /**
+   * Gets the store files are read from.
+   *
+   * @return the store being cached.
+   */
+  public PhotoStore getStore() {
+    return store;
+  }
+
+  @Override
+  public Optional<byte[]> cachedContents(String name) throws IOException {
+    byte[] cached = cache.get(name);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    long version = cache.getVersion();
+    long size = store.size(name);
+    if (size > cache.getMaxEntryBytes()) {
+      return Optional.empty();
+    }
+
+    byte[] contents;
+    try (InputStream in = store.open(name)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+      byte[] buffer = new byte[PhotoCache.BLOCK_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      contents = out.toByteArray();
+    }
+    cache.put(name, contents, version);
+    return Optional.of(contents);
+  }
+
+  @Override
+  public void put(String name, Path source) throws IOException {
+    try {
+      store.put(name, source);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public boolean exists(String name) throws IOException {
+    return store.exists(name);
+  }
+
+  @Override
+  public InputStream open(String name) throws IOException {
+    return store.open(name);
+  }
+
+  @Override
+  public long size(String name) throws IOException {
+    return store.size(name);
+  }
+
+  @Override
+  public void copy(String from, String to) throws IOException {
+    try {
+      store.copy(from, to);
+    } finally {
+      cache.invalidate(to);
+    }
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    try {
+      return store.delete(name);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public List<String> partitions() throws IOException {
+    return store.partitions();
+  }
+
+  @Override
+  public void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException {
+    store.forEach(partition, visitor);
+  }
+
+  @Override
+  public Path createStagingFile() throws IOException {
+    return store.createStagingFile();
+  }
+
+  @Override
+  public Optional<Path> localPath(String name) {
+    return store.localPath(name);
+  }
+}
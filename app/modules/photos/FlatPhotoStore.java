@@ -0,0 +1,49 @@
+package modules.photos;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A photo store that keeps every file directly in one directory. This was the original layout,
+ * and is kept so photos stored with it can still be read while they are migrated.
+ */
+public class FlatPhotoStore extends LocalPhotoStore {
+
+  public FlatPhotoStore(Path root) throws IOException {
+    super(root);
+  }
+
+  @Override
+  protected Path locate(String name) {
+    return root.resolve(name);
+  }
+
+  @Override
+  public List<String> partitions() {
+    return Collections.singletonList("");
+  }
+
+  @Override
+  public void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException {
+    if (!Files.isDirectory(root)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+      for (Path file : files) {
+        try {
+          toStoredPhoto(file, Files.readAttributes(file, BasicFileAttributes.class))
+              .ifPresent(visitor);
+        } catch (NoSuchFileException e) {
+          // Deleted or migrated since it was listed
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package modules.photos;
+
+/**
+ * The image formats photos can be uploaded in.
+ */
+public enum ImageFormat {
+  JPEG("image/jpeg", ".jpg", "jpeg"),
+  PNG("image/png", ".png", "png");
+
+  private final String contentType;
+  private final String extension;
+  private final String formatName;
+
+  ImageFormat(String contentType, String extension, String formatName) {
+    this.contentType = contentType;
+    this.extension = extension;
+    this.formatName = formatName;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * Gets the name image readers and writers know the format by.
+   *
+   * @return the name of the format.
+   */
+  public String getFormatName() {
+    return formatName;
+  }
+}
@@ -0,0 +1,226 @@
+package modules.photos;
+
+import akka.util.ByteString;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import play.mvc.Http;
+
+/**
+ * Inspects an uploaded image as it streams past. It counts and hashes the bytes, works out the
+ * format from the magic bytes at the start, and reads the dimensions from the header, rejecting
+ * the upload as soon as it breaks a limit.
+ */
+class ImageInspector {
+
+  // The header must be found within this many bytes, which leaves room for JPEG metadata
+  static final int HEADER_SCAN_LIMIT = 256 * 1024;
+
+  private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+  private final long maxSize;
+  private final int maxDimension;
+  private final long maxPixels;
+  private final MessageDigest digest;
+
+  private long size = 0;
+  private ByteString header = ByteString.empty();
+  private ImageFormat format;
+  private int width;
+  private int height;
+
+  /**
+   * Creates an inspector for one uploaded image.
+   *
+   * @param maxSize the most bytes the image may have.
+   * @param maxDimension the most pixels the image may have across or down.
+   * @param maxPixels the most pixels the image may have in total.
+   */
+  ImageInspector(long maxSize, int maxDimension, long maxPixels) {
+    this.maxSize = maxSize;
+    this.maxDimension = maxDimension;
+    this.maxPixels = maxPixels;
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Inspects the next chunk of the image.
+   *
+   * @param chunk the chunk.
+   * @return the same chunk, to be written.
+   * @throws UploadRejectedException if the image breaks a limit or is not a JPEG or PNG.
+   */
+  ByteString inspect(ByteString chunk) {
+    size += chunk.size();
+    if (size > maxSize) {
+      throw new UploadRejectedException(
+          Http.Status.REQUEST_ENTITY_TOO_LARGE,
+          String.format("Your photo must be smaller than %d MB", maxSize / (1024 * 1024)));
+    }
+    for (ByteBuffer buffer : chunk.getByteBuffers()) {
+      digest.update(buffer);
+    }
+
+    if (format == null || width == 0) {
+      header = header.concat(chunk);
+      readHeader(header.toArray());
+      if (width == 0 && header.size() >= HEADER_SCAN_LIMIT) {
+        throw new UploadRejectedException(Http.Status.BAD_REQUEST, "Your photo could not be read");
+      }
+      if (width != 0) {
+        header = ByteString.empty();
+      }
+    }
+    return chunk;
+  }
+
+  /**
+   * Checks the whole image has been inspected.
+   *
+   * @throws UploadRejectedException if the image ended before its dimensions were found.
+   */
+  void finish() {
+    if (width == 0) {
+      throw new UploadRejectedException(Http.Status.BAD_REQUEST, "Your photo could not be read");
+    }
+  }
+
+  /**
+   * Reads as much of the header as has arrived, checking the dimensions once they are found.
+   *
+   * @param bytes the start of the image.
+   */
+  private void readHeader(byte[] bytes) {
+    if (format == null) {
+      if (bytes.length < PNG_MAGIC.length) {
+        return;
+      }
+      format = sniff(bytes);
+      if (format == null) {
+        throw new UploadRejectedException(
+            Http.Status.BAD_REQUEST, "Your photo must be a .png or .jpg file");
+      }
+    }
+
+    if (format == ImageFormat.PNG) {
+      readPngDimensions(bytes);
+    } else {
+      readJpegDimensions(bytes);
+    }
+
+    if (width != 0) {
+      if (width > maxDimension || height > maxDimension || (long) width * height > maxPixels) {
+        throw new UploadRejectedException(
+            Http.Status.BAD_REQUEST,
+            String.format(
+                "Your photo can be at most %d pixels across and %d megapixels",
+                maxDimension, maxPixels / 1000000));
+      }
+    }
+  }
+
+  private static ImageFormat sniff(byte[] bytes) {
+    boolean png = true;
+    for (int i = 0; i < PNG_MAGIC.length; i++) {
+      png &= bytes[i] == PNG_MAGIC[i];
+    }
+    if (png) {
+      return ImageFormat.PNG;
+    }
+    if ((bytes[0] & 0xff) == 0xff && (bytes[1] & 0xff) == 0xd8 && (bytes[2] & 0xff) == 0xff) {
+      return ImageFormat.JPEG;
+    }
+    return null;
+  }
+
+  /** The dimensions are in the IHDR chunk, which must come first. */
+  private void readPngDimensions(byte[] bytes) {
+    if (bytes.length < 24) {
+      return;
+    }
+    setDimensions(readInt(bytes, 16), readInt(bytes, 20));
+  }
+
+  /** The dimensions are in the start of frame segment, which may come after the metadata. */
+  private void readJpegDimensions(byte[] bytes) {
+    int i = 2;
+    while (i + 4 <= bytes.length) {
+      if ((bytes[i] & 0xff) != 0xff) {
+        throw new UploadRejectedException(Http.Status.BAD_REQUEST, "Your photo could not be read");
+      }
+      int marker = bytes[i + 1] & 0xff;
+      if (marker == 0xff) {
+        // Padding before a marker
+        i++;
+        continue;
+      }
+      if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd9)) {
+        // Markers without a length
+        i += 2;
+        continue;
+      }
+
+      boolean startOfFrame =
+          marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+      if (startOfFrame) {
+        if (i + 9 <= bytes.length) {
+          setDimensions(readShort(bytes, i + 7), readShort(bytes, i + 5));
+        }
+        return;
+      }
+      i += 2 + readShort(bytes, i + 2);
+    }
+  }
+
+  private void setDimensions(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new UploadRejectedException(Http.Status.BAD_REQUEST, "Your photo could not be read");
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  private static int readShort(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+  }
+
+  private static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 24)
+        | ((bytes[offset + 1] & 0xff) << 16)
+        | ((bytes[offset + 2] & 0xff) << 8)
+        | (bytes[offset + 3] & 0xff);
+  }
+
+  long getSize() {
+    return size;
+  }
+
+  ImageFormat getFormat() {
+    return format;
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+  /**
+   * Gets the SHA-256 hash of the image. Only valid once the whole image has been inspected.
+   *
+   * @return the hash as hex.
+   */
+  String getSha256() {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+}
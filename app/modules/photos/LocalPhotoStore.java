@@ -0,0 +1,126 @@
+package modules.photos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * A photo store that keeps files in a directory on the local file system. Subclasses decide where
+ * in the directory each file goes.
+ */
+public abstract class LocalPhotoStore implements PhotoStore {
+
+  // Hidden, so it is never listed as part of the store
+  private static final String STAGING_DIRECTORY = ".staging";
+
+  protected final Path root;
+
+  /**
+   * Creates a local photo store, creating its directory if it does not exist.
+   *
+   * @param root the directory to keep files in.
+   * @throws IOException if the directory could not be created.
+   */
+  protected LocalPhotoStore(Path root) throws IOException {
+    this.root = root;
+    Files.createDirectories(root);
+  }
+
+  /**
+   * Gets where a file is kept in the store.
+   *
+   * @param name the name of the file, which has already been checked.
+   * @return the path of the file.
+   */
+  protected abstract Path locate(String name);
+
+  /**
+   * Gets where a file is kept, making sure the name cannot refer to a file outside the store.
+   *
+   * @param name the name of the file.
+   * @return the path of the file.
+   */
+  protected Path resolve(String name) {
+    if (name == null
+        || name.isEmpty()
+        || name.contains("/")
+        || name.contains("\\")
+        || name.startsWith(".")) {
+      throw new IllegalArgumentException("Invalid photo file name " + name);
+    }
+    return locate(name);
+  }
+
+  @Override
+  public void put(String name, Path source) throws IOException {
+    Path target = resolve(name);
+    Files.createDirectories(target.getParent());
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      // The source is on another file system
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @Override
+  public boolean exists(String name) {
+    return Files.isRegularFile(resolve(name));
+  }
+
+  @Override
+  public InputStream open(String name) throws IOException {
+    return Files.newInputStream(resolve(name));
+  }
+
+  @Override
+  public long size(String name) throws IOException {
+    return Files.size(resolve(name));
+  }
+
+  @Override
+  public void copy(String from, String to) throws IOException {
+    Path target = resolve(to);
+    Files.createDirectories(target.getParent());
+    Files.copy(resolve(from), target, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    return Files.deleteIfExists(resolve(name));
+  }
+
+  @Override
+  public Path createStagingFile() throws IOException {
+    Path staging = root.resolve(STAGING_DIRECTORY);
+    Files.createDirectories(staging);
+    return Files.createTempFile(staging, "upload", null);
+  }
+
+  @Override
+  public Optional<Path> localPath(String name) {
+    return Optional.of(resolve(name)).filter(Files::isRegularFile);
+  }
+
+  /**
+   * Describes a file found while listing the store.
+   *
+   * @param file the file.
+   * @param attributes the attributes of the file.
+   * @return the stored photo, or empty if the file is not a photo.
+   */
+  protected static Optional<StoredPhoto> toStoredPhoto(Path file, BasicFileAttributes attributes) {
+    String name = file.getFileName().toString();
+    if (!attributes.isRegularFile() || name.startsWith(".")) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new StoredPhoto(name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+  }
+}
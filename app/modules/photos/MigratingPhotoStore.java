@@ -0,0 +1,122 @@
+package modules.photos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A photo store used while files are moved from one store to another. New files are written to the
+ * target store, and files that have not been moved yet are read from the source store, so photos
+ * can be served throughout the migration.
+ */
+public class MigratingPhotoStore implements PhotoStore {
+
+  private static final String TARGET_PARTITION = "target:";
+  private static final String SOURCE_PARTITION = "source:";
+
+  private final PhotoStore target;
+  private final PhotoStore source;
+
+  /**
+   * Creates a store that migrates files between two stores.
+   *
+   * @param target the store files are moved to.
+   * @param source the store files are moved from.
+   */
+  public MigratingPhotoStore(PhotoStore target, PhotoStore source) {
+    this.target = target;
+    this.source = source;
+  }
+
+  public PhotoStore getTarget() {
+    return target;
+  }
+
+  public PhotoStore getSource() {
+    return source;
+  }
+
+  @Override
+  public void put(String name, Path file) throws IOException {
+    target.put(name, file);
+  }
+
+  @Override
+  public boolean exists(String name) throws IOException {
+    return target.exists(name) || source.exists(name);
+  }
+
+  @Override
+  public InputStream open(String name) throws IOException {
+    try {
+      return target.open(name);
+    } catch (NoSuchFileException e) {
+      return source.open(name);
+    }
+  }
+
+  @Override
+  public long size(String name) throws IOException {
+    try {
+      return target.size(name);
+    } catch (NoSuchFileException e) {
+      return source.size(name);
+    }
+  }
+
+  @Override
+  public void copy(String from, String to) throws IOException {
+    if (target.exists(from)) {
+      target.copy(from, to);
+    } else {
+      source.copy(from, to);
+    }
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    // The file may be part way through being moved, so remove it from both
+    boolean deletedFromTarget = target.delete(name);
+    boolean deletedFromSource = source.delete(name);
+    return deletedFromTarget || deletedFromSource;
+  }
+
+  @Override
+  public List<String> partitions() throws IOException {
+    List<String> partitions = new ArrayList<>();
+    for (String partition : target.partitions()) {
+      partitions.add(TARGET_PARTITION + partition);
+    }
+    for (String partition : source.partitions()) {
+      partitions.add(SOURCE_PARTITION + partition);
+    }
+    return partitions;
+  }
+
+  @Override
+  public void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException {
+    if (partition.startsWith(TARGET_PARTITION)) {
+      target.forEach(partition.substring(TARGET_PARTITION.length()), visitor);
+    } else if (partition.startsWith(SOURCE_PARTITION)) {
+      source.forEach(partition.substring(SOURCE_PARTITION.length()), visitor);
+    } else {
+      throw new IllegalArgumentException("Unknown partition " + partition);
+    }
+  }
+
+  @Override
+  public Path createStagingFile() throws IOException {
+    return target.createStagingFile();
+  }
+
+  @Override
+  public Optional<Path> localPath(String name) {
+    Optional<Path> path = target.localPath(name);
+    return path.isPresent() ? path : source.localPath(name);
+  }
+}
@@ -0,0 +1,164 @@
+package modules.photos;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache of the contents of small photo files, such as thumbnails, kept off the heap
+ * so a large cache does not add to garbage collection. The cache allocates one direct buffer up
+ * front and splits it into fixed size blocks, and each file is copied into as many blocks as it
+ * needs. When there are not enough free blocks, the least recently used files are evicted.
+ */
+public class PhotoCache {
+
+  static final int BLOCK_SIZE = 4096;
+
+  private final ByteBuffer slab;
+  private final int[] freeBlocks;
+  private int freeBlockCount;
+  private final int maxEntryBytes;
+  private final PhotoCacheMetrics metrics = PhotoCacheMetrics.getInstance();
+
+  // In order of access, least recently used first
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  // Incremented by every invalidation, so a load that overlapped one is not cached
+  private long version = 0;
+
+  /**
+   * Creates a photo cache.
+   *
+   * @param maxBytes the most bytes of files kept in the cache, rounded down to whole blocks.
+   * @param maxEntryBytes the size of the largest file kept in the cache.
+   */
+  public PhotoCache(long maxBytes, int maxEntryBytes) {
+    long blocks = maxBytes / BLOCK_SIZE;
+    if (blocks > Integer.MAX_VALUE / BLOCK_SIZE) {
+      throw new IllegalArgumentException("A photo cache can hold at most 2 GB");
+    }
+    this.slab = ByteBuffer.allocateDirect((int) blocks * BLOCK_SIZE);
+    this.freeBlocks = new int[(int) blocks];
+    for (int i = 0; i < blocks; i++) {
+      freeBlocks[i] = i;
+    }
+    this.freeBlockCount = (int) blocks;
+    this.maxEntryBytes = Math.min(maxEntryBytes, slab.capacity());
+    metrics.setCapacityBytes(slab.capacity());
+  }
+
+  public int getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  /**
+   * Gets the contents of a cached file.
+   *
+   * @param name the name of the file.
+   * @return a copy of the contents, or null if the file is not cached.
+   */
+  public synchronized byte[] get(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      metrics.miss();
+      return null;
+    }
+
+    byte[] contents = new byte[entry.length];
+    int offset = 0;
+    for (int block : entry.blocks) {
+      int length = Math.min(BLOCK_SIZE, entry.length - offset);
+      ByteBuffer source = slab.duplicate();
+      source.position(block * BLOCK_SIZE);
+      source.get(contents, offset, length);
+      offset += length;
+    }
+    metrics.hit();
+    return contents;
+  }
+
+  /**
+   * Gets the version of the cache to pass to {@link #put} once a file has been loaded.
+   *
+   * @return the current version.
+   */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Adds a file to the cache, evicting the least recently used files to make space. The file is
+   * not added if it is too large, or if anything was invalidated since it started loading, as the
+   * contents may be out of date.
+   *
+   * @param name the name of the file.
+   * @param contents the contents of the file.
+   * @param loadedAtVersion the version of the cache from before the file was loaded.
+   */
+  public synchronized void put(String name, byte[] contents, long loadedAtVersion) {
+    if (contents.length > maxEntryBytes || loadedAtVersion != version) {
+      return;
+    }
+    remove(name);
+
+    int blocksNeeded = Math.max(1, (contents.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    Iterator<Map.Entry<String, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+    while (freeBlockCount < blocksNeeded && leastRecentlyUsed.hasNext()) {
+      Entry evicted = leastRecentlyUsed.next().getValue();
+      leastRecentlyUsed.remove();
+      release(evicted);
+      metrics.evicted();
+    }
+    if (freeBlockCount < blocksNeeded) {
+      return;
+    }
+
+    int[] blocks = new int[blocksNeeded];
+    int offset = 0;
+    for (int i = 0; i < blocksNeeded; i++) {
+      blocks[i] = freeBlocks[--freeBlockCount];
+      int length = Math.min(BLOCK_SIZE, contents.length - offset);
+      ByteBuffer target = slab.duplicate();
+      target.position(blocks[i] * BLOCK_SIZE);
+      target.put(contents, offset, length);
+      offset += length;
+    }
+    entries.put(name, new Entry(blocks, contents.length));
+    metrics.added(contents.length);
+  }
+
+  /**
+   * Removes a file from the cache, because it has been changed or deleted.
+   *
+   * @param name the name of the file.
+   */
+  public synchronized void invalidate(String name) {
+    version++;
+    remove(name);
+  }
+
+  private void remove(String name) {
+    Entry entry = entries.remove(name);
+    if (entry != null) {
+      release(entry);
+    }
+  }
+
+  private void release(Entry entry) {
+    for (int block : entry.blocks) {
+      freeBlocks[freeBlockCount++] = block;
+    }
+    metrics.removed(entry.length);
+  }
+
+  /** The blocks a cached file is kept in. */
+  private static class Entry {
+    private final int[] blocks;
+    private final int length;
+
+    private Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package modules.photos;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the hit ratio and size of the photo cache so they can be reported.
+ */
+public class PhotoCacheMetrics {
+
+  private static PhotoCacheMetrics instance;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong entries = new AtomicLong();
+  private final AtomicLong residentBytes = new AtomicLong();
+  private volatile long capacityBytes;
+
+  private PhotoCacheMetrics() {}
+
+  /**
+   * Singleton getter for the photo cache metrics.
+   *
+   * @return the instance of the photo cache metrics.
+   */
+  public static synchronized PhotoCacheMetrics getInstance() {
+    if (instance == null) {
+      instance = new PhotoCacheMetrics();
+    }
+    return instance;
+  }
+
+  void hit() {
+    hits.incrementAndGet();
+  }
+
+  void miss() {
+    misses.incrementAndGet();
+  }
+
+  void evicted() {
+    evictions.incrementAndGet();
+  }
+
+  void added(long bytes) {
+    entries.incrementAndGet();
+    residentBytes.addAndGet(bytes);
+  }
+
+  void removed(long bytes) {
+    entries.decrementAndGet();
+    residentBytes.addAndGet(-bytes);
+  }
+
+  void setCapacityBytes(long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the share of lookups that were served from the cache.
+   *
+   * @return the hit ratio between 0 and 1, or 0 if there have been no lookups.
+   */
+  public double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public long getEntries() {
+    return entries.get();
+  }
+
+  /**
+   * Gets the size of the files in the cache, not counting the unused ends of their last blocks.
+   *
+   * @return the resident bytes.
+   */
+  public long getResidentBytes() {
+    return residentBytes.get();
+  }
+
+  public long getCapacityBytes() {
+    return capacityBytes;
+  }
+}
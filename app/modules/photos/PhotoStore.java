@@ -0,0 +1,128 @@
+package modules.photos;
+
+import com.google.inject.ProvidedBy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Where the files of personal photos and their thumbnails are kept. Files are identified by the
+ * names stored on the photo in the database.
+ */
+@ProvidedBy(PhotoStoreProvider.class)
+public interface PhotoStore {
+
+  /**
+   * Moves a file into the store, replacing any file with the same name.
+   *
+   * @param name the name to store the file under.
+   * @param source the file to store. It no longer exists once this returns.
+   * @throws IOException if the file could not be stored.
+   */
+  void put(String name, Path source) throws IOException;
+
+  /**
+   * Checks whether a file is stored.
+   *
+   * @param name the name of the file.
+   * @return true if the file exists.
+   * @throws IOException if the store could not be read.
+   */
+  boolean exists(String name) throws IOException;
+
+  /**
+   * Opens a stored file for reading.
+   *
+   * @param name the name of the file.
+   * @return the contents of the file, which the caller must close.
+   * @throws java.nio.file.NoSuchFileException if the file does not exist.
+   * @throws IOException if the file could not be read.
+   */
+  InputStream open(String name) throws IOException;
+
+  /**
+   * Gets the size of a stored file.
+   *
+   * @param name the name of the file.
+   * @return the size in bytes.
+   * @throws java.nio.file.NoSuchFileException if the file does not exist.
+   * @throws IOException if the file could not be read.
+   */
+  long size(String name) throws IOException;
+
+  /**
+   * Copies a stored file to a new name.
+   *
+   * @param from the name of the file to copy.
+   * @param to the name of the copy.
+   * @throws java.nio.file.NoSuchFileException if the file does not exist.
+   * @throws IOException if the file could not be copied.
+   */
+  void copy(String from, String to) throws IOException;
+
+  /**
+   * Deletes a stored file.
+   *
+   * @param name the name of the file.
+   * @return true if the file was deleted, false if it did not exist.
+   * @throws IOException if the file could not be deleted.
+   */
+  boolean delete(String name) throws IOException;
+
+  /**
+   * Gets the files of the store as independent partitions that can be listed in parallel.
+   *
+   * @return the partitions of the store.
+   * @throws IOException if the store could not be read.
+   */
+  List<String> partitions() throws IOException;
+
+  /**
+   * Lists every file in a partition of the store.
+   *
+   * @param partition one of the partitions of the store.
+   * @param visitor called with each file.
+   * @throws IOException if the partition could not be listed.
+   */
+  void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException;
+
+  /**
+   * Creates an empty file to write an upload to before it is put in the store. Local stores create
+   * it on the same file system, so putting it is a rename rather than a copy.
+   *
+   * @return the new file.
+   * @throws IOException if the file could not be created.
+   */
+  default Path createStagingFile() throws IOException {
+    return Files.createTempFile("photo-upload", null);
+  }
+
+  /**
+   * Gets the file a photo is stored in, if it is on the local file system, so it can be served
+   * without copying it through the application.
+   *
+   * @param name the name of the file.
+   * @return the local file, or empty if the store is not local or the file does not exist.
+   */
+  default Optional<Path> localPath(String name) {
+    return Optional.empty();
+  }
+
+  /**
+   * Gets the contents of a small file from memory, if the store caches files, so it can be served
+   * without reading the store.
+   *
+   * @param name the name of the file.
+   * @return the contents of the file, or empty if the store does not cache files or the file is too
+   *     large to cache.
+   * @throws java.nio.file.NoSuchFileException if the file does not exist.
+   * @throws IOException if the file could not be read.
+   */
+  default Optional<byte[]> cachedContents(String name) throws IOException {
+    return Optional.empty();
+  }
+}
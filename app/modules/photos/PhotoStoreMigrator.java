@@ -0,0 +1,161 @@
+package modules.photos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves every file from one photo store to another while the application is running. Each file is
+ * written to the target before it is removed from the source, so a {@link MigratingPhotoStore}
+ * over the same stores can always find it. Files are only ever removed from the source once they
+ * are in the target, so a migration that is stopped part way through carries on where it left off
+ * the next time it is run.
+ *
+ * <p>Files are moved in batches with a pause in between, so the migration does not starve requests
+ * of disk or network bandwidth.
+ */
+public class PhotoStoreMigrator {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final PhotoStore source;
+  private final PhotoStore target;
+  private final int batchSize;
+  private final Duration pause;
+
+  private final AtomicLong filesMoved = new AtomicLong();
+  private final AtomicLong filesAlreadyMoved = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private volatile boolean stopped = false;
+  private volatile boolean finished = false;
+
+  /**
+   * Creates a migrator between two photo stores.
+   *
+   * @param source the store to move files from.
+   * @param target the store to move files to.
+   * @param batchSize the number of files moved between pauses.
+   * @param pause how long to wait between batches.
+   */
+  public PhotoStoreMigrator(PhotoStore source, PhotoStore target, int batchSize, Duration pause) {
+    this.source = source;
+    this.target = target;
+    this.batchSize = batchSize;
+    this.pause = pause;
+  }
+
+  /**
+   * Moves every file in the source store to the target store, one partition at a time. Returns
+   * once the source is empty, or once the migrator has been stopped.
+   *
+   * @throws IOException if the source store could not be listed.
+   * @throws InterruptedException if the thread was interrupted while pausing.
+   */
+  public void run() throws IOException, InterruptedException {
+    log.info("Migrating photos from " + describe(source) + " to " + describe(target));
+    for (String partition : source.partitions()) {
+      List<String> names = new ArrayList<>();
+      source.forEach(partition, photo -> names.add(photo.getName()));
+
+      for (int i = 0; i < names.size(); i += batchSize) {
+        if (stopped) {
+          log.info("Photo migration stopped after moving " + filesMoved.get() + " files");
+          return;
+        }
+        for (String name : names.subList(i, Math.min(i + batchSize, names.size()))) {
+          migrate(name);
+        }
+        Thread.sleep(pause.toMillis());
+      }
+    }
+
+    finished = true;
+    log.info(
+        String.format(
+            "Photo migration finished, moved %d files, %d were already moved, %d failed",
+            filesMoved.get(), filesAlreadyMoved.get(), failures.get()));
+  }
+
+  /** Stops the migration after the current batch. */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Moves one file to the target store. A failed file is left in the source, to be moved by the
+   * next run.
+   *
+   * @param name the name of the file.
+   */
+  private void migrate(String name) {
+    try {
+      if (target.exists(name)) {
+        // Moved by an earlier run that stopped before removing it from the source
+        source.delete(name);
+        filesAlreadyMoved.incrementAndGet();
+        return;
+      }
+
+      Optional<Path> localFile = source.localPath(name);
+      if (localFile.isPresent()) {
+        target.put(name, localFile.get());
+      } else {
+        Path download = Files.createTempFile("photo-migration", null);
+        try (InputStream contents = source.open(name)) {
+          Files.copy(contents, download, StandardCopyOption.REPLACE_EXISTING);
+          target.put(name, download);
+        } finally {
+          Files.deleteIfExists(download);
+        }
+        source.delete(name);
+      }
+      filesMoved.incrementAndGet();
+    } catch (NoSuchFileException e) {
+      // Deleted since the partition was listed
+    } catch (IOException e) {
+      log.warn("Could not migrate photo " + name, e);
+      failures.incrementAndGet();
+    }
+  }
+
+  private static String describe(PhotoStore store) {
+    return store.getClass().getSimpleName();
+  }
+
+  public long getFilesMoved() {
+    return filesMoved.get();
+  }
+
+  /**
+   * Gets the number of files found in both stores, which were removed from the source.
+   *
+   * @return the number of files already moved.
+   */
+  public long getFilesAlreadyMoved() {
+    return filesAlreadyMoved.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Checks whether the migration has been through every file in the source store. Any files that
+   * failed to move are still in the source.
+   *
+   * @return true if the migration has finished.
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+}
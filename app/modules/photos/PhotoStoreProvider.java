@@ -0,0 +1,84 @@
+package modules.photos;
+
+import com.typesafe.config.Config;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * Creates the photo store chosen in the configuration. While a migration from another store is
+ * configured, the store reads from both. Small files are cached in memory unless the cache size is
+ * set to zero.
+ */
+@Singleton
+public class PhotoStoreProvider implements Provider<PhotoStore> {
+
+  private static final String NONE = "none";
+
+  private final Config config;
+  private PhotoStore store;
+
+  @Inject
+  public PhotoStoreProvider(Config config) {
+    this.config = config.getConfig("photos");
+  }
+
+  @Override
+  public synchronized PhotoStore get() {
+    if (store == null) {
+      PhotoStore target = create(config.getString("store"));
+      String migrateFrom = config.getString("migrateFrom");
+      if (migrateFrom.equals(NONE) || migrateFrom.equals(config.getString("store"))) {
+        store = target;
+      } else {
+        store = new MigratingPhotoStore(target, create(migrateFrom));
+      }
+
+      long cacheSize = config.getBytes("cache.maxSize");
+      if (cacheSize > 0) {
+        store =
+            new CachingPhotoStore(
+                store,
+                new PhotoCache(cacheSize, config.getBytes("cache.maxEntrySize").intValue()));
+      }
+    }
+    return store;
+  }
+
+  /**
+   * Creates a photo store of a type. The local stores share a directory, as the flat store only
+   * uses files at the top level and the sharded store only uses subdirectories.
+   *
+   * @param type the type of store, one of flat, sharded or s3.
+   * @return the store.
+   */
+  private PhotoStore create(String type) {
+    Path path = Paths.get(System.getProperty("user.dir"), config.getString("path"));
+    try {
+      switch (type) {
+        case "flat":
+          return new FlatPhotoStore(path);
+        case "sharded":
+          return new ShardedPhotoStore(path);
+        case "s3":
+          Config s3 = config.getConfig("s3");
+          return new S3PhotoStore(
+              S3PhotoStore.createClient(
+                  s3.getString("endpoint"),
+                  s3.getString("region"),
+                  s3.getString("accessKey"),
+                  s3.getString("secretKey"),
+                  s3.getBoolean("pathStyleAccess")),
+              s3.getString("bucket"));
+        default:
+          throw new IllegalArgumentException("Unknown photo store " + type);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create the photo store at " + path, e);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package modules.photos;
+
+import akka.stream.IOResult;
+import akka.stream.Materializer;
+import akka.stream.javadsl.FileIO;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.util.ByteString;
+import com.typesafe.config.Config;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import javax.inject.Inject;
+import play.api.http.HttpErrorHandler;
+import play.core.parsers.Multipart;
+import play.libs.F;
+import play.libs.Files.TemporaryFileCreator;
+import play.libs.streams.Accumulator;
+import play.mvc.BodyParser;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+/**
+ * Parses a photo upload, writing the image straight to the staging area of the photo store as it
+ * arrives, so it is written once and then renamed into place. The image is hashed and its format
+ * and dimensions are read from its header as it streams past, and the upload is stopped as soon as
+ * it is too large or is not a JPEG or PNG.
+ */
+public class PhotoUploadBodyParser
+    extends BodyParser.DelegatingMultipartFormDataBodyParser<StagedPhoto> {
+
+  public static final String IMAGE_PART = "image";
+
+  // Allowance for the form fields and multipart framing around the image
+  private static final long FORM_OVERHEAD = 64 * 1024;
+
+  private final PhotoStore photoStore;
+  private final TemporaryFileCreator temporaryFileCreator;
+  private final Executor executor;
+  private final long maxSize;
+  private final int maxDimension;
+  private final long maxPixels;
+
+  @Inject
+  public PhotoUploadBodyParser(
+      Materializer materializer,
+      Config config,
+      HttpErrorHandler errorHandler,
+      PhotoStore photoStore,
+      TemporaryFileCreator temporaryFileCreator) {
+    super(materializer, config.getBytes("play.http.parser.maxMemoryBuffer"), errorHandler);
+    Config uploadConfig = config.getConfig("photos.upload");
+    this.photoStore = photoStore;
+    this.temporaryFileCreator = temporaryFileCreator;
+    this.executor = materializer.executionContext();
+    this.maxSize = uploadConfig.getBytes("maxSize");
+    this.maxDimension = uploadConfig.getInt("maxDimension");
+    this.maxPixels = uploadConfig.getLong("maxPixels");
+  }
+
+  @Override
+  public Accumulator<ByteString, F.Either<Result, Http.MultipartFormData<StagedPhoto>>> apply(
+      Http.RequestHeader request) {
+    Optional<String> contentType = request.contentType();
+    if (!contentType.isPresent() || !contentType.get().equals("multipart/form-data")) {
+      return Accumulator.done(
+          F.Either.Left(
+              rejection(
+                  Http.Status.BAD_REQUEST,
+                  "Please specify the Content Type as specified in the API spec")));
+    }
+
+    // Refuse an upload that is too large before reading any of it
+    Optional<String> contentLength = request.header(Http.HeaderNames.CONTENT_LENGTH);
+    if (contentLength.isPresent()) {
+      long length;
+      try {
+        length = Long.parseLong(contentLength.get().trim());
+      } catch (NumberFormatException e) {
+        length = -1;
+      }
+      if (length < 0) {
+        return Accumulator.done(
+            F.Either.Left(rejection(Http.Status.BAD_REQUEST, "Invalid Content-Length header")));
+      }
+      if (length > maxSize + FORM_OVERHEAD) {
+        return Accumulator.done(F.Either.Left(tooLarge()));
+      }
+    }
+
+    return super.apply(request)
+        .recover(
+            error -> {
+              UploadRejectedException rejection = findRejection(error);
+              if (rejection == null) {
+                throw error instanceof CompletionException
+                    ? (CompletionException) error
+                    : new CompletionException(error);
+              }
+              return F.Either.Left(rejection(rejection.getStatus(), rejection.getMessage()));
+            },
+            executor);
+  }
+
+  @Override
+  public Function<Multipart.FileInfo, Accumulator<ByteString, Http.MultipartFormData.FilePart<StagedPhoto>>>
+      createFilePartHandler() {
+    return fileInfo -> {
+      if (!IMAGE_PART.equals(fileInfo.partName())) {
+        return failed(
+            new UploadRejectedException(
+                Http.Status.BAD_REQUEST, "Unexpected file " + fileInfo.partName()));
+      }
+
+      Path staging;
+      try {
+        staging = photoStore.createStagingFile();
+      } catch (IOException e) {
+        return failed(e);
+      }
+
+      ImageInspector inspector = new ImageInspector(maxSize, maxDimension, maxPixels);
+      Sink<ByteString, CompletionStage<IOResult>> sink =
+          Flow.of(ByteString.class)
+              .map(inspector::inspect)
+              .toMat(FileIO.toPath(staging), Keep.right())
+              .mapMaterializedValue(
+                  written ->
+                      written.whenComplete(
+                          (ioResult, error) -> {
+                            // A rejected upload is not kept for the reaper to find
+                            if (error != null || !ioResult.wasSuccessful()) {
+                              deleteQuietly(staging);
+                            }
+                          }));
+
+      return Accumulator.fromSink(sink)
+          .map(
+              ioResult -> {
+                if (!ioResult.wasSuccessful()) {
+                  throw new CompletionException(ioResult.getError());
+                }
+                try {
+                  inspector.finish();
+                } catch (RuntimeException e) {
+                  deleteQuietly(staging);
+                  throw e;
+                }
+
+                StagedPhoto photo =
+                    new StagedPhoto(
+                        temporaryFileCreator.create(staging),
+                        inspector.getFormat(),
+                        inspector.getWidth(),
+                        inspector.getHeight(),
+                        inspector.getSize(),
+                        inspector.getSha256());
+                return new Http.MultipartFormData.FilePart<>(
+                    fileInfo.partName(),
+                    fileInfo.fileName(),
+                    photo.getFormat().getContentType(),
+                    photo,
+                    photo.getSize());
+              },
+              executor);
+    };
+  }
+
+  private Result tooLarge() {
+    return rejection(
+        Http.Status.REQUEST_ENTITY_TOO_LARGE,
+        String.format("Your photo must be smaller than %d MB", maxSize / (1024 * 1024)));
+  }
+
+  private static Result rejection(int status, String message) {
+    // BodyParser.Json hides play.libs.Json inside a body parser
+    return Results.status(status, play.libs.Json.newObject().put("message", message));
+  }
+
+  private static <A> Accumulator<ByteString, A> failed(Throwable error) {
+    CompletableFuture<A> future = new CompletableFuture<>();
+    future.completeExceptionally(error);
+    return Accumulator.done(future);
+  }
+
+  private static UploadRejectedException findRejection(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof UploadRejectedException) {
+        return (UploadRejectedException) cause;
+      }
+    }
+    return null;
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // Left for the temporary file reaper
+    }
+  }
+}
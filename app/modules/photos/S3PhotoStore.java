@@ -0,0 +1,180 @@
+package modules.photos;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A photo store that keeps files in a bucket of an S3 compatible object store. Keys use the same
+ * shards as {@link ShardedPhotoStore}, so listing one shard only lists a small share of the bucket.
+ */
+public class S3PhotoStore implements PhotoStore {
+
+  private static final int NOT_FOUND = 404;
+
+  private final AmazonS3 client;
+  private final String bucket;
+
+  public S3PhotoStore(AmazonS3 client, String bucket) {
+    this.client = client;
+    this.bucket = bucket;
+  }
+
+  /**
+   * Creates a client for an S3 compatible object store.
+   *
+   * @param endpoint the url of the store.
+   * @param region the region of the bucket.
+   * @param accessKey the access key to sign requests with.
+   * @param secretKey the secret key to sign requests with.
+   * @param pathStyleAccess true to put the bucket in the path of requests rather than the host.
+   * @return the client.
+   */
+  public static AmazonS3 createClient(
+      String endpoint,
+      String region,
+      String accessKey,
+      String secretKey,
+      boolean pathStyleAccess) {
+    return AmazonS3ClientBuilder.standard()
+        .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+        .withCredentials(
+            new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)))
+        .withPathStyleAccessEnabled(pathStyleAccess)
+        .withChunkedEncodingDisabled(true)
+        .build();
+  }
+
+  /**
+   * Gets the key a file is kept under.
+   *
+   * @param name the name of the file.
+   * @return the key of the file.
+   */
+  private static String key(String name) {
+    if (name == null || name.isEmpty() || name.contains("/")) {
+      throw new IllegalArgumentException("Invalid photo file name " + name);
+    }
+    return ShardedPhotoStore.shardOf(name) + "/" + name;
+  }
+
+  @Override
+  public void put(String name, Path source) throws IOException {
+    try {
+      client.putObject(bucket, key(name), source.toFile());
+    } catch (AmazonServiceException e) {
+      throw new IOException("Could not store " + name, e);
+    }
+    Files.delete(source);
+  }
+
+  @Override
+  public boolean exists(String name) throws IOException {
+    try {
+      return client.doesObjectExist(bucket, key(name));
+    } catch (AmazonServiceException e) {
+      throw new IOException("Could not check " + name, e);
+    }
+  }
+
+  @Override
+  public InputStream open(String name) throws IOException {
+    try {
+      return client.getObject(bucket, key(name)).getObjectContent();
+    } catch (AmazonServiceException e) {
+      throw translate(name, e);
+    }
+  }
+
+  @Override
+  public long size(String name) throws IOException {
+    try {
+      return client.getObjectMetadata(bucket, key(name)).getContentLength();
+    } catch (AmazonServiceException e) {
+      throw translate(name, e);
+    }
+  }
+
+  @Override
+  public void copy(String from, String to) throws IOException {
+    try {
+      client.copyObject(bucket, key(from), bucket, key(to));
+    } catch (AmazonServiceException e) {
+      throw translate(from, e);
+    }
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    // Object stores do not say whether a deleted object existed
+    if (!exists(name)) {
+      return false;
+    }
+    try {
+      client.deleteObject(bucket, key(name));
+      return true;
+    } catch (AmazonServiceException e) {
+      throw new IOException("Could not delete " + name, e);
+    }
+  }
+
+  @Override
+  public List<String> partitions() {
+    // One partition for each top level shard, whether or not it holds any files yet
+    List<String> partitions = new ArrayList<>(256);
+    for (int i = 0; i < 256; i++) {
+      partitions.add(String.format("%02x", i));
+    }
+    return partitions;
+  }
+
+  @Override
+  public void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException {
+    ListObjectsV2Request request =
+        new ListObjectsV2Request().withBucketName(bucket).withPrefix(partition + "/");
+    try {
+      ListObjectsV2Result result;
+      do {
+        result = client.listObjectsV2(request);
+        for (S3ObjectSummary summary : result.getObjectSummaries()) {
+          String name = summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1);
+          visitor.accept(
+              new StoredPhoto(name, summary.getSize(), summary.getLastModified().toInstant()));
+        }
+        request.setContinuationToken(result.getNextContinuationToken());
+      } while (result.isTruncated());
+    } catch (AmazonServiceException e) {
+      throw new IOException("Could not list " + partition, e);
+    }
+  }
+
+  /**
+   * Turns an error from the object store into the exception the store interface describes.
+   *
+   * @param name the name of the file that was requested.
+   * @param e the error from the object store.
+   * @return the exception to throw.
+   */
+  private static IOException translate(String name, AmazonServiceException e) {
+    if (e.getStatusCode() == NOT_FOUND) {
+      NoSuchFileException notFound = new NoSuchFileException(name);
+      notFound.initCause(e);
+      return notFound;
+    }
+    return new IOException("Could not read " + name, e);
+  }
+}
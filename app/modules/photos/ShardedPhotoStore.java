@@ -0,0 +1,100 @@
+package modules.photos;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A photo store that spreads files over two levels of subdirectories named after a hash of the
+ * file name, such as ab/cd/name.jpg, so no directory holds more than a small share of the files.
+ * A photo and its thumbnail are kept in the same directory.
+ */
+public class ShardedPhotoStore extends LocalPhotoStore {
+
+  private static final String THUMB = "_thumb";
+
+  public ShardedPhotoStore(Path root) throws IOException {
+    super(root);
+  }
+
+  /**
+   * Gets the directory a file belongs in, relative to the root of the store.
+   *
+   * @param name the name of the file.
+   * @return the shard of the file, such as ab/cd.
+   */
+  public static String shardOf(String name) {
+    // Use the token of the photo, so the photo and its thumbnail share a shard
+    String stem = name;
+    int dotIndex = stem.lastIndexOf('.');
+    if (dotIndex > 0) {
+      stem = stem.substring(0, dotIndex);
+    }
+    if (stem.endsWith(THUMB)) {
+      stem = stem.substring(0, stem.length() - THUMB.length());
+    }
+
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("MD5").digest(stem.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+    return String.format("%02x/%02x", hash[0] & 0xff, hash[1] & 0xff);
+  }
+
+  @Override
+  protected Path locate(String name) {
+    return root.resolve(shardOf(name)).resolve(name);
+  }
+
+  @Override
+  public List<String> partitions() throws IOException {
+    List<String> partitions = new ArrayList<>();
+    if (!Files.isDirectory(root)) {
+      return partitions;
+    }
+    try (DirectoryStream<Path> shards =
+        Files.newDirectoryStream(
+            root,
+            path -> Files.isDirectory(path) && path.getFileName().toString().length() == 2)) {
+      for (Path shard : shards) {
+        partitions.add(shard.getFileName().toString());
+      }
+    }
+    return partitions;
+  }
+
+  @Override
+  public void forEach(String partition, Consumer<StoredPhoto> visitor) throws IOException {
+    Files.walkFileTree(
+        root.resolve(partition),
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            toStoredPhoto(file, attributes).ifPresent(visitor);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+            if (e instanceof NoSuchFileException) {
+              // Deleted since it was listed
+              return FileVisitResult.CONTINUE;
+            }
+            throw e;
+          }
+        });
+  }
+}
@@ -0,0 +1,57 @@
+package modules.photos;
+
+import java.nio.file.Path;
+import play.libs.Files.TemporaryFile;
+
+/**
+ * An uploaded photo that has been written to the staging area of the photo store, ready to be
+ * moved into the store. The file is deleted if it is never stored.
+ */
+public class StagedPhoto {
+
+  private final TemporaryFile file;
+  private final ImageFormat format;
+  private final int width;
+  private final int height;
+  private final long size;
+  private final String sha256;
+
+  StagedPhoto(
+      TemporaryFile file, ImageFormat format, int width, int height, long size, String sha256) {
+    this.file = file;
+    this.format = format;
+    this.width = width;
+    this.height = height;
+    this.size = size;
+    this.sha256 = sha256;
+  }
+
+  public Path getPath() {
+    return file.path();
+  }
+
+  /**
+   * Gets the format of the photo, found from its contents rather than what the client said.
+   *
+   * @return the format.
+   */
+  public ImageFormat getFormat() {
+    return format;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public String getSha256() {
+    return sha256;
+  }
+}
@@ -0,0 +1,31 @@
+package modules.photos;
+
+import java.time.Instant;
+
+/**
+ * A file in a photo store, as listed by the store.
+ */
+public class StoredPhoto {
+
+  private final String name;
+  private final long size;
+  private final Instant lastModified;
+
+  public StoredPhoto(String name, long size, Instant lastModified) {
+    this.name = name;
+    this.size = size;
+    this.lastModified = lastModified;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public Instant getLastModified() {
+    return lastModified;
+  }
+}
@@ -0,0 +1,70 @@
+package modules.photos;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import play.libs.concurrent.CustomExecutionContext;
+
+/**
+ * The threads that uploaded photos are decoded, rendered into thumbnails and stored on. Rendering
+ * blocks, on the decode and on the wait for the pixel budget, so it is kept off the default
+ * dispatcher. Uploads past the limit of waiting renders are turned away straight away rather than
+ * queue up behind the rest.
+ */
+@Singleton
+public class ThumbnailExecutionContext extends CustomExecutionContext {
+
+  private final int queueLimit;
+
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  @Inject
+  public ThumbnailExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, "photos.thumbnail.dispatcher");
+    this.queueLimit = config.getInt("photos.thumbnail.queueLimit");
+  }
+
+  /**
+   * Runs a render on the thumbnail threads.
+   *
+   * @param task the render to run.
+   * @throws RejectedExecutionException if queueLimit renders are already waiting for a thread.
+   */
+  @Override
+  public void execute(Runnable task) {
+    // The limit may be overshot by the renders submitted at the same moment, which is fine
+    if (queued.sum() >= queueLimit) {
+      rejected.increment();
+      throw new RejectedExecutionException("Too many thumbnails are waiting to be rendered");
+    }
+
+    queued.increment();
+    super.execute(
+        () -> {
+          queued.decrement();
+          task.run();
+        });
+  }
+
+  /**
+   * Gets the number of renders waiting for a thread.
+   *
+   * @return the queue depth.
+   */
+  public long getQueueDepth() {
+    return queued.sum();
+  }
+
+  /**
+   * Gets the number of renders turned away as too many were waiting since the server started.
+   *
+   * @return the rejected renders.
+   */
+  public long getRejected() {
+    return rejected.sum();
+  }
+}
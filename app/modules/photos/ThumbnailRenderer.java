@@ -0,0 +1,195 @@
+package modules.photos;
+
+import com.typesafe.config.Config;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import play.mvc.Http;
+
+/**
+ * Renders the square thumbnails of photos without decoding the whole photo. The dimensions are
+ * read from the header first, then only the centre square is decoded, subsampled to close to the
+ * size of the thumbnail, so the memory used does not grow with the size of the photo. The pixels
+ * being decoded at once across all uploads are limited by a budget, so a burst of uploads waits
+ * rather than running out of memory.
+ */
+@Singleton
+public class ThumbnailRenderer {
+
+  private final int size;
+  private final int pixelBudget;
+  private final Duration budgetWait;
+  private final int maxDimension;
+  private final long maxPixels;
+  private final Semaphore pixels;
+
+  private final AtomicLong rendersWaited = new AtomicLong();
+
+  /**
+   * Creates a renderer.
+   *
+   * @param size the width and height of the thumbnails.
+   * @param pixelBudget the most pixels that can be decoded at once.
+   * @param budgetWait how long a render waits for the budget before it is refused.
+   * @param maxDimension the most pixels a photo may have across or down.
+   * @param maxPixels the most pixels a photo may have in total.
+   */
+  public ThumbnailRenderer(
+      int size, int pixelBudget, Duration budgetWait, int maxDimension, long maxPixels) {
+    this.size = size;
+    this.pixelBudget = pixelBudget;
+    this.budgetWait = budgetWait;
+    this.maxDimension = maxDimension;
+    this.maxPixels = maxPixels;
+    this.pixels = new Semaphore(pixelBudget, true);
+  }
+
+  @Inject
+  public ThumbnailRenderer(Config config) {
+    this(
+        config.getInt("photos.thumbnail.size"),
+        config.getInt("photos.thumbnail.pixelBudget"),
+        config.getDuration("photos.thumbnail.budgetWait"),
+        config.getInt("photos.upload.maxDimension"),
+        config.getLong("photos.upload.maxPixels"));
+  }
+
+  /**
+   * Renders a thumbnail of the centre of a photo.
+   *
+   * @param original the photo.
+   * @param destination the file to write the thumbnail to.
+   * @param format the format of the photo, which the thumbnail is written in too.
+   * @throws IOException if the photo cannot be read or the thumbnail cannot be written.
+   * @throws UploadRejectedException if the photo is not an image, is too large, or the budget did
+   *     not free up in time.
+   */
+  public void render(Path original, Path destination, ImageFormat format) throws IOException {
+    try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+      Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+      if (readers == null || !readers.hasNext()) {
+        throw new UploadRejectedException(Http.Status.BAD_REQUEST, "Your photo could not be read");
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        ImageReadParam param = centreSquare(reader);
+        int decodedSide =
+            (param.getSourceRegion().width + param.getSourceXSubsampling() - 1)
+                / param.getSourceXSubsampling();
+
+        // A render larger than the whole budget takes all of it, so it runs alone rather than never
+        int permits = (int) Math.min(pixelBudget, (long) decodedSide * decodedSide + size * size);
+        acquire(permits);
+        try {
+          BufferedImage decoded = reader.read(0, param);
+          BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+          Graphics2D graphics = thumbnail.createGraphics();
+          graphics.drawImage(
+              decoded.getScaledInstance(size, size, Image.SCALE_SMOOTH), 0, 0, null);
+          graphics.dispose();
+          ImageIO.write(thumbnail, format.getFormatName(), destination.toFile());
+        } finally {
+          pixels.release(permits);
+        }
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Works out how to decode only the centre square of a photo, subsampled to no less than the size
+   * of the thumbnail. Only the header of the photo is read.
+   *
+   * @param reader the reader, with the photo as its input.
+   * @return the parameters to decode the square with.
+   * @throws IOException if the header cannot be read.
+   * @throws UploadRejectedException if the photo is too large.
+   */
+  private ImageReadParam centreSquare(ImageReader reader) throws IOException {
+    int width = reader.getWidth(0);
+    int height = reader.getHeight(0);
+    if (width > maxDimension || height > maxDimension || (long) width * height > maxPixels) {
+      throw new UploadRejectedException(
+          Http.Status.BAD_REQUEST,
+          String.format(
+              "Your photo can be at most %d pixels across and %d megapixels",
+              maxDimension, maxPixels / 1_000_000));
+    }
+
+    int side = Math.min(width, height);
+    int subsampling = Math.max(1, side / size);
+
+    ImageReadParam param = reader.getDefaultReadParam();
+    param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+    return param;
+  }
+
+  /**
+   * Takes pixels from the budget, waiting for other renders to finish if needed.
+   *
+   * @param permits the pixels to take.
+   * @throws UploadRejectedException if the pixels did not free up in time.
+   */
+  private void acquire(int permits) {
+    if (pixels.tryAcquire(permits)) {
+      return;
+    }
+
+    rendersWaited.incrementAndGet();
+    try {
+      if (pixels.tryAcquire(permits, budgetWait.toMillis(), TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new UploadRejectedException(
+        Http.Status.SERVICE_UNAVAILABLE,
+        "Too many photos are being uploaded right now, please try again shortly");
+  }
+
+  /**
+   * Gets the most pixels that can be decoded at once.
+   *
+   * @return the pixel budget.
+   */
+  public int getPixelBudget() {
+    return pixelBudget;
+  }
+
+  /**
+   * Gets the pixels being decoded right now.
+   *
+   * @return the pixels taken from the budget.
+   */
+  public int getPixelsInUse() {
+    return pixelBudget - pixels.availablePermits();
+  }
+
+  /**
+   * Gets the number of renders that had to wait for the budget.
+   *
+   * @return the number of renders that waited.
+   */
+  public long getRendersWaited() {
+    return rendersWaited.get();
+  }
+}
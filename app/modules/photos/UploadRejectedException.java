@@ -0,0 +1,25 @@
+package modules.photos;
+
+/**
+ * Thrown while a photo is being uploaded to stop the upload, as the photo is too large or is not
+ * an image that can be stored.
+ */
+public class UploadRejectedException extends RuntimeException {
+
+  private final int status;
+
+  /**
+   * Creates an upload rejection.
+   *
+   * @param status the HTTP status to respond with.
+   * @param message the reason to give the user.
+   */
+  public UploadRejectedException(int status, String message) {
+    super(message);
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
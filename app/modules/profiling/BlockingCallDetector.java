@@ -0,0 +1,148 @@
+package modules.profiling;
+
+import com.typesafe.config.Config;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Catches JDBC calls made from the threads that serve requests. Those threads are shared by every
+ * request, so a request waiting on the database there holds up all the others; database work
+ * belongs on a bulkhead such as the trip or auth execution context. Calls are either logged, once
+ * for each place they are made from, or failed.
+ */
+public class BlockingCallDetector {
+
+  private static final String CONFIG_KEY = "profiling.blockingCalls";
+
+  // Frames of the database layers between the application code and the connection
+  private static final String[] INFRASTRUCTURE = {
+    "java.", "javax.", "jdk.", "sun.", "com.sun.", "scala.", "akka.", "play.db.", "io.ebean",
+    "com.zaxxer.", "org.h2.", "com.mysql.", "modules.profiling."
+  };
+
+  private static BlockingCallDetector instance;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final Mode mode;
+  private final List<Pattern> threads;
+  private final Set<String> callSitesLogged = ConcurrentHashMap.newKeySet();
+  private final LongAdder detected = new LongAdder();
+
+  /** What is done with a JDBC call made from a thread serving requests. */
+  public enum Mode {
+    OFF,
+    LOG,
+    FAIL
+  }
+
+  /**
+   * Creates a detector.
+   *
+   * @param mode what to do with the calls detected.
+   * @param threads regular expressions matching the names of the threads that must not make JDBC
+   *     calls.
+   */
+  public BlockingCallDetector(Mode mode, List<String> threads) {
+    this.mode = mode;
+    this.threads = threads.stream().map(Pattern::compile).collect(Collectors.toList());
+  }
+
+  /**
+   * Creates the singleton detector, with the mode and threads read from the application config.
+   *
+   * @param applicationConfig the application config.
+   */
+  public static synchronized void initialise(Config applicationConfig) {
+    Config config = applicationConfig.getConfig(CONFIG_KEY);
+    instance =
+        new BlockingCallDetector(
+            Mode.valueOf(config.getString("mode").toUpperCase(Locale.ROOT)),
+            config.getStringList("threads"));
+  }
+
+  /**
+   * Singleton getter for the detector.
+   *
+   * @return the instance of the detector.
+   * @throws IllegalStateException if the detector has not been initialised.
+   */
+  public static synchronized BlockingCallDetector getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The blocking call detector has not been initialised");
+    }
+    return instance;
+  }
+
+  /**
+   * Checks a JDBC call is not being made from a thread serving requests, logging it or failing it
+   * if it is.
+   *
+   * @throws BlockingCallException if the call is made from a thread serving requests and calls are
+   *     failed.
+   */
+  public void check() throws BlockingCallException {
+    if (mode == Mode.OFF) {
+      return;
+    }
+    String thread = Thread.currentThread().getName();
+    if (threads.stream().noneMatch(pattern -> pattern.matcher(thread).matches())) {
+      return;
+    }
+
+    detected.increment();
+    StackTraceElement[] stack = Thread.currentThread().getStackTrace();
+    String callSite = callSiteOf(stack);
+    BlockingCallException exception = new BlockingCallException(thread, callSite);
+    if (mode == Mode.FAIL) {
+      throw exception;
+    }
+    if (callSitesLogged.add(callSite)) {
+      log.warn(exception.getMessage(), exception);
+    }
+  }
+
+  /**
+   * Gets the frame of the application code that made a JDBC call, skipping the frames of the
+   * database layers below it.
+   *
+   * @param stack the stack of the call.
+   * @return the frame, or unknown if every frame belongs to the database layers.
+   */
+  static String callSiteOf(StackTraceElement[] stack) {
+    for (StackTraceElement frame : stack) {
+      if (!isInfrastructure(frame.getClassName())) {
+        return frame.toString();
+      }
+    }
+    return "unknown";
+  }
+
+  private static boolean isInfrastructure(String className) {
+    if (className.contains("$Proxy")) {
+      return true;
+    }
+    for (String prefix : INFRASTRUCTURE) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of JDBC calls made from threads serving requests since the server started.
+   *
+   * @return the number of calls.
+   */
+  public long getDetected() {
+    return detected.sum();
+  }
+}
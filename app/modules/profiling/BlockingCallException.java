@@ -0,0 +1,27 @@
+package modules.profiling;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a connection is asked for from a thread serving requests while blocking JDBC calls
+ * are failed, naming the code that asked for it.
+ */
+public class BlockingCallException extends SQLException {
+
+  private final String callSite;
+
+  /**
+   * Creates the failure of a blocking call.
+   *
+   * @param thread the name of the thread the call was made from.
+   * @param callSite the frame of the application code that made the call.
+   */
+  public BlockingCallException(String thread, String callSite) {
+    super("Blocking JDBC call on " + thread + " from " + callSite);
+    this.callSite = callSite;
+  }
+
+  public String getCallSite() {
+    return callSite;
+  }
+}
@@ -0,0 +1,194 @@
+package modules.profiling;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A data source that times every statement its connections run and reports it to the query
+ * profiler. Connections and statements are wrapped in proxies that pass every call through, and
+ * the values bound to prepared statements are kept so slow queries can be logged with them.
+ * Connections asked for from the threads serving requests are reported to the blocking call
+ * detector.
+ */
+public class ProfilingDataSource implements DataSource {
+
+  private final DataSource dataSource;
+  private final QueryProfiler profiler;
+  private final BlockingCallDetector blockingCallDetector;
+
+  /**
+   * Wraps a data source.
+   *
+   * @param dataSource the data source to profile.
+   * @param profiler the profiler to report statements to.
+   * @param blockingCallDetector the detector to check connections are asked for from the right
+   *     threads with.
+   */
+  public ProfilingDataSource(
+      DataSource dataSource, QueryProfiler profiler, BlockingCallDetector blockingCallDetector) {
+    this.dataSource = dataSource;
+    this.profiler = profiler;
+    this.blockingCallDetector = blockingCallDetector;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    blockingCallDetector.check();
+    return wrap(dataSource.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    blockingCallDetector.check();
+    return wrap(dataSource.getConnection(username, password));
+  }
+
+  private Connection wrap(Connection connection) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            new ConnectionHandler(connection));
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> type) throws SQLException {
+    return type.isInstance(this) ? type.cast(this) : dataSource.unwrap(type);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> type) throws SQLException {
+    return type.isInstance(this) || dataSource.isWrapperFor(type);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return dataSource.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    dataSource.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    dataSource.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return dataSource.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return dataSource.getParentLogger();
+  }
+
+  /**
+   * Calls a method of the wrapped object, unwrapping the exceptions it throws.
+   *
+   * @param target the wrapped object.
+   * @param method the method.
+   * @param args the arguments.
+   * @return the result of the method.
+   * @throws Throwable whatever the method throws.
+   */
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Wraps the statements a connection creates. */
+  private class ConnectionHandler implements InvocationHandler {
+
+    private final Connection connection;
+
+    private ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = ProfilingDataSource.invoke(connection, method, args);
+      switch (method.getName()) {
+        case "prepareStatement":
+          return statement(PreparedStatement.class, (Statement) result, (String) args[0]);
+        case "prepareCall":
+          return statement(CallableStatement.class, (Statement) result, (String) args[0]);
+        case "createStatement":
+          return statement(Statement.class, (Statement) result, null);
+        case "unwrap":
+          return result == connection ? proxy : result;
+        default:
+          return result;
+      }
+    }
+
+    private Object statement(Class<? extends Statement> type, Statement statement, String sql) {
+      return Proxy.newProxyInstance(
+          type.getClassLoader(), new Class<?>[] {type}, new StatementHandler(statement, sql));
+    }
+  }
+
+  /** Times the statements that are run, keeping the values bound to prepared statements. */
+  private class StatementHandler implements InvocationHandler {
+
+    private final Statement statement;
+    private final String preparedSql;
+    private final List<Object> bindValues = new ArrayList<>();
+
+    private StatementHandler(Statement statement, String preparedSql) {
+      this.statement = statement;
+      this.preparedSql = preparedSql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.startsWith("execute")) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String
+            ? (String) args[0]
+            : preparedSql;
+        long start = System.nanoTime();
+        try {
+          return ProfilingDataSource.invoke(statement, method, args);
+        } finally {
+          profiler.record(sql, new ArrayList<>(bindValues), System.nanoTime() - start);
+        }
+      }
+
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+          && method.getParameterTypes()[0] == int.class) {
+        bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+      } else if (name.equals("clearParameters")) {
+        bindValues.clear();
+      }
+      return ProfilingDataSource.invoke(statement, method, args);
+    }
+
+    private void bind(int index, Object value) {
+      while (bindValues.size() < index) {
+        bindValues.add(null);
+      }
+      bindValues.set(index - 1, value);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package modules.profiling;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import play.Environment;
+
+/**
+ * Sets up the query profiler and blocking call detector from the application config. They are
+ * needed before Ebean first connects, which happens while the application is being injected.
+ */
+public class ProfilingModule extends AbstractModule {
+
+  private final Config config;
+
+  public ProfilingModule(Environment environment, Config config) {
+    this.config = config;
+  }
+
+  @Override
+  protected void configure() {
+    QueryProfiler.initialise(config);
+    BlockingCallDetector.initialise(config);
+  }
+}
@@ -0,0 +1,22 @@
+package modules.profiling;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the most queries an action should run for one request. Requests that run more are
+ * logged, and fail when budgets are enforced, as they are in tests.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+  /**
+   * Gets the most queries the action may run.
+   *
+   * @return the query budget.
+   */
+  int value();
+}
@@ -0,0 +1,169 @@
+package modules.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import modules.metrics.RouteMetrics;
+import play.mvc.Http;
+
+/**
+ * The queries run for one request. A profile follows its request from the action onto the
+ * database threads, and back through the HTTP execution context, so queries run on any of them
+ * are counted against the route that caused them.
+ */
+public class QueryProfile {
+
+  static final String CONTEXT_KEY = "queryProfile";
+
+  private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+
+  private final RouteMetrics route;
+  private final int budget;
+  private final AtomicInteger queries = new AtomicInteger();
+  private final AtomicLong databaseNanos = new AtomicLong();
+  private final Map<String, AtomicInteger> shapes = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a profile for a request.
+   *
+   * @param route the route of the request.
+   * @param budget the most queries the request should run, or a negative number if it has no
+   *     budget.
+   */
+  public QueryProfile(RouteMetrics route, int budget) {
+    this.route = route;
+    this.budget = budget;
+  }
+
+  /**
+   * Gets the profile of the request being served by this thread.
+   *
+   * @return the profile, or nothing if the thread is not serving a request.
+   */
+  @SuppressWarnings("deprecation")
+  public static Optional<QueryProfile> current() {
+    QueryProfile profile = CURRENT.get();
+    if (profile != null) {
+      return Optional.of(profile);
+    }
+    Http.Context context = Http.Context.current.get();
+    return context == null
+        ? Optional.empty()
+        : Optional.ofNullable((QueryProfile) context.args.get(CONTEXT_KEY));
+  }
+
+  /**
+   * Makes a profile the current profile of this thread.
+   *
+   * @param profile the profile, or null to clear it.
+   * @return the profile that was current before, to be restored with {@link #exit}.
+   */
+  public static QueryProfile enter(QueryProfile profile) {
+    QueryProfile previous = CURRENT.get();
+    CURRENT.set(profile);
+    return previous;
+  }
+
+  /**
+   * Restores the profile that was current before {@link #enter} was called.
+   *
+   * @param previous the profile returned by enter.
+   */
+  public static void exit(QueryProfile previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Wraps a task so it runs with the profile and HTTP context of the thread that submitted it, as
+   * the HTTP execution context does. Continuations the task creates with the HTTP execution
+   * context then keep the profile too.
+   *
+   * @param task the task.
+   * @return the wrapped task.
+   */
+  @SuppressWarnings("deprecation")
+  public static Runnable propagate(Runnable task) {
+    QueryProfile profile = CURRENT.get();
+    Http.Context context = Http.Context.current.get();
+    if (profile == null && context == null) {
+      return task;
+    }
+
+    return () -> {
+      QueryProfile previousProfile = enter(profile);
+      Http.Context previousContext = Http.Context.current.get();
+      Http.Context.current.set(context);
+      try {
+        task.run();
+      } finally {
+        Http.Context.current.set(previousContext);
+        exit(previousProfile);
+      }
+    };
+  }
+
+  /**
+   * Records a query run for the request.
+   *
+   * @param shape the query with its literal values taken out.
+   * @param nanos the time the database took to run it.
+   * @return the number of times a query of the same shape has been run for the request.
+   */
+  int record(String shape, long nanos) {
+    queries.incrementAndGet();
+    databaseNanos.addAndGet(nanos);
+    return shapes.computeIfAbsent(shape, key -> new AtomicInteger()).incrementAndGet();
+  }
+
+  public RouteMetrics getRoute() {
+    return route;
+  }
+
+  public int getBudget() {
+    return budget;
+  }
+
+  public int getQueries() {
+    return queries.get();
+  }
+
+  public long getDatabaseNanos() {
+    return databaseNanos.get();
+  }
+
+  /**
+   * Gets the shapes of the queries that were run at least a number of times.
+   *
+   * @param times the least number of times.
+   * @return the repeated shapes.
+   */
+  public List<String> getRepeatedShapes(int times) {
+    List<String> repeated = new ArrayList<>();
+    shapes.forEach(
+        (shape, count) -> {
+          if (count.get() >= times) {
+            repeated.add(shape);
+          }
+        });
+    return repeated;
+  }
+
+  /**
+   * Gets the number of times a query of a shape was run.
+   *
+   * @param shape the shape.
+   * @return the number of times it was run.
+   */
+  public int getShapeCount(String shape) {
+    AtomicInteger count = shapes.get(shape);
+    return count == null ? 0 : count.get();
+  }
+}
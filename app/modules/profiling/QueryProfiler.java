@@ -0,0 +1,154 @@
+package modules.profiling;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.libs.Json;
+import play.mvc.Result;
+import play.mvc.Results;
+
+/**
+ * Profiles the queries run by each request. Every statement sent to the database is recorded
+ * against the profile of the request that ran it. Slow statements are logged with their bind
+ * values, requests that run the same shape of query many times are logged as N+1 queries, and
+ * requests that run more queries than the budget of their action are logged, or failed when
+ * budgets are enforced.
+ */
+public class QueryProfiler {
+
+  private static final String CONFIG_KEY = "profiling";
+
+  // Literal values and lists of bind parameters, which vary between queries of the same shape
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private static QueryProfiler instance;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+  private final Logger slowQueryLog = LoggerFactory.getLogger("queries.slow");
+
+  private final long slowQueryNanos;
+  private final int repeatedQueryThreshold;
+  private final boolean enforceBudgets;
+
+  /**
+   * Creates a query profiler.
+   *
+   * @param slowQueryThreshold queries that take at least this long are logged.
+   * @param repeatedQueryThreshold a request that runs a shape of query this many times is logged.
+   * @param enforceBudgets whether requests over their query budget fail.
+   */
+  public QueryProfiler(
+      Duration slowQueryThreshold, int repeatedQueryThreshold, boolean enforceBudgets) {
+    this.slowQueryNanos = slowQueryThreshold.toNanos();
+    this.repeatedQueryThreshold = repeatedQueryThreshold;
+    this.enforceBudgets = enforceBudgets;
+  }
+
+  /**
+   * Creates the singleton query profiler, with the thresholds read from the application config.
+   *
+   * @param applicationConfig the application config.
+   */
+  public static synchronized void initialise(Config applicationConfig) {
+    Config config = applicationConfig.getConfig(CONFIG_KEY);
+    instance =
+        new QueryProfiler(
+            config.getDuration("slowQueryThreshold"),
+            config.getInt("repeatedQueryThreshold"),
+            config.getBoolean("enforceBudgets"));
+  }
+
+  /**
+   * Singleton getter for the query profiler.
+   *
+   * @return the instance of the query profiler.
+   * @throws IllegalStateException if the query profiler has not been initialised.
+   */
+  public static synchronized QueryProfiler getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The query profiler has not been initialised");
+    }
+    return instance;
+  }
+
+  /**
+   * Records a statement sent to the database against the current request.
+   *
+   * @param sql the statement.
+   * @param bindValues the values bound to its parameters.
+   * @param nanos the time the database took to run it.
+   */
+  public void record(String sql, List<Object> bindValues, long nanos) {
+    Optional<QueryProfile> profile = QueryProfile.current();
+    String route = profile.map(current -> current.getRoute().getRoute()).orElse("none");
+
+    if (profile.isPresent()) {
+      String shape = shapeOf(sql);
+      if (profile.get().record(shape, nanos) == repeatedQueryThreshold) {
+        log.warn("Possible N+1 query on {}, run {} times: {}", route, repeatedQueryThreshold, shape);
+      }
+    }
+
+    if (nanos >= slowQueryNanos) {
+      slowQueryLog.warn(
+          "{} ms on {}: {} with {}", TimeUnit.NANOSECONDS.toMillis(nanos), route, sql, bindValues);
+    }
+  }
+
+  /**
+   * Records the queries of a finished request in the metrics of its route, and checks them against
+   * the budget of its action.
+   *
+   * @param profile the profile of the request.
+   * @param result the result of the request.
+   * @return the result, or a server error if the request went over its budget and budgets are
+   *     enforced.
+   */
+  public Result finish(QueryProfile profile, Result result) {
+    boolean repeated = !profile.getRepeatedShapes(repeatedQueryThreshold).isEmpty();
+    profile
+        .getRoute()
+        .queriesFinished(profile.getQueries(), profile.getDatabaseNanos(), repeated);
+
+    if (profile.getBudget() < 0 || profile.getQueries() <= profile.getBudget()) {
+      return result;
+    }
+
+    String message =
+        String.format(
+            "%s ran %d queries, over its budget of %d",
+            profile.getRoute().getRoute(), profile.getQueries(), profile.getBudget());
+    if (!enforceBudgets) {
+      log.warn(message);
+      return result;
+    }
+
+    log.error(message);
+    ObjectNode response = Json.newObject();
+    response.put("message", message);
+    return Results.internalServerError(response);
+  }
+
+  /**
+   * Gets the shape of a statement, which is the statement with its literal values and the length
+   * of its parameter lists taken out, so that queries for different rows have the same shape.
+   *
+   * @param sql the statement.
+   * @return the shape of the statement.
+   */
+  public static String shapeOf(String sql) {
+    String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+    shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+    shape = PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+    return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+  }
+}
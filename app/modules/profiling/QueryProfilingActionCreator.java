@@ -0,0 +1,49 @@
+package modules.profiling;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import modules.metrics.RequestMetrics;
+import play.http.ActionCreator;
+import play.mvc.Action;
+import play.mvc.Http;
+import play.mvc.Result;
+
+/**
+ * Starts a query profile for every request to a Java action, with the query budget declared on
+ * the action. It runs before the actions the controller is annotated with, so the queries they
+ * run are counted too.
+ */
+public class QueryProfilingActionCreator implements ActionCreator {
+
+  private final QueryProfiler profiler = QueryProfiler.getInstance();
+
+  // ActionCreator declares the raw Action type, so the override has to return it
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Action createAction(Http.Request request, Method actionMethod) {
+    QueryBudget budget = actionMethod.getAnnotation(QueryBudget.class);
+
+    return new Action.Simple() {
+      @Override
+      @SuppressWarnings("deprecation")
+      public CompletionStage<Result> call(Http.Request request) {
+        QueryProfile profile =
+            new QueryProfile(
+                RequestMetrics.getInstance().forRequest(request),
+                budget == null ? -1 : budget.value());
+        // Carried to the continuations of the action by the HTTP execution context
+        Http.Context.safeCurrent()
+            .ifPresent(context -> context.args.put(QueryProfile.CONTEXT_KEY, profile));
+
+        CompletionStage<Result> result;
+        QueryProfile previous = QueryProfile.enter(profile);
+        try {
+          result = delegate.call(request);
+        } finally {
+          QueryProfile.exit(previous);
+        }
+        return result.thenApply(finished -> profiler.finish(profile, finished));
+      }
+    };
+  }
+}
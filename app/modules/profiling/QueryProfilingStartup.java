@@ -0,0 +1,29 @@
+package modules.profiling;
+
+import io.ebean.config.ServerConfig;
+import io.ebean.event.ServerConfigStartup;
+import javax.sql.DataSource;
+
+/**
+ * Profiles the queries Ebean runs, and catches those run from the threads serving requests, by
+ * wrapping the data source Play gives it, and the data source reads are routed through when there
+ * is a replica. Ebean runs this before it first connects, as it is listed with the models in the
+ * ebean.default config.
+ */
+public class QueryProfilingStartup implements ServerConfigStartup {
+
+  @Override
+  public void onStart(ServerConfig serverConfig) {
+    if (serverConfig.getDataSource() != null) {
+      serverConfig.setDataSource(profile(serverConfig.getDataSource()));
+    }
+    if (serverConfig.getReadOnlyDataSource() != null) {
+      serverConfig.setReadOnlyDataSource(profile(serverConfig.getReadOnlyDataSource()));
+    }
+  }
+
+  private DataSource profile(DataSource dataSource) {
+    return new ProfilingDataSource(
+        dataSource, QueryProfiler.getInstance(), BlockingCallDetector.getInstance());
+  }
+}
@@ -0,0 +1,24 @@
+package modules.replicas;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import play.Environment;
+
+/**
+ * Sets up the replica router from the application config, connecting to the replica if there is
+ * one. It is needed before Ebean first connects, which happens while the application is being
+ * injected.
+ */
+public class ReplicaModule extends AbstractModule {
+
+  private final Config config;
+
+  public ReplicaModule(Environment environment, Config config) {
+    this.config = config;
+  }
+
+  @Override
+  protected void configure() {
+    ReplicaRouter.initialise(config);
+  }
+}
@@ -0,0 +1,306 @@
+package modules.replicas;
+
+import com.typesafe.config.Config;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.mvc.Http;
+
+/**
+ * Decides whether a read goes to the read replica or to the primary database. Reads go to the
+ * replica unless the session reading has written recently, so it sees its own writes, the replica
+ * is further behind the primary than allowed, or the replica has recently failed. Reads in a task
+ * that must see the primary, such as signing in, are run with {@link #onPrimary}.
+ */
+public class ReplicaRouter {
+
+  private static final String CONFIG_KEY = "replicas";
+
+  // The column of SHOW SLAVE STATUS with the lag, used when the lag query returns it
+  private static final String MYSQL_LAG_COLUMN = "Seconds_Behind_Master";
+
+  // Sessions that wrote longer ago than the stickiness are forgotten once there are this many
+  private static final int SESSIONS_BEFORE_PRUNING = 10000;
+
+  // The lag is unknown, and reads go to the primary, once it has not been checked for this many
+  // check intervals
+  private static final int STALE_LAG_CHECKS = 3;
+
+  private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+  private static ReplicaRouter instance;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final DataSource replica;
+  private final Supplier<Optional<String>> sessions;
+  private final String lagQuery;
+  private final long maxLagNanos;
+  private final long lagCheckIntervalNanos;
+  private final long stickinessNanos;
+  private final long retryAfterNanos;
+
+  private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+  private volatile long lagNanos;
+  private volatile long lagCheckedAt;
+  private volatile boolean lagKnown = false;
+  private volatile long unavailableUntil = System.nanoTime();
+
+  private final LongAdder replicaReads = new LongAdder();
+  private final LongAdder primaryReads = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  /**
+   * Creates a router.
+   *
+   * @param replica the replica, or null if there is none and every read goes to the primary.
+   * @param config the replicas section of the application config.
+   * @param sessions gets the session of the request being served by the calling thread.
+   */
+  public ReplicaRouter(DataSource replica, Config config, Supplier<Optional<String>> sessions) {
+    this.replica = replica;
+    this.sessions = sessions;
+    this.lagQuery = config.getString("lagQuery");
+    this.maxLagNanos = config.getDuration("maxLag", TimeUnit.NANOSECONDS);
+    this.lagCheckIntervalNanos = config.getDuration("lagCheckInterval", TimeUnit.NANOSECONDS);
+    this.stickinessNanos = config.getDuration("stickiness", TimeUnit.NANOSECONDS);
+    this.retryAfterNanos = config.getDuration("retryAfter", TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Creates the singleton router. The replica is connected to when its url is set in the
+   * application config, and the replica of the router it replaces is disconnected from.
+   *
+   * @param applicationConfig the application config.
+   */
+  public static synchronized void initialise(Config applicationConfig) {
+    if (instance != null && instance.replica instanceof HikariDataSource) {
+      ((HikariDataSource) instance.replica).close();
+    }
+    Config config = applicationConfig.getConfig(CONFIG_KEY);
+    DataSource replica = config.getString("url").isEmpty() ? null : connect(config);
+    instance = new ReplicaRouter(replica, config, ReplicaRouter::sessionOfCurrentRequest);
+  }
+
+  /**
+   * Singleton getter for the router.
+   *
+   * @return the instance of the router.
+   * @throws IllegalStateException if the router has not been initialised.
+   */
+  public static synchronized ReplicaRouter getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The replica router has not been initialised");
+    }
+    return instance;
+  }
+
+  private static DataSource connect(Config config) {
+    HikariConfig hikari = new HikariConfig();
+    hikari.setPoolName("replica");
+    hikari.setDriverClassName(config.getString("driver"));
+    hikari.setJdbcUrl(config.getString("url"));
+    hikari.setUsername(config.getString("username"));
+    hikari.setPassword(config.getString("password"));
+    hikari.setMaximumPoolSize(config.getInt("connections"));
+    hikari.setMinimumIdle(config.getInt("connections"));
+    hikari.setConnectionTimeout(config.getDuration("connectionTimeout", TimeUnit.MILLISECONDS));
+    hikari.setReadOnly(true);
+    // Start without the replica if it is down, reading from the primary until it is back
+    hikari.setInitializationFailTimeout(-1);
+    return new HikariDataSource(hikari);
+  }
+
+  /**
+   * Gets the session of the request being served, from its token, as the logged in action does.
+   *
+   * @return the token, or nothing if the thread is not serving a request with one.
+   */
+  @SuppressWarnings("deprecation")
+  private static Optional<String> sessionOfCurrentRequest() {
+    Http.Context context = Http.Context.current.get();
+    if (context == null) {
+      return Optional.empty();
+    }
+    Http.Request request = context.request();
+    Optional<String> token = request.getHeaders().get("Authorization");
+    return token.isPresent() ? token : Optional.ofNullable(request.getQueryString("Authorization"));
+  }
+
+  /**
+   * Wraps a task so the reads it makes go to the primary.
+   *
+   * @param task the task.
+   * @return the wrapped task.
+   */
+  public static Runnable onPrimary(Runnable task) {
+    return () -> {
+      Boolean previous = PRIMARY_ONLY.get();
+      PRIMARY_ONLY.set(true);
+      try {
+        task.run();
+      } finally {
+        if (previous == null) {
+          PRIMARY_ONLY.remove();
+        } else {
+          PRIMARY_ONLY.set(previous);
+        }
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return replica != null;
+  }
+
+  DataSource getReplica() {
+    return replica;
+  }
+
+  /**
+   * Decides whether a read made now goes to the replica, counting the read.
+   *
+   * @return true if the read goes to the replica, false if it goes to the primary.
+   */
+  boolean readFromReplica() {
+    boolean useReplica = replica != null && !Boolean.TRUE.equals(PRIMARY_ONLY.get())
+        && isReplicaAvailable() && !isSessionSticky();
+    (useReplica ? replicaReads : primaryReads).increment();
+    return useReplica;
+  }
+
+  private boolean isSessionSticky() {
+    Optional<String> session = sessions.get();
+    if (!session.isPresent()) {
+      return false;
+    }
+    Long lastWrite = lastWrites.get(session.get());
+    return lastWrite != null && System.nanoTime() - lastWrite < stickinessNanos;
+  }
+
+  /**
+   * Checks the replica can be read from: it has not failed recently, and was recently found to be
+   * close enough behind the primary.
+   *
+   * @return true if the replica can be read from.
+   */
+  public boolean isReplicaAvailable() {
+    long now = System.nanoTime();
+    return replica != null
+        && now - unavailableUntil >= 0
+        && lagKnown
+        && now - lagCheckedAt < lagCheckIntervalNanos * STALE_LAG_CHECKS
+        && lagNanos <= maxLagNanos;
+  }
+
+  /**
+   * Records that the session of the request being served has written, so its reads go to the
+   * primary for a while.
+   */
+  public void recordWrite() {
+    if (replica == null) {
+      return;
+    }
+    sessions.get().ifPresent(session -> {
+      long now = System.nanoTime();
+      if (lastWrites.size() >= SESSIONS_BEFORE_PRUNING) {
+        lastWrites.values().removeIf(lastWrite -> now - lastWrite >= stickinessNanos);
+      }
+      lastWrites.put(session, now);
+    });
+  }
+
+  /**
+   * Sends reads to the primary for a while after the replica fails.
+   *
+   * @param e the failure.
+   */
+  void replicaFailed(SQLException e) {
+    failures.increment();
+    long now = System.nanoTime();
+    if (now - unavailableUntil >= 0) {
+      log.warn("Reading from the primary as the replica failed", e);
+    }
+    unavailableUntil = now + retryAfterNanos;
+  }
+
+  /**
+   * Checks how far the replica is behind the primary with the lag query, which returns the lag
+   * in seconds in its first column or in a Seconds_Behind_Master column. An empty or null lag
+   * means the replica is not replicating, which is treated as a failure.
+   */
+  public void checkLag() {
+    if (replica == null) {
+      return;
+    }
+    try (Connection connection = replica.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.setQueryTimeout(
+          (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(lagCheckIntervalNanos)));
+      try (ResultSet result = statement.executeQuery(lagQuery)) {
+        Optional<Double> lagSeconds = readLag(result);
+        if (!lagSeconds.isPresent()) {
+          throw new SQLException("The replica is not replicating");
+        }
+        lagNanos = (long) (lagSeconds.get() * TimeUnit.SECONDS.toNanos(1));
+        lagCheckedAt = System.nanoTime();
+        lagKnown = true;
+      }
+    } catch (SQLException e) {
+      replicaFailed(e);
+    }
+  }
+
+  private static Optional<Double> readLag(ResultSet result) throws SQLException {
+    if (!result.next()) {
+      return Optional.empty();
+    }
+    int column = 1;
+    ResultSetMetaData metaData = result.getMetaData();
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      if (metaData.getColumnLabel(i).equalsIgnoreCase(MYSQL_LAG_COLUMN)) {
+        column = i;
+      }
+    }
+    double lag = result.getDouble(column);
+    return result.wasNull() ? Optional.empty() : Optional.of(lag);
+  }
+
+  /**
+   * Gets how far the replica was behind the primary when it was last checked.
+   *
+   * @return the lag in seconds, or NaN if it is not known.
+   */
+  public double getLagSeconds() {
+    return lagKnown ? lagNanos / 1e9 : Double.NaN;
+  }
+
+  public long getReplicaReads() {
+    return replicaReads.sum();
+  }
+
+  public long getPrimaryReads() {
+    return primaryReads.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getLagCheckIntervalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(lagCheckIntervalNanos);
+  }
+}
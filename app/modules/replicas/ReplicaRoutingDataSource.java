@@ -0,0 +1,89 @@
+package modules.replicas;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * The data source Ebean reads from outside a transaction. Each connection is taken from the
+ * replica or the primary as the router decides, and from the primary if the replica can't be
+ * connected to.
+ */
+public class ReplicaRoutingDataSource implements DataSource {
+
+  private final ReplicaRouter router;
+  private final DataSource primary;
+
+  /**
+   * Creates a data source reading from the replica of a router.
+   *
+   * @param router the router deciding where reads go.
+   * @param primary the primary database, which reads fall back to.
+   */
+  public ReplicaRoutingDataSource(ReplicaRouter router, DataSource primary) {
+    this.router = router;
+    this.primary = primary;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (router.readFromReplica()) {
+      try {
+        return router.getReplica().getConnection();
+      } catch (SQLException e) {
+        router.replicaFailed(e);
+      }
+    }
+    return primary.getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    if (router.readFromReplica()) {
+      try {
+        return router.getReplica().getConnection(username, password);
+      } catch (SQLException e) {
+        router.replicaFailed(e);
+      }
+    }
+    return primary.getConnection(username, password);
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> type) throws SQLException {
+    return type.isInstance(this) ? type.cast(this) : primary.unwrap(type);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> type) throws SQLException {
+    return type.isInstance(this) || primary.isWrapperFor(type);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return primary.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    primary.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    primary.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return primary.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return primary.getParentLogger();
+  }
+}
@@ -0,0 +1,22 @@
+package modules.replicas;
+
+import io.ebean.config.ServerConfig;
+import io.ebean.event.ServerConfigStartup;
+
+/**
+ * Gives Ebean the replica to read from, when one is configured. Ebean reads from it outside a
+ * transaction, and writes, and reads in a transaction, stay on the primary. It is listed with the
+ * models in the ebean.default config before the query profiling, so reads are profiled too.
+ */
+public class ReplicaRoutingStartup implements ServerConfigStartup {
+
+  @Override
+  public void onStart(ServerConfig serverConfig) {
+    ReplicaRouter router = ReplicaRouter.getInstance();
+    if (router.isEnabled() && serverConfig.getDataSource() != null) {
+      serverConfig.setReadOnlyDataSource(
+          new ReplicaRoutingDataSource(router, serverConfig.getDataSource()));
+      serverConfig.add(new ReplicaWriteListener(router));
+    }
+  }
+}
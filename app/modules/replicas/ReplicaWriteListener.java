@@ -0,0 +1,42 @@
+package modules.replicas;
+
+import io.ebean.event.BeanPersistAdapter;
+import io.ebean.event.BeanPersistRequest;
+
+/**
+ * Tells the router of each bean Ebean saves or deletes, so the session that wrote it reads its
+ * writes from the primary until the replica has caught up.
+ */
+public class ReplicaWriteListener extends BeanPersistAdapter {
+
+  private final ReplicaRouter router;
+
+  public ReplicaWriteListener(ReplicaRouter router) {
+    this.router = router;
+  }
+
+  @Override
+  public boolean isRegisterFor(Class<?> type) {
+    return true;
+  }
+
+  @Override
+  public void postInsert(BeanPersistRequest<?> request) {
+    router.recordWrite();
+  }
+
+  @Override
+  public void postUpdate(BeanPersistRequest<?> request) {
+    router.recordWrite();
+  }
+
+  @Override
+  public void postDelete(BeanPersistRequest<?> request) {
+    router.recordWrite();
+  }
+
+  @Override
+  public void postSoftDelete(BeanPersistRequest<?> request) {
+    router.recordWrite();
+  }
+}
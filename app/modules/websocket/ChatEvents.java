@@ -1,7 +1,5 @@
 package modules.websocket;
 
-import akka.actor.ActorRef;
-import com.fasterxml.jackson.databind.JsonNode;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -10,15 +8,14 @@ import models.ChatGroup;
 import models.Message;
 import models.User;
 import modules.websocket.frames.*;
-import play.libs.Json;
 
 /** A class for sending chat messages to chat groups. */
 public class ChatEvents {
 
-  private ConnectedUsers connectedUsers;
+  private FrameDelivery frameDelivery;
 
   public ChatEvents() {
-    this.connectedUsers = ConnectedUsers.getInstance();
+    this.frameDelivery = FrameDeliveries.getInstance();
   }
 
   /**
@@ -32,27 +29,44 @@ public class ChatEvents {
     Frame frame = new ChatMessageFrame(group.getChatGroupId(), message, user, messageId);
 
     List<User> groupUsers = group.getUsers();
-    ActorRef userWebsocket = connectedUsers.getSocketForUser(user);
 
     for (User currentUser : groupUsers) {
-      if (connectedUsers.isUserConnected(currentUser) && !user.equals(currentUser)) {
-        ActorRef receiverWebsocket = connectedUsers.getSocketForUser(currentUser);
-        JsonNode frameJson = Json.toJson(frame);
-        receiverWebsocket.tell(frameJson.toString(), userWebsocket);
+      if (frameDelivery.isUserConnected(currentUser) && !user.equals(currentUser)) {
+        frameDelivery.send(currentUser, frame);
       }
     }
   }
 
   /**
-   * Broadcast a message to other users in a chat with a user who is going online
+   * Broadcast a message to other users in a chat with a user who is going online. The change is
+   * coalesced by the presence aggregator before it is sent.
    *
    * @param userConnecting the user connecting.
    * @param chatGroups the chat groups for the user.
    */
   void notifyConnect(User userConnecting, List<ChatGroup> chatGroups) {
-    Frame frame = new ConnectedFrame(userConnecting);
+    PresenceAggregator.getInstance()
+        .recordStatusChange(userConnecting, getUsersFromChatGroups(userConnecting, chatGroups));
+  }
+
+  /**
+   * Gets the users contained in a list of chat groups, excluding the given user.
+   *
+   * @param user the user to exclude.
+   * @param chatGroups the list of chat groups to extract users from.
+   * @return the set of users in the chat groups.
+   */
+  private Set<User> getUsersFromChatGroups(User user, List<ChatGroup> chatGroups) {
+    Set<User> users = new HashSet<>();
 
-    notifyUsersFromChatGroups(userConnecting, chatGroups, frame);
+    for (ChatGroup group : chatGroups) {
+      for (User currentUser : group.getUsers()) {
+        if (!user.equals(currentUser)) {
+          users.add(currentUser);
+        }
+      }
+    }
+    return users;
   }
 
   /**
@@ -65,32 +79,30 @@ public class ChatEvents {
   private void notifyUsersFromChatGroups(
       User userNotifying, List<ChatGroup> chatGroups, Frame frame) {
     Set<User> usersToNotify = new HashSet<>();
-    ActorRef userSocket = connectedUsers.getSocketForUser(userNotifying);
 
     for (ChatGroup group : chatGroups) {
       for (User currentUser : group.getUsers()) {
-        if (connectedUsers.isUserConnected(currentUser) && !userNotifying.equals(currentUser)) {
+        if (frameDelivery.isUserConnected(currentUser) && !userNotifying.equals(currentUser)) {
           usersToNotify.add(currentUser);
         }
       }
     }
 
     for (User user : usersToNotify) {
-      ActorRef receiverWebSocket = connectedUsers.getSocketForUser(user);
-      JsonNode frameJson = Json.toJson(frame);
-      receiverWebSocket.tell(frameJson.toString(), userSocket);
+      frameDelivery.send(user, frame);
     }
   }
 
   /**
-   * Broadcast a message to other users in a chat with a user who is going offline
+   * Broadcast a message to other users in a chat with a user who is going offline. The change is
+   * coalesced by the presence aggregator before it is sent.
    *
    * @param userDisconnecting the user who is disconnecting
    */
   void notifyDisconnect(User userDisconnecting, List<ChatGroup> chatGroups) {
-    Frame frame = new DisconnectedFrame(userDisconnecting);
-
-    notifyUsersFromChatGroups(userDisconnecting, chatGroups, frame);
+    PresenceAggregator.getInstance()
+        .recordStatusChange(
+            userDisconnecting, getUsersFromChatGroups(userDisconnecting, chatGroups));
   }
 
 
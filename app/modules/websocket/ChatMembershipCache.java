@@ -0,0 +1,82 @@
+package modules.websocket;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import models.ChatGroup;
+
+/**
+ * Caches the chat groups a websocket's user belongs to so chat messages sent over the socket don't
+ * need a database lookup. Entries are only trusted for a short time so that changes to the members
+ * of a group are picked up. Only accessed from the owning websocket actor, so it is not thread safe.
+ */
+class ChatMembershipCache {
+
+  private final long ttlMillis;
+  private final Map<Integer, CachedChatGroup> chatGroups = new HashMap<>();
+
+  ChatMembershipCache(Duration ttl) {
+    this.ttlMillis = ttl.toMillis();
+  }
+
+  /**
+   * Caches a list of chat groups.
+   *
+   * @param groups the chat groups to cache.
+   */
+  void putAll(List<ChatGroup> groups) {
+    for (ChatGroup group : groups) {
+      put(group);
+    }
+  }
+
+  /**
+   * Caches a chat group.
+   *
+   * @param group the chat group to cache.
+   */
+  void put(ChatGroup group) {
+    chatGroups.put(
+        group.getChatGroupId(), new CachedChatGroup(group, System.currentTimeMillis() + ttlMillis));
+  }
+
+  /**
+   * Gets a cached chat group if it has not expired.
+   *
+   * @param chatGroupId the id of the chat group.
+   * @return the chat group, or empty if it is not cached or has expired.
+   */
+  Optional<ChatGroup> get(int chatGroupId) {
+    CachedChatGroup cached = chatGroups.get(chatGroupId);
+    if (cached == null) {
+      return Optional.empty();
+    }
+    if (cached.expiresAt < System.currentTimeMillis()) {
+      chatGroups.remove(chatGroupId);
+      return Optional.empty();
+    }
+    return Optional.of(cached.chatGroup);
+  }
+
+  /**
+   * Removes a chat group from the cache.
+   *
+   * @param chatGroupId the id of the chat group.
+   */
+  void remove(int chatGroupId) {
+    chatGroups.remove(chatGroupId);
+  }
+
+  /** A chat group and the time that it should be reloaded at. */
+  private static class CachedChatGroup {
+    private final ChatGroup chatGroup;
+    private final long expiresAt;
+
+    private CachedChatGroup(ChatGroup chatGroup, long expiresAt) {
+      this.chatGroup = chatGroup;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package modules.websocket;
+
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Switches websocket frame delivery to the cluster delivery when the application starts, and starts
+ * the presence aggregator delivering through it.
+ */
+@Singleton
+public class ClusterDeliveryStarter {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  @Inject
+  public ClusterDeliveryStarter(ActorSystem actorSystem, Config config) {
+    FrameDeliveries.setInstance(new ClusterFrameDelivery(actorSystem));
+    PresenceAggregator.initialise(config);
+    log.info(
+        "Delivering websocket frames through the cluster from "
+            + Cluster.get(actorSystem).selfAddress());
+  }
+}
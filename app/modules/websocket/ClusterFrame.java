@@ -0,0 +1,56 @@
+package modules.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import modules.websocket.frames.CoalescingFrame;
+import modules.websocket.frames.Frame;
+import modules.websocket.frames.PresenceSnapshot;
+import modules.websocket.frames.RemoteFrame;
+import modules.websocket.frames.RemotePresenceSnapshotFrame;
+import play.libs.Json;
+
+/**
+ * Envelope for a frame published to a user's topic in the cluster. Subscribers on the same node get
+ * the original frame, while the frame is only written as JSON when it is sent to another node.
+ */
+public class ClusterFrame implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient Frame frame;
+  private final String type;
+  private final String coalescingKey;
+  private String json;
+
+  ClusterFrame(Frame frame) {
+    this.frame = frame;
+    this.type = frame.getType();
+    this.coalescingKey =
+        frame instanceof CoalescingFrame ? ((CoalescingFrame) frame).getCoalescingKey() : type;
+  }
+
+  /**
+   * Gets the frame to send to the client.
+   *
+   * @return the original frame, or a copy read from JSON if it came from another node. Presence
+   *     snapshots are read as snapshots, so they can be merged with the ones made on this node.
+   */
+  public Frame getFrame() {
+    if (frame != null) {
+      return frame;
+    }
+    JsonNode contents = Json.parse(json);
+    return type.equals(PresenceSnapshot.TYPE)
+        ? RemotePresenceSnapshotFrame.fromJson(contents)
+        : new RemoteFrame(type, coalescingKey, contents);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    if (json == null) {
+      json = Json.toJson(frame).toString();
+    }
+    out.defaultWriteObject();
+  }
+}
@@ -0,0 +1,192 @@
+package modules.websocket;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Address;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.ClusterEvent;
+import akka.cluster.ddata.DistributedData;
+import akka.cluster.ddata.Key;
+import akka.cluster.ddata.ORMultiMap;
+import akka.cluster.ddata.ORMultiMapKey;
+import akka.cluster.ddata.Replicator;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import models.User;
+import modules.websocket.frames.Frame;
+
+/**
+ * Delivers frames to users connected to any node of an Akka cluster. Every websocket subscribes to
+ * a topic for its user, and frames are published to the topic of the recipient. Which users are
+ * connected to which nodes is replicated to every node, so presence checks don't need to ask the
+ * other nodes.
+ */
+public class ClusterFrameDelivery implements FrameDelivery {
+
+  private static final Key<ORMultiMap<String, String>> PRESENCE_KEY =
+      ORMultiMapKey.create("websocket-presence");
+
+  private final Cluster cluster;
+  private final ActorRef mediator;
+  private final ActorRef replicator;
+  private final String selfAddress;
+
+  // Websockets open on this node, by user
+  private final Map<User, Set<ActorRef>> localWebSockets = new ConcurrentHashMap<>();
+  // The nodes that each user is connected to, as last replicated to this node
+  private volatile Map<String, Set<String>> presence = Collections.emptyMap();
+
+  /**
+   * Creates a cluster delivery. The actor system must be configured with the cluster provider.
+   *
+   * @param actorSystem the actor system of this node.
+   */
+  public ClusterFrameDelivery(ActorSystem actorSystem) {
+    this.cluster = Cluster.get(actorSystem);
+    this.mediator = DistributedPubSub.get(actorSystem).mediator();
+    this.replicator = DistributedData.get(actorSystem).replicator();
+    this.selfAddress = cluster.selfAddress().toString();
+
+    actorSystem.actorOf(
+        Props.create(PresenceListener.class, () -> new PresenceListener(this)),
+        "websocket-presence");
+  }
+
+  @Override
+  public void register(User user, ActorRef webSocket, ActorRef out) {
+    localWebSockets.computeIfAbsent(user, key -> ConcurrentHashMap.newKeySet()).add(webSocket);
+    mediator.tell(new DistributedPubSubMediator.Subscribe(topic(user), webSocket), webSocket);
+    updatePresence(map -> map.addBinding(cluster, userKey(user), selfAddress));
+  }
+
+  @Override
+  public void unregister(User user, ActorRef webSocket, ActorRef out) {
+    mediator.tell(new DistributedPubSubMediator.Unsubscribe(topic(user), webSocket), webSocket);
+
+    Set<ActorRef> webSockets =
+        localWebSockets.computeIfPresent(
+            user,
+            (key, sockets) -> {
+              sockets.remove(webSocket);
+              return sockets.isEmpty() ? null : sockets;
+            });
+    if (webSockets == null) {
+      updatePresence(map -> map.removeBinding(cluster, userKey(user), selfAddress));
+    }
+  }
+
+  @Override
+  public boolean isUserConnected(User user) {
+    if (localWebSockets.containsKey(user)) {
+      return true;
+    }
+
+    // This node's own entry may be out of date, so only other nodes are trusted here
+    Set<String> nodes = presence.getOrDefault(userKey(user), Collections.emptySet());
+    for (String node : nodes) {
+      if (!node.equals(selfAddress)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void send(User user, Frame frame) {
+    mediator.tell(
+        new DistributedPubSubMediator.Publish(topic(user), new ClusterFrame(frame)),
+        ActorRef.noSender());
+  }
+
+  /**
+   * Updates this node's replica of the presence, which is then replicated to the other nodes.
+   *
+   * @param modify the change to make to the presence.
+   */
+  private void updatePresence(
+      Function<ORMultiMap<String, String>, ORMultiMap<String, String>> modify) {
+    replicator.tell(
+        new Replicator.Update<>(
+            PRESENCE_KEY, ORMultiMap.create(), Replicator.writeLocal(), modify),
+        ActorRef.noSender());
+  }
+
+  private static String topic(User user) {
+    return "websocket-user-" + user.getUserId();
+  }
+
+  private static String userKey(User user) {
+    return Integer.toString(user.getUserId());
+  }
+
+  /**
+   * Keeps the local copy of the replicated presence up to date, and removes the users of nodes that
+   * have left the cluster.
+   */
+  private static class PresenceListener extends AbstractActor {
+
+    private final ClusterFrameDelivery delivery;
+
+    PresenceListener(ClusterFrameDelivery delivery) {
+      this.delivery = delivery;
+    }
+
+    @Override
+    public void preStart() {
+      delivery.replicator.tell(new Replicator.Subscribe<>(PRESENCE_KEY, self()), self());
+      delivery.cluster.subscribe(self(), ClusterEvent.MemberRemoved.class);
+    }
+
+    @Override
+    public void postStop() {
+      delivery.cluster.unsubscribe(self());
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+          .match(Replicator.Changed.class, this::receivePresence)
+          .match(
+              ClusterEvent.MemberRemoved.class,
+              removed -> removeNode(removed.member().address()))
+          .match(Replicator.UpdateResponse.class, response -> {})
+          .build();
+    }
+
+    /**
+     * Keeps a copy of the replicated presence that is cheap to read.
+     *
+     * @param changed the latest presence.
+     */
+    private void receivePresence(Replicator.Changed<?> changed) {
+      delivery.presence = changed.get(PRESENCE_KEY).getEntries();
+    }
+
+    /**
+     * Removes every user connected to a node that has left the cluster.
+     *
+     * @param address the address of the node.
+     */
+    private void removeNode(Address address) {
+      String node = address.toString();
+      for (Map.Entry<String, Set<String>> entry : delivery.presence.entrySet()) {
+        if (entry.getValue().contains(node)) {
+          delivery.replicator.tell(
+              new Replicator.Update<>(
+                  PRESENCE_KEY,
+                  ORMultiMap.create(),
+                  Replicator.writeLocal(),
+                  map -> map.removeBinding(delivery.cluster, entry.getKey(), node)),
+              self());
+        }
+      }
+    }
+  }
+}
@@ -3,8 +3,8 @@ package modules.websocket;
 import akka.actor.ActorRef;
 import models.User;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Defines all authenticated connected users that are connected via websockets
@@ -18,7 +18,7 @@ public class ConnectedUsers {
      * Creates connected users
      */
     private ConnectedUsers() {
-        currentlyConnectedUsers = new HashMap<>();
+        currentlyConnectedUsers = new ConcurrentHashMap<>();
     }
 
 
@@ -54,6 +54,17 @@ public class ConnectedUsers {
     }
 
 
+    /**
+     * Removes a connected user only if they are still connected with the given websocket. Stops a
+     * closing socket from removing a newer socket when a client reconnects quickly.
+     * @param user The user object
+     * @param out The websocket object that is closing
+     */
+    public void removeConnectedUser(User user, ActorRef out) {
+        currentlyConnectedUsers.remove(user, out);
+    }
+
+
     /**
      * Checks if a user is currently connected.
      *
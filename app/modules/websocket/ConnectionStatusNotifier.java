@@ -1,15 +1,10 @@
 package modules.websocket;
 
-import akka.actor.ActorRef;
-import com.fasterxml.jackson.databind.JsonNode;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import models.TripComposite;
 import models.User;
-import modules.websocket.frames.ConnectedFrame;
-import modules.websocket.frames.DisconnectedFrame;
-import play.libs.Json;
 
 /**
  * Notifies users when user's disconnect and connect
@@ -17,10 +12,10 @@ import play.libs.Json;
 class ConnectionStatusNotifier {
 
 
-  private ConnectedUsers connectedUsers;
+  private PresenceAggregator presenceAggregator;
 
   ConnectionStatusNotifier() {
-    this.connectedUsers = ConnectedUsers.getInstance();
+    this.presenceAggregator = PresenceAggregator.getInstance();
   }
 
      /**
@@ -35,7 +30,7 @@ class ConnectionStatusNotifier {
 
   /**
    * Notifies that a user has either connected or disconnected to all users that they share a trip
-   * with
+   * with. The change is coalesced by the presence aggregator before it is sent.
    * @param user The user that connected or disconnected
    * @param trips The trip that the user is apart of
    */
@@ -51,20 +46,7 @@ class ConnectionStatusNotifier {
       }
     }
 
-
-    ActorRef userWebsocket = connectedUsers.getSocketForUser(user);
-
-    for (User userToNotify : usersToNotify) {
-      ActorRef receiverWebsocket = connectedUsers.getSocketForUser(userToNotify);
-
-      if (connectionStatus == ConnectionStatus.CONNECTED) {
-          JsonNode frameJson = Json.toJson(new ConnectedFrame(user));
-          receiverWebsocket.tell(frameJson.toString(), userWebsocket);
-      } else {
-          JsonNode frameJson = Json.toJson(new DisconnectedFrame(user));
-          receiverWebsocket.tell(frameJson.toString(), userWebsocket);
-      }
-    }
+    presenceAggregator.recordStatusChange(user, usersToNotify);
   }
 
   /**
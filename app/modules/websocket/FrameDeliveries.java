@@ -0,0 +1,33 @@
+package modules.websocket;
+
+/**
+ * Holds the frame delivery used by the websockets and notifiers. Frames are delivered locally
+ * unless the cluster delivery has been started.
+ */
+public class FrameDeliveries {
+
+  private static FrameDelivery instance;
+
+  private FrameDeliveries() {}
+
+  /**
+   * Gets the frame delivery in use.
+   *
+   * @return the frame delivery.
+   */
+  public static synchronized FrameDelivery getInstance() {
+    if (instance == null) {
+      instance = new LocalFrameDelivery(ConnectedUsers.getInstance());
+    }
+    return instance;
+  }
+
+  /**
+   * Replaces the frame delivery, e.g. with the cluster delivery on startup.
+   *
+   * @param frameDelivery the frame delivery to use.
+   */
+  public static synchronized void setInstance(FrameDelivery frameDelivery) {
+    instance = frameDelivery;
+  }
+}
@@ -0,0 +1,47 @@
+package modules.websocket;
+
+import akka.actor.ActorRef;
+import models.User;
+import modules.websocket.frames.Frame;
+
+/**
+ * Delivers frames to the websockets of users and keeps track of which users are connected. The
+ * local delivery only knows about websockets on this node, while the cluster delivery reaches
+ * users connected to any node.
+ */
+public interface FrameDelivery {
+
+  /**
+   * Registers a websocket that a user has opened on this node.
+   *
+   * @param user the user that owns the websocket.
+   * @param webSocket the websocket actor.
+   * @param out the actor that writes frames to the client.
+   */
+  void register(User user, ActorRef webSocket, ActorRef out);
+
+  /**
+   * Removes a websocket that has been closed.
+   *
+   * @param user the user that owns the websocket.
+   * @param webSocket the websocket actor.
+   * @param out the actor that writes frames to the client.
+   */
+  void unregister(User user, ActorRef webSocket, ActorRef out);
+
+  /**
+   * Checks if a user has a websocket open.
+   *
+   * @param user the user to check.
+   * @return true if the user is connected.
+   */
+  boolean isUserConnected(User user);
+
+  /**
+   * Sends a frame to every websocket a user has open.
+   *
+   * @param user the user to send the frame to.
+   * @param frame the frame to send.
+   */
+  void send(User user, Frame frame);
+}
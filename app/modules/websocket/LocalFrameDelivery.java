@@ -0,0 +1,41 @@
+package modules.websocket;
+
+import akka.actor.ActorRef;
+import models.User;
+import modules.websocket.frames.Frame;
+
+/**
+ * Delivers frames to the websockets connected to this node. Used when the application runs as a
+ * single node.
+ */
+public class LocalFrameDelivery implements FrameDelivery {
+
+  private final ConnectedUsers connectedUsers;
+
+  public LocalFrameDelivery(ConnectedUsers connectedUsers) {
+    this.connectedUsers = connectedUsers;
+  }
+
+  @Override
+  public void register(User user, ActorRef webSocket, ActorRef out) {
+    connectedUsers.addConnectedUser(user, out);
+  }
+
+  @Override
+  public void unregister(User user, ActorRef webSocket, ActorRef out) {
+    connectedUsers.removeConnectedUser(user, out);
+  }
+
+  @Override
+  public boolean isUserConnected(User user) {
+    return connectedUsers.isUserConnected(user);
+  }
+
+  @Override
+  public void send(User user, Frame frame) {
+    ActorRef out = connectedUsers.getSocketForUser(user);
+    if (out != null) {
+      out.tell(frame, ActorRef.noSender());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package modules.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the outbound buffer stats of every open websocket connection so they can be reported.
+ */
+public class OutboundBufferMetrics {
+
+  private static OutboundBufferMetrics instance;
+
+  private final Set<OutboundBufferStats> connections = ConcurrentHashMap.newKeySet();
+  // Counters of connections that have closed, so the totals never go down
+  private final AtomicLong closedFramesDropped = new AtomicLong();
+  private final AtomicLong closedResyncs = new AtomicLong();
+
+  private OutboundBufferMetrics() {}
+
+  /**
+   * Singleton getter for the outbound buffer metrics.
+   *
+   * @return the instance of the outbound buffer metrics.
+   */
+  public static synchronized OutboundBufferMetrics getInstance() {
+    if (instance == null) {
+      instance = new OutboundBufferMetrics();
+    }
+    return instance;
+  }
+
+  void register(OutboundBufferStats stats) {
+    connections.add(stats);
+  }
+
+  void unregister(OutboundBufferStats stats) {
+    if (connections.remove(stats)) {
+      closedFramesDropped.addAndGet(stats.getTotalFramesDropped());
+      closedResyncs.addAndGet(stats.getResyncs());
+    }
+  }
+
+  /**
+   * Gets the stats of every open connection.
+   *
+   * @return the stats of the open connections.
+   */
+  public List<OutboundBufferStats> getConnections() {
+    return new ArrayList<>(connections);
+  }
+
+  /**
+   * Gets the number of frames waiting to be written across all connections.
+   *
+   * @return the total queue depth.
+   */
+  public int getTotalQueueDepth() {
+    return connections.stream().mapToInt(OutboundBufferStats::getQueueDepth).sum();
+  }
+
+  /**
+   * Gets the number of frames that have been dropped since the application started.
+   *
+   * @return the total number of dropped frames.
+   */
+  public long getTotalFramesDropped() {
+    return closedFramesDropped.get()
+        + connections.stream().mapToLong(OutboundBufferStats::getTotalFramesDropped).sum();
+  }
+
+  /**
+   * Gets the number of clients that have been told to resync since the application started.
+   *
+   * @return the total number of resyncs.
+   */
+  public long getTotalResyncs() {
+    return closedResyncs.get()
+        + connections.stream().mapToLong(OutboundBufferStats::getResyncs).sum();
+  }
+}
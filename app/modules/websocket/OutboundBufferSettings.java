@@ -0,0 +1,78 @@
+package modules.websocket;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValue;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the buffer of frames waiting to be written to each websocket client.
+ */
+public class OutboundBufferSettings {
+
+  private final int bufferSize;
+  private final Duration resyncGracePeriod;
+  private final OverflowPolicy defaultPolicy;
+  private final Map<String, OverflowPolicy> policies;
+
+  /**
+   * Creates outbound buffer settings.
+   *
+   * @param bufferSize the most frames that can wait to be written to a client.
+   * @param resyncGracePeriod how long a client has to read a resync frame before it is closed.
+   * @param defaultPolicy the policy of frame types without their own policy.
+   * @param policies the overflow policy of each frame type.
+   */
+  public OutboundBufferSettings(
+      int bufferSize,
+      Duration resyncGracePeriod,
+      OverflowPolicy defaultPolicy,
+      Map<String, OverflowPolicy> policies) {
+    this.bufferSize = bufferSize;
+    this.resyncGracePeriod = resyncGracePeriod;
+    this.defaultPolicy = defaultPolicy;
+    this.policies = policies;
+  }
+
+  /**
+   * Reads the outbound buffer settings from the websocket.outbound block of the application config.
+   *
+   * @param config the application config.
+   * @return the outbound buffer settings.
+   */
+  public static OutboundBufferSettings fromConfig(Config config) {
+    Config outboundConfig = config.getConfig("websocket.outbound");
+
+    Map<String, OverflowPolicy> policies = new HashMap<>();
+    for (Map.Entry<String, ConfigValue> policy :
+        outboundConfig.getObject("policies").entrySet()) {
+      policies.put(
+          policy.getKey(), OverflowPolicy.fromConfig(policy.getValue().unwrapped().toString()));
+    }
+
+    return new OutboundBufferSettings(
+        outboundConfig.getInt("bufferSize"),
+        outboundConfig.getDuration("resyncGracePeriod"),
+        OverflowPolicy.fromConfig(outboundConfig.getString("defaultPolicy")),
+        policies);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public Duration getResyncGracePeriod() {
+    return resyncGracePeriod;
+  }
+
+  /**
+   * Gets the overflow policy for a type of frame.
+   *
+   * @param frameType the type of the frame.
+   * @return the overflow policy for the frame type.
+   */
+  public OverflowPolicy getPolicy(String frameType) {
+    return policies.getOrDefault(frameType, defaultPolicy);
+  }
+}
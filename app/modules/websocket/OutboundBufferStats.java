@@ -0,0 +1,110 @@
+package modules.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the outbound frame buffer of a single websocket connection. Written by the stream
+ * the buffer runs in and read by anything reporting on the websockets.
+ */
+public class OutboundBufferStats {
+
+  private final int userId;
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicLong framesQueued = new AtomicLong();
+  private final AtomicLong framesCoalesced = new AtomicLong();
+  private final AtomicLong resyncs = new AtomicLong();
+  private final Map<String, AtomicLong> framesDropped = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the stats for a connection.
+   *
+   * @param userId the id of the user that owns the connection.
+   */
+  public OutboundBufferStats(int userId) {
+    this.userId = userId;
+  }
+
+  void setQueueDepth(int depth) {
+    queueDepth.set(depth);
+  }
+
+  void recordQueued() {
+    framesQueued.incrementAndGet();
+  }
+
+  void recordCoalesced() {
+    framesCoalesced.incrementAndGet();
+  }
+
+  void recordDropped(String frameType) {
+    framesDropped.computeIfAbsent(frameType, type -> new AtomicLong()).incrementAndGet();
+  }
+
+  void recordResync() {
+    resyncs.incrementAndGet();
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  /**
+   * Gets the number of frames waiting to be written to the client.
+   *
+   * @return the queue depth.
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * Gets the number of frames that have been sent to the buffer.
+   *
+   * @return the number of frames queued.
+   */
+  public long getFramesQueued() {
+    return framesQueued.get();
+  }
+
+  /**
+   * Gets the number of frames that were merged into a frame that was already waiting.
+   *
+   * @return the number of frames coalesced.
+   */
+  public long getFramesCoalesced() {
+    return framesCoalesced.get();
+  }
+
+  /**
+   * Gets the number of times the client was told to resync because it fell too far behind.
+   *
+   * @return the number of resyncs.
+   */
+  public long getResyncs() {
+    return resyncs.get();
+  }
+
+  /**
+   * Gets the number of frames that were discarded, by frame type.
+   *
+   * @return the number of dropped frames of each type.
+   */
+  public Map<String, Long> getFramesDropped() {
+    Map<String, Long> dropped = new HashMap<>();
+    framesDropped.forEach((type, count) -> dropped.put(type, count.get()));
+    return dropped;
+  }
+
+  /**
+   * Gets the total number of frames that were discarded.
+   *
+   * @return the number of dropped frames.
+   */
+  public long getTotalFramesDropped() {
+    return framesDropped.values().stream().mapToLong(AtomicLong::get).sum();
+  }
+}
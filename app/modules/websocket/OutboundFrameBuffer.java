@@ -0,0 +1,235 @@
+package modules.websocket;
+
+import akka.stream.Attributes;
+import akka.stream.FlowShape;
+import akka.stream.Inlet;
+import akka.stream.Outlet;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import akka.stream.stage.TimerGraphStageLogic;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import modules.websocket.frames.CoalescingFrame;
+import modules.websocket.frames.Frame;
+import modules.websocket.frames.ResyncFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Buffers the frames waiting to be written to a websocket client. Frames are always accepted from
+ * the websocket actor, and once the buffer is full the overflow policy of each frame type decides
+ * what happens: map pings are dropped oldest first, trip updates and presence are coalesced so only
+ * the latest is kept, and frames that must not be dropped (such as chat) make the client resync.
+ * A client that has to resync is sent a resync frame and then disconnected.
+ */
+public class OutboundFrameBuffer extends GraphStage<FlowShape<Frame, Frame>> {
+
+  private static final Logger log = LoggerFactory.getLogger(OutboundFrameBuffer.class);
+  private static final String RESYNC_TIMER = "resync";
+
+  private final Inlet<Frame> in = Inlet.create("OutboundFrameBuffer.in");
+  private final Outlet<Frame> out = Outlet.create("OutboundFrameBuffer.out");
+  private final FlowShape<Frame, Frame> shape = FlowShape.of(in, out);
+
+  private final OutboundBufferSettings settings;
+  private final OutboundBufferStats stats;
+
+  /**
+   * Creates an outbound buffer for a connection.
+   *
+   * @param settings the buffer size and overflow policies.
+   * @param stats the stats of the connection to record queue depth and dropped frames in.
+   */
+  public OutboundFrameBuffer(OutboundBufferSettings settings, OutboundBufferStats stats) {
+    this.settings = settings;
+    this.stats = stats;
+  }
+
+  @Override
+  public FlowShape<Frame, Frame> shape() {
+    return shape;
+  }
+
+  @Override
+  public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+    return new TimerGraphStageLogic(shape) {
+      private final LinkedList<Frame> buffer = new LinkedList<>();
+      private boolean resyncing = false;
+
+      {
+        setHandler(
+            in,
+            new AbstractInHandler() {
+              @Override
+              public void onPush() {
+                Frame frame = grab(in);
+                if (!resyncing) {
+                  stats.recordQueued();
+                  enqueue(frame);
+                }
+                if (isAvailable(out) && !buffer.isEmpty()) {
+                  pushNext();
+                }
+                if (!isClosed(in) && !hasBeenPulled(in)) {
+                  pull(in);
+                }
+              }
+
+              @Override
+              public void onUpstreamFinish() {
+                if (buffer.isEmpty()) {
+                  completeStage();
+                }
+              }
+            });
+
+        setHandler(
+            out,
+            new AbstractOutHandler() {
+              @Override
+              public void onPull() {
+                if (!buffer.isEmpty()) {
+                  pushNext();
+                }
+              }
+            });
+      }
+
+      @Override
+      public void preStart() {
+        OutboundBufferMetrics.getInstance().register(stats);
+        pull(in);
+      }
+
+      @Override
+      public void postStop() {
+        OutboundBufferMetrics.getInstance().unregister(stats);
+      }
+
+      @Override
+      public void onTimer(Object timerKey) {
+        log.info(
+            String.format("Closing websocket of user %d, resync was not read", stats.getUserId()));
+        completeStage();
+      }
+
+      /** Pushes the oldest waiting frame and completes if nothing else will be sent. */
+      private void pushNext() {
+        push(out, buffer.poll());
+        stats.setQueueDepth(buffer.size());
+
+        if (buffer.isEmpty() && (resyncing || isClosed(in))) {
+          completeStage();
+        }
+      }
+
+      /**
+       * Adds a frame to the buffer, applying the overflow policy of the frame if it is full.
+       *
+       * @param frame the frame to add.
+       */
+      private void enqueue(Frame frame) {
+        OverflowPolicy policy = settings.getPolicy(frame.getType());
+
+        if (policy == OverflowPolicy.COALESCE_LATEST && coalesce(frame)) {
+          stats.recordCoalesced();
+          return;
+        }
+
+        if (buffer.size() >= settings.getBufferSize() && !dropOldest()) {
+          if (policy == OverflowPolicy.DROP_OLDEST) {
+            stats.recordDropped(frame.getType());
+          } else {
+            resync(frame);
+          }
+          return;
+        }
+
+        buffer.add(frame);
+        stats.setQueueDepth(buffer.size());
+      }
+
+      /**
+       * Replaces a waiting frame with the same coalescing key as the given frame.
+       *
+       * @param frame the newer frame.
+       * @return true if the frame was coalesced into a waiting frame.
+       */
+      private boolean coalesce(Frame frame) {
+        String key = coalescingKey(frame);
+        ListIterator<Frame> waiting = buffer.listIterator();
+
+        while (waiting.hasNext()) {
+          Frame waitingFrame = waiting.next();
+          if (waitingFrame.getType().equals(frame.getType())
+              && coalescingKey(waitingFrame).equals(key)) {
+            if (waitingFrame instanceof CoalescingFrame && frame instanceof CoalescingFrame) {
+              waiting.set(((CoalescingFrame) waitingFrame).coalesce((CoalescingFrame) frame));
+            } else {
+              waiting.set(frame);
+            }
+            return true;
+          }
+        }
+        return false;
+      }
+
+      private String coalescingKey(Frame frame) {
+        return frame instanceof CoalescingFrame
+            ? ((CoalescingFrame) frame).getCoalescingKey()
+            : frame.getType();
+      }
+
+      /**
+       * Removes the oldest waiting frame that is allowed to be dropped.
+       *
+       * @return true if a frame was dropped to make room.
+       */
+      private boolean dropOldest() {
+        Iterator<Frame> waiting = buffer.iterator();
+
+        while (waiting.hasNext()) {
+          Frame waitingFrame = waiting.next();
+          if (settings.getPolicy(waitingFrame.getType()) == OverflowPolicy.DROP_OLDEST) {
+            waiting.remove();
+            stats.recordDropped(waitingFrame.getType());
+            return true;
+          }
+        }
+        return false;
+      }
+
+      /**
+       * Discards the waiting frames and sends the client a resync frame, after which the socket is
+       * closed. If the client does not read it in time the socket is closed anyway.
+       *
+       * @param frame the frame that could not be buffered.
+       */
+      private void resync(Frame frame) {
+        log.warn(
+            String.format(
+                "Websocket of user %d is too slow, %d frames waiting, telling it to resync",
+                stats.getUserId(), buffer.size()));
+
+        stats.recordDropped(frame.getType());
+        for (Frame waitingFrame : buffer) {
+          stats.recordDropped(waitingFrame.getType());
+        }
+        stats.recordResync();
+
+        buffer.clear();
+        buffer.add(new ResyncFrame("Too many frames were waiting to be sent"));
+        stats.setQueueDepth(buffer.size());
+        resyncing = true;
+
+        scheduleOnce(
+            RESYNC_TIMER,
+            FiniteDuration.create(settings.getResyncGracePeriod().toMillis(), "millis"));
+      }
+    };
+  }
+}
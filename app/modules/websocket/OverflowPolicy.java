@@ -0,0 +1,24 @@
+package modules.websocket;
+
+/**
+ * What to do with an outbound frame of a given type when a client is not reading its frames as
+ * fast as they are sent.
+ */
+public enum OverflowPolicy {
+  /** The oldest waiting frames of this kind are discarded to make room. */
+  DROP_OLDEST,
+  /** A waiting frame with the same key is replaced by the latest frame. */
+  COALESCE_LATEST,
+  /** The frame must arrive, so the client is told to resync and disconnected instead. */
+  NEVER_DROP;
+
+  /**
+   * Gets a policy from its name in the application config, e.g. drop-oldest.
+   *
+   * @param name the name of the policy.
+   * @return the overflow policy.
+   */
+  public static OverflowPolicy fromConfig(String name) {
+    return valueOf(name.trim().toUpperCase().replace('-', '_'));
+  }
+}
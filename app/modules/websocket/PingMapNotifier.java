@@ -1,24 +1,21 @@
 package modules.websocket;
 
-import akka.actor.ActorRef;
-import com.fasterxml.jackson.databind.JsonNode;
 import java.util.HashSet;
 import java.util.Set;
 import models.TripComposite;
 import models.User;
 import modules.websocket.frames.PingMapFrame;
-import play.libs.Json;
 
 /**
  * Notifies users of a trip when a map ping event is triggered.
  */
 class PingMapNotifier {
-  private ConnectedUsers connectedUsers;
+  private FrameDelivery frameDelivery;
   private PingMapFrame pingMapFrame;
   private TripComposite tripNode;
 
   PingMapNotifier(PingMapFrame pingMapFrame, TripComposite tripNode) {
-    this.connectedUsers = ConnectedUsers.getInstance();
+    this.frameDelivery = FrameDeliveries.getInstance();
     this.pingMapFrame = pingMapFrame;
     this.tripNode = tripNode;
   }
@@ -31,13 +28,8 @@ class PingMapNotifier {
   void notifyUsers(User user) {
     Set<User> usersToNotify = getUsersToNotify(user);
 
-    ActorRef userWebSocket = connectedUsers.getSocketForUser(user);
-
     for (User userToNotify : usersToNotify) {
-      ActorRef receiverWebSocket = this.connectedUsers.getSocketForUser(userToNotify);
-
-      JsonNode frameJson = Json.toJson(pingMapFrame);
-      receiverWebSocket.tell(frameJson.toString(), userWebSocket);
+      frameDelivery.send(userToNotify, pingMapFrame);
     }
   }
 
@@ -51,7 +43,7 @@ class PingMapNotifier {
 
     for (User currentUser : this.tripNode.getUsers()) {
 
-      if (this.connectedUsers.isUserConnected(currentUser) && !user.equals(currentUser)) {
+      if (this.frameDelivery.isUserConnected(currentUser) && !user.equals(currentUser)) {
         usersToNotify.add(currentUser);
       }
     }
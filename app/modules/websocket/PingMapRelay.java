@@ -0,0 +1,244 @@
+package modules.websocket;
+
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import models.TripComposite;
+import models.User;
+import modules.websocket.frames.ErrorFrame;
+import modules.websocket.frames.PingMapFrame;
+import repository.TripRepository;
+
+/**
+ * Relays the map pings a user sends for one trip to the other users of the trip. The members of
+ * the trip are loaded once, when the first ping is sent, and kept for the life of the websocket.
+ * Pings are sent on at most once per interval, and pings sent in between are coalesced so only the
+ * latest position is sent.
+ */
+public class PingMapRelay extends AbstractActorWithTimers {
+
+  private static final Object THROTTLE_TIMER = "throttle";
+
+  private static final String MAX_PINGS_PER_SECOND_KEY = "websocket.pingMap.maxPingsPerSecond";
+  private static final int DEFAULT_MAX_PINGS_PER_SECOND = 5;
+  // Past a ping each millisecond the interval would round down to no throttling at all
+  private static final int MOST_PINGS_PER_SECOND = 1000;
+
+  private static final AtomicLong pingsReceived = new AtomicLong();
+  private static final AtomicLong pingsRelayed = new AtomicLong();
+  private static final AtomicLong tripLoads = new AtomicLong();
+
+  private final User user;
+  private final int tripId;
+  private final ActorRef out;
+  private final TripRepository tripRepository;
+  private final Duration minInterval;
+
+  private TripComposite trip;
+  private boolean loading = false;
+  private boolean denied = false;
+  private boolean throttled = false;
+  private PingMapFrame pendingPing;
+
+  /**
+   * Creates a relay for the pings a user sends for a trip.
+   *
+   * @param user the user sending the pings.
+   * @param tripId the id of the trip the pings are for.
+   * @param out the websocket of the user.
+   * @param tripRepository the trip repository.
+   * @param minInterval the least time between two relayed pings.
+   */
+  public PingMapRelay(
+      User user, int tripId, ActorRef out, TripRepository tripRepository, Duration minInterval) {
+    this.user = user;
+    this.tripId = tripId;
+    this.out = out;
+    this.tripRepository = tripRepository;
+    this.minInterval = minInterval;
+  }
+
+  /**
+   * Defines how to create a ping relay.
+   *
+   * @param user the user sending the pings.
+   * @param tripId the id of the trip the pings are for.
+   * @param out the websocket of the user.
+   * @param tripRepository the trip repository.
+   * @param minInterval the least time between two relayed pings.
+   * @return the props of the relay.
+   */
+  public static Props props(
+      User user, int tripId, ActorRef out, TripRepository tripRepository, Duration minInterval) {
+    return Props.create(PingMapRelay.class, user, tripId, out, tripRepository, minInterval);
+  }
+
+  /**
+   * Gets the least time between two relayed pings, from the most pings a second that are relayed
+   * for a trip.
+   *
+   * @param config the application config.
+   * @return the least time between two relayed pings.
+   * @throws ConfigException.BadValue if the pings a second are not between 1 and 1000.
+   */
+  public static Duration minInterval(Config config) {
+    if (!config.hasPath(MAX_PINGS_PER_SECOND_KEY)) {
+      return Duration.ofMillis(1000 / DEFAULT_MAX_PINGS_PER_SECOND);
+    }
+
+    int maxPingsPerSecond = config.getInt(MAX_PINGS_PER_SECOND_KEY);
+    if (maxPingsPerSecond < 1 || maxPingsPerSecond > MOST_PINGS_PER_SECOND) {
+      throw new ConfigException.BadValue(
+          config.getValue(MAX_PINGS_PER_SECOND_KEY).origin(),
+          MAX_PINGS_PER_SECOND_KEY,
+          "must be between 1 and " + MOST_PINGS_PER_SECOND);
+    }
+    return Duration.ofMillis(1000 / maxPingsPerSecond);
+  }
+
+  @Override
+  public Receive createReceive() {
+    return receiveBuilder()
+        .match(PingMapFrame.class, this::receivePing)
+        .match(TripLoaded.class, this::receiveTrip)
+        .matchEquals(THROTTLE_TIMER, timer -> receiveThrottleTimer())
+        .build();
+  }
+
+  /**
+   * Relays a ping straight away if one has not been relayed recently, otherwise keeps it until the
+   * interval is up. The trip is loaded first if it has not been already.
+   *
+   * @param ping the ping sent by the user.
+   */
+  private void receivePing(PingMapFrame ping) {
+    pingsReceived.incrementAndGet();
+    if (denied) {
+      return;
+    }
+
+    if (trip == null || throttled) {
+      pendingPing = ping;
+      if (trip == null && !loading) {
+        loadTrip();
+      }
+      return;
+    }
+
+    relay(ping);
+  }
+
+  /** Loads the users of the trip, checking the user is on the trip at the same time. */
+  private void loadTrip() {
+    loading = true;
+    tripLoads.incrementAndGet();
+
+    ActorRef self = self();
+    tripRepository
+        .getTripWithUsers(tripId, user.getUserId())
+        .whenComplete(
+            (loadedTrip, error) -> self.tell(new TripLoaded(loadedTrip, error != null), self));
+  }
+
+  /**
+   * Keeps the loaded trip and relays the waiting ping, or rejects all pings for the trip if the
+   * user is not on it.
+   *
+   * @param tripLoaded the loaded trip.
+   */
+  private void receiveTrip(TripLoaded tripLoaded) {
+    loading = false;
+
+    if (tripLoaded.failed) {
+      // Try again on the next ping rather than rejecting the trip
+      pendingPing = null;
+      return;
+    }
+
+    if (!tripLoaded.trip.isPresent()) {
+      denied = true;
+      pendingPing = null;
+      out.tell(new ErrorFrame("Map ping failed, trip not found"), self());
+      return;
+    }
+
+    trip = tripLoaded.trip.get();
+    if (pendingPing != null) {
+      PingMapFrame ping = pendingPing;
+      pendingPing = null;
+      relay(ping);
+    }
+  }
+
+  /** Relays the latest ping sent during the interval, if there was one. */
+  private void receiveThrottleTimer() {
+    throttled = false;
+    if (pendingPing != null) {
+      PingMapFrame ping = pendingPing;
+      pendingPing = null;
+      relay(ping);
+    }
+  }
+
+  /**
+   * Sends a ping to the other users of the trip and starts the interval before the next one.
+   *
+   * @param ping the ping to send.
+   */
+  private void relay(PingMapFrame ping) {
+    pingsRelayed.incrementAndGet();
+    PingMapNotifier pingMapNotifier = new PingMapNotifier(ping, trip);
+    pingMapNotifier.notifyUsers(user);
+
+    throttled = true;
+    getTimers()
+        .startSingleTimer(
+            THROTTLE_TIMER,
+            THROTTLE_TIMER,
+            scala.concurrent.duration.Duration.fromNanos(minInterval.toNanos()));
+  }
+
+  /**
+   * Gets the number of map pings sent by users.
+   *
+   * @return the number of pings received.
+   */
+  public static long getPingsReceived() {
+    return pingsReceived.get();
+  }
+
+  /**
+   * Gets the number of map pings sent on to other users of a trip. Pings that were coalesced or
+   * rejected are not counted.
+   *
+   * @return the number of pings relayed.
+   */
+  public static long getPingsRelayed() {
+    return pingsRelayed.get();
+  }
+
+  /**
+   * Gets the number of times a trip was loaded to relay map pings.
+   *
+   * @return the number of trip loads.
+   */
+  public static long getTripLoads() {
+    return tripLoads.get();
+  }
+
+  /** Message sent to the relay once the trip has been loaded, or failed to load. */
+  private static class TripLoaded {
+    private final Optional<TripComposite> trip;
+    private final boolean failed;
+
+    private TripLoaded(Optional<TripComposite> trip, boolean failed) {
+      this.trip = trip;
+      this.failed = failed;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package modules.websocket;
+
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import models.User;
+import modules.websocket.frames.PresenceSnapshotFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces connection status changes of users over a short window and delivers them to peers as
+ * a single presence snapshot frame per recipient. A user that disconnects and reconnects within the
+ * same window (or vice versa) is not announced at all.
+ */
+public class PresenceAggregator {
+
+  private static final String WINDOW_CONFIG_KEY = "websocket.presence.coalesceWindow";
+  private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(2);
+
+  private static PresenceAggregator instance;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+  private final FrameDelivery frameDelivery;
+  private final Duration window;
+
+  // Status changes recorded since the last flush, keyed by the user whose status changed
+  private Map<User, Set<User>> pending = new HashMap<>();
+  // The last status that peers were told about for each user
+  private final Map<User, ConnectionStatus> publishedStatuses = new HashMap<>();
+
+  private ScheduledExecutorService scheduler;
+
+  private final AtomicLong statusChanges = new AtomicLong();
+  private final AtomicLong flapsSuppressed = new AtomicLong();
+  private final AtomicLong framesRequested = new AtomicLong();
+  private final AtomicLong framesSent = new AtomicLong();
+
+  /**
+   * Creates a presence aggregator. The aggregator does not flush on its own until it is started.
+   *
+   * @param frameDelivery the delivery to check presence with and send snapshots through.
+   * @param window the length of time that status changes are coalesced over.
+   */
+  public PresenceAggregator(FrameDelivery frameDelivery, Duration window) {
+    this.frameDelivery = frameDelivery;
+    this.window = window;
+  }
+
+  /**
+   * Creates and starts the singleton presence aggregator, with the window read from the
+   * application config. The aggregator it replaces is stopped.
+   *
+   * @param config the application config.
+   */
+  public static synchronized void initialise(Config config) {
+    if (instance != null) {
+      instance.stop();
+    }
+    Duration window =
+        config.hasPath(WINDOW_CONFIG_KEY)
+            ? config.getDuration(WINDOW_CONFIG_KEY)
+            : DEFAULT_WINDOW;
+    instance = new PresenceAggregator(FrameDeliveries.getInstance(), window);
+    instance.start();
+  }
+
+  /**
+   * Singleton getter for the presence aggregator.
+   *
+   * @return the running instance of the presence aggregator.
+   * @throws IllegalStateException if the presence aggregator has not been initialised.
+   */
+  public static synchronized PresenceAggregator getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("The presence aggregator has not been initialised");
+    }
+    return instance;
+  }
+
+  /** Starts flushing the coalesced status changes once every window. */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "presence-aggregator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long windowMillis = window.toMillis();
+    scheduler.scheduleAtFixedRate(this::flushSafely, windowMillis, windowMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops flushing. Status changes that have not been flushed yet are dropped. */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Records that a user has connected or disconnected. The peers are notified on the next flush if
+   * the status of the user is still different to the one they were last told about. The frame
+   * delivery is the source of truth at flush time, so notifications from overlapping sockets that
+   * arrive out of order still resolve to the real status of the user.
+   *
+   * @param user the user whose status changed.
+   * @param peers the users that are interested in the status of the user.
+   */
+  public void recordStatusChange(User user, Set<User> peers) {
+    statusChanges.incrementAndGet();
+    framesRequested.addAndGet(peers.size());
+
+    synchronized (this) {
+      pending.computeIfAbsent(user, key -> new HashSet<>()).addAll(peers);
+    }
+  }
+
+  /**
+   * Sends one presence snapshot frame to every connected peer that has at least one status change
+   * to be told about.
+   */
+  public void flush() {
+    Map<User, Set<User>> toPublish;
+
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      toPublish = pending;
+      pending = new HashMap<>();
+    }
+
+    Map<User, List<User>> connectedByRecipient = new HashMap<>();
+    Map<User, List<User>> disconnectedByRecipient = new HashMap<>();
+
+    for (Map.Entry<User, Set<User>> entry : toPublish.entrySet()) {
+      User user = entry.getKey();
+      ConnectionStatus status =
+          frameDelivery.isUserConnected(user)
+              ? ConnectionStatus.CONNECTED
+              : ConnectionStatus.DISCONNECTED;
+
+      synchronized (publishedStatuses) {
+        ConnectionStatus published =
+            publishedStatuses.getOrDefault(user, ConnectionStatus.DISCONNECTED);
+        if (published == status) {
+          flapsSuppressed.incrementAndGet();
+          continue;
+        }
+        if (status == ConnectionStatus.CONNECTED) {
+          publishedStatuses.put(user, status);
+        } else {
+          publishedStatuses.remove(user);
+        }
+      }
+
+      Map<User, List<User>> batches =
+          status == ConnectionStatus.CONNECTED ? connectedByRecipient : disconnectedByRecipient;
+
+      for (User peer : entry.getValue()) {
+        if (!peer.equals(user) && frameDelivery.isUserConnected(peer)) {
+          batches.computeIfAbsent(peer, key -> new ArrayList<>()).add(user);
+        }
+      }
+    }
+
+    Set<User> recipients = new HashSet<>(connectedByRecipient.keySet());
+    recipients.addAll(disconnectedByRecipient.keySet());
+
+    for (User recipient : recipients) {
+      PresenceSnapshotFrame frame =
+          new PresenceSnapshotFrame(
+              connectedByRecipient.getOrDefault(recipient, new ArrayList<>()),
+              disconnectedByRecipient.getOrDefault(recipient, new ArrayList<>()));
+      frameDelivery.send(recipient, frame);
+      framesSent.incrementAndGet();
+    }
+
+    log.debug(
+        String.format(
+            "Presence flush: %d users, %d snapshot frames sent, %d frames saved so far",
+            toPublish.size(), recipients.size(), getFramesSaved()));
+  }
+
+  /**
+   * Flushes without letting an exception cancel the scheduled task.
+   */
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.error("Failed to flush presence changes", e);
+    }
+  }
+
+  /**
+   * Gets the number of connect and disconnect events that have been recorded.
+   *
+   * @return the number of recorded status changes.
+   */
+  public long getStatusChanges() {
+    return statusChanges.get();
+  }
+
+  /**
+   * Gets the number of status changes that were not announced because the user ended the window
+   * with the same status that peers already knew about.
+   *
+   * @return the number of suppressed flaps.
+   */
+  public long getFlapsSuppressed() {
+    return flapsSuppressed.get();
+  }
+
+  /**
+   * Gets the number of presence snapshot frames that have been sent.
+   *
+   * @return the number of frames sent.
+   */
+  public long getFramesSent() {
+    return framesSent.get();
+  }
+
+  /**
+   * Gets the number of frames saved compared to sending one frame per peer for every status
+   * change.
+   *
+   * @return the number of frames saved.
+   */
+  public long getFramesSaved() {
+    return Math.max(0, framesRequested.get() - framesSent.get());
+  }
+
+  /** Clears all pending and published statuses. */
+  public synchronized void clear() {
+    pending.clear();
+    synchronized (publishedStatuses) {
+      publishedStatuses.clear();
+    }
+  }
+}
@@ -1,19 +1,16 @@
 package modules.websocket;
 
-import akka.actor.ActorRef;
-import com.fasterxml.jackson.databind.JsonNode;
 import models.TripComposite;
 import models.User;
 import modules.websocket.frames.TripUpdatedFrame;
-import play.libs.Json;
 
 /** Notifies users of any changes to a trip (trip name, trip destinations or messages) */
 public class TripNotifier {
 
-  private ConnectedUsers connectedUsers;
+  private FrameDelivery frameDelivery;
 
   public TripNotifier() {
-    this.connectedUsers = ConnectedUsers.getInstance();
+    this.frameDelivery = FrameDeliveries.getInstance();
 
   }
 
@@ -25,11 +22,8 @@ public class TripNotifier {
    */
   public void notifyTripUpdate(User userThatEdited, TripComposite trip) {
     for (User user : trip.getUsers()) {
-      if (!user.equals(userThatEdited) && connectedUsers.isUserConnected(user)) {
-        ActorRef actorRef = connectedUsers.getSocketForUser(user);
-        JsonNode frameJson = Json.toJson(new TripUpdatedFrame(trip));
-
-        actorRef.tell(frameJson.toString(), actorRef);
+      if (!user.equals(userThatEdited) && frameDelivery.isUserConnected(user)) {
+        frameDelivery.send(user, new TripUpdatedFrame(trip));
       }
     }
   }
@@ -5,22 +5,41 @@ import static java.util.concurrent.CompletableFuture.runAsync;
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.Props;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import javax.inject.Inject;
+import models.ChatGroup;
+import models.Message;
 import models.User;
+import modules.websocket.frames.ChatMessageAckFrame;
+import modules.websocket.frames.ChatMessageErrorFrame;
+import modules.websocket.frames.Frame;
+import modules.websocket.frames.PingFrame;
 import modules.websocket.frames.PingMapFrame;
 import modules.websocket.frames.PongFrame;
-import play.libs.Json;
+import modules.websocket.frames.SendChatMessageFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import repository.ChatRepository;
 import repository.TripRepository;
 
 public class WebSocket extends AbstractActor {
 
+  private static final Logger log = LoggerFactory.getLogger(WebSocket.class);
+
   private final TripRepository tripRepository;
   private final ChatRepository chatRepository;
   private final ActorRef out;
   private ConnectionStatusNotifier connectionStatusNotifier = new ConnectionStatusNotifier();
+  private final Duration pingMapInterval;
+  private ChatMembershipCache chatMembershipCache;
+  private Map<Integer, ActorRef> pingMapRelays = new HashMap<>();
   private User user;
 
   /**
@@ -30,16 +49,24 @@ public class WebSocket extends AbstractActor {
    * @param user the user that owns the websocket
    * @param tripRepository the trip repository
    * @param chatRepository the chat repository
+   * @param membershipCacheTtl how long the chat groups of the user are trusted for
+   * @param pingMapInterval the least time between two map pings being relayed
    */
   @Inject
   public WebSocket(
-      ActorRef out, User user, TripRepository tripRepository, ChatRepository chatRepository) {
-    ConnectedUsers connectedUsers = ConnectedUsers.getInstance();
+      ActorRef out,
+      User user,
+      TripRepository tripRepository,
+      ChatRepository chatRepository,
+      Duration membershipCacheTtl,
+      Duration pingMapInterval) {
     this.out = out;
     this.user = user;
     this.tripRepository = tripRepository;
     this.chatRepository = chatRepository;
-    connectedUsers.addConnectedUser(user, out);
+    this.chatMembershipCache = new ChatMembershipCache(membershipCacheTtl);
+    this.pingMapInterval = pingMapInterval;
+    FrameDeliveries.getInstance().register(user, self(), out);
     // Notify everyone that you are in a trip in that you are now online
     notifyTripConnected();
     notifyChatsConnected();
@@ -53,10 +80,22 @@ public class WebSocket extends AbstractActor {
    * @param tripRepository the trip repository
    * @param user the user that owns the websocket
    * @param chatRepository the chat repository
+   * @param config the application config, with the chat membership cache and map ping settings
    */
   public static Props props(
-      ActorRef out, User user, TripRepository tripRepository, ChatRepository chatRepository) {
-    return Props.create(WebSocket.class, out, user, tripRepository, chatRepository);
+      ActorRef out,
+      User user,
+      TripRepository tripRepository,
+      ChatRepository chatRepository,
+      Config config) {
+    return Props.create(
+        WebSocket.class,
+        out,
+        user,
+        tripRepository,
+        chatRepository,
+        getMembershipCacheTtl(config),
+        PingMapRelay.minInterval(config));
   }
 
   /**
@@ -74,33 +113,44 @@ public class WebSocket extends AbstractActor {
 
   /**
    * Notifies to all users that have group chats with the connected user that they are connected.
+   * The chat groups are also cached so the user can send messages over this websocket.
    */
   private void notifyChatsConnected() {
+    ActorRef self = self();
     runAsync(
         () ->
             chatRepository
                 .getChatsByUserId(user.getUserId())
                 .thenAcceptAsync(
                     chatGroups -> {
+                      self.tell(new ChatGroupsLoaded(chatGroups, null), self);
                       ChatEvents chatEvents = new ChatEvents();
                       chatEvents.notifyConnect(user, chatGroups);
                     }));
   }
 
+  /**
+   * Gets how long the chat groups of the user are trusted for before they are reloaded.
+   *
+   * @param config the application config.
+   * @return the time to live of the chat membership cache.
+   */
+  private static Duration getMembershipCacheTtl(Config config) {
+    String key = "websocket.chat.membershipCacheTtl";
+    return config.hasPath(key) ? config.getDuration(key) : Duration.ofSeconds(30);
+  }
+
   /**
    * Gets called when a websocket has been closed on the client. Removes the current websocket from
    * connected users
    */
   @Override
   public void postStop() {
+    FrameDeliveries.getInstance().unregister(user, self(), out);
+
     tripRepository
         .getTripsByUserId(user.getUserId())
-        .thenAcceptAsync(
-            trips -> {
-              ConnectedUsers connectedUsers = ConnectedUsers.getInstance();
-              connectedUsers.removeConnectedUser(user);
-              connectionStatusNotifier.notifyDisconnectedUser(user, trips);
-            });
+        .thenAcceptAsync(trips -> connectionStatusNotifier.notifyDisconnectedUser(user, trips));
     chatRepository
         .getChatsByUserId(user.getUserId())
         .thenAcceptAsync(
@@ -111,35 +161,148 @@ public class WebSocket extends AbstractActor {
   }
 
   /**
-   * Accepts the websocket messages and notifies the users that are connected to the sent ping
-   * message
+   * Accepts the decoded websocket frames and notifies the users that are connected to the sent
+   * ping message, or sends a chat message to a chat group. Frames sent to the user from other
+   * nodes of the cluster are passed on to the client.
    */
   @Override
   public Receive createReceive() {
     return receiveBuilder()
+        .match(PingMapFrame.class, this::receivePingMap)
+        .match(SendChatMessageFrame.class, this::receiveChatMessage)
+        .match(PingFrame.class, ping -> sendToClient(new PongFrame()))
+        .match(ClusterFrame.class, clusterFrame -> sendToClient(clusterFrame.getFrame()))
+        .match(DistributedPubSubMediator.SubscribeAck.class, ack -> {})
         .match(
-            String.class,
-            messageFrame -> {
-              JsonNode message = Json.parse(messageFrame);
-              if (message.get("type").asText().equals("ping-map")) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                PingMapFrame pingMapFrame = objectMapper.treeToValue(message, PingMapFrame.class);
-                tripRepository
-                    .getTripByIds(pingMapFrame.getTripNodeId(), user.getUserId())
-                    .thenAcceptAsync(
-                        trip -> {
-                          if (trip.isPresent()) {
-                            PingMapNotifier pingMapNotifier =
-                                new PingMapNotifier(pingMapFrame, trip.get());
-                            pingMapNotifier.notifyUsers(user);
-                          } else {
-                            out.tell("Map ping failed, trip not found", self());
-                          }
-                        });
-              } else if (message.get("type").asText().equals("ping")) {
-                out.tell(Json.toJson(new PongFrame()).toString(), self());
+            ChatGroupsLoaded.class,
+            chatGroupsLoaded -> {
+              chatMembershipCache.putAll(chatGroupsLoaded.chatGroups);
+              if (chatGroupsLoaded.pendingMessage != null) {
+                sendChatMessage(chatGroupsLoaded.pendingMessage);
               }
             })
         .build();
   }
+
+  /**
+   * Passes a map ping to the relay for its trip, creating the relay if this is the first ping for
+   * the trip.
+   *
+   * @param pingMapFrame the frame containing the ping.
+   */
+  private void receivePingMap(PingMapFrame pingMapFrame) {
+    ActorRef relay =
+        pingMapRelays.computeIfAbsent(
+            pingMapFrame.getTripNodeId(),
+            tripId ->
+                getContext()
+                    .actorOf(
+                        PingMapRelay.props(user, tripId, out, tripRepository, pingMapInterval)));
+    relay.tell(pingMapFrame, self());
+  }
+
+  /**
+   * Sends a chat message received over the websocket, loading the chat group first if it is not
+   * cached.
+   *
+   * @param chatMessageFrame the frame containing the message.
+   */
+  private void receiveChatMessage(SendChatMessageFrame chatMessageFrame) {
+    if (chatMembershipCache.get(chatMessageFrame.getChatGroupId()).isPresent()) {
+      sendChatMessage(chatMessageFrame);
+      return;
+    }
+
+    ActorRef self = self();
+    // The chat group is read with its members, so checking them doesn't load them on this actor
+    chatRepository
+        .getChatById(chatMessageFrame.getChatGroupId())
+        .whenComplete(
+            (chatGroup, error) -> {
+              if (error != null) {
+                log.error("Failed to load chat " + chatMessageFrame.getChatGroupId(), error);
+                sendToClient(
+                    new ChatMessageErrorFrame(
+                        chatMessageFrame.getChatGroupId(),
+                        chatMessageFrame.getNonce(),
+                        "Message not saved"));
+              } else if (chatGroup == null) {
+                sendToClient(
+                    new ChatMessageErrorFrame(
+                        chatMessageFrame.getChatGroupId(),
+                        chatMessageFrame.getNonce(),
+                        "Chat not found"));
+              } else {
+                self.tell(
+                    new ChatGroupsLoaded(Collections.singletonList(chatGroup), chatMessageFrame),
+                    self);
+              }
+            });
+  }
+
+  /**
+   * Saves a chat message, then sends it to the other members of the chat group and acknowledges it
+   * to the sender. A message that fails to be saved is sent to no one. The chat group must already
+   * be cached.
+   *
+   * @param chatMessageFrame the frame containing the message.
+   */
+  private void sendChatMessage(SendChatMessageFrame chatMessageFrame) {
+    int chatGroupId = chatMessageFrame.getChatGroupId();
+    String nonce = chatMessageFrame.getNonce();
+    Optional<ChatGroup> optionalChatGroup = chatMembershipCache.get(chatGroupId);
+
+    if (!optionalChatGroup.isPresent() || !optionalChatGroup.get().getUsers().contains(user)) {
+      sendToClient(new ChatMessageErrorFrame(chatGroupId, nonce, "User not in group"));
+      return;
+    }
+
+    String contents = chatMessageFrame.getMessage();
+    if (contents == null || contents.isEmpty()) {
+      sendToClient(new ChatMessageErrorFrame(chatGroupId, nonce, "Message does not exist"));
+      return;
+    }
+
+    ChatGroup chatGroup = optionalChatGroup.get();
+    Message message = new Message(chatGroup, contents, user);
+    // Completed on the message writer's thread, so the sending is moved off it
+    chatRepository
+        .createMessage(message)
+        .whenCompleteAsync(
+            (createdMessage, error) -> {
+              if (error != null) {
+                log.error("Failed to save a chat message for chat " + chatGroupId, error);
+                sendToClient(new ChatMessageErrorFrame(chatGroupId, nonce, "Message not saved"));
+                return;
+              }
+              ChatEvents chatEvents = new ChatEvents();
+              chatEvents.sendMessageToChatGroup(
+                  user, chatGroup, contents, createdMessage.getMessageId());
+              sendToClient(
+                  new ChatMessageAckFrame(chatGroupId, createdMessage.getMessageId(), nonce));
+            });
+  }
+
+  /**
+   * Sends a frame to the client that owns this websocket.
+   *
+   * @param frame the frame to send.
+   */
+  private void sendToClient(Frame frame) {
+    out.tell(frame, ActorRef.noSender());
+  }
+
+  /**
+   * Message sent to the websocket actor when chat groups of the user have been loaded, optionally
+   * with a chat message that was waiting for its chat group.
+   */
+  private static class ChatGroupsLoaded {
+    private final List<ChatGroup> chatGroups;
+    private final SendChatMessageFrame pendingMessage;
+
+    private ChatGroupsLoaded(List<ChatGroup> chatGroups, SendChatMessageFrame pendingMessage) {
+      this.chatGroups = chatGroups;
+      this.pendingMessage = pendingMessage;
+    }
+  }
 }
@@ -0,0 +1,31 @@
+package modules.websocket;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+import play.Environment;
+
+/**
+ * Picks how frames are delivered to websockets. Frames are delivered to the websockets on this node
+ * unless websocket.delivery is set to cluster, in which case they reach every node of the cluster.
+ * The presence aggregator is started once the delivery it sends snapshots through is picked.
+ */
+public class WebSocketModule extends AbstractModule {
+
+  private final Config config;
+
+  public WebSocketModule(Environment environment, Config config) {
+    this.config = config;
+  }
+
+  @Override
+  protected void configure() {
+    // A map ping rate that can't be throttled stops the server from starting
+    PingMapRelay.minInterval(config);
+
+    if (config.getString("websocket.delivery").equals("cluster")) {
+      bind(ClusterDeliveryStarter.class).asEagerSingleton();
+    } else {
+      PresenceAggregator.initialise(config);
+    }
+  }
+}
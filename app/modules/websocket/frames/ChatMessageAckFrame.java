@@ -0,0 +1,34 @@
+package modules.websocket.frames;
+
+/**
+ * Websocket frame sent back to the sender of a chat message once the message has been saved.
+ */
+public class ChatMessageAckFrame implements Frame {
+
+  private int chatGroupId;
+  private int messageId;
+  private String nonce;
+
+  public ChatMessageAckFrame(int chatGroupId, int messageId, String nonce) {
+    this.chatGroupId = chatGroupId;
+    this.messageId = messageId;
+    this.nonce = nonce;
+  }
+
+  public int getChatGroupId() {
+    return chatGroupId;
+  }
+
+  public int getMessageId() {
+    return messageId;
+  }
+
+  public String getNonce() {
+    return nonce;
+  }
+
+  @Override
+  public String getType() {
+    return "chat-message-ack";
+  }
+}
@@ -0,0 +1,34 @@
+package modules.websocket.frames;
+
+/**
+ * Websocket frame sent back to the sender of a chat message when the message could not be sent.
+ */
+public class ChatMessageErrorFrame implements Frame {
+
+  private int chatGroupId;
+  private String nonce;
+  private String error;
+
+  public ChatMessageErrorFrame(int chatGroupId, String nonce, String error) {
+    this.chatGroupId = chatGroupId;
+    this.nonce = nonce;
+    this.error = error;
+  }
+
+  public int getChatGroupId() {
+    return chatGroupId;
+  }
+
+  public String getNonce() {
+    return nonce;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  @Override
+  public String getType() {
+    return "chat-message-error";
+  }
+}
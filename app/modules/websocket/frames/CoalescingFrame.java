@@ -0,0 +1,29 @@
+package modules.websocket.frames;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A frame that only needs to reach a client in its latest form. If a frame with the same key is
+ * still waiting to be sent when a new one is sent, the two are coalesced into one frame.
+ */
+public interface CoalescingFrame extends Frame {
+
+  /**
+   * Gets the key that identifies which waiting frames this frame replaces.
+   *
+   * @return the coalescing key.
+   */
+  @JsonIgnore
+  String getCoalescingKey();
+
+  /**
+   * Combines this frame with a newer frame that has the same key. By default the newer frame
+   * replaces this one.
+   *
+   * @param newer the newer frame.
+   * @return the frame to send in place of both.
+   */
+  default CoalescingFrame coalesce(CoalescingFrame newer) {
+    return newer;
+  }
+}
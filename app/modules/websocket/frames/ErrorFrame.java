@@ -0,0 +1,22 @@
+package modules.websocket.frames;
+
+/**
+ * Websocket frame sent to a client when something it asked for over the socket failed.
+ */
+public class ErrorFrame implements Frame {
+
+  private String message;
+
+  public ErrorFrame(String message) {
+    this.message = message;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String getType() {
+    return "error";
+  }
+}
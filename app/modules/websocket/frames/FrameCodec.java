@@ -0,0 +1,210 @@
+package modules.websocket.frames;
+
+import akka.stream.javadsl.Flow;
+import akka.util.ByteString;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.http.websocket.Message;
+import play.libs.Json;
+
+/**
+ * Reads and writes websocket frames. Each codec holds one pre-configured reader for inbound frames
+ * and one writer per outbound frame class, so no mappers are created per frame. Frames are either
+ * sent as JSON text messages or, if the client asks for the binary subprotocol when opening the
+ * socket, as CBOR binary messages.
+ */
+public class FrameCodec {
+
+  /** Subprotocol a client can request to receive and send CBOR encoded frames. */
+  public static final String CBOR_SUBPROTOCOL = "flockr.cbor";
+
+  /** Subprotocol a client can request to receive and send JSON encoded frames. */
+  public static final String JSON_SUBPROTOCOL = "flockr.json";
+
+  private static final Logger log = LoggerFactory.getLogger(FrameCodec.class);
+
+  /** The inbound frame classes, keyed by the type property that selects them. */
+  private static final Map<String, Class<? extends InboundFrame>> INBOUND_FRAME_TYPES;
+
+  static {
+    Map<String, Class<? extends InboundFrame>> types = new HashMap<>();
+    types.put("ping", PingFrame.class);
+    types.put("ping-map", PingMapFrame.class);
+    types.put("chat-message", SendChatMessageFrame.class);
+    INBOUND_FRAME_TYPES = Collections.unmodifiableMap(types);
+  }
+
+  private static FrameCodec jsonCodec;
+  private static FrameCodec cborCodec;
+
+  private final boolean binary;
+  private final ObjectMapper mapper;
+  private final ObjectReader inboundReader;
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  private FrameCodec(ObjectMapper mapper, boolean binary) {
+    this.binary = binary;
+    this.mapper = mapper;
+
+    // The type info is added as a mix-in so other mappers can still read frames by their class
+    mapper.addMixIn(InboundFrame.class, InboundFrameTypeInfo.class);
+    for (Map.Entry<String, Class<? extends InboundFrame>> type : INBOUND_FRAME_TYPES.entrySet()) {
+      mapper.registerSubtypes(new NamedType(type.getValue(), type.getKey()));
+    }
+    this.inboundReader =
+        mapper
+            .readerFor(InboundFrame.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .without(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE);
+  }
+
+  /**
+   * Gets the codec that reads and writes JSON text frames.
+   *
+   * @return the JSON codec.
+   */
+  public static synchronized FrameCodec json() {
+    if (jsonCodec == null) {
+      jsonCodec = new FrameCodec(Json.mapper().copy(), false);
+    }
+    return jsonCodec;
+  }
+
+  /**
+   * Gets the codec that reads and writes CBOR binary frames.
+   *
+   * @return the CBOR codec.
+   */
+  public static synchronized FrameCodec cbor() {
+    if (cborCodec == null) {
+      ObjectMapper cborMapper =
+          new ObjectMapper(new CBORFactory())
+              .registerModule(new Jdk8Module())
+              .registerModule(new JavaTimeModule())
+              .configure(
+                  SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                  Json.mapper().isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+      cborCodec = new FrameCodec(cborMapper, true);
+    }
+    return cborCodec;
+  }
+
+  /**
+   * Picks the codec for the subprotocols requested when a websocket is opened. Play accepts the
+   * first subprotocol the client offers, so the codec is picked the same way.
+   *
+   * @param requestedSubprotocols the value of the Sec-WebSocket-Protocol header, if any.
+   * @return the CBOR codec if the client asked for it first, otherwise the JSON codec.
+   */
+  public static FrameCodec forSubprotocols(Optional<String> requestedSubprotocols) {
+    String firstSubprotocol =
+        requestedSubprotocols.map(protocols -> protocols.split(",")[0].trim()).orElse("");
+    return firstSubprotocol.equals(CBOR_SUBPROTOCOL) ? cbor() : json();
+  }
+
+  /**
+   * Decodes an inbound websocket message into a frame.
+   *
+   * @param message the text or binary message sent by the client.
+   * @return the frame, or empty if the message is not a known frame.
+   */
+  public Optional<InboundFrame> decode(Message message) {
+    try {
+      if (message instanceof Message.Text) {
+        return Optional.ofNullable(inboundReader.readValue(((Message.Text) message).data()));
+      } else if (message instanceof Message.Binary) {
+        return Optional.ofNullable(
+            inboundReader.readValue(((Message.Binary) message).data().toArray()));
+      }
+    } catch (IOException e) {
+      log.debug("Could not decode websocket frame", e);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Decodes a JSON or CBOR encoded frame.
+   *
+   * @param frame the encoded frame.
+   * @return the frame, or empty if the frame is not a known frame.
+   */
+  public Optional<InboundFrame> decode(byte[] frame) {
+    try {
+      return Optional.ofNullable(inboundReader.readValue(frame));
+    } catch (IOException e) {
+      log.debug("Could not decode websocket frame", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Encodes an outbound frame as a websocket message.
+   *
+   * @param frame the frame to send to the client.
+   * @return a binary message for the CBOR codec, otherwise a text message.
+   */
+  public Message encode(Frame frame) {
+    ObjectWriter writer = writers.computeIfAbsent(frame.getClass(), mapper::writerFor);
+    try {
+      if (binary) {
+        return new Message.Binary(ByteString.fromArrayUnsafe(writer.writeValueAsBytes(frame)));
+      }
+      return new Message.Text(writer.writeValueAsString(frame));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Wraps a flow of frames so that it reads and writes websocket messages with this codec.
+   * Messages that are not known frames are dropped.
+   *
+   * @param frameFlow the flow that handles inbound frames and produces outbound frames.
+   * @return the flow of websocket messages.
+   */
+  public Flow<Message, Message, ?> wrap(Flow<InboundFrame, Frame, ?> frameFlow) {
+    return Flow.<Message>create()
+        .mapConcat(
+            message -> {
+              Optional<InboundFrame> frame = decode(message);
+              return frame.isPresent()
+                  ? Collections.singletonList(frame.get())
+                  : Collections.<InboundFrame>emptyList();
+            })
+        .via(frameFlow)
+        .map(this::encode);
+  }
+
+  /**
+   * Checks whether this codec sends binary messages.
+   *
+   * @return true for the CBOR codec.
+   */
+  public boolean isBinary() {
+    return binary;
+  }
+
+  /** Reads the type property of an inbound frame as the name of the frame class. */
+  @JsonTypeInfo(
+      use = JsonTypeInfo.Id.NAME,
+      include = JsonTypeInfo.As.EXISTING_PROPERTY,
+      property = "type")
+  private interface InboundFrameTypeInfo {}
+}
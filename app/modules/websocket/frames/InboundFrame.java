@@ -0,0 +1,8 @@
+package modules.websocket.frames;
+
+/**
+ * A frame that can be sent from a client to the server. The frame codec uses the type of the frame
+ * to decide which class to read it into.
+ */
+public interface InboundFrame extends Frame {
+}
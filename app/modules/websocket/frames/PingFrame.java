@@ -0,0 +1,11 @@
+package modules.websocket.frames;
+
+/**
+ * Frame sent from the client to keep the connection open
+ */
+public class PingFrame implements InboundFrame {
+  @Override
+  public String getType() {
+    return "ping";
+  }
+}
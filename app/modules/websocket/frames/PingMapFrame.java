@@ -3,7 +3,7 @@ package modules.websocket.frames;
 /**
  * Websocket frame for notifying users of a ping-map event.
  */
-public class PingMapFrame implements Frame {
+public class PingMapFrame implements InboundFrame {
 
   private int tripNodeId;
   private double latitude;
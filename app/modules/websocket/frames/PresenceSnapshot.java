@@ -0,0 +1,67 @@
+package modules.websocket.frames;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A batch of presence changes for the peers of a user, made on this node or read from another node
+ * of the cluster. Snapshots waiting to be sent are merged by user id wherever they were made.
+ */
+public interface PresenceSnapshot extends CoalescingFrame {
+
+  String TYPE = "presence-snapshot";
+
+  /**
+   * Gets the users that connected, as they are written to the client.
+   *
+   * @return the JSON of each user, by user id, in the order they connected.
+   */
+  @JsonIgnore
+  Map<Integer, JsonNode> getConnectedJson();
+
+  /**
+   * Gets the users that disconnected, as they are written to the client.
+   *
+   * @return the JSON of each user, by user id, in the order they disconnected.
+   */
+  @JsonIgnore
+  Map<Integer, JsonNode> getDisconnectedJson();
+
+  @Override
+  default String getType() {
+    return TYPE;
+  }
+
+  @Override
+  default String getCoalescingKey() {
+    return TYPE;
+  }
+
+  /**
+   * Merges a newer snapshot into this one. The newer status of a user replaces the older status.
+   *
+   * @param newer the newer frame, which replaces this one if it is not a presence snapshot.
+   * @return a snapshot with the latest status of every user in either snapshot.
+   */
+  @Override
+  default CoalescingFrame coalesce(CoalescingFrame newer) {
+    if (!(newer instanceof PresenceSnapshot)) {
+      return newer;
+    }
+    PresenceSnapshot newerSnapshot = (PresenceSnapshot) newer;
+    Map<Integer, JsonNode> connected = new LinkedHashMap<>(getConnectedJson());
+    Map<Integer, JsonNode> disconnected = new LinkedHashMap<>(getDisconnectedJson());
+
+    for (Map.Entry<Integer, JsonNode> user : newerSnapshot.getConnectedJson().entrySet()) {
+      disconnected.remove(user.getKey());
+      connected.put(user.getKey(), user.getValue());
+    }
+    for (Map.Entry<Integer, JsonNode> user : newerSnapshot.getDisconnectedJson().entrySet()) {
+      connected.remove(user.getKey());
+      disconnected.put(user.getKey(), user.getValue());
+    }
+    return new RemotePresenceSnapshotFrame(connected, disconnected);
+  }
+}
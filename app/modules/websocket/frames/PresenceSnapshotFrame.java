@@ -0,0 +1,78 @@
+package modules.websocket.frames;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import models.User;
+import play.libs.Json;
+
+/**
+ * Websocket frame containing a batch of presence changes for the peers of a user. Replaces a
+ * stream of individual connected and disconnected frames during reconnect storms.
+ */
+public class PresenceSnapshotFrame implements PresenceSnapshot {
+
+  private List<User> connected;
+  private List<User> disconnected;
+
+  public PresenceSnapshotFrame(List<User> connected, List<User> disconnected) {
+    this.connected = connected;
+    this.disconnected = disconnected;
+  }
+
+  public List<User> getConnected() {
+    return connected;
+  }
+
+  public List<User> getDisconnected() {
+    return disconnected;
+  }
+
+  @Override
+  public Map<Integer, JsonNode> getConnectedJson() {
+    return toJson(connected);
+  }
+
+  @Override
+  public Map<Integer, JsonNode> getDisconnectedJson() {
+    return toJson(disconnected);
+  }
+
+  private static Map<Integer, JsonNode> toJson(List<User> users) {
+    Map<Integer, JsonNode> usersById = new LinkedHashMap<>();
+    for (User user : users) {
+      usersById.put(user.getUserId(), Json.toJson(user));
+    }
+    return usersById;
+  }
+
+  /**
+   * Merges a newer snapshot into this one. The newer status of a user replaces the older status.
+   * Snapshots from this node are merged as users, and are only written as JSON to be merged with
+   * a snapshot from another node.
+   *
+   * @param newer the newer frame.
+   * @return a snapshot with the latest status of every user in either snapshot.
+   */
+  @Override
+  public CoalescingFrame coalesce(CoalescingFrame newer) {
+    if (!(newer instanceof PresenceSnapshotFrame)) {
+      return PresenceSnapshot.super.coalesce(newer);
+    }
+    PresenceSnapshotFrame newerSnapshot = (PresenceSnapshotFrame) newer;
+    Set<User> mergedConnected = new LinkedHashSet<>(connected);
+    Set<User> mergedDisconnected = new LinkedHashSet<>(disconnected);
+
+    mergedDisconnected.removeAll(newerSnapshot.connected);
+    mergedConnected.addAll(newerSnapshot.connected);
+    mergedConnected.removeAll(newerSnapshot.disconnected);
+    mergedDisconnected.addAll(newerSnapshot.disconnected);
+
+    return new PresenceSnapshotFrame(
+        new ArrayList<>(mergedConnected), new ArrayList<>(mergedDisconnected));
+  }
+}
@@ -0,0 +1,36 @@
+package modules.websocket.frames;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A frame that was created on another node of the cluster. It is sent to the client exactly as it
+ * was written by the other node.
+ */
+public class RemoteFrame implements CoalescingFrame {
+
+  private final String type;
+  private final String coalescingKey;
+  private final JsonNode contents;
+
+  public RemoteFrame(String type, String coalescingKey, JsonNode contents) {
+    this.type = type;
+    this.coalescingKey = coalescingKey;
+    this.contents = contents;
+  }
+
+  @JsonValue
+  public JsonNode getContents() {
+    return contents;
+  }
+
+  @Override
+  public String getCoalescingKey() {
+    return coalescingKey;
+  }
+
+  @Override
+  public String getType() {
+    return type;
+  }
+}
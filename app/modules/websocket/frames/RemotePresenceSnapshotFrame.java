@@ -0,0 +1,62 @@
+package modules.websocket.frames;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A presence snapshot read from another node of the cluster, or merged with one. The users are
+ * kept as the JSON the other node wrote, so they are sent to the client exactly as written.
+ */
+public class RemotePresenceSnapshotFrame implements PresenceSnapshot {
+
+  private static final String USER_ID = "userId";
+
+  private final Map<Integer, JsonNode> connected;
+  private final Map<Integer, JsonNode> disconnected;
+
+  public RemotePresenceSnapshotFrame(
+      Map<Integer, JsonNode> connected, Map<Integer, JsonNode> disconnected) {
+    this.connected = connected;
+    this.disconnected = disconnected;
+  }
+
+  /**
+   * Reads a presence snapshot written as JSON by another node.
+   *
+   * @param json the snapshot.
+   * @return the snapshot, with its users keyed by their id.
+   */
+  public static RemotePresenceSnapshotFrame fromJson(JsonNode json) {
+    return new RemotePresenceSnapshotFrame(
+        usersById(json.path("connected")), usersById(json.path("disconnected")));
+  }
+
+  private static Map<Integer, JsonNode> usersById(JsonNode users) {
+    Map<Integer, JsonNode> usersById = new LinkedHashMap<>();
+    for (JsonNode user : users) {
+      usersById.put(user.path(USER_ID).asInt(), user);
+    }
+    return usersById;
+  }
+
+  public Collection<JsonNode> getConnected() {
+    return connected.values();
+  }
+
+  public Collection<JsonNode> getDisconnected() {
+    return disconnected.values();
+  }
+
+  @Override
+  public Map<Integer, JsonNode> getConnectedJson() {
+    return Collections.unmodifiableMap(connected);
+  }
+
+  @Override
+  public Map<Integer, JsonNode> getDisconnectedJson() {
+    return Collections.unmodifiableMap(disconnected);
+  }
+}
@@ -0,0 +1,23 @@
+package modules.websocket.frames;
+
+/**
+ * Websocket frame sent to a client that has fallen too far behind before its socket is closed. The
+ * client should reload its data and reconnect, as frames it was sent have been discarded.
+ */
+public class ResyncFrame implements Frame {
+
+  private String reason;
+
+  public ResyncFrame(String reason) {
+    this.reason = reason;
+  }
+
+  public String getReason() {
+    return reason;
+  }
+
+  @Override
+  public String getType() {
+    return "resync";
+  }
+}
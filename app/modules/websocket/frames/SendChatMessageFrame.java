@@ -0,0 +1,42 @@
+package modules.websocket.frames;
+
+/**
+ * Websocket frame sent by a client to post a message to a chat group over its open socket.
+ */
+public class SendChatMessageFrame implements InboundFrame {
+
+  private int chatGroupId;
+  private String message;
+  private String nonce;
+  private final String type = "chat-message";
+
+  public SendChatMessageFrame() {
+
+  }
+
+  public SendChatMessageFrame(int chatGroupId, String message, String nonce) {
+    this.chatGroupId = chatGroupId;
+    this.message = message;
+    this.nonce = nonce;
+  }
+
+  public int getChatGroupId() {
+    return chatGroupId;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * An identifier chosen by the client so it can match the acknowledgement to the message.
+   */
+  public String getNonce() {
+    return nonce;
+  }
+
+  @Override
+  public String getType() {
+    return type;
+  }
+}
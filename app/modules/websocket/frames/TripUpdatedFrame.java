@@ -1,13 +1,12 @@
 package modules.websocket.frames;
 
 
-import models.TripComposite;
 import models.TripComposite;
 
 /**
  * Web socket frame for when a trip is updated
  */
-public class TripUpdatedFrame implements Frame {
+public class TripUpdatedFrame implements CoalescingFrame {
 
     private TripComposite trip;
 
@@ -23,4 +22,13 @@ public class TripUpdatedFrame implements Frame {
     public TripComposite getTrip() {
         return trip;
     }
+
+    /**
+     * Only the latest update of each trip needs to be sent
+     * @return the coalescing key for the trip
+     */
+    @Override
+    public String getCoalescingKey() {
+        return "trip-" + trip.getTripNodeId();
+    }
 }
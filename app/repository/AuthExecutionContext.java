@@ -0,0 +1,19 @@
+package repository;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The database bulkhead of signing in and out, users and their roles, kept apart so logins are
+ * answered however busy the rest of the application is.
+ */
+@Singleton
+public class AuthExecutionContext extends DatabaseExecutionContext {
+
+  @Inject
+  public AuthExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, config, "auth");
+  }
+}
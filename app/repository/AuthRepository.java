@@ -20,7 +20,7 @@ public class AuthRepository {
     private final DatabaseExecutionContext executionContext;
 
     @Inject
-    public AuthRepository(EbeanConfig ebeanConfig, DatabaseExecutionContext executionContext) {
+    public AuthRepository(EbeanConfig ebeanConfig, AuthExecutionContext executionContext) {
         this.ebeanServer = Ebean.getServer(ebeanConfig.defaultServer());
         this.executionContext = executionContext;
     }
@@ -0,0 +1,19 @@
+package repository;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The database bulkhead of scheduled tasks, which run in the background and should never take
+ * connections from requests.
+ */
+@Singleton
+public class BackgroundExecutionContext extends DatabaseExecutionContext {
+
+  @Inject
+  public BackgroundExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, config, "background");
+  }
+}
@@ -0,0 +1,26 @@
+package repository;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a database task is submitted to a bulkhead whose queue is full, so the request can
+ * be turned away straight away rather than wait for a thread.
+ */
+public class BulkheadFullException extends RejectedExecutionException {
+
+  private final String bulkhead;
+
+  /**
+   * Creates a rejection.
+   *
+   * @param bulkhead the name of the bulkhead that is full.
+   */
+  public BulkheadFullException(String bulkhead) {
+    super("The " + bulkhead + " bulkhead is full");
+    this.bulkhead = bulkhead;
+  }
+
+  public String getBulkhead() {
+    return bulkhead;
+  }
+}
@@ -0,0 +1,49 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the database bulkheads that have been created, so their saturation can be reported.
+ */
+public class Bulkheads {
+
+  private static Bulkheads instance;
+
+  private final Map<String, DatabaseExecutionContext> bulkheads = new TreeMap<>();
+
+  private Bulkheads() {}
+
+  /**
+   * Singleton getter for the bulkheads.
+   *
+   * @return the instance of the bulkheads.
+   */
+  public static synchronized Bulkheads getInstance() {
+    if (instance == null) {
+      instance = new Bulkheads();
+    }
+    return instance;
+  }
+
+  /**
+   * Adds a bulkhead, replacing the bulkhead of the same name from an application that has since
+   * been stopped.
+   *
+   * @param bulkhead the bulkhead.
+   */
+  synchronized void register(DatabaseExecutionContext bulkhead) {
+    bulkheads.put(bulkhead.getName(), bulkhead);
+  }
+
+  /**
+   * Gets the bulkheads, ordered by name.
+   *
+   * @return the bulkheads.
+   */
+  public synchronized Collection<DatabaseExecutionContext> getAll() {
+    return new ArrayList<>(bulkheads.values());
+  }
+}
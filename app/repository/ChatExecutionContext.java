@@ -0,0 +1,18 @@
+package repository;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The database bulkhead of chat groups and their messages.
+ */
+@Singleton
+public class ChatExecutionContext extends DatabaseExecutionContext {
+
+  @Inject
+  public ChatExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, config, "chat");
+  }
+}
@@ -1,8 +1,10 @@
 package repository;
 
+import com.typesafe.config.Config;
 import models.ChatGroup;
 import models.Message;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -14,12 +16,20 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
 /**
  * Class that performs operations on the database regarding chats.
  */
+@Singleton
 public class ChatRepository {
   private final DatabaseExecutionContext executionContext;
+  private final MessageWriteBuffer messageWriteBuffer;
+  private final SingleFlight<Integer, ChatGroup> chatReads;
 
   @Inject
-  public ChatRepository(DatabaseExecutionContext databaseExecutionContext) {
+  public ChatRepository(
+      ChatExecutionContext databaseExecutionContext,
+      MessageWriteBuffer messageWriteBuffer,
+      Config config) {
     this.executionContext = databaseExecutionContext;
+    this.messageWriteBuffer = messageWriteBuffer;
+    this.chatReads = SingleFlight.configured(config, "chats");
   }
 
   /**
@@ -47,19 +57,33 @@ public class ChatRepository {
     return supplyAsync(
         () -> {
           chatGroup.save();
+          chatReads.forget(chatGroup.getChatGroupId());
           return chatGroup;
         },
         executionContext);
   }
 
   /**
-   * Gets a chat by it's ID
+   * Gets a chat by it's ID. Callers asking for the same chat at the same time share one read, so
+   * they must not change it; use getChatByIdToEdit for that.
    *
    * @param chatGroupId The chat group ID to get
    * @return A completion stage wrapped with the retrieved chat group
    */
   public CompletionStage<ChatGroup> getChatById(int chatGroupId) {
-    return supplyAsync(() -> ChatGroup.find.byId(chatGroupId), executionContext);
+    return chatReads.get(chatGroupId, () -> getChatByIdToEdit(chatGroupId));
+  }
+
+  /**
+   * Gets a chat by it's ID with its members, read for this caller alone so it can be changed.
+   *
+   * @param chatGroupId The chat group ID to get
+   * @return A completion stage wrapped with the retrieved chat group
+   */
+  public CompletionStage<ChatGroup> getChatByIdToEdit(int chatGroupId) {
+    return supplyAsync(
+        () -> ChatGroup.find.query().fetch("users").where().idEq(chatGroupId).findOne(),
+        executionContext);
   }
 
   /**
@@ -84,24 +108,21 @@ public class ChatRepository {
     return supplyAsync(
         () -> {
           chatGroup.delete();
+          chatReads.forget(chatGroup.getChatGroupId());
           return null;
         },
         executionContext);
   }
 
   /**
-   * Adds a message to a chat group
+   * Adds a message to a chat group. The message is inserted together with other recent messages in
+   * a single transaction, and is given its ID as it is inserted.
    *
    * @param message The message to add
-   * @return A completion stage with the updated message
+   * @return A completion stage with the updated message, completed once the message is committed
    */
   public CompletionStage<Message> createMessage(Message message) {
-    return supplyAsync(
-        () -> {
-          message.insert();
-          return message;
-        },
-        executionContext);
+    return messageWriteBuffer.write(message);
   }
 
   /**
@@ -113,17 +134,19 @@ public class ChatRepository {
    * @return the list of messages
    */
   public CompletionStage<List<Message>> getMessages(int chatGroupId, int offset, int limit) {
-
-    List<Message> messages = Message.find.query()
-            .where()
-            .eq("chat_group_chat_group_id", chatGroupId)
-            .orderBy().desc("timestamp")
-            .setFirstRow(offset)
-            .setMaxRows(limit)
-            .findList();
-    Collections.reverse(messages);
-
-    return supplyAsync(() -> messages);
+    return supplyAsync(
+        () -> {
+          List<Message> messages = Message.find.query()
+                  .where()
+                  .eq("chat_group_chat_group_id", chatGroupId)
+                  .orderBy().desc("timestamp")
+                  .setFirstRow(offset)
+                  .setMaxRows(limit)
+                  .findList();
+          Collections.reverse(messages);
+          return messages;
+        },
+        executionContext);
   }
 
   /**
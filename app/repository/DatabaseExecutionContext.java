@@ -1,20 +1,157 @@
 package repository;
 
 import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import modules.profiling.QueryProfile;
+import modules.replicas.ReplicaRouter;
 import play.libs.concurrent.CustomExecutionContext;
 
-import javax.inject.Inject;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Custom execution context, so that blocking database operations don't
  * happen on the rendering thread pool.
  *
+ * <p>Each subsystem has its own context, a bulkhead with its own threads, one for each connection
+ * it may hold, and a limit on the tasks waiting for them. A subsystem that is slow or overloaded
+ * then only holds up its own requests, and tasks over the limit are rejected straight away rather
+ * than waiting behind the rest. The bulkheads are configured under bulkheads in
+ * application.conf.
+ *
+ * <p>Reads outside a transaction go to the read replica, if there is one, unless the bulkhead is
+ * configured with replicaReads = false.
+ *
  * @link https://www.playframework.com/documentation/latest/ThreadPools
  */
-public class DatabaseExecutionContext extends CustomExecutionContext {
+public abstract class DatabaseExecutionContext extends CustomExecutionContext {
+
+    private final String name;
+    private final int connections;
+    private final int queueLimit;
+    private final boolean replicaReads;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder running = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+
+    /**
+     * Creates the context of a bulkhead, running its tasks on the dispatcher of the bulkhead.
+     *
+     * @param actorSystem the actor system the dispatcher is looked up in.
+     * @param config the configuration, with a section for the bulkhead under bulkheads.
+     * @param name the name of the bulkhead.
+     */
+    protected DatabaseExecutionContext(ActorSystem actorSystem, Config config, String name) {
+        super(actorSystem, "bulkheads." + name + ".dispatcher");
+        Config bulkhead = config.getConfig("bulkheads." + name);
+        this.name = name;
+        this.connections = bulkhead.getInt("connections");
+        this.queueLimit = bulkhead.getInt("queueLimit");
+        this.replicaReads =
+            !bulkhead.hasPath("replicaReads") || bulkhead.getBoolean("replicaReads");
+        Bulkheads.getInstance().register(this);
+    }
+
+    /**
+     * Runs a task on the dispatcher of this bulkhead, counting it while it waits and while it runs.
+     * The task runs with the query profile of the request that submitted it.
+     *
+     * @param task the task to run.
+     * @throws BulkheadFullException if the queue of this bulkhead is full.
+     */
+    @Override
+    public void execute(Runnable task) {
+        // The limit may be overshot by the tasks submitted at the same moment, which is fine
+        if (queued.sum() >= queueLimit) {
+            rejected.increment();
+            throw new BulkheadFullException(name);
+        }
+
+        queued.increment();
+        long submitted = System.nanoTime();
+        Runnable profiledTask = replicaReads
+            ? QueryProfile.propagate(task)
+            : ReplicaRouter.onPrimary(QueryProfile.propagate(task));
+        super.execute(() -> {
+            queued.decrement();
+            queueWaitNanos.add(System.nanoTime() - submitted);
+            running.increment();
+            try {
+                profiledTask.run();
+            } finally {
+                running.decrement();
+                completed.increment();
+            }
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of connections this bulkhead may hold at once, which is also its number of
+     * threads.
+     *
+     * @return the connection quota.
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Gets the most tasks that may wait for a thread before more are rejected.
+     *
+     * @return the queue limit.
+     */
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+
+    /**
+     * Gets the number of tasks waiting for a database thread.
+     *
+     * @return the queue depth.
+     */
+    public long getQueueDepth() {
+        return queued.sum();
+    }
+
+    /**
+     * Gets the number of tasks running on database threads.
+     *
+     * @return the running tasks.
+     */
+    public long getRunning() {
+        return running.sum();
+    }
+
+    /**
+     * Gets the number of tasks that have finished running since the server started.
+     *
+     * @return the completed tasks.
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Gets the number of tasks rejected as the queue was full since the server started.
+     *
+     * @return the rejected tasks.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
 
-    @Inject
-    public DatabaseExecutionContext(ActorSystem actorSystem) {
-        super(actorSystem, "database.dispatcher");
+    /**
+     * Gets the total time tasks have waited for a thread since the server started.
+     *
+     * @return the time waited, in nanoseconds.
+     */
+    public long getQueueWaitNanos() {
+        return queueWaitNanos.sum();
     }
 }
@@ -0,0 +1,106 @@
+package repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import models.Destination;
+import models.DestinationPhoto;
+import play.libs.Json;
+
+/**
+ * A destination read to be shared between the callers asking for it at the same time. It is
+ * serialised on the database thread that loaded it, so its callers share JSON rather than a live
+ * bean, and never load anything from the database themselves.
+ */
+public class DestinationRead {
+
+  private final int destinationId;
+  private final Integer destinationOwner;
+  private final boolean isPublic;
+  private final JsonNode json;
+  private final List<PhotoRead> photos;
+
+  /**
+   * Serialises a destination. The destination should be loaded with its photos and their personal
+   * photos, and this must be run on a database thread in case anything else is lazy loaded.
+   *
+   * @param destination the destination.
+   */
+  DestinationRead(Destination destination) {
+    this.destinationId = destination.getDestinationId();
+    this.destinationOwner = destination.getDestinationOwner();
+    this.isPublic = destination.getIsPublic();
+    this.json = Json.toJson(destination);
+
+    List<PhotoRead> photoReads = new ArrayList<>();
+    for (DestinationPhoto photo : destination.getDestinationPhotos()) {
+      photoReads.add(
+          new PhotoRead(
+              photo.getPersonalPhoto().getUser().getUserId(),
+              photo.getPersonalPhoto().isPublic(),
+              Json.toJson(photo)));
+    }
+    this.photos = Collections.unmodifiableList(photoReads);
+  }
+
+  public int getDestinationId() {
+    return destinationId;
+  }
+
+  public Integer getDestinationOwner() {
+    return destinationOwner;
+  }
+
+  public boolean getIsPublic() {
+    return isPublic;
+  }
+
+  /**
+   * Gets the destination as JSON. It is shared, so it must not be changed.
+   *
+   * @return the destination as JSON.
+   */
+  public JsonNode getJson() {
+    return json;
+  }
+
+  /**
+   * Gets the photos of the destination a user may see as JSON: every photo for admins, and
+   * otherwise the public photos followed by the user's own private photos.
+   *
+   * @param userId the ID of the user.
+   * @param isAdmin whether the user is an admin.
+   * @return a new JSON array of the photos.
+   */
+  public ArrayNode getPhotosFor(int userId, boolean isAdmin) {
+    ArrayNode visible = Json.newArray();
+    for (PhotoRead photo : photos) {
+      if (isAdmin || photo.isPublic) {
+        visible.add(photo.json);
+      }
+    }
+    if (!isAdmin) {
+      for (PhotoRead photo : photos) {
+        if (!photo.isPublic && photo.ownerId == userId) {
+          visible.add(photo.json);
+        }
+      }
+    }
+    return visible;
+  }
+
+  private static class PhotoRead {
+
+    private final int ownerId;
+    private final boolean isPublic;
+    private final JsonNode json;
+
+    private PhotoRead(int ownerId, boolean isPublic, JsonNode json) {
+      this.ownerId = ownerId;
+      this.isPublic = isPublic;
+      this.json = json;
+    }
+  }
+}
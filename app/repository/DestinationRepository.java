@@ -2,6 +2,7 @@ package repository;
 
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 
+import com.typesafe.config.Config;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
@@ -11,6 +12,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import models.*;
 import play.db.ebean.EbeanConfig;
@@ -19,24 +21,30 @@ import models.Destination;
 import models.DestinationPhoto;
 import models.DestinationProposal;
 import models.DestinationType;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
 
 
 /**
  * Class that performs operations on the database regarding destinations.
  */
+@Singleton
 public class DestinationRepository {
 
   private final DatabaseExecutionContext executionContext;
+  private final SingleFlight<Integer, Optional<DestinationRead>> destinationReads;
   private String destinationNamePropertyName = "destinationName";
 
   /**
    * Dependency injection
    *
    * @param executionContext Context to run completion stages on
+   * @param config The application config, with the time to live of destination reads
    */
   @Inject
-  public DestinationRepository(DatabaseExecutionContext executionContext) {
+  public DestinationRepository(PhotoExecutionContext executionContext, Config config) {
     this.executionContext = executionContext;
+    this.destinationReads = SingleFlight.configured(config, "destinations");
   }
 
     /**
@@ -141,12 +149,37 @@ public class DestinationRepository {
   }
 
   /**
-   * Gets a destination by it's ID
+   * Gets a destination by it's ID, with its photos, serialised so that callers asking for the same
+   * destination at the same time can share one read. Use getDestinationByIdToEdit for the bean.
+   *
+   * @param destinationId The ID of the destination to get
+   * @return the destination read
+   */
+  public CompletionStage<Optional<DestinationRead>> getDestinationById(int destinationId) {
+    return destinationReads.get(
+        destinationId,
+        () -> supplyAsync(
+            () -> Destination.find
+                .query()
+                .fetch("destinationType")
+                .fetch("destinationCountry")
+                .fetch("travellerTypes")
+                .fetch("destinationPhotos")
+                .fetch("destinationPhotos.personalPhoto")
+                .where()
+                .eq("destination_id", destinationId)
+                .findOneOrEmpty()
+                .map(DestinationRead::new),
+            executionContext));
+  }
+
+  /**
+   * Gets a destination by it's ID, read for this caller alone so it can be changed.
    *
    * @param destinationId The ID of the destination to get
    * @return the destination object
    */
-  public CompletionStage<Optional<Destination>> getDestinationById(int destinationId) {
+  public CompletionStage<Optional<Destination>> getDestinationByIdToEdit(int destinationId) {
     return supplyAsync(
         () -> Destination.find.query().where().eq("destination_id", destinationId).findOneOrEmpty(),
         executionContext);
@@ -182,8 +215,12 @@ public class DestinationRepository {
           destination.setDeleted(false);
           destination.setDeletedExpiry(null);
           destination.save();
+          destinationReads.forget(destination.getDestinationId());
+          ExpiryScheduler.getInstance()
+              .cancel(ExpiryRegistry.DESTINATION, destination.getDestinationId());
           return destination;
-        });
+        },
+        executionContext);
   }
 
   /**
@@ -231,6 +268,7 @@ public class DestinationRepository {
     return supplyAsync(
         () -> {
           destination.save();
+          destinationReads.forget(destination.getDestinationId());
           return destination;
         },
         executionContext);
@@ -258,6 +296,36 @@ public class DestinationRepository {
         executionContext);
   }
 
+  /**
+   * Gets a destination type by its id
+   *
+   * @param destinationTypeId the id of the destination type
+   * @return the destination type, which may not exist
+   */
+  public CompletionStage<Optional<DestinationType>> getDestinationTypeById(int destinationTypeId) {
+    return supplyAsync(
+        () -> Optional.ofNullable(DestinationType.find.byId(destinationTypeId)), executionContext);
+  }
+
+  /**
+   * Gets a country by its id
+   *
+   * @param countryId the id of the country
+   * @return the country, which may not exist
+   */
+  public CompletionStage<Optional<Country>> getCountryById(int countryId) {
+    return supplyAsync(() -> Optional.ofNullable(Country.find.byId(countryId)), executionContext);
+  }
+
+  /**
+   * Gets every traveller type a destination can be suited to
+   *
+   * @return the list of traveller types
+   */
+  public CompletionStage<List<TravellerType>> getTravellerTypes() {
+    return supplyAsync(() -> TravellerType.find.all(), executionContext);
+  }
+
   /**
    * Delete a destination given a destination by id
    *
@@ -269,10 +337,14 @@ public class DestinationRepository {
         () -> {
           Destination destination = Destination.find.byId(destinationId);
           // Set the expiry time for an hour from now.
-          Objects.requireNonNull(destination).setDeletedExpiry(Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+          Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+          Objects.requireNonNull(destination).setDeletedExpiry(expiry);
           destination.save();
 
           destination.delete(); // Soft delete.
+          destinationReads.forget(destinationId);
+          ExpiryScheduler.getInstance()
+              .schedule(ExpiryRegistry.DESTINATION, destinationId, expiry);
           return destinationId;
         },
         executionContext);
@@ -288,8 +360,10 @@ public class DestinationRepository {
     return supplyAsync(
         () -> {
           destinationPhoto.save();
+          destinationReads.forget(destinationPhoto.getDestination().getDestinationId());
           return destinationPhoto;
-        });
+        },
+        executionContext);
   }
 
   public CompletionStage<Optional<DestinationPhoto>> getPhotoByIdWithSoftDelete(
@@ -314,6 +388,7 @@ public class DestinationRepository {
     supplyAsync(
         () -> {
           photo.insert();
+          destinationReads.forget(photo.getDestination().getDestinationId());
           return photo;
         },
         executionContext);
@@ -327,10 +402,16 @@ public class DestinationRepository {
   public void deleteDestinationPhoto(DestinationPhoto destinationPhoto) {
     supplyAsync(
         () -> {
-          destinationPhoto.setDeletedExpiry(
-              Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+          Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+          destinationPhoto.setDeletedExpiry(expiry);
           destinationPhoto.save();
           destinationPhoto.delete();
+          destinationReads.forget(destinationPhoto.getDestination().getDestinationId());
+          ExpiryScheduler.getInstance()
+              .schedule(
+                  ExpiryRegistry.DESTINATION_PHOTO,
+                  destinationPhoto.destinationPhotoId,
+                  expiry);
           return destinationPhoto.destinationPhotoId;
         },
         executionContext);
@@ -349,6 +430,9 @@ public class DestinationRepository {
           destinationPhoto.setDeletedExpiry(null);
           destinationPhoto.setDeleted(false);
           destinationPhoto.save();
+          destinationReads.forget(destinationPhoto.getDestination().getDestinationId());
+          ExpiryScheduler.getInstance()
+              .cancel(ExpiryRegistry.DESTINATION_PHOTO, destinationPhoto.destinationPhotoId);
           return destinationPhoto;
         },
         executionContext);
@@ -400,10 +484,15 @@ public class DestinationRepository {
       DestinationProposal destinationProposal) {
     return supplyAsync(
         () -> {
-          destinationProposal.setDeletedExpiry(
-              Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+          Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+          destinationProposal.setDeletedExpiry(expiry);
           destinationProposal.save();
           destinationProposal.delete(); // Soft delete
+          ExpiryScheduler.getInstance()
+              .schedule(
+                  ExpiryRegistry.DESTINATION_PROPOSAL,
+                  destinationProposal.getDestinationProposalId(),
+                  expiry);
           return destinationProposal.getDestinationProposalId();
         },
         executionContext);
@@ -420,7 +509,8 @@ public class DestinationRepository {
     int offset = (page - 1) * pageSize;
 
     return supplyAsync(
-        () -> DestinationProposal.find.query().setFirstRow(offset).setMaxRows(pageSize).findList());
+        () -> DestinationProposal.find.query().setFirstRow(offset).setMaxRows(pageSize).findList(),
+        executionContext);
   }
 
   /**
@@ -454,8 +544,13 @@ public class DestinationRepository {
           destinationProposal.setDeleted(false);
           destinationProposal.setDeletedExpiry(null);
           destinationProposal.save();
+          ExpiryScheduler.getInstance()
+              .cancel(
+                  ExpiryRegistry.DESTINATION_PROPOSAL,
+                  destinationProposal.getDestinationProposalId());
           return destinationProposal;
-        });
+        },
+        executionContext);
   }
 
   /**
@@ -0,0 +1,303 @@
+package repository;
+
+import com.typesafe.config.Config;
+import exceptions.ServerErrorException;
+import io.ebean.Ebean;
+import io.ebean.SqlRow;
+import io.ebean.SqlUpdate;
+import io.ebean.Transaction;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import models.Message;
+import modules.replicas.ReplicaRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+
+/**
+ * Write-behind buffer for chat messages. Messages are inserted in small batches by a single writer
+ * thread so that busy chats use one database connection and one transaction for many messages.
+ * The writer gives each message its ID as its batch is inserted, from blocks reserved in the
+ * database so several servers can write messages at once. Blocks are only reserved by the writer,
+ * so the threads queueing messages never wait on the database.
+ */
+@Singleton
+public class MessageWriteBuffer {
+
+  private static final String INSERT_MESSAGE =
+      "INSERT INTO message (message_id, chat_group_chat_group_id, contents, user_user_id, timestamp)"
+          + " VALUES (?, ?, ?, ?, ?)";
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final BlockingQueue<PendingMessage> queue;
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  private static final String RESERVE_ID_BLOCK =
+      "UPDATE message_id_block SET next_id = GREATEST(next_id,"
+          + " (SELECT COALESCE(MAX(message_id), 0) + 1 FROM message)) + ?";
+
+  // Only used by the writer thread
+  private final int idBlockSize;
+  private int nextMessageId = 0;
+  private int lastMessageId = -1;
+  // The last ID of the block reserved ahead of the current one running out, or -1 if there is none
+  private int lastIdOfNextBlock = -1;
+
+  private final AtomicLong messagesWritten = new AtomicLong();
+  private final AtomicLong batchesWritten = new AtomicLong();
+
+  @Inject
+  public MessageWriteBuffer(Config config, ApplicationLifecycle lifecycle) {
+    this(config.getConfig("chat.messageWriter"));
+
+    lifecycle.addStopHook(
+        () -> {
+          stop();
+          return CompletableFuture.completedFuture(null);
+        });
+  }
+
+  /**
+   * Creates a write buffer and starts its writer thread.
+   *
+   * @param writerConfig the chat.messageWriter section of the application config.
+   */
+  public MessageWriteBuffer(Config writerConfig) {
+    this.maxBatchSize = writerConfig.getInt("maxBatchSize");
+    this.maxDelayNanos = writerConfig.getDuration("maxDelay", TimeUnit.NANOSECONDS);
+    this.queue = new LinkedBlockingQueue<>(writerConfig.getInt("queueCapacity"));
+    this.idBlockSize = writerConfig.getInt("idBlockSize");
+
+    this.writer = new Thread(this::writeLoop, "chat-message-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Queues a message to be inserted. The message must not be sent to anyone until it is committed,
+   * as it is lost if the queue is full or its batch fails.
+   *
+   * @param message the message to insert.
+   * @return a completion stage that completes with the message, with its ID, once it has been
+   *     committed.
+   */
+  public CompletionStage<Message> write(Message message) {
+    PendingMessage pendingMessage = new PendingMessage(message);
+    if (!running || !queue.offer(pendingMessage)) {
+      log.warn("Chat message queue is full, rejecting a message");
+      pendingMessage.acknowledgement.completeExceptionally(
+          new CompletionException(new ServerErrorException()));
+    } else {
+      // The writer thread serves no request, so the session of the sender is marked as having
+      // written here, for its next reads of the chat to go to the primary
+      ReplicaRouter.getInstance().recordWrite();
+    }
+    return pendingMessage.acknowledgement;
+  }
+
+  /**
+   * Gets the next free message ID. IDs are handed out from memory until the current block runs
+   * out, and then the block reserved ahead is moved on to, or a new block is reserved if there is
+   * none.
+   *
+   * @return the next message ID.
+   */
+  private int allocateMessageId() {
+    if (nextMessageId > lastMessageId) {
+      lastMessageId = lastIdOfNextBlock != -1 ? lastIdOfNextBlock : reserveIdBlock(idBlockSize);
+      lastIdOfNextBlock = -1;
+      nextMessageId = lastMessageId - idBlockSize + 1;
+    }
+    return nextMessageId++;
+  }
+
+  /**
+   * Reserves the next block of IDs between batches once the current block has fewer IDs left than
+   * a batch may need, so a batch rarely waits for a block to be reserved.
+   */
+  private void reserveNextBlockIfLow() {
+    if (lastIdOfNextBlock != -1 || lastMessageId - nextMessageId + 1 >= maxBatchSize) {
+      return;
+    }
+    try {
+      lastIdOfNextBlock = reserveIdBlock(idBlockSize);
+    } catch (Exception e) {
+      // The block is reserved when it is needed instead
+      log.warn("Failed to reserve the next block of chat message IDs", e);
+    }
+  }
+
+  /**
+   * Reserves the next block of message IDs for this server. The block starts after any message
+   * already in the table, so messages inserted without a reserved ID are not collided with.
+   *
+   * @param blockSize the number of IDs to reserve.
+   * @return the last ID of the block.
+   */
+  protected int reserveIdBlock(int blockSize) {
+    try (Transaction txn = Ebean.beginTransaction()) {
+      SqlUpdate reserve = Ebean.createSqlUpdate(RESERVE_ID_BLOCK);
+      reserve.setNextParameter(blockSize);
+      reserve.execute();
+
+      SqlRow row = Ebean.createSqlQuery("SELECT next_id FROM message_id_block").findOne();
+      txn.commit();
+
+      return row.getInteger("next_id") - 1;
+    }
+  }
+
+  /** Takes batches of messages off the queue and commits each batch in a single transaction. */
+  private void writeLoop() {
+    List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+
+        // Wait a short, bounded time for more messages to share the transaction with
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            break;
+          }
+          PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+
+        insertBatch(batch);
+        reserveNextBlockIfLow();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running = false;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Inserts a batch of messages and acknowledges each message, or fails each message if the batch
+   * could not be inserted.
+   *
+   * @param batch the messages to insert.
+   */
+  private void insertBatch(List<PendingMessage> batch) {
+    List<Message> messages = new ArrayList<>(batch.size());
+    for (PendingMessage pendingMessage : batch) {
+      messages.add(pendingMessage.message);
+    }
+
+    try {
+      for (Message message : messages) {
+        message.setMessageId(allocateMessageId());
+      }
+      insert(messages);
+    } catch (Exception e) {
+      log.error(String.format("Failed to insert a batch of %d chat messages", batch.size()), e);
+      for (PendingMessage pendingMessage : batch) {
+        pendingMessage.acknowledgement.completeExceptionally(new CompletionException(e));
+      }
+      return;
+    }
+
+    messagesWritten.addAndGet(batch.size());
+    batchesWritten.incrementAndGet();
+    for (PendingMessage pendingMessage : batch) {
+      pendingMessage.acknowledgement.complete(pendingMessage.message);
+    }
+  }
+
+  /**
+   * Inserts messages in one transaction.
+   *
+   * @param messages the messages to insert.
+   */
+  protected void insert(List<Message> messages) {
+    try (Transaction txn = Ebean.beginTransaction()) {
+      SqlUpdate insert = Ebean.createSqlUpdate(INSERT_MESSAGE);
+
+      for (Message message : messages) {
+        insert.setNextParameter(message.getMessageId());
+        insert.setNextParameter(message.getChatGroup().getChatGroupId());
+        insert.setNextParameter(message.getContents());
+        insert.setNextParameter(message.getUser().getUserId());
+        insert.setNextParameter(new Timestamp(message.getTimestamp().getTime()));
+        insert.addBatch();
+      }
+
+      insert.executeBatch();
+      txn.commit();
+    }
+  }
+
+  /** Stops accepting messages and waits for the queued messages to be written. */
+  public void stop() {
+    running = false;
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Gets the number of messages that have been committed.
+   *
+   * @return the number of messages written.
+   */
+  public long getMessagesWritten() {
+    return messagesWritten.get();
+  }
+
+  /**
+   * Gets the number of transactions that messages have been committed in.
+   *
+   * @return the number of batches written.
+   */
+  public long getBatchesWritten() {
+    return batchesWritten.get();
+  }
+
+  /**
+   * Gets the number of messages waiting to be written.
+   *
+   * @return the queue depth.
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** A message waiting to be written and the acknowledgement to complete once it is. */
+  private static class PendingMessage {
+    private final Message message;
+    private final CompletableFuture<Message> acknowledgement = new CompletableFuture<>();
+
+    private PendingMessage(Message message) {
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package repository;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The database bulkhead of photos and the destination metadata they are attached to.
+ */
+@Singleton
+public class PhotoExecutionContext extends DatabaseExecutionContext {
+
+  @Inject
+  public PhotoExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, config, "photos");
+  }
+}
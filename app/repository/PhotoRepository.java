@@ -1,6 +1,7 @@
 package repository;
 
 import models.PersonalPhoto;
+import models.User;
 import javax.inject.Inject;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 
@@ -10,6 +11,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
 
 
 /**
@@ -19,7 +22,7 @@ public class PhotoRepository {
   private final DatabaseExecutionContext executionContext;
 
   @Inject
-  public PhotoRepository(DatabaseExecutionContext databaseExecutionContext) {
+  public PhotoRepository(PhotoExecutionContext databaseExecutionContext) {
     this.executionContext = databaseExecutionContext;
   }
 
@@ -65,6 +68,19 @@ public class PhotoRepository {
         executionContext);
   }
 
+  /**
+   * Gets the photos with the given photo ids in one query. Ids of photos that do not exist are
+   * ignored.
+   *
+   * @param photoIds the ids of the photos to be retrieved
+   * @return the photos that exist, in no particular order
+   */
+  public CompletionStage<List<PersonalPhoto>> getPhotosByIds(List<Integer> photoIds) {
+    return supplyAsync(
+        () -> PersonalPhoto.find.query().where().idIn(photoIds).findList(),
+        executionContext);
+  }
+
   /**
    * Gets the photo with the given photo Id including soft deleted photos.
    *
@@ -111,14 +127,47 @@ public class PhotoRepository {
   public CompletionStage<Integer> deletePhoto(PersonalPhoto photo) {
     return supplyAsync(
         () -> {
-          photo.setDeletedExpiry(Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
-          photo.save();
-          photo.delete(); // Soft delete
+          softDelete(photo);
           return photo.getPhotoId();
         },
         executionContext);
   }
 
+  /**
+   * Soft deletes a photo, scheduling it to be purged once its expiry passes.
+   *
+   * @param photo the photo to delete.
+   */
+  private void softDelete(PersonalPhoto photo) {
+    Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+    photo.setDeletedExpiry(expiry);
+    photo.save();
+    photo.delete(); // Soft delete
+    ExpiryScheduler.getInstance().schedule(ExpiryRegistry.PHOTO, photo.getPhotoId(), expiry);
+  }
+
+  /**
+   * Makes a photo the profile photo of a user, soft deleting their old profile photo if they had
+   * one.
+   *
+   * @param user the user.
+   * @param photo the new profile photo.
+   * @return the new profile photo.
+   */
+  public CompletionStage<PersonalPhoto> setProfilePhoto(User user, PersonalPhoto photo) {
+    return supplyAsync(
+        () -> {
+          PersonalPhoto oldProfilePhoto = user.getProfilePhoto();
+          user.setProfilePhoto(photo);
+          user.save();
+          if (oldProfilePhoto != null) {
+            softDelete(oldProfilePhoto);
+          }
+          return photo;
+        },
+        executionContext);
+  }
+
   /**
    * Retrieves a deleted cover photo.
    *
@@ -141,7 +190,8 @@ public class PhotoRepository {
                 .eq("deleted", true)
                 .and()
                 .eq("is_cover", true)
-                .findOneOrEmpty());
+                .findOneOrEmpty(),
+        executionContext);
   }
 
   /**
@@ -156,7 +206,9 @@ public class PhotoRepository {
           personalPhoto.setDeleted(false);
           personalPhoto.setDeletedExpiry(null);
           personalPhoto.save();
+          ExpiryScheduler.getInstance().cancel(ExpiryRegistry.PHOTO, personalPhoto.getPhotoId());
           return personalPhoto;
-        });
+        },
+        executionContext);
   }
 }
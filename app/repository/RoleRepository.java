@@ -22,7 +22,7 @@ public class RoleRepository {
    * @param executionContext The context to run completion stages on
    */
   @Inject
-  public RoleRepository(EbeanConfig ebeanConfig, DatabaseExecutionContext executionContext) {
+  public RoleRepository(EbeanConfig ebeanConfig, AuthExecutionContext executionContext) {
     this.executionContext = executionContext;
   }
 
@@ -0,0 +1,177 @@
+package repository;
+
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Shares one read between the callers asking for the same key at the same time, so a popular row
+ * is loaded once however many requests want it. A finished read may also be kept for a short time
+ * to live and handed to the callers that come after it, until its key is forgotten.
+ *
+ * <p>The callers of a read share the beans it loaded, so they must not change them. Reads for
+ * changing a row go straight to the database instead.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values read.
+ */
+public class SingleFlight<K, V> {
+
+  // Finished reads are cleared out once there are this many keys
+  private static final int KEYS_BEFORE_PRUNING = 1000;
+
+  private final String name;
+  private final long ttlNanos;
+  private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder cached = new LongAdder();
+
+  /**
+   * Creates a single flight for a kind of read, and registers it so its metrics are reported.
+   *
+   * @param name the name of the read.
+   * @param ttl how long a finished read is kept, or zero to share only reads in flight.
+   */
+  public SingleFlight(String name, Duration ttl) {
+    this.name = name;
+    this.ttlNanos = ttl.toNanos();
+    SingleFlights.getInstance().register(this);
+  }
+
+  /**
+   * Creates a single flight for a kind of read, with the time to live configured for it under
+   * coalescing in the application config.
+   *
+   * @param config the application config.
+   * @param name the name of the read.
+   * @param <K> the type of the keys.
+   * @param <V> the type of the values read.
+   * @return the single flight.
+   */
+  public static <K, V> SingleFlight<K, V> configured(Config config, String name) {
+    return new SingleFlight<>(name, config.getDuration("coalescing." + name + ".ttl"));
+  }
+
+  /**
+   * Gets the value of a key, joining the read of it in flight or kept, or starting a read if there
+   * is none.
+   *
+   * @param key the key.
+   * @param load starts the read of the key.
+   * @return a completion stage with the value.
+   */
+  public CompletionStage<V> get(K key, Supplier<CompletionStage<V>> load) {
+    while (true) {
+      Flight<V> flight = flights.get(key);
+      if (flight != null) {
+        if (!flight.result.isDone()) {
+          coalesced.increment();
+          return flight.result.thenApply(value -> value);
+        }
+        if (System.nanoTime() - flight.finishedAt < ttlNanos) {
+          cached.increment();
+          return flight.result.thenApply(value -> value);
+        }
+        flights.remove(key, flight);
+      }
+
+      Flight<V> started = new Flight<>();
+      if (flights.putIfAbsent(key, started) == null) {
+        return start(key, started, load);
+      }
+    }
+  }
+
+  private CompletionStage<V> start(K key, Flight<V> flight, Supplier<CompletionStage<V>> load) {
+    loads.increment();
+    if (ttlNanos > 0 && flights.size() > KEYS_BEFORE_PRUNING) {
+      long now = System.nanoTime();
+      flights.values().removeIf(
+          other -> other.result.isDone() && now - other.finishedAt >= ttlNanos);
+    }
+
+    CompletionStage<V> read;
+    try {
+      read = load.get();
+    } catch (RuntimeException e) {
+      // Such as a full bulkhead, which the caller is told of straight away
+      flights.remove(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+
+    read.whenComplete(
+        (value, error) -> {
+          flight.finishedAt = System.nanoTime();
+          if (error != null || ttlNanos == 0) {
+            flights.remove(key, flight);
+          }
+          if (error != null) {
+            flight.result.completeExceptionally(error);
+          } else {
+            flight.result.complete(value);
+          }
+        });
+    return flight.result.thenApply(value -> value);
+  }
+
+  /**
+   * Forgets the read of a key, so the next caller reads it again. Called once the row is changed.
+   *
+   * @param key the key.
+   */
+  public void forget(K key) {
+    flights.remove(key);
+  }
+
+  /**
+   * Forgets the reads of every key, for a change that may show up in the values of any of them.
+   */
+  public void forgetAll() {
+    flights.clear();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the number of reads that were started since the server started.
+   *
+   * @return the reads started.
+   */
+  public long getLoads() {
+    return loads.sum();
+  }
+
+  /**
+   * Gets the number of callers that joined a read already in flight.
+   *
+   * @return the callers that joined a read.
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Gets the number of callers given a finished read that was kept.
+   *
+   * @return the callers given a kept read.
+   */
+  public long getCached() {
+    return cached.sum();
+  }
+
+  /** A read of a key, in flight or finished. */
+  private static class Flight<V> {
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+    private volatile long finishedAt;
+  }
+}
@@ -0,0 +1,49 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the single flights that have been created, so how many reads they share can be reported.
+ */
+public class SingleFlights {
+
+  private static SingleFlights instance;
+
+  private final Map<String, SingleFlight<?, ?>> flights = new TreeMap<>();
+
+  private SingleFlights() {}
+
+  /**
+   * Singleton getter for the single flights.
+   *
+   * @return the instance of the single flights.
+   */
+  public static synchronized SingleFlights getInstance() {
+    if (instance == null) {
+      instance = new SingleFlights();
+    }
+    return instance;
+  }
+
+  /**
+   * Adds a single flight, replacing the single flight of the same name from an application that
+   * has since been stopped.
+   *
+   * @param flight the single flight.
+   */
+  synchronized void register(SingleFlight<?, ?> flight) {
+    flights.put(flight.getName(), flight);
+  }
+
+  /**
+   * Gets the single flights, ordered by name.
+   *
+   * @return the single flights.
+   */
+  public synchronized Collection<SingleFlight<?, ?>> getAll() {
+    return new ArrayList<>(flights.values());
+  }
+}
@@ -13,6 +13,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
 
 
 /**
@@ -28,7 +30,7 @@ public class TreasureHuntRepository {
      * @param executionContext Context to run the completion stages on.
      */
     @Inject
-    public TreasureHuntRepository(DatabaseExecutionContext executionContext) {
+    public TreasureHuntRepository(TripExecutionContext executionContext) {
         this.executionContext = executionContext;
     }
 
@@ -55,9 +57,13 @@ public class TreasureHuntRepository {
     public CompletionStage<Boolean> removeTreasureHunt(TreasureHunt treasureHunt) {
 
         return supplyAsync(() -> {
-            treasureHunt.setDeletedExpiry(Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+            Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+            treasureHunt.setDeletedExpiry(expiry);
             treasureHunt.save();
-            return treasureHunt.delete();
+            boolean deleted = treasureHunt.delete();
+            ExpiryScheduler.getInstance()
+                .schedule(ExpiryRegistry.TREASURE_HUNT, treasureHunt.getTreasureHuntId(), expiry);
+            return deleted;
         }, executionContext);
     }
 
@@ -69,7 +75,7 @@ public class TreasureHuntRepository {
      */
     public CompletionStage<Optional<TreasureHunt>> getTreasureHuntById(int treasureHuntId) {
         return supplyAsync(() -> TreasureHunt.find.query().where()
-                .eq("treasure_hunt_id", treasureHuntId).findOneOrEmpty());
+                .eq("treasure_hunt_id", treasureHuntId).findOneOrEmpty(), executionContext);
     }
 
     /**
@@ -114,8 +120,10 @@ public class TreasureHuntRepository {
             treasureHunt.setDeleted(false);
             treasureHunt.setDeletedExpiry(null);
             treasureHunt.save();
+            ExpiryScheduler.getInstance()
+                .cancel(ExpiryRegistry.TREASURE_HUNT, treasureHunt.getTreasureHuntId());
             return treasureHunt;
-        });
+        }, executionContext);
     }
 }
 
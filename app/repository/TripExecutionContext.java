@@ -0,0 +1,18 @@
+package repository;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * The database bulkhead of trips and treasure hunts, whose trees of nodes are the slowest to load.
+ */
+@Singleton
+public class TripExecutionContext extends DatabaseExecutionContext {
+
+  @Inject
+  public TripExecutionContext(ActorSystem actorSystem, Config config) {
+    super(actorSystem, config, "trips");
+  }
+}
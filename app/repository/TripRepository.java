@@ -2,6 +2,7 @@ package repository;
 
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 
+import com.typesafe.config.Config;
 import io.ebean.Ebean;
 import io.ebean.SqlUpdate;
 import io.ebean.Transaction;
@@ -12,22 +13,32 @@ import java.util.*;
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import models.*;
+import modules.replicas.ReplicaRouter;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
 
 
 /**
  * Class that performs operations on the database regarding trips.
  */
+@Singleton
 public class TripRepository {
 
   private final DatabaseExecutionContext executionContext;
   private final RoleRepository roleRepository;
+  // Keyed by trip and user. A trip is read with its sub trips, so any change to a trip forgets
+  // every read
+  private final SingleFlight<List<Integer>, Optional<TripComposite>> tripReads;
 
   @Inject
-  public TripRepository(DatabaseExecutionContext executionContext, RoleRepository roleRepository) {
+  public TripRepository(
+      TripExecutionContext executionContext, RoleRepository roleRepository, Config config) {
     this.executionContext = executionContext;
     this.roleRepository = roleRepository;
+    this.tripReads = SingleFlight.configured(config, "trips");
   }
 
   /**
@@ -50,12 +61,17 @@ public class TripRepository {
         () -> {
           for (TripNode tripNode : tripNodes) {
             if (tripNode.getNodeType().equals("TripDestinationLeaf")) {
-              tripNode.setDeletedExpiry(Timestamp.from(Instant.now()));
+              Timestamp expiry = Timestamp.from(Instant.now());
+              tripNode.setDeletedExpiry(expiry);
               tripNode.delete();
+              ExpiryScheduler.getInstance()
+                  .schedule(ExpiryRegistry.TRIP, tripNode.getTripNodeId(), expiry);
             }
           }
+          tripReads.forgetAll();
           return null;
-        });
+        },
+        executionContext);
   }
 
   /**
@@ -90,6 +106,8 @@ public class TripRepository {
             update.executeBatch();
             txn.commit();
           }
+          ReplicaRouter.getInstance().recordWrite();
+          tripReads.forgetAll();
 
           return trip;
         },
@@ -147,8 +165,11 @@ public class TripRepository {
   public CompletionStage<TripComposite> deleteTrip(TripComposite trip) {
     return supplyAsync(
         () -> {
-          trip.setDeletedExpiry(Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+          Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+          trip.setDeletedExpiry(expiry);
           trip.delete(); // Soft delete
+          tripReads.forgetAll();
+          ExpiryScheduler.getInstance().schedule(ExpiryRegistry.TRIP, trip.getTripNodeId(), expiry);
           return trip;
         },
         executionContext);
@@ -172,18 +193,35 @@ public class TripRepository {
           sqlUpdate.setNextParameter(null);
           sqlUpdate.setNextParameter(trip.getTripNodeId());
           sqlUpdate.execute();
+          // Raw updates are not seen by the write listener, so the write is recorded here
+          ReplicaRouter.getInstance().recordWrite();
+          tripReads.forgetAll();
+          ExpiryScheduler.getInstance().cancel(ExpiryRegistry.TRIP, trip.getTripNodeId());
           return trip;
-        });
+        },
+        executionContext);
   }
 
   /**
-   * Get a trip by its tripId and userId.
+   * Get a trip by its tripId and userId. Callers asking for the same trip at the same time share
+   * one read, so they must not change it; use getTripByIdsToEdit for that.
    *
    * @param tripId The id of the trip to find.
    * @param userId The user id of the trip to find.
    * @return the trip that matches given ids.
    */
   public CompletionStage<Optional<TripComposite>> getTripByIds(int tripId, int userId) {
+    return tripReads.get(Arrays.asList(tripId, userId), () -> getTripByIdsToEdit(tripId, userId));
+  }
+
+  /**
+   * Get a trip by its tripId and userId, read for this caller alone so it can be changed.
+   *
+   * @param tripId The id of the trip to find.
+   * @param userId The user id of the trip to find.
+   * @return the trip that matches given ids.
+   */
+  public CompletionStage<Optional<TripComposite>> getTripByIdsToEdit(int tripId, int userId) {
     return supplyAsync(
         () -> {
           Optional<TripComposite> trip =
@@ -203,6 +241,27 @@ public class TripRepository {
         executionContext);
   }
 
+  /**
+   * Get a trip and its users by its tripId and userId, without loading the trip nodes. Used where
+   * only the members of a trip are needed.
+   *
+   * @param tripId The id of the trip to find.
+   * @param userId The id of a user that must be on the trip.
+   * @return the trip that matches given ids, with no trip nodes.
+   */
+  public CompletionStage<Optional<TripComposite>> getTripWithUsers(int tripId, int userId) {
+    return supplyAsync(
+        () ->
+            TripComposite.find
+                .query()
+                .fetch("users")
+                .where()
+                .eq("tripNodeId", tripId)
+                .in("users.userId", userId)
+                .findOneOrEmpty(),
+        executionContext);
+  }
+
   /**
    * Recursive function to get all trip nodes in order, this also gets all composite sub trips trip
    * nodes recursively.
@@ -16,6 +16,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
 
 
 /**
@@ -31,7 +33,7 @@ public class UserRepository {
      * @param executionContext Context to run completion stages on
      */
     @Inject
-    public UserRepository(DatabaseExecutionContext executionContext) {
+    public UserRepository(AuthExecutionContext executionContext) {
         this.executionContext = executionContext;
     }
 
@@ -96,7 +98,7 @@ public class UserRepository {
      * @return the user object
      */
     public CompletionStage<Optional<User>> getUserById(int userId) {
-        return supplyAsync(() -> User.find.query().where().eq("user_id", userId).findOneOrEmpty(),
+        return supplyAsync(() -> User.find.query().fetch("roles").where().eq("user_id", userId).findOneOrEmpty(),
                 executionContext);
     }
 
@@ -119,6 +121,39 @@ public class UserRepository {
         return supplyAsync(() -> Nationality.find.query().orderBy().asc("nationality_name").findList(), executionContext);
     }
 
+    /**
+     * Gets the nationalities with the given ids. Ids with no nationality are left out.
+     *
+     * @param ids the ids of the nationalities
+     * @return the nationalities that exist
+     */
+    public CompletionStage<List<Nationality>> getNationalitiesByIds(List<Integer> ids) {
+        return supplyAsync(() -> Nationality.find.query().where().idIn(ids).findList(),
+                executionContext);
+    }
+
+    /**
+     * Gets the passports with the given ids. Ids with no passport are left out.
+     *
+     * @param ids the ids of the passports
+     * @return the passports that exist
+     */
+    public CompletionStage<List<Passport>> getPassportsByIds(List<Integer> ids) {
+        return supplyAsync(() -> Passport.find.query().where().idIn(ids).findList(),
+                executionContext);
+    }
+
+    /**
+     * Gets the traveller types with the given ids. Ids with no traveller type are left out.
+     *
+     * @param ids the ids of the traveller types
+     * @return the traveller types that exist
+     */
+    public CompletionStage<List<TravellerType>> getTravellerTypesByIds(List<Integer> ids) {
+        return supplyAsync(() -> TravellerType.find.query().where().idIn(ids).findList(),
+                executionContext);
+    }
+
     /**
      * Function that gets all of the valid traveller types in the database
      *
@@ -168,9 +203,12 @@ public class UserRepository {
     public CompletionStage<Void> deleteUserById(Integer userId) {
         return runAsync(() -> {
             User userToDelete = User.find.byId(userId);
-            Objects.requireNonNull(userToDelete).setDeletedExpiry(Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+            Timestamp expiry = Timestamp.from(Instant.now().plus(Duration.ofHours(1)));
+            Objects.requireNonNull(userToDelete).setDeletedExpiry(expiry);
             userToDelete.save();
             userToDelete.delete();
+            ExpiryScheduler.getInstance()
+                .schedule(ExpiryRegistry.USER, userId, expiry);
         }, executionContext);
     }
 
@@ -182,7 +220,7 @@ public class UserRepository {
      */
     public CompletionStage<Optional<User>> getUserByIdIncludingDeleted(int userId) {
         return supplyAsync(() -> User.find.query().setIncludeSoftDeletes()
-                .where().eq("user_id", userId).findOneOrEmpty());
+                .where().eq("user_id", userId).findOneOrEmpty(), executionContext);
     }
 
     /**
@@ -196,8 +234,9 @@ public class UserRepository {
             user.setDeletedExpiry(null);
             user.setDeleted(false);
             user.save();
+            ExpiryScheduler.getInstance().cancel(ExpiryRegistry.USER, user.getUserId());
             return user;
-        });
+        }, executionContext);
     }
 
     /**
@@ -2,15 +2,17 @@ package tasks;
 
 import akka.actor.ActorSystem;
 import com.google.inject.Inject;
-import controllers.PhotoController;
 import models.PersonalPhoto;
 import models.User;
+import modules.photos.PhotoStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.ExecutionContext;
 import scala.concurrent.duration.Duration;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -23,15 +25,15 @@ public class ExampleUserPhotoData {
 
   private ActorSystem actorSystem;
   private ExecutionContext executionContext;
-  private PhotoController photoController;
+  private PhotoStore photoStore;
   final Logger log = LoggerFactory.getLogger(this.getClass());
 
   @Inject
   public ExampleUserPhotoData(
-      ActorSystem actorSystem, ExecutionContext executionContext, PhotoController photoController) {
+      ActorSystem actorSystem, ExecutionContext executionContext, PhotoStore photoStore) {
     this.actorSystem = actorSystem;
     this.executionContext = executionContext;
-    this.photoController = photoController;
+    this.photoStore = photoStore;
     initialise();
   }
 
@@ -48,24 +50,29 @@ public class ExampleUserPhotoData {
                 runAsync(
                     () -> {
                       log.info("Started adding example photos to users.");
-                      photoController.checkForAndCreatePhotosDirectory();
                       List<User> users = User.find.all();
                       final int[] fileIndex = {0};
 
-                      File folder = new File("storage/photos");
-                      File[] listOfFiles = folder.listFiles();
+                      List<String> listOfFiles = new ArrayList<>();
+                      try {
+                        for (String partition : photoStore.partitions()) {
+                          photoStore.forEach(partition, photo -> listOfFiles.add(photo.getName()));
+                        }
+                      } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                      }
 
-                      if (listOfFiles != null) {
+                      if (!listOfFiles.isEmpty()) {
                         for (User user : users) {
                           runAsync(
                               () -> {
                                 if (user.getProfilePhoto() == null) {
-                                    File photoFile = listOfFiles[fileIndex[0]];
-                                    fileIndex[0] = (fileIndex[0] + 1) % listOfFiles.length;
+                                    String photoFile = listOfFiles.get(fileIndex[0]);
+                                    fileIndex[0] = (fileIndex[0] + 1) % listOfFiles.size();
 
                                     PersonalPhoto personalPhoto =
                                         new PersonalPhoto(
-                                            photoFile.getName(),
+                                            photoFile,
                                             true,
                                             user,
                                             true,
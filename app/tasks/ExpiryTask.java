@@ -0,0 +1,71 @@
+package tasks;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import modules.photos.PhotoStore;
+import play.inject.ApplicationLifecycle;
+import repository.BackgroundExecutionContext;
+import repository.DatabaseExecutionContext;
+import scala.concurrent.duration.Duration;
+import tasks.expiry.ExpiryEngine;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryScheduler;
+
+/**
+ * Task to permanently delete everything in the database that has been soft deleted once its
+ * expiry has passed. Rows are purged by the expiry scheduler as they expire, and a periodic sweep
+ * purges anything the scheduler missed.
+ */
+public class ExpiryTask {
+
+  private final ActorSystem actorSystem;
+  private final DatabaseExecutionContext executionContext;
+  private final ExpiryEngine expiryEngine;
+  private final Config expiryConfig;
+
+  @Inject
+  public ExpiryTask(
+      ActorSystem actorSystem,
+      BackgroundExecutionContext executionContext,
+      Config config,
+      PhotoStore photoStore,
+      ApplicationLifecycle lifecycle) {
+    this.actorSystem = actorSystem;
+    this.executionContext = executionContext;
+    this.expiryConfig = config.getConfig("expiry");
+    this.expiryEngine =
+        new ExpiryEngine(
+            ExpiryRegistry.defaults(),
+            photoStore,
+            expiryConfig.getInt("chunkSize"),
+            expiryConfig.getInt("maxChunksPerRun"));
+
+    ExpiryScheduler.getInstance()
+        .start(expiryEngine, expiryConfig.getInt("chunkSize"), executionContext);
+    lifecycle.addStopHook(
+        () -> {
+          ExpiryScheduler.getInstance().stop();
+          return CompletableFuture.completedFuture(null);
+        });
+
+    this.initialise();
+  }
+
+  private void initialise() {
+    this.actorSystem
+        .scheduler()
+        .schedule(
+            Duration.create(
+                expiryConfig.getDuration("initialDelay", TimeUnit.MILLISECONDS),
+                TimeUnit.MILLISECONDS),
+            Duration.create(
+                expiryConfig.getDuration("sweepInterval", TimeUnit.MILLISECONDS),
+                TimeUnit.MILLISECONDS),
+            () -> expiryEngine.run(Instant.now()),
+            this.executionContext);
+  }
+}
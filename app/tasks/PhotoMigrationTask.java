@@ -0,0 +1,64 @@
+package tasks;
+
+import com.typesafe.config.Config;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import javax.inject.Inject;
+import modules.photos.CachingPhotoStore;
+import modules.photos.MigratingPhotoStore;
+import modules.photos.PhotoStore;
+import modules.photos.PhotoStoreMigrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+
+/**
+ * Task to move existing photos into the configured photo store in the background, while photos
+ * are served from both the old and the new store. Stopping the server part way through is safe,
+ * the migration carries on the next time it starts.
+ */
+public class PhotoMigrationTask {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private PhotoStoreMigrator migrator;
+
+  @Inject
+  public PhotoMigrationTask(PhotoStore photoStore, Config config, ApplicationLifecycle lifecycle) {
+    if (photoStore instanceof CachingPhotoStore) {
+      photoStore = ((CachingPhotoStore) photoStore).getStore();
+    }
+    if (!(photoStore instanceof MigratingPhotoStore)) {
+      return;
+    }
+
+    MigratingPhotoStore migratingStore = (MigratingPhotoStore) photoStore;
+    Config migrationConfig = config.getConfig("photos.migration");
+    this.migrator =
+        new PhotoStoreMigrator(
+            migratingStore.getSource(),
+            migratingStore.getTarget(),
+            migrationConfig.getInt("batchSize"),
+            migrationConfig.getDuration("pause"));
+
+    Thread thread = new Thread(this::migrate, "photo-migration");
+    thread.setDaemon(true);
+    thread.start();
+
+    lifecycle.addStopHook(
+        () -> {
+          migrator.stop();
+          return CompletableFuture.completedFuture(null);
+        });
+  }
+
+  private void migrate() {
+    try {
+      migrator.run();
+    } catch (IOException e) {
+      log.error("Photo migration failed, it will be resumed on the next start", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package tasks;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.dispatch.ExecutionContexts;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import modules.replicas.ReplicaRouter;
+import play.inject.ApplicationLifecycle;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Task to check how far the read replica is behind the primary, so reads go to the primary while
+ * it is too far behind. The check has a thread of its own, so a long task on the background
+ * bulkhead can't leave the lag unchecked.
+ */
+public class ReplicaLagTask {
+
+  @Inject
+  public ReplicaLagTask(ActorSystem actorSystem, ApplicationLifecycle lifecycle) {
+    ReplicaRouter router = ReplicaRouter.getInstance();
+    if (!router.isEnabled()) {
+      return;
+    }
+
+    ExecutorService checkPool =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "replica-lag-check");
+              thread.setDaemon(true);
+              return thread;
+            });
+    Cancellable checks =
+        actorSystem
+            .scheduler()
+            .schedule(
+                Duration.Zero(),
+                Duration.create(router.getLagCheckIntervalMillis(), TimeUnit.MILLISECONDS),
+                router::checkLag,
+                ExecutionContexts.fromExecutorService(checkPool));
+    lifecycle.addStopHook(
+        () -> {
+          checks.cancel();
+          checkPool.shutdownNow();
+          return CompletableFuture.completedFuture(null);
+        });
+  }
+}
@@ -0,0 +1,75 @@
+package tasks;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import modules.photos.PhotoStore;
+import play.inject.ApplicationLifecycle;
+import repository.BackgroundExecutionContext;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.Duration;
+import tasks.storage.StorageGarbageCollector;
+
+/**
+ * Task to delete files in photo storage that no photo in the database refers to.
+ */
+public class StorageGcTask {
+
+  private final ActorSystem actorSystem;
+  private final ExecutionContext executionContext;
+  private final StorageGarbageCollector garbageCollector;
+  private final Config gcConfig;
+
+  @Inject
+  public StorageGcTask(
+      ActorSystem actorSystem,
+      ExecutionContext executionContext,
+      BackgroundExecutionContext databaseExecutionContext,
+      Config config,
+      PhotoStore photoStore,
+      ApplicationLifecycle lifecycle) {
+    this.actorSystem = actorSystem;
+    this.executionContext = executionContext;
+    this.gcConfig = config.getConfig("storage.gc");
+
+    ExecutorService ioPool =
+        Executors.newFixedThreadPool(
+            gcConfig.getInt("ioThreads"),
+            runnable -> {
+              Thread thread = new Thread(runnable, "storage-gc-io");
+              thread.setDaemon(true);
+              return thread;
+            });
+    lifecycle.addStopHook(
+        () -> {
+          ioPool.shutdownNow();
+          return CompletableFuture.completedFuture(null);
+        });
+
+    this.garbageCollector =
+        new StorageGarbageCollector(
+            photoStore,
+            gcConfig.getDuration("gracePeriod"),
+            StorageGarbageCollector::getReferencedPhotoFiles,
+            databaseExecutionContext,
+            ioPool);
+
+    this.initialise();
+  }
+
+  private void initialise() {
+    this.actorSystem
+        .scheduler()
+        .schedule(
+            Duration.create(
+                gcConfig.getDuration("initialDelay", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+            Duration.create(
+                gcConfig.getDuration("interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+            garbageCollector::collect,
+            this.executionContext);
+  }
+}
@@ -2,7 +2,7 @@ package tasks;
 
 import com.google.inject.AbstractModule;
 import com.typesafe.config.Config;
-import com.typesafe.config.ConfigFactory;
+import play.Environment;
 
 /**
  * Registers the tasks that need to be handled by the application.
@@ -11,23 +11,25 @@ public class TasksController extends AbstractModule {
 
   private boolean populate = false; //NOTE: MUST HAVE INTERNET ENABLED !!!
 
+  private final Config conf;
+
+  public TasksController(Environment environment, Config conf) {
+    this.conf = conf;
+  }
+
   @Override
   protected void configure() {
     bind(SetupTask.class).asEagerSingleton();
 
-    Config conf = ConfigFactory.load();
     String environment = conf.getString("environment");
     boolean populateData = conf.getBoolean("populateData");
 
     if (!environment.equals("test")) {
-      bind(DeleteExpiredPhotosTask.class).asEagerSingleton();
-      bind(DeleteExpiredUsersTask.class).asEagerSingleton();
-      bind(DeleteExpiredDestinationsTask.class).asEagerSingleton();
-      bind(DeleteExpiredDestinationProposal.class).asEagerSingleton();
+      bind(ExpiryTask.class).asEagerSingleton();
+      bind(StorageGcTask.class).asEagerSingleton();
+      bind(PhotoMigrationTask.class).asEagerSingleton();
       bind(CountrySyncTask.class).asEagerSingleton();
-      bind(DeleteExpiredTripsTask.class).asEagerSingleton();
-      bind(DeleteExpiredTreasureHunts.class).asEagerSingleton();
-      bind(DeleteExpiredDestinationPhotos.class).asEagerSingleton();
+      bind(ReplicaLagTask.class).asEagerSingleton();
 
       if (environment.equals("dev") && populateData) {
         bind(PopulateTask.class).asEagerSingleton();
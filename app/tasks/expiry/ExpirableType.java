@@ -0,0 +1,121 @@
+package tasks.expiry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A type of soft deleted row that is permanently deleted once its deleted_expiry has passed.
+ *
+ * <p>Rows that nothing else needs to be cleaned up for are deleted with a bulk DELETE. Rows of an
+ * entity with cascades are deleted by ID through Ebean, so the rows that depend on them are
+ * deleted in the same transaction.
+ */
+public class ExpirableType {
+
+  private final String name;
+  private final String table;
+  private final String idColumn;
+  private final Class<?> beanType;
+  private final List<String> purgedAfter = new ArrayList<>();
+  private Function<List<Integer>, List<String>> filesToRemove;
+
+  private ExpirableType(String name, String table, String idColumn, Class<?> beanType) {
+    this.name = name;
+    this.table = table;
+    this.idColumn = idColumn;
+    this.beanType = beanType;
+  }
+
+  /**
+   * Creates a type whose expired rows can be deleted directly, because nothing references them.
+   *
+   * @param name the name of the type, used in logs and metrics.
+   * @param table the table the rows are in.
+   * @param idColumn the integer ID column of the table.
+   * @return the expirable type.
+   */
+  public static ExpirableType bulk(String name, String table, String idColumn) {
+    return new ExpirableType(name, table, idColumn, null);
+  }
+
+  /**
+   * Creates a type whose expired rows are deleted by ID through Ebean, so its cascades are
+   * followed.
+   *
+   * @param name the name of the type, used in logs and metrics.
+   * @param table the table the rows are in.
+   * @param idColumn the integer ID column of the table.
+   * @param beanType the entity class mapped to the table.
+   * @return the expirable type.
+   */
+  public static ExpirableType cascading(
+      String name, String table, String idColumn, Class<?> beanType) {
+    return new ExpirableType(name, table, idColumn, beanType);
+  }
+
+  /**
+   * Makes this type be purged after other types, because their rows reference rows of this type.
+   *
+   * @param names the names of the types to purge first.
+   * @return this type.
+   */
+  public ExpirableType purgedAfter(String... names) {
+    Collections.addAll(purgedAfter, names);
+    return this;
+  }
+
+  /**
+   * Sets the files to remove from storage once a chunk of rows has been deleted. Only cascading
+   * types can have files, as the IDs of the rows are needed.
+   *
+   * @param filesToRemove gets the names of the photo store files belonging to the rows with the
+   *     given IDs.
+   * @return this type.
+   */
+  public ExpirableType withFiles(Function<List<Integer>, List<String>> filesToRemove) {
+    if (beanType == null) {
+      throw new IllegalStateException("Only cascading expirable types can have files");
+    }
+    this.filesToRemove = filesToRemove;
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String getIdColumn() {
+    return idColumn;
+  }
+
+  public Class<?> getBeanType() {
+    return beanType;
+  }
+
+  public boolean isBulk() {
+    return beanType == null;
+  }
+
+  public List<String> getPurgedAfter() {
+    return Collections.unmodifiableList(purgedAfter);
+  }
+
+  /**
+   * Gets the files belonging to rows that are about to be deleted.
+   *
+   * @param ids the IDs of the rows.
+   * @return the names of the files to remove once the rows are deleted.
+   */
+  public List<String> getFilesToRemove(List<Integer> ids) {
+    if (filesToRemove == null) {
+      return Collections.emptyList();
+    }
+    return filesToRemove.apply(ids);
+  }
+}
@@ -0,0 +1,240 @@
+package tasks.expiry;
+
+import io.ebean.Ebean;
+import io.ebean.SqlQuery;
+import io.ebean.SqlUpdate;
+import io.ebean.Transaction;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import modules.photos.PhotoStore;
+import modules.replicas.ReplicaRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Permanently deletes soft deleted rows whose expiry has passed. Expired rows are found with a
+ * range scan of the (deleted, deleted_expiry) index of each table and deleted in chunks, each in
+ * its own transaction, so a large backlog never holds locks or loads rows all at once.
+ */
+public class ExpiryEngine {
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final ExpiryRegistry registry;
+  private final PhotoStore photoStore;
+  private final int chunkSize;
+  private final int maxChunksPerRun;
+
+  /**
+   * Creates an expiry engine.
+   *
+   * @param registry the types of rows that expire.
+   * @param photoStore the store to remove the files of deleted rows from.
+   * @param chunkSize the most rows deleted in one transaction.
+   * @param maxChunksPerRun the most chunks of each type deleted in one run, so a run takes a
+   *     bounded time. Rows left over are deleted by the next run.
+   */
+  public ExpiryEngine(
+      ExpiryRegistry registry, PhotoStore photoStore, int chunkSize, int maxChunksPerRun) {
+    this.registry = registry;
+    this.photoStore = photoStore;
+    this.chunkSize = chunkSize;
+    this.maxChunksPerRun = maxChunksPerRun;
+  }
+
+  /**
+   * Deletes the rows of every expirable type that expired before the given time.
+   *
+   * @param now the time to delete rows that expired before.
+   * @return what the run did.
+   */
+  public ExpiryRun run(Instant now) {
+    ExpiryRun run = new ExpiryRun(now);
+    long start = System.nanoTime();
+
+    for (ExpirableType type : registry.getTypes()) {
+      run.add(purge(type, Timestamp.from(now), null));
+    }
+
+    run.finish(Duration.ofNanos(System.nanoTime() - start));
+    ExpiryMetrics.getInstance().record(run);
+    log.info(
+        String.format(
+            "Expiry run deleted %d rows in %d ms", run.getRowsDeleted(), run.getDuration().toMillis()));
+    return run;
+  }
+
+  /**
+   * Deletes the given rows, if they are still deleted and have expired. Rows whose deletion has
+   * been undone, or whose expiry has moved later, are left alone.
+   *
+   * @param idsByType the IDs of the rows to delete, by the name of their expirable type.
+   * @param now the time to delete rows that expired before.
+   * @return what the run did.
+   */
+  public ExpiryRun purge(Map<String, List<Integer>> idsByType, Instant now) {
+    ExpiryRun run = new ExpiryRun(now);
+    long start = System.nanoTime();
+
+    for (ExpirableType type : registry.getTypes()) {
+      List<Integer> ids = idsByType.getOrDefault(type.getName(), Collections.emptyList());
+      for (int from = 0; from < ids.size(); from += chunkSize) {
+        List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+        run.add(purge(type, Timestamp.from(now), chunk));
+      }
+    }
+
+    run.finish(Duration.ofNanos(System.nanoTime() - start));
+    ExpiryMetrics.getInstance().record(run);
+    return run;
+  }
+
+  public ExpiryRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Deletes the expired rows of one type, a chunk at a time, until there are none left or the
+   * chunk limit is reached.
+   *
+   * @param type the type to purge.
+   * @param now the time to delete rows that expired before.
+   * @param ids the only rows to delete, or null to delete any expired rows.
+   * @return what was done for the type.
+   */
+  private ExpiryRun.TypeStats purge(ExpirableType type, Timestamp now, List<Integer> ids) {
+    ExpiryRun.TypeStats stats = new ExpiryRun.TypeStats(type.getName());
+    long start = System.nanoTime();
+
+    try {
+      for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+        int rows =
+            type.isBulk()
+                ? deleteBulkChunk(type, now, ids)
+                : deleteCascadingChunk(type, now, ids, stats);
+        stats.addChunk(rows);
+        if (rows < chunkSize) {
+          break;
+        }
+        if (chunk == maxChunksPerRun - 1) {
+          stats.truncate();
+        }
+      }
+    } catch (Exception e) {
+      // The failed chunk was rolled back, so it would only fail again in this run
+      log.error("Failed to delete expired " + type.getName() + " rows", e);
+      stats.fail();
+    }
+
+    stats.finish(Duration.ofNanos(System.nanoTime() - start));
+    if (ids != null) {
+      return stats;
+    }
+    log.info(
+        String.format(
+            "Deleted %d expired %s rows in %d chunks, %d ms%s",
+            stats.getRowsDeleted(),
+            type.getName(),
+            stats.getChunks(),
+            stats.getDuration().toMillis(),
+            stats.isTruncated() ? ", more remain" : ""));
+    return stats;
+  }
+
+  /**
+   * Deletes a chunk of expired rows of a type that nothing references with a single DELETE.
+   *
+   * @param type the type to delete.
+   * @param now the time to delete rows that expired before.
+   * @param ids the only rows to delete, or null to delete any expired rows.
+   * @return the number of rows deleted.
+   */
+  private int deleteBulkChunk(ExpirableType type, Timestamp now, List<Integer> ids) {
+    try (Transaction txn = Ebean.beginTransaction()) {
+      SqlUpdate delete =
+          Ebean.createSqlUpdate(
+                  "DELETE FROM " + type.getTable() + expiredRows(type, ids) + " LIMIT " + chunkSize)
+              .setParameter("now", now);
+      if (ids != null) {
+        delete.setParameter("ids", ids);
+      }
+      int rows = delete.execute();
+      txn.commit();
+      // Raw deletes are not seen by the write listener, so the write is recorded here
+      ReplicaRouter.getInstance().recordWrite();
+      return rows;
+    }
+  }
+
+  /**
+   * Deletes a chunk of expired rows by ID through Ebean so their cascades are followed, then
+   * removes their files once the deletes are committed.
+   *
+   * @param type the type to delete.
+   * @param now the time to delete rows that expired before.
+   * @param onlyIds the only rows to delete, or null to delete any expired rows.
+   * @param stats the stats to count removed files in.
+   * @return the number of rows deleted.
+   */
+  private int deleteCascadingChunk(
+      ExpirableType type, Timestamp now, List<Integer> onlyIds, ExpiryRun.TypeStats stats) {
+    List<String> files;
+    List<Integer> ids;
+
+    try (Transaction txn = Ebean.beginTransaction()) {
+      SqlQuery select =
+          Ebean.createSqlQuery(
+                  "SELECT "
+                      + type.getIdColumn()
+                      + " FROM "
+                      + type.getTable()
+                      + expiredRows(type, onlyIds)
+                      + " ORDER BY deleted_expiry LIMIT "
+                      + chunkSize)
+              .setParameter("now", now);
+      if (onlyIds != null) {
+        select.setParameter("ids", onlyIds);
+      }
+      ids = select.findSingleAttributeList(Integer.class);
+      if (ids.isEmpty()) {
+        return 0;
+      }
+
+      files = type.getFilesToRemove(ids);
+      Ebean.getDefaultServer().deleteAllPermanent(type.getBeanType(), ids, txn);
+      txn.commit();
+    }
+    ReplicaRouter.getInstance().recordWrite();
+
+    for (String file : files) {
+      try {
+        stats.addFileRemoved(photoStore.delete(file));
+      } catch (IOException e) {
+        log.warn("Could not remove expired photo file " + file, e);
+        stats.addFileRemoved(false);
+      }
+    }
+    return ids.size();
+  }
+
+  /**
+   * Builds the WHERE clause matching expired rows. The deleted and deleted_expiry conditions come
+   * first so the (deleted, deleted_expiry) index is used.
+   *
+   * @param type the type of the rows.
+   * @param ids the only rows to match, or null to match any expired rows.
+   * @return the WHERE clause, with a :now parameter and an :ids parameter if ids are given.
+   */
+  private String expiredRows(ExpirableType type, List<Integer> ids) {
+    String where = " WHERE deleted = true AND deleted_expiry <= :now";
+    if (ids != null) {
+      where += " AND " + type.getIdColumn() + " IN (:ids)";
+    }
+    return where;
+  }
+}
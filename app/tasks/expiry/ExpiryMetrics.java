@@ -0,0 +1,74 @@
+package tasks.expiry;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the results of expiry runs so they can be reported.
+ */
+public class ExpiryMetrics {
+
+  private static ExpiryMetrics instance;
+
+  private final AtomicLong runs = new AtomicLong();
+  private final AtomicLong failedRuns = new AtomicLong();
+  private final Map<String, AtomicLong> rowsDeleted = new ConcurrentHashMap<>();
+  private volatile ExpiryRun lastRun;
+
+  private ExpiryMetrics() {}
+
+  /**
+   * Singleton getter for the expiry metrics.
+   *
+   * @return the instance of the expiry metrics.
+   */
+  public static synchronized ExpiryMetrics getInstance() {
+    if (instance == null) {
+      instance = new ExpiryMetrics();
+    }
+    return instance;
+  }
+
+  void record(ExpiryRun run) {
+    runs.incrementAndGet();
+    if (run.hasFailures()) {
+      failedRuns.incrementAndGet();
+    }
+    for (ExpiryRun.TypeStats type : run.getTypes()) {
+      rowsDeleted
+          .computeIfAbsent(type.getName(), name -> new AtomicLong())
+          .addAndGet(type.getRowsDeleted());
+    }
+    lastRun = run;
+  }
+
+  public long getRuns() {
+    return runs.get();
+  }
+
+  public long getFailedRuns() {
+    return failedRuns.get();
+  }
+
+  /**
+   * Gets the number of rows deleted by all runs, by expirable type.
+   *
+   * @return the total rows deleted of each type.
+   */
+  public Map<String, Long> getRowsDeleted() {
+    Map<String, Long> totals = new TreeMap<>();
+    rowsDeleted.forEach((name, count) -> totals.put(name, count.get()));
+    return totals;
+  }
+
+  /**
+   * Gets the most recent run.
+   *
+   * @return the last run, or null if there has not been one.
+   */
+  public ExpiryRun getLastRun() {
+    return lastRun;
+  }
+}
@@ -0,0 +1,145 @@
+package tasks.expiry;
+
+import io.ebean.Ebean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import models.Destination;
+import models.DestinationProposal;
+import models.PersonalPhoto;
+import models.TripNode;
+import models.User;
+
+/**
+ * The types of soft deleted rows that expire. Types are purged in an order where every type comes
+ * after the types that reference it, so a row is never deleted while an expired row still points
+ * to it.
+ */
+public class ExpiryRegistry {
+
+  public static final String DESTINATION_PHOTO = "destination-photo";
+  public static final String TREASURE_HUNT = "treasure-hunt";
+  public static final String DESTINATION_PROPOSAL = "destination-proposal";
+  public static final String TRIP = "trip";
+  public static final String PHOTO = "photo";
+  public static final String DESTINATION = "destination";
+  public static final String USER = "user";
+
+  private final Map<String, ExpirableType> types = new LinkedHashMap<>();
+
+  /**
+   * Creates a registry of every expirable type in the application.
+   *
+   * @return the registry.
+   */
+  public static ExpiryRegistry defaults() {
+    ExpiryRegistry registry = new ExpiryRegistry();
+
+    registry.register(
+        ExpirableType.bulk(DESTINATION_PHOTO, "destination_photo", "destination_photo_id"));
+    registry.register(ExpirableType.bulk(TREASURE_HUNT, "treasure_hunt", "treasure_hunt_id"));
+    registry.register(
+        ExpirableType.cascading(
+            DESTINATION_PROPOSAL,
+            "destination_proposal",
+            "destination_proposal_id",
+            DestinationProposal.class));
+    registry.register(ExpirableType.cascading(TRIP, "trip_node", "trip_node_id", TripNode.class));
+    registry.register(
+        ExpirableType.cascading(PHOTO, "personal_photo", "photo_id", PersonalPhoto.class)
+            .purgedAfter(DESTINATION_PHOTO)
+            .withFiles(
+                ids -> photoFiles("SELECT filename_hash, thumbnail_name FROM personal_photo"
+                    + " WHERE photo_id IN (:ids)", ids)));
+    registry.register(
+        ExpirableType.cascading(DESTINATION, "destination", "destination_id", Destination.class)
+            .purgedAfter(DESTINATION_PHOTO, TREASURE_HUNT, DESTINATION_PROPOSAL, TRIP));
+    registry.register(
+        ExpirableType.cascading(USER, "user", "user_id", User.class)
+            .purgedAfter(PHOTO, TREASURE_HUNT, DESTINATION_PROPOSAL, TRIP)
+            .withFiles(
+                ids -> photoFiles("SELECT filename_hash, thumbnail_name FROM personal_photo"
+                    + " WHERE user_user_id IN (:ids)", ids)));
+
+    return registry;
+  }
+
+  /**
+   * Gets the names of the photo and thumbnail files of the photos found by a query.
+   *
+   * @param sql a query selecting the filename_hash and thumbnail_name of photos.
+   * @param ids the IDs bound to the query.
+   * @return the names of the files of the photos.
+   */
+  private static List<String> photoFiles(String sql, List<Integer> ids) {
+    List<String> files = new ArrayList<>();
+    Ebean.createSqlQuery(sql)
+        .setParameter("ids", ids)
+        .findEachRow(
+            (resultSet, rowNumber) -> {
+              for (int column = 1; column <= 2; column++) {
+                // Cover photos have no thumbnail
+                String name = resultSet.getString(column);
+                if (name != null) {
+                  files.add(name);
+                }
+              }
+            });
+    return files;
+  }
+
+  /**
+   * Adds an expirable type.
+   *
+   * @param type the type to add.
+   */
+  public void register(ExpirableType type) {
+    if (types.putIfAbsent(type.getName(), type) != null) {
+      throw new IllegalArgumentException("Expirable type " + type.getName() + " already exists");
+    }
+  }
+
+  /**
+   * Gets the types in the order they should be purged.
+   *
+   * @return the types, each after all the types it is purged after.
+   * @throws IllegalStateException if a type is purged after an unknown type, or the types are
+   *     purged after each other in a cycle.
+   */
+  public List<ExpirableType> getTypes() {
+    List<ExpirableType> ordered = new ArrayList<>();
+    Set<String> added = new HashSet<>();
+    Set<String> visiting = new HashSet<>();
+
+    for (ExpirableType type : types.values()) {
+      addInOrder(type, ordered, added, visiting);
+    }
+    return ordered;
+  }
+
+  private void addInOrder(
+      ExpirableType type, List<ExpirableType> ordered, Set<String> added, Set<String> visiting) {
+    if (added.contains(type.getName())) {
+      return;
+    }
+    if (!visiting.add(type.getName())) {
+      throw new IllegalStateException("Expirable types form a cycle at " + type.getName());
+    }
+
+    for (String name : type.getPurgedAfter()) {
+      ExpirableType before = types.get(name);
+      if (before == null) {
+        throw new IllegalStateException(
+            type.getName() + " is purged after unknown expirable type " + name);
+      }
+      addInOrder(before, ordered, added, visiting);
+    }
+
+    visiting.remove(type.getName());
+    added.add(type.getName());
+    ordered.add(type);
+  }
+}
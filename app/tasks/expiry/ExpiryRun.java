@@ -0,0 +1,143 @@
+package tasks.expiry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one run of the expiry engine did, for each expirable type.
+ */
+public class ExpiryRun {
+
+  private final Instant startedAt;
+  private final List<TypeStats> types = new ArrayList<>();
+  private Duration duration = Duration.ZERO;
+
+  ExpiryRun(Instant startedAt) {
+    this.startedAt = startedAt;
+  }
+
+  void add(TypeStats stats) {
+    types.add(stats);
+  }
+
+  void finish(Duration duration) {
+    this.duration = duration;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public List<TypeStats> getTypes() {
+    return Collections.unmodifiableList(types);
+  }
+
+  /**
+   * Gets the number of rows deleted across all types.
+   *
+   * @return the rows deleted.
+   */
+  public long getRowsDeleted() {
+    return types.stream().mapToLong(TypeStats::getRowsDeleted).sum();
+  }
+
+  /**
+   * Gets whether any type failed to be purged completely.
+   *
+   * @return true if a chunk failed.
+   */
+  public boolean hasFailures() {
+    return types.stream().anyMatch(TypeStats::isFailed);
+  }
+
+  /** What the run did for one expirable type. */
+  public static class TypeStats {
+    private final String name;
+    private long rowsDeleted;
+    private int chunks;
+    private int filesRemoved;
+    private int filesFailed;
+    private boolean failed;
+    private boolean truncated;
+    private Duration duration = Duration.ZERO;
+
+    TypeStats(String name) {
+      this.name = name;
+    }
+
+    void addChunk(int rows) {
+      chunks++;
+      rowsDeleted += rows;
+    }
+
+    void addFileRemoved(boolean removed) {
+      if (removed) {
+        filesRemoved++;
+      } else {
+        filesFailed++;
+      }
+    }
+
+    void fail() {
+      failed = true;
+    }
+
+    void truncate() {
+      truncated = true;
+    }
+
+    void finish(Duration duration) {
+      this.duration = duration;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getRowsDeleted() {
+      return rowsDeleted;
+    }
+
+    public int getChunks() {
+      return chunks;
+    }
+
+    public int getFilesRemoved() {
+      return filesRemoved;
+    }
+
+    public int getFilesFailed() {
+      return filesFailed;
+    }
+
+    /**
+     * Gets whether a chunk failed, leaving expired rows of this type behind until the next run.
+     *
+     * @return true if a chunk failed.
+     */
+    public boolean isFailed() {
+      return failed;
+    }
+
+    /**
+     * Gets whether the run stopped at its chunk limit, leaving expired rows of this type behind
+     * until the next run.
+     *
+     * @return true if the chunk limit was reached.
+     */
+    public boolean isTruncated() {
+      return truncated;
+    }
+
+    public Duration getDuration() {
+      return duration;
+    }
+  }
+}
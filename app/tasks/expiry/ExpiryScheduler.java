@@ -0,0 +1,254 @@
+package tasks.expiry;
+
+import io.ebean.Ebean;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Purges each soft deleted row as soon as its expiry passes. Expiries are scheduled when a
+ * deletion is committed and cancelled when it is undone, and are waited on in a delay queue so
+ * purges happen on time and spread out as deletions do, rather than all at once.
+ *
+ * <p>Scheduled expiries only live in memory, so they are rebuilt from the database when the
+ * scheduler starts. The scheduler's own thread only waits for rows to expire; the rebuild and the
+ * purges run on the executor it is started with, so they take their connection from a bulkhead.
+ */
+public class ExpiryScheduler {
+
+  // Timestamps may be rounded up to the second when stored, so purges wait a little past expiry
+  private static final long ROUNDING_GRACE_MILLIS = 1000;
+
+  private static ExpiryScheduler instance;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final DelayQueue<ScheduledExpiry> queue = new DelayQueue<>();
+  // The latest expiry scheduled for each row. Expiries left in the queue that are no longer here
+  // have been cancelled or replaced, and are skipped.
+  private final Map<String, ScheduledExpiry> scheduled = new ConcurrentHashMap<>();
+
+  private volatile ExpiryEngine engine;
+  private int batchSize;
+  private Executor purgeExecutor;
+  private Thread worker;
+  private volatile boolean running = false;
+
+  private ExpiryScheduler() {}
+
+  /**
+   * Singleton getter for the expiry scheduler.
+   *
+   * @return the instance of the expiry scheduler.
+   */
+  public static synchronized ExpiryScheduler getInstance() {
+    if (instance == null) {
+      instance = new ExpiryScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * Starts purging rows as they expire. Until this is called, scheduled expiries are ignored.
+   *
+   * @param engine the engine to purge rows with.
+   * @param batchSize the most rows purged together when several expire at once.
+   * @param purgeExecutor the executor the database work is run on.
+   */
+  public synchronized void start(ExpiryEngine engine, int batchSize, Executor purgeExecutor) {
+    if (running) {
+      return;
+    }
+    this.engine = engine;
+    this.batchSize = batchSize;
+    this.purgeExecutor = purgeExecutor;
+    running = true;
+
+    worker = new Thread(this::purgeLoop, "expiry-scheduler");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** Stops purging rows. */
+  public synchronized void stop() {
+    running = false;
+    if (worker != null) {
+      worker.interrupt();
+      worker = null;
+    }
+    queue.clear();
+    scheduled.clear();
+  }
+
+  /**
+   * Schedules a soft deleted row to be purged when it expires, replacing any earlier schedule for
+   * the row. Should be called once the deletion has been committed.
+   *
+   * @param type the name of the expirable type of the row.
+   * @param id the ID of the row.
+   * @param expiry when the row expires, or null if it never does.
+   */
+  public void schedule(String type, int id, Timestamp expiry) {
+    if (!running || expiry == null) {
+      return;
+    }
+    ScheduledExpiry expiring = new ScheduledExpiry(type, id, expiry.getTime());
+    scheduled.put(expiring.key, expiring);
+    queue.add(expiring);
+  }
+
+  /**
+   * Cancels the purge of a row whose deletion has been undone.
+   *
+   * @param type the name of the expirable type of the row.
+   * @param id the ID of the row.
+   */
+  public void cancel(String type, int id) {
+    scheduled.remove(key(type, id));
+  }
+
+  /**
+   * Gets the number of rows waiting to expire.
+   *
+   * @return the number of scheduled expiries.
+   */
+  public int getPending() {
+    return scheduled.size();
+  }
+
+  /** Schedules every soft deleted row in the database, then purges rows as they expire. */
+  private void purgeLoop() {
+    try {
+      CompletableFuture.runAsync(this::rebuild, purgeExecutor).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Exception e) {
+      // The periodic sweep still purges anything that was missed
+      log.error("Failed to load the soft deleted rows waiting to expire", e);
+    }
+
+    while (running) {
+      try {
+        ScheduledExpiry first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        List<ScheduledExpiry> due = new ArrayList<>();
+        due.add(first);
+        queue.drainTo(due, batchSize - 1);
+        CompletableFuture.runAsync(() -> purge(due), purgeExecutor).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Failed to purge expired rows", e);
+      }
+    }
+  }
+
+  /** Schedules every soft deleted row of each expirable type that has an expiry. */
+  private void rebuild() {
+    int rows = 0;
+    for (ExpirableType type : engine.getRegistry().getTypes()) {
+      List<ScheduledExpiry> expiries = new ArrayList<>();
+      Ebean.createSqlQuery(
+              "SELECT "
+                  + type.getIdColumn()
+                  + ", deleted_expiry FROM "
+                  + type.getTable()
+                  + " WHERE deleted = true AND deleted_expiry IS NOT NULL")
+          .findEachRow(
+              (resultSet, rowNumber) ->
+                  expiries.add(
+                      new ScheduledExpiry(
+                          type.getName(), resultSet.getInt(1), resultSet.getTimestamp(2).getTime())));
+
+      for (ScheduledExpiry expiring : expiries) {
+        // Keep anything scheduled by a deletion made while the rows were loading
+        if (scheduled.putIfAbsent(expiring.key, expiring) == null) {
+          queue.add(expiring);
+          rows++;
+        }
+      }
+    }
+    log.info(String.format("Scheduled %d soft deleted rows to expire", rows));
+  }
+
+  /**
+   * Purges the rows whose expiry has passed, skipping any that were cancelled or rescheduled.
+   *
+   * @param due the expiries that have passed.
+   */
+  private void purge(List<ScheduledExpiry> due) {
+    Map<String, List<Integer>> idsByType = new HashMap<>();
+    for (ScheduledExpiry expiring : due) {
+      if (scheduled.remove(expiring.key, expiring)) {
+        idsByType.computeIfAbsent(expiring.type, type -> new ArrayList<>()).add(expiring.id);
+      }
+    }
+
+    if (!idsByType.isEmpty()) {
+      engine.purge(idsByType, Instant.now());
+    }
+  }
+
+  private static String key(String type, int id) {
+    return type + ":" + id;
+  }
+
+  /** A row waiting in the delay queue for its expiry to pass. */
+  private static class ScheduledExpiry implements Delayed {
+    private final String type;
+    private final int id;
+    private final String key;
+    private final long purgeAtMillis;
+
+    private ScheduledExpiry(String type, int id, long expiryMillis) {
+      this.type = type;
+      this.id = id;
+      this.key = key(type, id);
+      this.purgeAtMillis = expiryMillis + ROUNDING_GRACE_MILLIS;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(purgeAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(purgeAtMillis, ((ScheduledExpiry) other).purgeAtMillis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ScheduledExpiry)) {
+        return false;
+      }
+      ScheduledExpiry that = (ScheduledExpiry) o;
+      return purgeAtMillis == that.purgeAtMillis && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key, purgeAtMillis);
+    }
+  }
+}
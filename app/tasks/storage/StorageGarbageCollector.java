@@ -0,0 +1,205 @@
+package tasks.storage;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import io.ebean.Ebean;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import modules.photos.PhotoStore;
+import modules.photos.StoredPhoto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes files in the photo store that no photo in the database refers to, such as files left
+ * behind by failed uploads or failed deletes. The partitions of the store are listed in parallel,
+ * and orphans are deleted in batches, on a bounded I/O pool.
+ *
+ * <p>Files newer than the grace period are never deleted, as an upload writes its files before
+ * the photo is saved to the database.
+ */
+public class StorageGarbageCollector {
+
+  private static final int FILES_PER_TASK = 256;
+
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  private final PhotoStore photoStore;
+  private final Duration gracePeriod;
+  private final Supplier<Set<String>> referencedFiles;
+  private final Executor databaseExecutor;
+  private final Executor ioExecutor;
+
+  /**
+   * Creates a storage garbage collector.
+   *
+   * @param photoStore the store photos and thumbnails are kept in.
+   * @param gracePeriod how old an orphaned file must be before it is deleted.
+   * @param referencedFiles gets the names of every file the database refers to.
+   * @param databaseExecutor the executor to get the referenced files on.
+   * @param ioExecutor the executor to scan and delete files on.
+   */
+  public StorageGarbageCollector(
+      PhotoStore photoStore,
+      Duration gracePeriod,
+      Supplier<Set<String>> referencedFiles,
+      Executor databaseExecutor,
+      Executor ioExecutor) {
+    this.photoStore = photoStore;
+    this.gracePeriod = gracePeriod;
+    this.referencedFiles = referencedFiles;
+    this.databaseExecutor = databaseExecutor;
+    this.ioExecutor = ioExecutor;
+  }
+
+  /**
+   * Gets the names of every photo and thumbnail file referred to by the database, including those
+   * of soft deleted photos, which may still be restored.
+   *
+   * @return the names of the referenced files.
+   */
+  public static Set<String> getReferencedPhotoFiles() {
+    Set<String> files = new HashSet<>();
+    Ebean.createSqlQuery("SELECT filename_hash, thumbnail_name FROM personal_photo")
+        .findEachRow(
+            (resultSet, rowNumber) -> {
+              files.add(resultSet.getString(1));
+              files.add(resultSet.getString(2));
+            });
+    return files;
+  }
+
+  /**
+   * Deletes the orphaned files in the photo store.
+   *
+   * @return a completion stage that completes with what was done.
+   */
+  public CompletionStage<StorageGcReport> collect() {
+    StorageGcReport report = new StorageGcReport(Instant.now());
+    Instant cutoff = report.getStartedAt().minus(gracePeriod);
+    long start = System.nanoTime();
+
+    // The referenced files are read before the store is scanned, so a file saved in between
+    // is only missing from the set if it is newer than the cutoff
+    return supplyAsync(referencedFiles, databaseExecutor)
+        .thenComposeAsync(referenced -> scan(referenced, cutoff, report), ioExecutor)
+        .thenApply(
+            ignored -> {
+              report.finish(Duration.ofNanos(System.nanoTime() - start));
+              StorageGcMetrics.getInstance().record(report);
+              log.info(
+                  String.format(
+                      "Storage GC scanned %d files, deleted %d orphans (%d bytes), kept %d recent"
+                          + " orphans, failed to delete %d, in %d ms",
+                      report.getFilesScanned(),
+                      report.getFilesDeleted(),
+                      report.getBytesReclaimed(),
+                      report.getOrphansTooRecent(),
+                      report.getDeleteFailures(),
+                      report.getDuration().toMillis()));
+              return report;
+            });
+  }
+
+  /** Scans each partition of the photo store in a separate task. */
+  private CompletableFuture<Void> scan(Set<String> referenced, Instant cutoff,
+      StorageGcReport report) {
+    List<String> partitions;
+    try {
+      partitions = photoStore.partitions();
+    } catch (IOException e) {
+      throw new CompletionException(e);
+    }
+
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    for (String partition : partitions) {
+      tasks.add(
+          supplyAsync(() -> scanPartition(partition, referenced, cutoff, report), ioExecutor)
+              .thenCompose(deletes -> deletes));
+    }
+    return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Lists a partition of the photo store, deleting its orphans in batches of files as they are
+   * found.
+   *
+   * @return a future that completes once every orphan found has been deleted.
+   */
+  private CompletableFuture<Void> scanPartition(String partition, Set<String> referenced,
+      Instant cutoff, StorageGcReport report) {
+    List<CompletableFuture<Void>> deletes = new ArrayList<>();
+    List<StoredPhoto> batch = new ArrayList<>(FILES_PER_TASK);
+
+    try {
+      photoStore.forEach(
+          partition,
+          photo -> {
+            if (isDeletable(photo, referenced, cutoff, report)) {
+              batch.add(photo);
+              if (batch.size() == FILES_PER_TASK) {
+                deletes.add(deleteBatch(new ArrayList<>(batch), report));
+                batch.clear();
+              }
+            }
+          });
+    } catch (IOException e) {
+      log.error("Failed to scan photo store partition " + partition, e);
+    }
+    if (!batch.isEmpty()) {
+      deletes.add(deleteBatch(batch, report));
+    }
+
+    return CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Checks whether a file is not referenced and older than the grace period.
+   *
+   * @param photo the file to check.
+   * @param referenced the names of the referenced files.
+   * @param cutoff files modified after this are kept.
+   * @param report the report to count the file in.
+   * @return true if the file should be deleted.
+   */
+  private boolean isDeletable(StoredPhoto photo, Set<String> referenced, Instant cutoff,
+      StorageGcReport report) {
+    report.fileScanned();
+    if (referenced.contains(photo.getName())) {
+      return false;
+    }
+    if (photo.getLastModified().isAfter(cutoff)) {
+      report.orphanTooRecent();
+      return false;
+    }
+    return true;
+  }
+
+  private CompletableFuture<Void> deleteBatch(List<StoredPhoto> photos, StorageGcReport report) {
+    return runAsync(
+        () -> {
+          for (StoredPhoto photo : photos) {
+            try {
+              if (photoStore.delete(photo.getName())) {
+                report.orphanDeleted(photo.getSize());
+              }
+            } catch (IOException e) {
+              log.warn("Could not delete orphaned file " + photo.getName(), e);
+              report.orphanNotDeleted();
+            }
+          }
+        },
+        ioExecutor);
+  }
+}
@@ -0,0 +1,64 @@
+package tasks.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the results of storage garbage collection runs so they can be reported.
+ */
+public class StorageGcMetrics {
+
+  private static StorageGcMetrics instance;
+
+  private final AtomicLong runs = new AtomicLong();
+  private final AtomicLong filesDeleted = new AtomicLong();
+  private final AtomicLong bytesReclaimed = new AtomicLong();
+  private final AtomicLong deleteFailures = new AtomicLong();
+  private volatile StorageGcReport lastRun;
+
+  private StorageGcMetrics() {}
+
+  /**
+   * Singleton getter for the storage garbage collection metrics.
+   *
+   * @return the instance of the storage garbage collection metrics.
+   */
+  public static synchronized StorageGcMetrics getInstance() {
+    if (instance == null) {
+      instance = new StorageGcMetrics();
+    }
+    return instance;
+  }
+
+  void record(StorageGcReport report) {
+    runs.incrementAndGet();
+    filesDeleted.addAndGet(report.getFilesDeleted());
+    bytesReclaimed.addAndGet(report.getBytesReclaimed());
+    deleteFailures.addAndGet(report.getDeleteFailures());
+    lastRun = report;
+  }
+
+  public long getRuns() {
+    return runs.get();
+  }
+
+  public long getFilesDeleted() {
+    return filesDeleted.get();
+  }
+
+  public long getBytesReclaimed() {
+    return bytesReclaimed.get();
+  }
+
+  public long getDeleteFailures() {
+    return deleteFailures.get();
+  }
+
+  /**
+   * Gets the most recent run.
+   *
+   * @return the last run, or null if there has not been one.
+   */
+  public StorageGcReport getLastRun() {
+    return lastRun;
+  }
+}
@@ -0,0 +1,98 @@
+package tasks.storage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one run of the storage garbage collector did.
+ */
+public class StorageGcReport {
+
+  private final Instant startedAt;
+  private final AtomicLong filesScanned = new AtomicLong();
+  private final AtomicLong orphansFound = new AtomicLong();
+  private final AtomicLong orphansTooRecent = new AtomicLong();
+  private final AtomicLong filesDeleted = new AtomicLong();
+  private final AtomicLong bytesReclaimed = new AtomicLong();
+  private final AtomicLong deleteFailures = new AtomicLong();
+  private volatile Duration duration = Duration.ZERO;
+
+  StorageGcReport(Instant startedAt) {
+    this.startedAt = startedAt;
+  }
+
+  void fileScanned() {
+    filesScanned.incrementAndGet();
+  }
+
+  void orphanTooRecent() {
+    orphansFound.incrementAndGet();
+    orphansTooRecent.incrementAndGet();
+  }
+
+  void orphanDeleted(long bytes) {
+    orphansFound.incrementAndGet();
+    filesDeleted.incrementAndGet();
+    bytesReclaimed.addAndGet(bytes);
+  }
+
+  void orphanNotDeleted() {
+    orphansFound.incrementAndGet();
+    deleteFailures.incrementAndGet();
+  }
+
+  void finish(Duration duration) {
+    this.duration = duration;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public long getFilesScanned() {
+    return filesScanned.get();
+  }
+
+  /**
+   * Gets the number of files that no photo in the database refers to, whether or not they were
+   * deleted.
+   *
+   * @return the number of orphaned files.
+   */
+  public long getOrphansFound() {
+    return orphansFound.get();
+  }
+
+  /**
+   * Gets the number of orphaned files kept because they are newer than the grace period, as they
+   * may belong to an upload that has not been saved yet.
+   *
+   * @return the number of orphans kept.
+   */
+  public long getOrphansTooRecent() {
+    return orphansTooRecent.get();
+  }
+
+  public long getFilesDeleted() {
+    return filesDeleted.get();
+  }
+
+  public long getBytesReclaimed() {
+    return bytesReclaimed.get();
+  }
+
+  /**
+   * Gets the number of orphaned files that could not be deleted. They are tried again on the next
+   * run.
+   *
+   * @return the number of failed deletes.
+   */
+  public long getDeleteFailures() {
+    return deleteFailures.get();
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+}
@@ -2,9 +2,12 @@ package util;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import exceptions.*;
+import java.util.concurrent.RejectedExecutionException;
+import modules.photos.UploadRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.libs.Json;
+import play.mvc.Http;
 import play.mvc.Result;
 
 import static play.mvc.Results.*;
@@ -15,7 +18,10 @@ import static play.mvc.Results.*;
 public class ExceptionUtil {
 
   private final Logger log = LoggerFactory.getLogger(this.getClass());
-  private final String MESSAGE_KEY = "message";
+  private static final String MESSAGE_KEY = "message";
+
+  // Overload lasts only as long as the database is behind, which is rarely long
+  private static final String RETRY_AFTER_SECONDS = "1";
 
 
   /**
@@ -44,6 +50,12 @@ public class ExceptionUtil {
     } catch (UnauthorizedException exception) {
       message.put(MESSAGE_KEY, exception.getMessage());
       return unauthorized(message);
+    } catch (UploadRejectedException exception) {
+      message.put(MESSAGE_KEY, exception.getMessage());
+      return status(exception.getStatus(), message);
+    } catch (RejectedExecutionException exception) {
+      // A database bulkhead or the thumbnail threads had too many tasks waiting
+      return getOverloadedResult();
     } catch (Exception exception) {
       message.put(MESSAGE_KEY, "An unexpected error has occurred.");
       log.error("Internal Server Error", exception);
@@ -51,4 +63,30 @@ public class ExceptionUtil {
     }
   }
 
+  /**
+   * Gets the result of a request turned away as the server was too busy to serve it, such as when
+   * a database bulkhead or the thumbnail threads were full, asking the client to try again shortly.
+   *
+   * @return the result to reply in the http response.
+   */
+  public static Result getOverloadedResult() {
+    ObjectNode message = Json.newObject();
+    message.put(MESSAGE_KEY, "The server is too busy, please try again shortly.");
+    return status(Http.Status.SERVICE_UNAVAILABLE, message)
+        .withHeader(Http.HeaderNames.RETRY_AFTER, RETRY_AFTER_SECONDS);
+  }
+
+  /**
+   * Gets the result of a request turned away as its client went over its rate limit, telling the
+   * client how long to wait before its next request.
+   *
+   * @param retryAfterSeconds the seconds until the client may make its next request.
+   * @return the result to reply in the http response.
+   */
+  public static Result getRateLimitedResult(long retryAfterSeconds) {
+    ObjectNode message = Json.newObject();
+    message.put(MESSAGE_KEY, "Too many requests, please slow down.");
+    return status(Http.Status.TOO_MANY_REQUESTS, message)
+        .withHeader(Http.HeaderNames.RETRY_AFTER, Long.toString(retryAfterSeconds));
+  }
 }
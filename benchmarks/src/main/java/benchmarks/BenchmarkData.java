@@ -0,0 +1,144 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.Country;
+import models.Destination;
+import models.DestinationType;
+import models.Nationality;
+import models.Passport;
+import models.TravellerType;
+import models.TripComposite;
+import models.TripDestinationLeaf;
+import models.TripNode;
+import models.User;
+
+/** Builds the models used by the benchmarks, shaped like the data the application serves. */
+final class BenchmarkData {
+
+  private BenchmarkData() {}
+
+  /**
+   * Creates a user with a nationality, a passport and a traveller type.
+   *
+   * @param userId the id of the user.
+   * @return the user.
+   */
+  static User createUser(int userId) {
+    Country country = new Country("New Zealand", "NZ", true);
+    Nationality nationality = new Nationality("New Zealand");
+    nationality.setNationalityCountry(country);
+    Passport passport = new Passport("New Zealand");
+    passport.setCountry(country);
+
+    List<Nationality> nationalities = new ArrayList<>();
+    nationalities.add(nationality);
+    List<Passport> passports = new ArrayList<>();
+    passports.add(passport);
+    List<TravellerType> travellerTypes = new ArrayList<>();
+    travellerTypes.add(new TravellerType("Backpacker"));
+
+    User user = new User("Traveller", "", "Number" + userId, "hash", "female",
+        "traveller" + userId + "@example.com", nationalities, travellerTypes, null, passports,
+        new ArrayList<>(), "token" + userId);
+    user.setUserId(userId);
+    return user;
+  }
+
+  /**
+   * Creates a number of users, numbered from one.
+   *
+   * @param count the number of users.
+   * @return the users.
+   */
+  static List<User> createUsers(int count) {
+    List<User> users = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      users.add(createUser(i));
+    }
+    return users;
+  }
+
+  /**
+   * Creates a public destination with a type and a country.
+   *
+   * @param destinationId the id of the destination.
+   * @return the destination.
+   */
+  static Destination createDestination(int destinationId) {
+    List<TravellerType> travellerTypes = new ArrayList<>();
+    travellerTypes.add(new TravellerType("Backpacker"));
+    travellerTypes.add(new TravellerType("Gap Year"));
+
+    Destination destination =
+        new Destination("Destination " + destinationId, new DestinationType("Town"), "Canterbury",
+            -43.5, 172.6, new Country("New Zealand", "NZ", true), 1, travellerTypes, true);
+    destination.setDestinationId(destinationId);
+    destination.setDestinationPhotos(new ArrayList<>());
+    return destination;
+  }
+
+  /**
+   * Creates a trip of destinations only.
+   *
+   * @param users the users on the trip.
+   * @param destinations the number of destinations.
+   * @return the trip.
+   */
+  static TripComposite createTrip(List<User> users, int destinations) {
+    return createTrip(users, destinations, 0, 0);
+  }
+
+  /**
+   * Creates a trip where every level has a number of destinations, with a sub trip after each of
+   * the first few, down to a depth. Trip node ids are given out in depth first order from one.
+   *
+   * @param users the users on the trip and its sub trips.
+   * @param destinations the number of destinations on each trip.
+   * @param subTrips the number of sub trips on each trip above the last level.
+   * @param depth the number of levels of sub trips.
+   * @return the trip.
+   */
+  static TripComposite createTrip(List<User> users, int destinations, int subTrips, int depth) {
+    return createTrip(users, destinations, subTrips, depth, new AtomicInteger(1));
+  }
+
+  private static TripComposite createTrip(
+      List<User> users, int destinations, int subTrips, int depth, AtomicInteger nextId) {
+    int tripNodeId = nextId.getAndIncrement();
+
+    List<TripNode> tripNodes = new ArrayList<>();
+    for (int i = 0; i < destinations; i++) {
+      TripDestinationLeaf leaf =
+          new TripDestinationLeaf(createDestination(i + 1), new Date(), 900, new Date(), 1700);
+      leaf.setTripNodeId(nextId.getAndIncrement());
+      tripNodes.add(leaf);
+
+      if (depth > 0 && i < subTrips) {
+        tripNodes.add(createTrip(users, destinations, subTrips, depth - 1, nextId));
+      }
+    }
+
+    TripComposite trip = new TripComposite(tripNodes, users, "Trip " + tripNodeId);
+    trip.setTripNodeId(tripNodeId);
+    return trip;
+  }
+
+  /**
+   * Creates countries with two letter ISO codes, like the countries the country API returns.
+   *
+   * @param count the number of countries.
+   * @return the countries.
+   */
+  static List<Country> createCountries(int count) {
+    List<Country> countries = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String isoCode = "" + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+      countries.add(new Country("Country " + isoCode, isoCode, true));
+    }
+    return Collections.unmodifiableList(countries);
+  }
+}
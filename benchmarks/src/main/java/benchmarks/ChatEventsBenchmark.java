@@ -0,0 +1,84 @@
+package benchmarks;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import models.ChatGroup;
+import models.User;
+import modules.websocket.ChatEvents;
+import modules.websocket.ConnectedUsers;
+import modules.websocket.FrameDeliveries;
+import modules.websocket.LocalFrameDelivery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sending a chat message to the members of a chat group. Half of the members are
+ * connected, each to a websocket actor that drops every frame, so the fan-out is measured rather
+ * than the websockets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatEventsBenchmark {
+
+  @Param({"5", "50", "500"})
+  private int groupSize;
+
+  private ActorSystem actorSystem;
+  private ChatEvents chatEvents;
+  private User sender;
+  private ChatGroup group;
+
+  @Setup
+  public void setUp() {
+    actorSystem = ActorSystem.create("chat-events-benchmark");
+    ConnectedUsers connectedUsers = ConnectedUsers.getInstance();
+    connectedUsers.clear();
+    FrameDeliveries.setInstance(new LocalFrameDelivery(connectedUsers));
+    chatEvents = new ChatEvents();
+
+    List<User> users = BenchmarkData.createUsers(groupSize);
+    for (int i = 0; i < users.size(); i += 2) {
+      connectedUsers.addConnectedUser(
+          users.get(i), actorSystem.actorOf(Props.create(DroppingWebSocket.class)));
+    }
+    sender = users.get(0);
+    group = new ChatGroup("Trip chat", users, new ArrayList<>());
+  }
+
+  @Benchmark
+  public void sendMessageToChatGroup() {
+    chatEvents.sendMessageToChatGroup(sender, group, "Meet at the hostel at six?", 981);
+  }
+
+  @TearDown
+  public void tearDown() {
+    ConnectedUsers.getInstance().clear();
+    actorSystem.terminate();
+  }
+
+  /** Stands in for the websocket of a connected user, dropping every frame it is sent. */
+  public static class DroppingWebSocket extends AbstractActor {
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder().matchAny(frame -> {}).build();
+    }
+  }
+}
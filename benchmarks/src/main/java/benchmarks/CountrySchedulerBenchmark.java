@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import models.Country;
+import models.Nationality;
+import models.Passport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.CountrySchedulerUtil;
+
+/**
+ * Measures the country sync working out which countries, passports and nationalities to save. The
+ * database already holds every country, with a few renamed or removed by the latest fetch, which
+ * is the usual case once the sync has run before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountrySchedulerBenchmark {
+
+  @Param({"250"})
+  private int countries;
+
+  private CountrySchedulerUtil countrySchedulerUtil;
+
+  private Map<String, Country> currentCountries;
+  private Map<String, Country> newCountries;
+  private Map<String, Passport> currentPassports;
+  private Map<String, Nationality> currentNationalities;
+
+  @Setup
+  public void setUp() {
+    countrySchedulerUtil = new CountrySchedulerUtil();
+
+    currentCountries = new HashMap<>();
+    currentPassports = new HashMap<>();
+    currentNationalities = new HashMap<>();
+    for (Country country : BenchmarkData.createCountries(countries)) {
+      currentCountries.put(country.getISOCode(), country);
+
+      // The sync keys passports and nationalities by name
+      Passport passport = new Passport(country.getCountryName());
+      passport.setCountry(country);
+      currentPassports.put(country.getCountryName(), passport);
+      Nationality nationality = new Nationality(country.getCountryName());
+      nationality.setNationalityCountry(country);
+      currentNationalities.put(country.getCountryName(), nationality);
+    }
+
+    newCountries = new HashMap<>();
+    List<Country> fetched = BenchmarkData.createCountries(countries - 2);
+    for (int i = 0; i < fetched.size(); i++) {
+      Country country = fetched.get(i);
+      if (i % 50 == 0) {
+        country.setCountryName(country.getCountryName() + " (renamed)");
+      }
+      newCountries.put(country.getISOCode(), country);
+    }
+  }
+
+  /** Undoes the changes the last diff made to the countries, so every diff does the same work. */
+  @Setup(Level.Invocation)
+  public void resetCountries() {
+    for (Country country : currentCountries.values()) {
+      country.setCountryName("Country " + country.getISOCode());
+      country.setIsValid(true);
+    }
+  }
+
+  @Benchmark
+  public List<Country> countriesToSave() {
+    return countrySchedulerUtil.getCountriesToSave(currentCountries, newCountries);
+  }
+
+  @Benchmark
+  public List<Passport> passportsToSave() {
+    return countrySchedulerUtil.getPassportsToSave(newCountries, currentPassports);
+  }
+
+  @Benchmark
+  public List<Nationality> nationalitiesToSave() {
+    return countrySchedulerUtil.getNationalitiesToSave(newCountries, currentNationalities);
+  }
+}
@@ -0,0 +1,197 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import models.Destination;
+import models.TripComposite;
+import models.TripDestinationLeaf;
+import models.TripNode;
+import models.User;
+import modules.websocket.frames.ChatMessageFrame;
+import modules.websocket.frames.FrameCodec;
+import modules.websocket.frames.InboundFrame;
+import modules.websocket.frames.PingMapFrame;
+import modules.websocket.frames.SendChatMessageFrame;
+import modules.websocket.frames.TripUpdatedFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import play.http.websocket.Message;
+import play.libs.Json;
+
+/**
+ * Compares encoding and decoding websocket frames the way the websocket actor used to (parsing to
+ * a tree, a new object mapper per ping and Json.toJson(...).toString()) with the JSON and CBOR
+ * frame codecs. Run with the gc profiler to compare allocations, e.g. {@code sbt benchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+
+  private FrameCodec jsonCodec;
+  private FrameCodec cborCodec;
+
+  private PingMapFrame pingMapFrame;
+  private ChatMessageFrame chatMessageFrame;
+  private TripUpdatedFrame tripUpdatedFrame;
+
+  private String pingMapJson;
+  private String chatMessageJson;
+  private Message pingMapText;
+  private Message chatMessageText;
+  private Message pingMapBinary;
+  private Message chatMessageBinary;
+
+  @Setup
+  public void setUp() {
+    jsonCodec = FrameCodec.json();
+    cborCodec = FrameCodec.cbor();
+
+    User sender = createUser(1);
+    List<User> users = new ArrayList<>();
+    for (int i = 1; i <= 6; i++) {
+      users.add(createUser(i));
+    }
+
+    pingMapFrame = new PingMapFrame(12, -43, 172);
+    chatMessageFrame =
+        new ChatMessageFrame(3, "Meet at the hostel before we head to the airport?", sender, 981);
+    tripUpdatedFrame = new TripUpdatedFrame(createTrip(users, 8));
+
+    // Inbound chat messages use the send frame, the outbound chat frame is never read
+    SendChatMessageFrame sendChatMessageFrame =
+        new SendChatMessageFrame(3, "Meet at the hostel before we head to the airport?", "n-42");
+
+    pingMapJson = Json.toJson(pingMapFrame).toString();
+    chatMessageJson = Json.toJson(sendChatMessageFrame).toString();
+    pingMapText = new Message.Text(pingMapJson);
+    chatMessageText = new Message.Text(chatMessageJson);
+    pingMapBinary = cborCodec.encode(pingMapFrame);
+    chatMessageBinary = cborCodec.encode(sendChatMessageFrame);
+  }
+
+  @Benchmark
+  public String encodePingMapLegacy() {
+    return Json.toJson(pingMapFrame).toString();
+  }
+
+  @Benchmark
+  public Message encodePingMapJson() {
+    return jsonCodec.encode(pingMapFrame);
+  }
+
+  @Benchmark
+  public Message encodePingMapCbor() {
+    return cborCodec.encode(pingMapFrame);
+  }
+
+  @Benchmark
+  public String encodeChatMessageLegacy() {
+    return Json.toJson(chatMessageFrame).toString();
+  }
+
+  @Benchmark
+  public Message encodeChatMessageJson() {
+    return jsonCodec.encode(chatMessageFrame);
+  }
+
+  @Benchmark
+  public Message encodeChatMessageCbor() {
+    return cborCodec.encode(chatMessageFrame);
+  }
+
+  @Benchmark
+  public String encodeTripUpdatedLegacy() {
+    return Json.toJson(tripUpdatedFrame).toString();
+  }
+
+  @Benchmark
+  public Message encodeTripUpdatedJson() {
+    return jsonCodec.encode(tripUpdatedFrame);
+  }
+
+  @Benchmark
+  public Message encodeTripUpdatedCbor() {
+    return cborCodec.encode(tripUpdatedFrame);
+  }
+
+  @Benchmark
+  public PingMapFrame decodePingMapLegacy() throws Exception {
+    JsonNode message = Json.parse(pingMapJson);
+    if (message.get("type").asText().equals("ping-map")) {
+      ObjectMapper objectMapper = new ObjectMapper();
+      return objectMapper.treeToValue(message, PingMapFrame.class);
+    }
+    return null;
+  }
+
+  @Benchmark
+  public InboundFrame decodePingMapJson() {
+    return jsonCodec.decode(pingMapText).orElse(null);
+  }
+
+  @Benchmark
+  public InboundFrame decodePingMapCbor() {
+    return cborCodec.decode(pingMapBinary).orElse(null);
+  }
+
+  @Benchmark
+  public SendChatMessageFrame decodeChatMessageLegacy() {
+    JsonNode message = Json.parse(chatMessageJson);
+    if (message.get("type").asText().equals("chat-message")) {
+      return Json.fromJson(message, SendChatMessageFrame.class);
+    }
+    return null;
+  }
+
+  @Benchmark
+  public InboundFrame decodeChatMessageJson() {
+    return jsonCodec.decode(chatMessageText).orElse(null);
+  }
+
+  @Benchmark
+  public InboundFrame decodeChatMessageCbor() {
+    return cborCodec.decode(chatMessageBinary).orElse(null);
+  }
+
+  private static User createUser(int userId) {
+    User user = new User("Traveller", "", "Number" + userId, "hash", "female",
+        "traveller" + userId + "@example.com", new ArrayList<>(), new ArrayList<>(), null,
+        new ArrayList<>(), new ArrayList<>(), "token" + userId);
+    user.setUserId(userId);
+    return user;
+  }
+
+  private static TripComposite createTrip(List<User> users, int destinations) {
+    List<TripNode> tripNodes = new ArrayList<>();
+    for (int i = 0; i < destinations; i++) {
+      Destination destination =
+          new Destination("Destination " + (i + 1), null, "Canterbury", -43.5, 172.6, null, 1,
+              new ArrayList<>(), true);
+      destination.setDestinationId(i + 1);
+      destination.setDestinationPhotos(new ArrayList<>());
+      TripDestinationLeaf leaf =
+          new TripDestinationLeaf(destination, new Date(), 900, new Date(), 1700);
+      leaf.setTripNodeId(100 + i);
+      tripNodes.add(leaf);
+    }
+    TripComposite trip = new TripComposite(tripNodes, users, "Around the South Island");
+    trip.setTripNodeId(1);
+    return trip;
+  }
+}
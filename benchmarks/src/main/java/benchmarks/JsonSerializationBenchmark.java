@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import models.Destination;
+import models.TripComposite;
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import play.libs.Json;
+
+/**
+ * Measures serializing the models the controllers return with Json.toJson(...).toString(). Trips
+ * are nested a few levels deep, like trips with sub trips. Websocket frames are covered by
+ * {@link FrameCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  @Param({"1", "3"})
+  private int tripDepth;
+
+  private User user;
+  private List<User> users;
+  private Destination destination;
+  private List<Destination> destinations;
+  private TripComposite trip;
+
+  @Setup
+  public void setUp() {
+    user = BenchmarkData.createUser(1);
+    users = BenchmarkData.createUsers(50);
+    destination = BenchmarkData.createDestination(1);
+    destinations = new ArrayList<>();
+    for (int i = 1; i <= 100; i++) {
+      destinations.add(BenchmarkData.createDestination(i));
+    }
+    trip = BenchmarkData.createTrip(BenchmarkData.createUsers(6), 6, 2, tripDepth);
+  }
+
+  @Benchmark
+  public String serializeUser() {
+    return Json.toJson(user).toString();
+  }
+
+  @Benchmark
+  public String serializeUsers() {
+    return Json.toJson(users).toString();
+  }
+
+  @Benchmark
+  public String serializeDestination() {
+    return Json.toJson(destination).toString();
+  }
+
+  @Benchmark
+  public String serializeDestinations() {
+    return Json.toJson(destinations).toString();
+  }
+
+  @Benchmark
+  public String serializeTrip() {
+    return Json.toJson(trip).toString();
+  }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Security;
+
+/**
+ * Measures checking a password against its bcrypt hash, which every login does, at the cost the
+ * application hashes passwords with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+
+  private static final String PASSWORD = "correct horse battery staple";
+
+  private String hash;
+
+  @Setup
+  public void setUp() {
+    hash = Security.hashPassword(PASSWORD);
+  }
+
+  @Benchmark
+  public boolean comparePasswordAndHash() {
+    return Security.comparePasswordAndHash(PASSWORD, hash);
+  }
+
+  @Benchmark
+  public boolean compareWrongPasswordAndHash() {
+    return Security.comparePasswordAndHash("correct horse battery stapler", hash);
+  }
+}
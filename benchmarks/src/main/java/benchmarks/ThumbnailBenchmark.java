@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import modules.photos.ImageFormat;
+import modules.photos.ThumbnailRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering the thumbnail of an uploaded photo, from reading the photo off disk to writing
+ * the thumbnail. The photos are sized like those from a phone camera and a web download, with
+ * enough detail that they don't compress to nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThumbnailBenchmark {
+
+  @Param({"1280x960", "4032x3024"})
+  private String dimensions;
+
+  @Param({"JPEG", "PNG"})
+  private ImageFormat format;
+
+  private ThumbnailRenderer thumbnailRenderer;
+  private Path directory;
+  private Path photo;
+  private Path thumbnail;
+
+  @Setup
+  public void setUp() throws IOException {
+    // A single thread never waits for the pixel budget, so it is as large as it can be
+    thumbnailRenderer =
+        new ThumbnailRenderer(300, Integer.MAX_VALUE, Duration.ofSeconds(10), 10000, 50000000);
+
+    String[] size = dimensions.split("x");
+    directory = Files.createTempDirectory("thumbnail-benchmark");
+    photo = directory.resolve("photo" + format.getExtension());
+    thumbnail = directory.resolve("thumbnail" + format.getExtension());
+    ImageIO.write(
+        createPhoto(Integer.parseInt(size[0]), Integer.parseInt(size[1])),
+        format.getFormatName(),
+        photo.toFile());
+  }
+
+  /**
+   * Draws a photo of a gradient sky with noise over it.
+   *
+   * @param width the width of the photo.
+   * @param height the height of the photo.
+   * @return the photo.
+   */
+  private static BufferedImage createPhoto(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setPaint(
+        new GradientPaint(0, 0, new Color(70, 130, 180), 0, height, new Color(240, 220, 160)));
+    graphics.fillRect(0, 0, width, height);
+    graphics.dispose();
+
+    Random random = new Random(302);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int noise = random.nextInt(32) - 16;
+        int rgb = image.getRGB(x, y);
+        int red = clamp((rgb >> 16 & 0xff) + noise);
+        int green = clamp((rgb >> 8 & 0xff) + noise);
+        int blue = clamp((rgb & 0xff) + noise);
+        image.setRGB(x, y, red << 16 | green << 8 | blue);
+      }
+    }
+    return image;
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+
+  @Benchmark
+  public Path render() throws IOException {
+    thumbnailRenderer.render(photo, thumbnail, format);
+    return thumbnail;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(photo);
+    Files.deleteIfExists(thumbnail);
+    Files.deleteIfExists(directory);
+  }
+}
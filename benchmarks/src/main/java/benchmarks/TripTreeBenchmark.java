@@ -0,0 +1,132 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import models.TripComposite;
+import models.TripNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures assembling a trip tree from the flat rows of trip_node_parent. The trip repository
+ * loads the children of each sub trip separately, so the tree is put together one parent at a
+ * time; this is compared with grouping all of the rows by parent in one pass. The database is left
+ * out, so only the work done in memory is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripTreeBenchmark {
+
+  @Param({"1", "3"})
+  private int tripDepth;
+
+  private int rootId;
+  private List<TripNodeRow> rows;
+
+  @Setup
+  public void setUp() {
+    TripComposite trip = BenchmarkData.createTrip(BenchmarkData.createUsers(6), 6, 2, tripDepth);
+    rootId = trip.getTripNodeId();
+    rows = new ArrayList<>();
+    flatten(trip);
+    // Rows come back from the database in no particular order
+    rows.sort(Comparator.comparingInt(row -> row.node.getTripNodeId() * 31 % 97));
+  }
+
+  /**
+   * Adds a row for each child of a trip, the way they are stored in trip_node_parent.
+   *
+   * @param trip the trip to flatten.
+   */
+  private void flatten(TripNode trip) {
+    List<TripNode> children = trip.getTripNodes();
+    for (int i = 0; i < children.size(); i++) {
+      TripNode child = children.get(i);
+      rows.add(new TripNodeRow(child, trip.getTripNodeId(), i));
+      if (child.getNodeType().equals("TripComposite")) {
+        flatten(child);
+      }
+    }
+  }
+
+  @Benchmark
+  public List<TripNode> assembleByParent() {
+    return childrenOf(rootId);
+  }
+
+  private List<TripNode> childrenOf(int parentId) {
+    List<TripNodeRow> children = new ArrayList<>();
+    for (TripNodeRow row : rows) {
+      if (row.parentId == parentId) {
+        children.add(row);
+      }
+    }
+    children.sort(Comparator.comparingInt(row -> row.childIndex));
+
+    List<TripNode> tripNodes = new ArrayList<>();
+    for (TripNodeRow row : children) {
+      if (row.node.getNodeType().equals("TripComposite")) {
+        row.node.setTripNodes(childrenOf(row.node.getTripNodeId()));
+      }
+      tripNodes.add(row.node);
+    }
+    return tripNodes;
+  }
+
+  @Benchmark
+  public List<TripNode> assembleGrouped() {
+    Map<Integer, List<TripNodeRow>> rowsByParent = new HashMap<>();
+    for (TripNodeRow row : rows) {
+      rowsByParent.computeIfAbsent(row.parentId, key -> new ArrayList<>()).add(row);
+    }
+
+    Map<Integer, List<TripNode>> childrenByParent = new HashMap<>();
+    for (Map.Entry<Integer, List<TripNodeRow>> entry : rowsByParent.entrySet()) {
+      List<TripNodeRow> children = entry.getValue();
+      children.sort(Comparator.comparingInt(row -> row.childIndex));
+      List<TripNode> tripNodes = new ArrayList<>(children.size());
+      for (TripNodeRow row : children) {
+        tripNodes.add(row.node);
+      }
+      childrenByParent.put(entry.getKey(), tripNodes);
+    }
+
+    for (TripNodeRow row : rows) {
+      if (row.node.getNodeType().equals("TripComposite")) {
+        row.node.setTripNodes(
+            childrenByParent.getOrDefault(row.node.getTripNodeId(), new ArrayList<>()));
+      }
+    }
+    return childrenByParent.get(rootId);
+  }
+
+  /** A row of trip_node_parent, with the child it refers to. */
+  private static class TripNodeRow {
+    private final TripNode node;
+    private final int parentId;
+    private final int childIndex;
+
+    private TripNodeRow(TripNode node, int parentId, int childIndex) {
+      this.node = node;
+      this.parentId = parentId;
+      this.childIndex = childIndex;
+    }
+  }
+}
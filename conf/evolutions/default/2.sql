@@ -0,0 +1,13 @@
+# --- Message IDs are reserved in blocks so several servers can insert chat messages
+
+# --- !Ups
+
+create table message_id_block (
+  next_id                       integer not null
+);
+
+insert into message_id_block (next_id) select coalesce(max(message_id), 0) + 1 from message;
+
+# --- !Downs
+
+drop table if exists message_id_block;
@@ -0,0 +1,21 @@
+# --- Indexes so expired soft deleted rows are found with a range scan
+
+# --- !Ups
+
+create index ix_destination_deleted_expiry on destination (deleted, deleted_expiry);
+create index ix_destination_photo_deleted_expiry on destination_photo (deleted, deleted_expiry);
+create index ix_destination_proposal_deleted_expiry on destination_proposal (deleted, deleted_expiry);
+create index ix_personal_photo_deleted_expiry on personal_photo (deleted, deleted_expiry);
+create index ix_treasure_hunt_deleted_expiry on treasure_hunt (deleted, deleted_expiry);
+create index ix_trip_node_deleted_expiry on trip_node (deleted, deleted_expiry);
+create index ix_user_deleted_expiry on user (deleted, deleted_expiry);
+
+# --- !Downs
+
+drop index if exists ix_destination_deleted_expiry;
+drop index if exists ix_destination_photo_deleted_expiry;
+drop index if exists ix_destination_proposal_deleted_expiry;
+drop index if exists ix_personal_photo_deleted_expiry;
+drop index if exists ix_treasure_hunt_deleted_expiry;
+drop index if exists ix_trip_node_deleted_expiry;
+drop index if exists ix_user_deleted_expiry;
@@ -43,6 +43,14 @@ const UserStore = {
         UserStore.data.socket = socket;
         const pingMilliseconds = 10000;
 
+        // The server has discarded frames for this client, so reload everything from scratch
+        UserStore.data.socket.addEventListener("message", (event) => {
+          const message = JSON.parse(event.data);
+          if (message.type === "resync") {
+            window.location.reload();
+          }
+        });
+
         UserStore.data.pingInterval = setInterval(() => {
           UserStore.data.socket.send(JSON.stringify({
             type: "ping"
@@ -0,0 +1,169 @@
+package loadtest;
+
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.ws.Message;
+import akka.http.javadsl.model.ws.TextMessage;
+import akka.http.javadsl.model.ws.WebSocketRequest;
+import akka.http.javadsl.model.ws.WebSocketUpgradeResponse;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import modules.websocket.frames.InboundFrame;
+import play.libs.Json;
+
+/**
+ * The websocket of a traveller. Frames are sent as JSON text, like the web client sends them, and
+ * scenarios wait for the frames they expect by key: the nonce of a chat message acknowledgement or
+ * error, the text of a chat message, or the trip of a map ping.
+ */
+public class FrameSocket implements AutoCloseable {
+
+  private final SourceQueueWithComplete<Message> outbound;
+  private final Map<String, CompletableFuture<JsonNode>> expected = new ConcurrentHashMap<>();
+
+  private FrameSocket(SourceQueueWithComplete<Message> outbound) {
+    this.outbound = outbound;
+  }
+
+  /**
+   * Opens a websocket.
+   *
+   * @param http the HTTP client.
+   * @param url the URL of the websocket, with the token of the traveller.
+   * @param materializer the materializer to run the websocket with.
+   * @param timeout how long to wait for the websocket to open.
+   * @return the websocket.
+   * @throws Exception if the websocket could not be opened.
+   */
+  static FrameSocket open(Http http, String url, Materializer materializer, Duration timeout)
+      throws Exception {
+    long timeoutMillis = timeout.toMillis();
+    CompletableFuture<FrameSocket> socket = new CompletableFuture<>();
+
+    Sink<Message, ?> inbound =
+        Flow.<Message>create()
+            .filter(Message::isText)
+            .mapAsync(
+                1,
+                message -> message.asTextMessage().toStrict(timeoutMillis, materializer))
+            .to(
+                Sink.foreach(
+                    message -> socket.thenAccept(open -> open.receive(message.getStrictText()))));
+    Source<Message, SourceQueueWithComplete<Message>> outbound =
+        Source.queue(256, OverflowStrategy.dropNew());
+
+    Pair<CompletionStage<WebSocketUpgradeResponse>, SourceQueueWithComplete<Message>> connection =
+        http.singleWebSocketRequest(
+            WebSocketRequest.create(url),
+            Flow.fromSinkAndSourceMat(inbound, outbound, Keep.right()),
+            materializer);
+
+    WebSocketUpgradeResponse upgrade =
+        connection.first().toCompletableFuture().get(timeoutMillis, TimeUnit.MILLISECONDS);
+    if (!upgrade.response().status().equals(StatusCodes.SWITCHING_PROTOCOLS)) {
+      connection.second().complete();
+      throw new IOException("Websocket was refused with status " + upgrade.response().status());
+    }
+
+    socket.complete(new FrameSocket(connection.second()));
+    return socket.get();
+  }
+
+  /**
+   * Sends a frame to the application.
+   *
+   * @param frame the frame to send.
+   */
+  public void send(InboundFrame frame) {
+    outbound.offer(TextMessage.create(Json.toJson(frame).toString()));
+  }
+
+  /**
+   * Waits for a frame with a key to arrive. Frames nobody is waiting for are dropped.
+   *
+   * @param key the key of the frame.
+   * @return the frame, once it arrives.
+   */
+  public CompletableFuture<JsonNode> expect(String key) {
+    return expected.computeIfAbsent(key, ignored -> new CompletableFuture<>());
+  }
+
+  /**
+   * Stops waiting for a frame, e.g. once waiting for it has timed out.
+   *
+   * @param key the key of the frame.
+   */
+  public void forget(String key) {
+    expected.remove(key);
+  }
+
+  /**
+   * Completes the wait for a frame that has arrived, if anyone is waiting for it.
+   *
+   * @param text the frame as JSON.
+   */
+  private void receive(String text) {
+    JsonNode frame = Json.parse(text);
+    String key = keyOf(frame);
+    if (key != null) {
+      CompletableFuture<JsonNode> waiting = expected.remove(key);
+      if (waiting != null) {
+        waiting.complete(frame);
+      }
+    }
+  }
+
+  /**
+   * Gets the key scenarios wait for a frame by.
+   *
+   * @param frame the frame.
+   * @return the key, or null if no scenario waits for frames of this type.
+   */
+  static String keyOf(JsonNode frame) {
+    switch (frame.path("type").asText()) {
+      case "chat-message-ack":
+      case "chat-message-error":
+        return ackKey(frame.path("nonce").asText());
+      case "send-chat-message":
+        return messageKey(frame.path("message").asText());
+      case "ping-map":
+        return pingMapKey(frame.path("tripNodeId").asInt());
+      default:
+        return null;
+    }
+  }
+
+  static String ackKey(String nonce) {
+    return "ack:" + nonce;
+  }
+
+  static String messageKey(String message) {
+    return "message:" + message;
+  }
+
+  static String pingMapKey(int tripNodeId) {
+    return "ping-map:" + tripNodeId;
+  }
+
+  @Override
+  public void close() {
+    outbound.complete();
+    for (CompletableFuture<JsonNode> waiting : expected.values()) {
+      waiting.cancel(false);
+    }
+  }
+}
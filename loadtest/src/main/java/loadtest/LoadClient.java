@@ -0,0 +1,213 @@
+package loadtest;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpMethod;
+import akka.http.javadsl.model.HttpMethods;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.Multipart;
+import akka.http.javadsl.model.Multiparts;
+import akka.http.javadsl.model.RequestEntity;
+import akka.http.javadsl.model.headers.RawHeader;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import play.libs.Json;
+
+/**
+ * Makes requests to the application under test, waiting for each response. The travellers share
+ * one connection pool, with a connection for each of them.
+ */
+public class LoadClient implements AutoCloseable {
+
+  private final String url;
+  private final Duration timeout;
+  private final ActorSystem actorSystem;
+  private final Materializer materializer;
+  private final Http http;
+
+  /**
+   * Creates a client for an application.
+   *
+   * @param url the base URL of the application.
+   * @param connections the most connections to open to the application at once.
+   * @param timeout how long to wait for a response.
+   */
+  public LoadClient(String url, int connections, Duration timeout) {
+    this.url = url;
+    this.timeout = timeout;
+
+    // The open requests of a pool must be a power of two
+    int openRequests = Integer.highestOneBit(Math.max(1, connections * 2 - 1)) * 2;
+    Config config =
+        ConfigFactory.parseString(
+                "akka.http.host-connection-pool.max-connections = " + connections + "\n"
+                    + "akka.http.host-connection-pool.max-open-requests = " + openRequests + "\n"
+                    + "akka.http.client.idle-timeout = infinite\n"
+                    + "akka.loglevel = WARNING")
+            .withFallback(ConfigFactory.defaultReference());
+    this.actorSystem = ActorSystem.create("loadtest", config);
+    this.materializer = ActorMaterializer.create(actorSystem);
+    this.http = Http.get(actorSystem);
+  }
+
+  public Response get(String path, String token) throws Exception {
+    return send(HttpMethods.GET, path, token, HttpEntities.EMPTY);
+  }
+
+  public Response post(String path, String token, JsonNode body) throws Exception {
+    return send(HttpMethods.POST, path, token, jsonEntity(body));
+  }
+
+  public Response put(String path, String token, JsonNode body) throws Exception {
+    return send(HttpMethods.PUT, path, token, jsonEntity(body));
+  }
+
+  /**
+   * Uploads a file as multipart form data, with some text fields.
+   *
+   * @param path the path to upload to.
+   * @param token the token of the traveller.
+   * @param fields the text fields of the form.
+   * @param filePart the name of the file part.
+   * @param fileName the name of the file.
+   * @param file the contents of the file, a JPEG image.
+   * @return the response.
+   * @throws Exception if there is no response in time.
+   */
+  public Response upload(
+      String path,
+      String token,
+      Map<String, String> fields,
+      String filePart,
+      String fileName,
+      byte[] file)
+      throws Exception {
+    List<Multipart.FormData.BodyPart> parts = new ArrayList<>();
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      parts.add(
+          Multiparts.createFormDataBodyPartStrict(
+              field.getKey(), HttpEntities.create(field.getValue())));
+    }
+    parts.add(
+        Multiparts.createFormDataBodyPartStrict(
+            filePart,
+            HttpEntities.create(ContentTypes.create(MediaTypes.IMAGE_JPEG), file),
+            Collections.singletonMap("filename", fileName)));
+
+    Multipart.FormData form =
+        Multiparts.createStrictFormDataFromParts(
+            parts.toArray(new Multipart.FormData.BodyPart.Strict[0]));
+    return send(HttpMethods.POST, path, token, form.toEntity());
+  }
+
+  /**
+   * Opens a websocket for a traveller.
+   *
+   * @param token the token of the traveller.
+   * @return the websocket, once it is open.
+   * @throws Exception if the websocket could not be opened in time.
+   */
+  public FrameSocket openSocket(String token) throws Exception {
+    String socketUrl = url.replaceFirst("^http", "ws") + "/ws?Authorization=" + token;
+    return FrameSocket.open(http, socketUrl, materializer, timeout);
+  }
+
+  private static RequestEntity jsonEntity(JsonNode body) {
+    return HttpEntities.create(ContentTypes.APPLICATION_JSON, body.toString());
+  }
+
+  /**
+   * Sends a request and waits for the whole response.
+   *
+   * @param method the method of the request.
+   * @param path the path of the request.
+   * @param token the token of the traveller, or null if the request is not authenticated.
+   * @param entity the body of the request.
+   * @return the response.
+   * @throws Exception if there is no response in time.
+   */
+  private Response send(HttpMethod method, String path, String token, RequestEntity entity)
+      throws Exception {
+    HttpRequest request = HttpRequest.create(url + path).withMethod(method).withEntity(entity);
+    if (token != null) {
+      request = request.addHeader(RawHeader.create("Authorization", token));
+    }
+
+    long timeoutMillis = timeout.toMillis();
+    HttpResponse response =
+        http.singleRequest(request)
+            .toCompletableFuture()
+            .get(timeoutMillis, TimeUnit.MILLISECONDS);
+    String body =
+        response
+            .entity()
+            .toStrict(timeoutMillis, materializer)
+            .toCompletableFuture()
+            .get(timeoutMillis, TimeUnit.MILLISECONDS)
+            .getData()
+            .utf8String();
+    return new Response(response.status().intValue(), body);
+  }
+
+  /** Closes the connections to the application, waiting up to ten seconds for them to close. */
+  @Override
+  public void close() {
+    try {
+      http.shutdownAllConnectionPools().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // The connections are dropped with the actor system anyway
+    } finally {
+      actorSystem.terminate();
+    }
+  }
+
+  /** A response from the application. */
+  public static class Response {
+    private final int status;
+    private final String body;
+
+    Response(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public JsonNode getJson() {
+      return Json.parse(body);
+    }
+
+    /**
+     * Checks the response has a status, so a scenario stops at the first request that fails.
+     *
+     * @param expected the status the response should have.
+     * @return the response.
+     * @throws UnexpectedResponseException if the status is different.
+     */
+    public Response expect(int expected) {
+      if (status != expected) {
+        throw new UnexpectedResponseException(expected, status, body);
+      }
+      return this;
+    }
+  }
+}
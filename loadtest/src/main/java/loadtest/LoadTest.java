@@ -0,0 +1,274 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.ConfigFactory;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.test.Helpers;
+import play.test.TestServer;
+
+/**
+ * Drives a mix of traveller scenarios against the application over HTTP and websockets, and
+ * reports the throughput and latency percentiles of each scenario. Run with {@code sbt loadtest}.
+ *
+ * <p>Unless loadtest.url is set, the application is started in this JVM against the database of
+ * the test configuration, and seeded with destinations first. Every traveller runs scenarios one
+ * after another on its own thread, picked at random by the weights in loadtest.mix, so the number
+ * of travellers is the concurrency. Random choices are seeded so runs can be repeated.
+ */
+public class LoadTest {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+  private final LoadTestSettings settings;
+  private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+  private final Map<String, ScenarioStats> stats = new LinkedHashMap<>();
+  private final String[] names;
+  private final int[] cumulativeWeights;
+
+  /**
+   * Creates a load test of the scenarios in the mix.
+   *
+   * @param settings the settings of the load test.
+   * @param allScenarios every scenario, by name.
+   */
+  public LoadTest(LoadTestSettings settings, Map<String, Scenario> allScenarios) {
+    this.settings = settings;
+
+    Map<String, Integer> mix = settings.getMix();
+    names = new String[mix.size()];
+    cumulativeWeights = new int[mix.size()];
+    int total = 0;
+    int i = 0;
+    for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+      Scenario scenario = allScenarios.get(weight.getKey());
+      if (scenario == null) {
+        throw new IllegalArgumentException(
+            "Unknown scenario " + weight.getKey() + ", expected one of " + allScenarios.keySet());
+      }
+      scenarios.put(weight.getKey(), scenario);
+      stats.put(weight.getKey(), new ScenarioStats(weight.getKey()));
+
+      total += weight.getValue();
+      names[i] = weight.getKey();
+      cumulativeWeights[i] = total;
+      i++;
+    }
+  }
+
+  /**
+   * Runs the scenarios until the warmup and the measurement are over.
+   *
+   * @param travellers the travellers to run the scenarios as.
+   * @return the summary of each scenario.
+   * @throws InterruptedException if interrupted while waiting for the travellers.
+   */
+  public ArrayNode run(List<Traveller> travellers) throws InterruptedException {
+    long start = System.nanoTime();
+    long recordingStart = start + settings.getWarmup().toNanos();
+    long end = recordingStart + settings.getDuration().toNanos();
+
+    ExecutorService threads = Executors.newFixedThreadPool(travellers.size());
+    for (Traveller traveller : travellers) {
+      threads.execute(() -> runUntil(traveller, end));
+    }
+    threads.shutdown();
+
+    log.info("Warming up for {}", settings.getWarmup());
+    TimeUnit.NANOSECONDS.sleep(recordingStart - System.nanoTime());
+    for (ScenarioStats scenarioStats : stats.values()) {
+      scenarioStats.startRecording();
+    }
+    log.info("Measuring for {}", settings.getDuration());
+    threads.awaitTermination(
+        end - System.nanoTime() + settings.getRequestTimeout().toNanos() * 4,
+        TimeUnit.NANOSECONDS);
+    double seconds = (System.nanoTime() - recordingStart) / 1e9;
+
+    ArrayNode summaries = Json.newArray();
+    for (ScenarioStats scenarioStats : stats.values()) {
+      summaries.add(scenarioStats.summarise(seconds));
+    }
+    return summaries;
+  }
+
+  /**
+   * Runs scenarios as a traveller, one after another, until a time.
+   *
+   * @param traveller the traveller.
+   * @param end the time to stop starting scenarios, from System.nanoTime().
+   */
+  private void runUntil(Traveller traveller, long end) {
+    while (System.nanoTime() < end) {
+      String name = pick(traveller.getRandom());
+      ScenarioStats scenarioStats = stats.get(name);
+      long started = System.nanoTime();
+      try {
+        scenarios.get(name).run(traveller);
+        scenarioStats.success(System.nanoTime() - started);
+      } catch (Exception e) {
+        Throwable error = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        log.debug("Scenario {} failed for user {}", name, traveller.getUserId(), error);
+        scenarioStats.failure(error);
+      }
+    }
+  }
+
+  /**
+   * Picks a scenario by the weights of the mix.
+   *
+   * @param random the random choices of the traveller.
+   * @return the name of the scenario.
+   */
+  private String pick(Random random) {
+    int choice = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (choice < cumulativeWeights[i]) {
+        return names[i];
+      }
+    }
+    return names[names.length - 1];
+  }
+
+  /**
+   * Draws the photo travellers upload, about the size of a phone photo, with noise so it doesn't
+   * compress to nothing.
+   *
+   * @param random the random choices of the load test.
+   * @return the photo as a JPEG.
+   * @throws IOException if the photo could not be encoded.
+   */
+  static byte[] createPhoto(Random random) throws IOException {
+    int width = 2016;
+    int height = 1512;
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setPaint(
+        new GradientPaint(0, 0, new Color(70, 130, 180), 0, height, new Color(240, 220, 160)));
+    graphics.fillRect(0, 0, width, height);
+    graphics.dispose();
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int noise = random.nextInt(32) - 16;
+        int rgb = image.getRGB(x, y);
+        int red = Math.max(0, Math.min(255, (rgb >> 16 & 0xff) + noise));
+        int green = Math.max(0, Math.min(255, (rgb >> 8 & 0xff) + noise));
+        int blue = Math.max(0, Math.min(255, (rgb & 0xff) + noise));
+        image.setRGB(x, y, red << 16 | green << 8 | blue);
+      }
+    }
+
+    ByteArrayOutputStream photo = new ByteArrayOutputStream();
+    ImageIO.write(image, "jpeg", photo);
+    return photo.toByteArray();
+  }
+
+  /**
+   * Prints the summaries as a table.
+   *
+   * @param summaries the summary of each scenario.
+   */
+  private static void print(ArrayNode summaries) {
+    System.out.println(
+        String.format(
+            "%-18s %8s %8s %10s %9s %9s %9s %9s",
+            "scenario", "runs", "failed", "per sec", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+    summaries.forEach(
+        summary ->
+            System.out.println(
+                String.format(
+                    "%-18s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f",
+                    summary.get("scenario").asText(),
+                    summary.get("runs").asLong(),
+                    summary.get("failures").asLong(),
+                    summary.get("throughput").asDouble(),
+                    summary.get("p50").asDouble(),
+                    summary.get("p95").asDouble(),
+                    summary.get("p99").asDouble(),
+                    summary.get("max").asDouble())));
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestSettings settings = new LoadTestSettings(ConfigFactory.load());
+    Random random = new Random(settings.getSeed());
+    String runId = Long.toString(Instant.now().getEpochSecond(), 36);
+
+    TestServer server = null;
+    String url = settings.getUrl();
+    if (settings.isEmbedded()) {
+      Application application = new GuiceApplicationBuilder().build();
+      server = Helpers.testServer(settings.getPort(), application);
+      server.start();
+      Seeder.seedDatabase(settings.getDestinations(), random);
+      url = "http://localhost:" + settings.getPort();
+    }
+
+    try (LoadClient client =
+        new LoadClient(url, settings.getTravellers() + 2, settings.getRequestTimeout())) {
+      byte[] photo = createPhoto(random);
+      // The scenarios are given the destinations once someone has signed in to find them
+      List<Integer> destinationIds = new ArrayList<>();
+      Scenarios scenarios =
+          new Scenarios(
+              client,
+              destinationIds,
+              Seeder.searchTerms(),
+              photo,
+              settings.getRequestTimeout(),
+              runId);
+      Seeder seeder = new Seeder(client, scenarios);
+      String token =
+          scenarios.signUpAndLogIn("Planner", "loadtest-" + runId + "-planner").get("token").asText();
+      destinationIds.addAll(seeder.findDestinations(token, settings.getDestinations()));
+      List<Traveller> travellers =
+          seeder.createTravellers(
+              settings.getTravellers(), settings.getSeed(), runId, destinationIds);
+
+      ArrayNode summaries = new LoadTest(settings, scenarios.all()).run(travellers);
+      for (Traveller traveller : travellers) {
+        traveller.getSocket().close();
+      }
+
+      print(summaries);
+      ObjectNode result = Json.newObject();
+      result.put("url", url);
+      result.put("seed", settings.getSeed());
+      result.put("travellers", travellers.size());
+      result.put("seconds", settings.getDuration().getSeconds());
+      result.set("scenarios", summaries);
+      Files.write(
+          Paths.get(settings.getOutput()),
+          Json.prettyPrint(result).getBytes(StandardCharsets.UTF_8));
+      log.info("Results written to {}", settings.getOutput());
+    } finally {
+      if (server != null) {
+        server.stop();
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package loadtest;
+
+import com.typesafe.config.Config;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The settings of a load test run, read from the loadtest section of the configuration. */
+public class LoadTestSettings {
+
+  private final String url;
+  private final int port;
+  private final long seed;
+  private final int travellers;
+  private final Duration warmup;
+  private final Duration duration;
+  private final Duration requestTimeout;
+  private final int destinations;
+  private final Map<String, Integer> mix;
+  private final String output;
+
+  /**
+   * Reads the settings of a load test.
+   *
+   * @param config the configuration, with a loadtest section.
+   */
+  public LoadTestSettings(Config config) {
+    Config loadtest = config.getConfig("loadtest");
+    this.url = loadtest.getString("url");
+    this.port = loadtest.getInt("port");
+    this.seed = loadtest.getLong("seed");
+    this.travellers = loadtest.getInt("travellers");
+    this.warmup = loadtest.getDuration("warmup");
+    this.duration = loadtest.getDuration("duration");
+    this.requestTimeout = loadtest.getDuration("requestTimeout");
+    this.destinations = loadtest.getInt("destinations");
+    this.output = loadtest.getString("output");
+
+    // Keep the order of the configuration so the report is in the same order
+    this.mix = new LinkedHashMap<>();
+    Config mixConfig = loadtest.getConfig("mix");
+    for (String scenario : loadtest.getObject("mix").keySet()) {
+      mix.put(scenario, mixConfig.getInt(scenario));
+    }
+  }
+
+  /**
+   * Gets the URL of the application to test, or an empty string to start one in this JVM.
+   *
+   * @return the base URL, without a trailing slash.
+   */
+  public String getUrl() {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  /**
+   * Checks whether the application is started by the load test rather than already running.
+   *
+   * @return true if the application is started in this JVM.
+   */
+  public boolean isEmbedded() {
+    return url.isEmpty();
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * Gets the seed of every random choice the load test makes, so runs can be repeated.
+   *
+   * @return the seed.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Gets the number of travellers, each of which runs scenarios one after another on its own
+   * thread. This is the concurrency of the load test.
+   *
+   * @return the number of travellers.
+   */
+  public int getTravellers() {
+    return travellers;
+  }
+
+  public Duration getWarmup() {
+    return warmup;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public Duration getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /**
+   * Gets the number of destinations to create when the application is started by the load test.
+   *
+   * @return the number of destinations.
+   */
+  public int getDestinations() {
+    return destinations;
+  }
+
+  /**
+   * Gets how often each scenario is run relative to the others.
+   *
+   * @return the weight of each scenario, by name.
+   */
+  public Map<String, Integer> getMix() {
+    return mix;
+  }
+
+  /**
+   * Gets the file the results are written to as JSON.
+   *
+   * @return the path of the file.
+   */
+  public String getOutput() {
+    return output;
+  }
+}
@@ -0,0 +1,14 @@
+package loadtest;
+
+/** Something a traveller does with the application, timed as a whole. */
+@FunctionalInterface
+public interface Scenario {
+
+  /**
+   * Runs the scenario once, waiting for every response.
+   *
+   * @param traveller the traveller running the scenario.
+   * @throws Exception if any step of the scenario fails.
+   */
+  void run(Traveller traveller) throws Exception;
+}
@@ -0,0 +1,95 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import play.libs.Json;
+
+/**
+ * The latencies and failures of one scenario. Nothing is recorded until the warmup is over.
+ */
+public class ScenarioStats {
+
+  // Latencies are kept in microseconds, up to a minute
+  private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+  private final String name;
+  private final Recorder latencies = new Recorder(MAX_LATENCY, 3);
+  private final LongAdder failures = new LongAdder();
+  private final Map<String, LongAdder> failureReasons = new ConcurrentHashMap<>();
+  private volatile boolean recording = false;
+
+  public ScenarioStats(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Starts recording, once the warmup is over, discarding anything recorded before. */
+  public void startRecording() {
+    latencies.reset();
+    failures.reset();
+    failureReasons.clear();
+    recording = true;
+  }
+
+  /**
+   * Records a run of the scenario that succeeded.
+   *
+   * @param nanos how long the run took.
+   */
+  public void success(long nanos) {
+    if (recording) {
+      latencies.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+  }
+
+  /**
+   * Records a run of the scenario that failed.
+   *
+   * @param error why the run failed.
+   */
+  public void failure(Throwable error) {
+    if (recording) {
+      failures.increment();
+      String reason = error.getClass().getSimpleName();
+      if (error instanceof UnexpectedResponseException) {
+        reason = "status " + ((UnexpectedResponseException) error).getStatus();
+      }
+      failureReasons.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+  }
+
+  /**
+   * Summarises what was recorded.
+   *
+   * @param seconds how long recording lasted.
+   * @return the throughput, failures and latency percentiles in milliseconds.
+   */
+  public ObjectNode summarise(double seconds) {
+    Histogram histogram = latencies.getIntervalHistogram();
+    ObjectNode summary = Json.newObject();
+    summary.put("scenario", name);
+    summary.put("runs", histogram.getTotalCount());
+    summary.put("failures", failures.sum());
+    summary.put("throughput", histogram.getTotalCount() / seconds);
+    summary.put("p50", millis(histogram.getValueAtPercentile(50)));
+    summary.put("p95", millis(histogram.getValueAtPercentile(95)));
+    summary.put("p99", millis(histogram.getValueAtPercentile(99)));
+    summary.put("max", millis(histogram.getMaxValue()));
+
+    ObjectNode reasons = summary.putObject("failureReasons");
+    failureReasons.forEach((reason, count) -> reasons.put(reason, count.sum()));
+    return summary;
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+}
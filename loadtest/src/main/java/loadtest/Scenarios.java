@@ -0,0 +1,301 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import modules.websocket.frames.PingMapFrame;
+import modules.websocket.frames.SendChatMessageFrame;
+import play.libs.Json;
+
+/**
+ * The scenarios travellers run, by the names used in the loadtest.mix configuration. Each one does
+ * what the web client does for a common task.
+ */
+public class Scenarios {
+
+  private static final int DESTINATION_PAGE_SIZE = 30;
+
+  private final LoadClient client;
+  private final List<Integer> destinationIds;
+  private final List<String> searchTerms;
+  private final byte[] photo;
+  private final Duration timeout;
+  private final String runId;
+  private final AtomicLong signups = new AtomicLong();
+
+  /**
+   * Creates the scenarios.
+   *
+   * @param client the client to make requests with.
+   * @param destinationIds the ids of public destinations to put on trips.
+   * @param searchTerms the beginnings of destination names to search for.
+   * @param photo the photo travellers upload, a JPEG image.
+   * @param timeout how long to wait for a websocket frame.
+   * @param runId a string that is different on every run, to keep new email addresses unique.
+   */
+  public Scenarios(
+      LoadClient client,
+      List<Integer> destinationIds,
+      List<String> searchTerms,
+      byte[] photo,
+      Duration timeout,
+      String runId) {
+    this.client = client;
+    this.destinationIds = destinationIds;
+    this.searchTerms = searchTerms;
+    this.photo = photo;
+    this.timeout = timeout;
+    this.runId = runId;
+  }
+
+  /**
+   * Gets every scenario by name.
+   *
+   * @return the scenarios.
+   */
+  public Map<String, Scenario> all() {
+    Map<String, Scenario> scenarios = new LinkedHashMap<>();
+    scenarios.put("signupLogin", this::signupLogin);
+    scenarios.put("destinationSearch", this::destinationSearch);
+    scenarios.put("tripEdit", this::tripEdit);
+    scenarios.put("photoThumbnail", this::photoThumbnail);
+    scenarios.put("chat", this::chat);
+    scenarios.put("mapPing", this::mapPing);
+    return scenarios;
+  }
+
+  /**
+   * Signs a new user up and signs them in. The new users are not used again.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void signupLogin(Traveller traveller) throws Exception {
+    signUpAndLogIn("Visitor", "loadtest-" + runId + "-visitor-" + signups.incrementAndGet());
+  }
+
+  /**
+   * Signs a user up and signs them in.
+   *
+   * @param firstName the first name of the user.
+   * @param emailName the part of the email address before the domain, which must be unique.
+   * @return the response to signing in, the user with their token.
+   * @throws Exception if either request fails.
+   */
+  JsonNode signUpAndLogIn(String firstName, String emailName) throws Exception {
+    String email = emailName + "@example.com";
+    String password = "loadtest-password";
+
+    ObjectNode signup = Json.newObject();
+    signup.put("firstName", firstName);
+    signup.put("lastName", "Traveller");
+    signup.put("email", email);
+    signup.put("password", password);
+    client.post("/api/auth/users/signup", null, signup).expect(201);
+
+    ObjectNode login = Json.newObject();
+    login.put("email", email);
+    login.put("password", password);
+    return client.post("/api/auth/users/login", null, login).expect(200).getJson();
+  }
+
+  /**
+   * Browses destinations: searches by the beginning of a name, pages through the results and opens
+   * one of them.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void destinationSearch(Traveller traveller) throws Exception {
+    Random random = traveller.getRandom();
+    String search = searchTerms.get(random.nextInt(searchTerms.size()));
+    int pages = 1 + random.nextInt(3);
+
+    JsonNode lastPage = null;
+    for (int page = 0; page < pages; page++) {
+      JsonNode results =
+          client
+              .get(
+                  "/api/destinations?search=" + search + "&offset=" + page * DESTINATION_PAGE_SIZE,
+                  traveller.getToken())
+              .expect(200)
+              .getJson();
+      if (results.size() == 0) {
+        break;
+      }
+      lastPage = results;
+    }
+
+    if (lastPage != null) {
+      int destinationId =
+          lastPage.get(random.nextInt(lastPage.size())).get("destinationId").asInt();
+      client.get("/api/destinations/" + destinationId, traveller.getToken()).expect(200);
+    }
+  }
+
+  /**
+   * Plans a trip with the traveller's partner, changes the order of its destinations and opens it.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void tripEdit(Traveller traveller) throws Exception {
+    Random random = traveller.getRandom();
+    List<Integer> destinations = pickDestinations(random, 2 + random.nextInt(4));
+    String path = "/api/users/" + traveller.getUserId() + "/trips";
+
+    int tripId =
+        client
+            .post(path, traveller.getToken(), tripBody("Road trip", destinations, traveller))
+            .expect(201)
+            .getJson()
+            .get("tripNodeId")
+            .asInt();
+
+    List<Integer> reordered = new ArrayList<>(destinations);
+    reordered.add(reordered.remove(0));
+    client
+        .put(path + "/" + tripId, traveller.getToken(), tripBody("Road trip", reordered, traveller))
+        .expect(200);
+    client.get(path + "/" + tripId, traveller.getToken()).expect(200);
+  }
+
+  /**
+   * Picks destinations for a trip, never the same one twice in a row as the API refuses that.
+   *
+   * @param random the random choices of the traveller.
+   * @param count the number of destinations.
+   * @return the ids of the destinations, in order.
+   */
+  List<Integer> pickDestinations(Random random, int count) {
+    List<Integer> picked = new ArrayList<>();
+    while (picked.size() < count) {
+      int destinationId = destinationIds.get(random.nextInt(destinationIds.size()));
+      if (picked.isEmpty() || picked.get(picked.size() - 1) != destinationId) {
+        picked.add(destinationId);
+      }
+    }
+    return picked;
+  }
+
+  /**
+   * Creates the body of a request to create or update a trip, with the traveller as its owner and
+   * their partner as a member.
+   *
+   * @param name the name of the trip.
+   * @param destinationIds the ids of the destinations on the trip, in order.
+   * @param traveller the traveller planning the trip.
+   * @return the body of the request.
+   */
+  static ObjectNode tripBody(String name, List<Integer> destinationIds, Traveller traveller) {
+    ObjectNode body = Json.newObject();
+    body.put("name", name);
+
+    ArrayNode tripNodes = body.putArray("tripNodes");
+    long day = TimeUnit.DAYS.toMillis(1);
+    long arrival = 1577836800000L;
+    for (int destinationId : destinationIds) {
+      ObjectNode tripNode = tripNodes.addObject();
+      tripNode.put("nodeType", "TripDestinationLeaf");
+      tripNode.put("destinationId", destinationId);
+      tripNode.put("arrivalDate", arrival);
+      tripNode.put("arrivalTime", 600);
+      tripNode.put("departureDate", arrival + day);
+      tripNode.put("departureTime", 540);
+      arrival += 2 * day;
+    }
+
+    ArrayNode userIds = body.putArray("userIds");
+    userIds.addObject().put("userId", traveller.getUserId()).put("role", "TRIP_OWNER");
+    userIds.addObject().put("userId", traveller.getPartner().getUserId()).put("role", "TRIP_MEMBER");
+    return body;
+  }
+
+  /**
+   * Uploads a photo, fetches its thumbnail like the gallery does and then the photo itself.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void photoThumbnail(Traveller traveller) throws Exception {
+    Map<String, String> fields = new HashMap<>();
+    fields.put("isPublic", "true");
+    fields.put("isPrimary", "false");
+
+    int photoId =
+        client
+            .upload(
+                "/api/users/" + traveller.getUserId() + "/photos",
+                traveller.getToken(),
+                fields,
+                "image",
+                "photo.jpg",
+                photo)
+            .expect(201)
+            .getJson()
+            .get("photoId")
+            .asInt();
+
+    client.get("/api/users/photos/" + photoId + "/thumbnail", traveller.getToken()).expect(200);
+    client.get("/api/users/photos/" + photoId, traveller.getToken()).expect(200);
+  }
+
+  /**
+   * Sends a chat message over the websocket, until it has been acknowledged and the partner of the
+   * traveller has received it.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void chat(Traveller traveller) throws Exception {
+    String nonce = traveller.nextNonce();
+    String message = "Where are we meeting? " + nonce;
+
+    FrameSocket socket = traveller.getSocket();
+    FrameSocket partnerSocket = traveller.getPartner().getSocket();
+    String ackKey = FrameSocket.ackKey(nonce);
+    String messageKey = FrameSocket.messageKey(message);
+    CompletableFuture<JsonNode> ack = socket.expect(ackKey);
+    CompletableFuture<JsonNode> received = partnerSocket.expect(messageKey);
+
+    socket.send(new SendChatMessageFrame(traveller.getChatGroupId(), message, nonce));
+    try {
+      JsonNode reply = ack.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      if (reply.path("type").asText().equals("chat-message-error")) {
+        throw new IllegalStateException("Chat message failed: " + reply.path("error").asText());
+      }
+      received.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } finally {
+      socket.forget(ackKey);
+      partnerSocket.forget(messageKey);
+    }
+  }
+
+  /**
+   * Sends the traveller's position on the map of their trip, until their partner receives it. Map
+   * pings are throttled by the application, so this includes any time spent waiting to be relayed.
+   *
+   * @param traveller the traveller running the scenario.
+   */
+  private void mapPing(Traveller traveller) throws Exception {
+    Random random = traveller.getRandom();
+    int latitude = -47 + random.nextInt(13);
+    int longitude = 166 + random.nextInt(12);
+
+    FrameSocket partnerSocket = traveller.getPartner().getSocket();
+    String key = FrameSocket.pingMapKey(traveller.getTripId());
+    CompletableFuture<JsonNode> received = partnerSocket.expect(key);
+
+    traveller.getSocket().send(new PingMapFrame(traveller.getTripId(), latitude, longitude));
+    try {
+      received.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } finally {
+      partnerSocket.forget(key);
+    }
+  }
+}
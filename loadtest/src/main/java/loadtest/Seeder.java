@@ -0,0 +1,209 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.ebean.Ebean;
+import io.ebean.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import models.Country;
+import models.Destination;
+import models.DestinationType;
+import models.Role;
+import models.RoleType;
+import models.TravellerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.libs.Json;
+
+/**
+ * Creates the data the scenarios need: reference data and destinations in the database, and
+ * travellers through the API.
+ */
+public class Seeder {
+
+  private static final Logger log = LoggerFactory.getLogger(Seeder.class);
+
+  private static final List<String> PLACES =
+      Arrays.asList(
+          "Akaroa", "Arrowtown", "Blenheim", "Cromwell", "Dunedin", "Franz Josef", "Gisborne",
+          "Greymouth", "Hanmer Springs", "Hokitika", "Kaikoura", "Karamea", "Lake Tekapo",
+          "Methven", "Milford Sound", "Motueka", "Napier", "Nelson", "Oamaru", "Ohakune",
+          "Picton", "Punakaiki", "Queenstown", "Raglan", "Rotorua", "Stewart Island", "Taupo",
+          "Tauranga", "Te Anau", "Twizel", "Wanaka", "Westport", "Whanganui", "Whitianga");
+  private static final List<String> FEATURES =
+      Arrays.asList(
+          "Beach", "Campground", "Falls", "Harbour", "Hot Pools", "Lookout", "Museum",
+          "Summit", "Track", "Village");
+
+  private final LoadClient client;
+  private final Scenarios scenarios;
+
+  public Seeder(LoadClient client, Scenarios scenarios) {
+    this.client = client;
+    this.scenarios = scenarios;
+  }
+
+  /**
+   * Creates the roles, types and countries the API expects to exist, and public destinations named
+   * after places around New Zealand. Only used when the application is started by the load test,
+   * as the database must be empty.
+   *
+   * @param destinations the number of destinations to create.
+   * @param random the random choices of the load test.
+   */
+  public static void seedDatabase(int destinations, Random random) {
+    try (Transaction transaction = Ebean.beginTransaction()) {
+      for (RoleType roleType : RoleType.values()) {
+        new Role(roleType).save();
+      }
+
+      List<DestinationType> destinationTypes = new ArrayList<>();
+      for (String name : Arrays.asList("Town", "City", "Attraction", "Event")) {
+        DestinationType destinationType = new DestinationType(name);
+        destinationType.save();
+        destinationTypes.add(destinationType);
+      }
+      List<TravellerType> travellerTypes = new ArrayList<>();
+      for (String name : Arrays.asList("Backpacker", "Gap Year", "Frequent Weekender")) {
+        TravellerType travellerType = new TravellerType(name);
+        travellerType.save();
+        travellerTypes.add(travellerType);
+      }
+      Country newZealand = new Country("New Zealand", "NZ", true);
+      newZealand.save();
+
+      List<Destination> created = new ArrayList<>();
+      for (int i = 0; i < destinations; i++) {
+        String name =
+            PLACES.get(random.nextInt(PLACES.size()))
+                + " "
+                + FEATURES.get(random.nextInt(FEATURES.size()))
+                + " "
+                + (i + 1);
+        created.add(
+            new Destination(
+                name,
+                destinationTypes.get(random.nextInt(destinationTypes.size())),
+                "Canterbury",
+                -47 + random.nextDouble() * 13,
+                166 + random.nextDouble() * 12,
+                newZealand,
+                null,
+                new ArrayList<>(travellerTypes.subList(0, 1 + random.nextInt(3))),
+                true));
+      }
+      Ebean.saveAll(created);
+      transaction.commit();
+    }
+    log.info("Created {} destinations", destinations);
+  }
+
+  /**
+   * Gets the beginnings of destination names to search for, which match a few pages of the
+   * destinations created by the load test.
+   *
+   * @return the search terms.
+   */
+  public static List<String> searchTerms() {
+    Set<String> terms = new LinkedHashSet<>();
+    for (String place : PLACES) {
+      terms.add(place.substring(0, 2));
+      terms.add(place.substring(0, 4));
+    }
+    return new ArrayList<>(terms);
+  }
+
+  /**
+   * Finds public destinations to put on trips, by paging through the destinations.
+   *
+   * @param token the token of a traveller.
+   * @param limit the most destinations to find.
+   * @return the ids of the destinations.
+   * @throws Exception if the destinations could not be fetched.
+   */
+  public List<Integer> findDestinations(String token, int limit) throws Exception {
+    List<Integer> destinationIds = new ArrayList<>();
+    while (destinationIds.size() < limit) {
+      JsonNode page =
+          client
+              .get("/api/destinations?offset=" + destinationIds.size(), token)
+              .expect(200)
+              .getJson();
+      if (page.size() == 0) {
+        break;
+      }
+      for (JsonNode destination : page) {
+        destinationIds.add(destination.get("destinationId").asInt());
+      }
+    }
+    if (destinationIds.size() < 2) {
+      throw new IllegalStateException("At least two public destinations are needed for trips");
+    }
+    return destinationIds;
+  }
+
+  /**
+   * Signs travellers up in pairs. Each pair gets a chat group and a trip, and every traveller
+   * opens a websocket.
+   *
+   * @param count the number of travellers, rounded up to an even number.
+   * @param seed the seed of the random choices of the travellers.
+   * @param runId a string that is different on every run, to keep email addresses unique.
+   * @param destinationIds the ids of destinations to put on the trips.
+   * @return the travellers.
+   * @throws Exception if any traveller could not be set up.
+   */
+  public List<Traveller> createTravellers(
+      int count, long seed, String runId, List<Integer> destinationIds) throws Exception {
+    List<Traveller> travellers = new ArrayList<>();
+    for (int i = 0; i < count + count % 2; i++) {
+      JsonNode user = scenarios.signUpAndLogIn("Traveller", "loadtest-" + runId + "-" + i);
+      travellers.add(
+          new Traveller(user.get("userId").asInt(), user.get("token").asText(), seed + i));
+    }
+
+    for (int i = 0; i < travellers.size(); i += 2) {
+      Traveller first = travellers.get(i);
+      Traveller second = travellers.get(i + 1);
+      first.setPartner(second);
+      second.setPartner(first);
+
+      ObjectNode chat = Json.newObject();
+      chat.put("name", "Trip chat");
+      chat.putArray("userIds").add(second.getUserId());
+      int chatGroupId =
+          client
+              .post("/api/chats", first.getToken(), chat)
+              .expect(201)
+              .getJson()
+              .get("chatGroupId")
+              .asInt();
+      first.setChatGroupId(chatGroupId);
+      second.setChatGroupId(chatGroupId);
+
+      int tripId =
+          client
+              .post(
+                  "/api/users/" + first.getUserId() + "/trips",
+                  first.getToken(),
+                  Scenarios.tripBody("Shared trip", destinationIds.subList(0, 2), first))
+              .expect(201)
+              .getJson()
+              .get("tripNodeId")
+              .asInt();
+      first.setTripId(tripId);
+      second.setTripId(tripId);
+    }
+
+    for (Traveller traveller : travellers) {
+      traveller.setSocket(client.openSocket(traveller.getToken()));
+    }
+    log.info("Signed up {} travellers", travellers.size());
+    return travellers;
+  }
+}
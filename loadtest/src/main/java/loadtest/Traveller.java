@@ -0,0 +1,93 @@
+package loadtest;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A signed in user the load test runs scenarios as. Travellers come in pairs, and each pair shares
+ * a trip and a chat group so that chat messages and map pings have someone to go to.
+ */
+public class Traveller {
+
+  private final int userId;
+  private final String token;
+  private final Random random;
+  private final AtomicInteger nonces = new AtomicInteger();
+
+  private Traveller partner;
+  private int tripId;
+  private int chatGroupId;
+  private FrameSocket socket;
+
+  /**
+   * Creates a traveller.
+   *
+   * @param userId the id of the user.
+   * @param token the token the user signed in with.
+   * @param seed the seed of the random choices made for the traveller.
+   */
+  public Traveller(int userId, String token, long seed) {
+    this.userId = userId;
+    this.token = token;
+    this.random = new Random(seed);
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * Gets the random choices made for the traveller. Only the thread running the traveller's
+   * scenarios uses it, so runs with the same seed make the same choices.
+   *
+   * @return the random number generator of the traveller.
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Gets a string the traveller has not used before, to tell its chat messages apart.
+   *
+   * @return the nonce.
+   */
+  public String nextNonce() {
+    return userId + "-" + nonces.incrementAndGet();
+  }
+
+  public Traveller getPartner() {
+    return partner;
+  }
+
+  public void setPartner(Traveller partner) {
+    this.partner = partner;
+  }
+
+  public int getTripId() {
+    return tripId;
+  }
+
+  public void setTripId(int tripId) {
+    this.tripId = tripId;
+  }
+
+  public int getChatGroupId() {
+    return chatGroupId;
+  }
+
+  public void setChatGroupId(int chatGroupId) {
+    this.chatGroupId = chatGroupId;
+  }
+
+  public FrameSocket getSocket() {
+    return socket;
+  }
+
+  public void setSocket(FrameSocket socket) {
+    this.socket = socket;
+  }
+}
@@ -0,0 +1,26 @@
+package loadtest;
+
+/** Thrown when the application responds to a load test request with an unexpected status. */
+public class UnexpectedResponseException extends RuntimeException {
+
+  private final int status;
+
+  /**
+   * Creates the exception.
+   *
+   * @param expected the status the response should have had.
+   * @param status the status of the response.
+   * @param body the body of the response.
+   */
+  public UnexpectedResponseException(int expected, int status, String body) {
+    super(
+        String.format(
+            "Expected status %d but was %d: %s",
+            expected, status, body.length() > 200 ? body.substring(0, 200) + "..." : body));
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
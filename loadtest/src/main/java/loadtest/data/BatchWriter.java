@@ -0,0 +1,101 @@
+package loadtest.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Inserts rows into several tables over one connection in JDBC batches. Statements are flushed in
+ * the order they were first used, so rows referenced by foreign keys have to be written before the
+ * rows referencing them. Every flush is committed.
+ */
+public class BatchWriter implements AutoCloseable {
+
+  private final Connection connection;
+  private final int batchSize;
+  private final Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+  private int pending;
+  private long written;
+
+  /**
+   * Creates a writer.
+   *
+   * @param connection the connection to insert over, which is committed by the writer.
+   * @param batchSize the number of rows to send to the database at once.
+   * @throws SQLException if auto commit could not be turned off.
+   */
+  public BatchWriter(Connection connection, int batchSize) throws SQLException {
+    this.connection = connection;
+    this.batchSize = batchSize;
+    connection.setAutoCommit(false);
+  }
+
+  /**
+   * Adds a row to be inserted, sending the pending rows once there are enough for a batch.
+   *
+   * @param table the table to insert into.
+   * @param columns the columns of the table, in the order of the values, separated by commas.
+   * @param values the values of the row.
+   * @throws SQLException if the pending rows could not be inserted.
+   */
+  public void insert(String table, String columns, Object... values) throws SQLException {
+    String key = table + "(" + columns + ")";
+    PreparedStatement statement = statements.get(key);
+    if (statement == null) {
+      String placeholders = String.join(",", Collections.nCopies(values.length, "?"));
+      statement =
+          connection.prepareStatement(
+              "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")");
+      statements.put(key, statement);
+    }
+
+    for (int i = 0; i < values.length; i++) {
+      statement.setObject(i + 1, values[i]);
+    }
+    statement.addBatch();
+    if (++pending >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Inserts and commits the pending rows.
+   *
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void flush() throws SQLException {
+    if (pending == 0) {
+      return;
+    }
+    for (PreparedStatement statement : statements.values()) {
+      statement.executeBatch();
+    }
+    connection.commit();
+    written += pending;
+    pending = 0;
+  }
+
+  /**
+   * Gets the number of rows inserted so far, across every table.
+   *
+   * @return the number of rows.
+   */
+  public long getWritten() {
+    return written;
+  }
+
+  /** Inserts the pending rows and closes the statements, but not the connection. */
+  @Override
+  public void close() throws SQLException {
+    try {
+      flush();
+    } finally {
+      for (PreparedStatement statement : statements.values()) {
+        statement.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package loadtest.data;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import modules.photos.PhotoStoreProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.db.Database;
+import play.db.Databases;
+import play.db.evolutions.Evolutions;
+
+/**
+ * Fills an empty database with a large synthetic data set, for benchmarks and load tests against
+ * realistic volumes. Run with {@code sbt generateData}, sized by the datagen section of
+ * datagen.conf.
+ *
+ * <p>Each table is split into chunks of ids, which threads take in turn and insert in JDBC batches
+ * over their own connection. Rows are generated from the seed and their id alone, so the data set
+ * is the same whatever the number of threads.
+ */
+public class DataGenerator {
+
+  private static final Logger log = LoggerFactory.getLogger(DataGenerator.class);
+
+  private final DataSettings settings;
+  private final Database database;
+  private final SyntheticDataset dataset;
+  private final ExecutorService threads;
+
+  /** Writes the rows of a table, and the rows linked to them, for one id. */
+  @FunctionalInterface
+  interface RowWriter {
+    void write(BatchWriter writer, long id) throws Exception;
+  }
+
+  /**
+   * Creates a generator.
+   *
+   * @param settings the sizes and seed of the data set.
+   * @param database the database to fill.
+   * @param dataset the rows to fill it with.
+   */
+  public DataGenerator(DataSettings settings, Database database, SyntheticDataset dataset) {
+    this.settings = settings;
+    this.database = database;
+    this.dataset = dataset;
+    this.threads = Executors.newFixedThreadPool(settings.getThreads());
+  }
+
+  /**
+   * Fills the database, table by table so every row is inserted after the rows it refers to.
+   *
+   * @throws Exception if the database could not be filled.
+   */
+  public void generate() throws Exception {
+    long started = System.nanoTime();
+    try {
+      prepareSchema();
+
+      try (Connection connection = database.getConnection();
+          BatchWriter writer = new BatchWriter(connection, settings.getBatchSize())) {
+        dataset.writeReferenceData(writer);
+      }
+      load("users", settings.getUsers(), dataset::writeUser);
+      load("destinations", settings.getDestinations(), dataset::writeDestination);
+      load("chat groups", settings.getChatGroups(), dataset::writeChatGroup);
+      load("messages", settings.getMessages(), dataset::writeMessage);
+      load("trips", settings.getTrips(), dataset::writeTrip);
+      load("photos", settings.getPhotos(), dataset::writePhoto);
+
+      resetIds();
+    } finally {
+      threads.shutdown();
+    }
+    log.info("Generated the data set in {} s", (System.nanoTime() - started) / 1_000_000_000);
+  }
+
+  /**
+   * Checks the database is empty, and adds the order of trip nodes, which is added by the setup
+   * task rather than an evolution.
+   *
+   * @throws SQLException if the database could not be read or changed.
+   */
+  private void prepareSchema() throws SQLException {
+    try (Connection connection = database.getConnection();
+        Statement statement = connection.createStatement()) {
+      try (ResultSet users = statement.executeQuery("SELECT COUNT(*) FROM user")) {
+        users.next();
+        if (users.getLong(1) > 0) {
+          throw new IllegalStateException(
+              "The database already has users, the data set can only be generated into an empty"
+                  + " database");
+        }
+      }
+
+      try {
+        statement.executeQuery("SELECT child_index FROM trip_node_parent WHERE 1 = 0").close();
+      } catch (SQLException e) {
+        statement.execute("ALTER TABLE trip_node_parent ADD COLUMN child_index INTEGER");
+      }
+    }
+  }
+
+  /**
+   * Inserts the rows of a table, and the rows linked to them, in parallel.
+   *
+   * @param name the name of the rows, for the log.
+   * @param count the number of ids to write rows for, from one.
+   * @param rowWriter writes the rows of an id.
+   * @throws Exception if any rows could not be inserted.
+   */
+  private void load(String name, int count, RowWriter rowWriter) throws Exception {
+    long started = System.nanoTime();
+    int chunkSize = settings.getChunkSize();
+    AtomicLong nextChunk = new AtomicLong(1);
+    AtomicLong rows = new AtomicLong();
+
+    List<Future<?>> workers = new ArrayList<>();
+    for (int i = 0; i < settings.getThreads(); i++) {
+      workers.add(
+          threads.submit(
+              () -> {
+                try (Connection connection = database.getConnection()) {
+                  long from;
+                  while ((from = nextChunk.getAndAdd(chunkSize)) <= count) {
+                    long to = Math.min(from + chunkSize - 1, count);
+                    try (BatchWriter writer =
+                        new BatchWriter(connection, settings.getBatchSize())) {
+                      for (long id = from; id <= to; id++) {
+                        rowWriter.write(writer, id);
+                      }
+                      writer.flush();
+                      rows.addAndGet(writer.getWritten());
+                    }
+                  }
+                }
+                return null;
+              }));
+    }
+
+    try {
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      for (Future<?> worker : workers) {
+        worker.cancel(true);
+      }
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+
+    long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+    log.info(
+        "Inserted {} {} as {} rows in {} ms, {} rows/s",
+        count,
+        name,
+        rows.get(),
+        millis,
+        rows.get() * 1000 / millis);
+  }
+
+  /**
+   * Moves the next id of every table past the generated ids, so rows added by the application
+   * don't collide with them. MySQL does this by itself when ids are inserted, H2 does not.
+   *
+   * @throws SQLException if the ids could not be reset.
+   */
+  private void resetIds() throws SQLException {
+    String[][] ids = {
+      {"role", "role_id"},
+      {"traveller_type", "traveller_type_id"},
+      {"destination_type", "destination_type_id"},
+      {"country", "country_id"},
+      {"nationality", "nationality_id"},
+      {"passport", "passport_id"},
+      {"user", "user_id"},
+      {"destination", "destination_id"},
+      {"chat_group", "chat_group_id"},
+      {"message", "message_id"},
+      {"trip_node", "trip_node_id"},
+      {"user_role", "user_role_id"},
+      {"personal_photo", "photo_id"}
+    };
+
+    try (Connection connection = database.getConnection();
+        Statement statement = connection.createStatement()) {
+      boolean h2 = connection.getMetaData().getDatabaseProductName().equals("H2");
+      for (String[] id : ids) {
+        long next;
+        try (ResultSet max =
+            statement.executeQuery("SELECT COALESCE(MAX(" + id[1] + "), 0) FROM " + id[0])) {
+          max.next();
+          next = max.getLong(1) + 1;
+        }
+        if (h2) {
+          statement.execute(
+              "ALTER TABLE " + id[0] + " ALTER COLUMN " + id[1] + " RESTART WITH " + next);
+        }
+      }
+
+      // Message ids are handed out in blocks from their own table, see MessageWriteBuffer
+      statement.execute(
+          "UPDATE message_id_block SET next_id = "
+              + "(SELECT COALESCE(MAX(message_id), 0) + 1 FROM message)");
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config config = ConfigFactory.load("datagen");
+    DataSettings settings = new DataSettings(config);
+
+    Config db = config.getConfig("db.default");
+    Map<String, Object> dbConfig = new HashMap<>();
+    dbConfig.put("username", db.getString("username"));
+    dbConfig.put("password", db.getString("password"));
+    dbConfig.put("hikaricp.maximumPoolSize", settings.getThreads() + 1);
+    Database database =
+        Databases.createFrom("default", db.getString("driver"), db.getString("url"), dbConfig);
+
+    try {
+      if (settings.isApplyEvolutions()) {
+        Evolutions.applyEvolutions(database);
+      }
+      PlaceholderPhotos photos =
+          new PlaceholderPhotos(
+              new PhotoStoreProvider(config).get(),
+              settings.getPlaceholderImages(),
+              settings.getSeed());
+      new DataGenerator(settings, database, new SyntheticDataset(settings, photos)).generate();
+    } finally {
+      database.shutdown();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package loadtest.data;
+
+import com.typesafe.config.Config;
+
+/** The settings of a synthetic data set, read from the datagen section of the configuration. */
+public class DataSettings {
+
+  private final long seed;
+  private final int threads;
+  private final int batchSize;
+  private final int chunkSize;
+  private final boolean applyEvolutions;
+  private final int users;
+  private final int destinations;
+  private final int trips;
+  private final int chatGroups;
+  private final int messages;
+  private final int photos;
+  private final int placeholderImages;
+  private final String password;
+
+  /**
+   * Reads the settings of a synthetic data set.
+   *
+   * @param config the configuration, with a datagen section.
+   */
+  public DataSettings(Config config) {
+    Config datagen = config.getConfig("datagen");
+    this.seed = datagen.getLong("seed");
+    this.threads = datagen.getInt("threads");
+    this.batchSize = datagen.getInt("batchSize");
+    this.chunkSize = datagen.getInt("chunkSize");
+    this.applyEvolutions = datagen.getBoolean("applyEvolutions");
+    this.users = datagen.getInt("users");
+    this.destinations = datagen.getInt("destinations");
+    this.trips = datagen.getInt("trips");
+    this.chatGroups = datagen.getInt("chatGroups");
+    this.messages = datagen.getInt("messages");
+    this.photos = datagen.getInt("photos");
+    this.placeholderImages = datagen.getInt("placeholderImages");
+    this.password = datagen.getString("password");
+
+    if (users < 6) {
+      throw new IllegalArgumentException("datagen.users must be at least 6 to fill chats and trips");
+    }
+    if (destinations < 2) {
+      throw new IllegalArgumentException("datagen.destinations must be at least 2 to fill trips");
+    }
+    if (messages > 0 && chatGroups == 0) {
+      throw new IllegalArgumentException("datagen.messages needs at least one chat group");
+    }
+    if (photos > 0 && placeholderImages == 0) {
+      throw new IllegalArgumentException("datagen.photos needs at least one placeholder image");
+    }
+  }
+
+  /**
+   * Gets the seed every row is generated from. The same seed and sizes always give the same rows,
+   * whatever the number of threads.
+   *
+   * @return the seed.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Gets the number of connections rows are inserted over at once.
+   *
+   * @return the number of threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Gets the number of rows sent to the database in one batch, and committed together.
+   *
+   * @return the batch size.
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Gets the number of top level rows, such as users or trips, a thread takes at a time.
+   *
+   * @return the chunk size.
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public boolean isApplyEvolutions() {
+    return applyEvolutions;
+  }
+
+  public int getUsers() {
+    return users;
+  }
+
+  public int getDestinations() {
+    return destinations;
+  }
+
+  public int getTrips() {
+    return trips;
+  }
+
+  public int getChatGroups() {
+    return chatGroups;
+  }
+
+  public int getMessages() {
+    return messages;
+  }
+
+  public int getPhotos() {
+    return photos;
+  }
+
+  /**
+   * Gets the number of distinct images the photos are copies of.
+   *
+   * @return the number of placeholder images.
+   */
+  public int getPlaceholderImages() {
+    return placeholderImages;
+  }
+
+  /**
+   * Gets the password of every generated user, so any of them can be signed in as.
+   *
+   * @return the password.
+   */
+  public String getPassword() {
+    return password;
+  }
+}
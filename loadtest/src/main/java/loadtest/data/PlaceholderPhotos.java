@@ -0,0 +1,121 @@
+package loadtest.data;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import modules.photos.PhotoStore;
+
+/**
+ * A few distinct landscape pictures, drawn rather than downloaded so no internet access is needed,
+ * that generated photos are copies of. Each one has a square thumbnail the size the application
+ * renders them.
+ */
+public class PlaceholderPhotos {
+
+  static final String EXTENSION = ".jpg";
+  static final String THUMB = "_thumb";
+
+  private static final int WIDTH = 800;
+  private static final int HEIGHT = 600;
+  private static final int THUMBNAIL_SIZE = 300;
+
+  private final PhotoStore store;
+  private final List<byte[]> images = new ArrayList<>();
+  private final List<byte[]> thumbnails = new ArrayList<>();
+
+  /**
+   * Draws the pictures.
+   *
+   * @param store the store to copy the pictures into.
+   * @param count the number of distinct pictures.
+   * @param seed the seed of the pictures, so they are the same on every run.
+   * @throws IOException if a picture could not be encoded.
+   */
+  public PlaceholderPhotos(PhotoStore store, int count, long seed) throws IOException {
+    this.store = store;
+    for (int i = 0; i < count; i++) {
+      images.add(draw(new Random(seed + i), WIDTH, HEIGHT));
+      thumbnails.add(draw(new Random(seed + i), THUMBNAIL_SIZE, THUMBNAIL_SIZE));
+    }
+  }
+
+  /**
+   * Draws a sky, sun and hills, in colours and positions picked at random.
+   *
+   * @param random the random choices of the picture.
+   * @param width the width of the picture.
+   * @param height the height of the picture.
+   * @return the picture as a JPEG.
+   * @throws IOException if the picture could not be encoded.
+   */
+  private static byte[] draw(Random random, int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+    Color sky = new Color(random.nextInt(100), 100 + random.nextInt(100), 155 + random.nextInt(100));
+    graphics.setPaint(new GradientPaint(0, 0, sky, 0, height, sky.brighter().brighter()));
+    graphics.fillRect(0, 0, width, height);
+
+    graphics.setColor(new Color(255, 200 + random.nextInt(55), random.nextInt(120)));
+    int sun = width / 8;
+    graphics.fillOval(random.nextInt(width - sun), random.nextInt(height / 3), sun, sun);
+
+    for (int hill = 0; hill < 3; hill++) {
+      graphics.setColor(
+          new Color(30 + random.nextInt(60), 90 + random.nextInt(100), 30 + random.nextInt(60)));
+      int top = height / 3 + hill * height / 6 + random.nextInt(height / 8);
+      int[] xs = {0, random.nextInt(width), width, width, 0};
+      int[] ys = {top + random.nextInt(height / 8), top, top + random.nextInt(height / 8), height,
+          height};
+      graphics.fillPolygon(xs, ys, xs.length);
+    }
+    graphics.dispose();
+
+    ByteArrayOutputStream picture = new ByteArrayOutputStream();
+    ImageIO.write(image, "jpeg", picture);
+    return picture.toByteArray();
+  }
+
+  /**
+   * Gets the number of distinct pictures.
+   *
+   * @return the number of pictures.
+   */
+  public int size() {
+    return images.size();
+  }
+
+  /**
+   * Copies a picture and its thumbnail into the photo store.
+   *
+   * @param picture the index of the picture.
+   * @param filename the name to store the picture under.
+   * @param thumbnailName the name to store the thumbnail under.
+   * @throws IOException if the files could not be stored.
+   */
+  public void store(int picture, String filename, String thumbnailName) throws IOException {
+    put(filename, images.get(picture));
+    put(thumbnailName, thumbnails.get(picture));
+  }
+
+  private void put(String name, byte[] contents) throws IOException {
+    Path staging = store.createStagingFile();
+    try {
+      Files.write(staging, contents);
+      store.put(name, staging);
+    } finally {
+      Files.deleteIfExists(staging);
+    }
+  }
+}
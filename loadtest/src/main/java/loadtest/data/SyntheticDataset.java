@@ -0,0 +1,522 @@
+package loadtest.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import models.RoleType;
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * The rows of a synthetic data set. Ids are given explicitly and every row is generated from its
+ * own random numbers, seeded from its table and id, so a row and everything it refers to can be
+ * generated on any thread, in any order, and come out the same on every run.
+ *
+ * <p>Each trip takes a block of trip node ids and user role ids, so nested trips can be generated
+ * independently of each other. Unused ids in a block are left as gaps.
+ */
+public class SyntheticDataset {
+
+  /** The most trip nodes in a trip: the trip, four stops and three stops in each of those. */
+  static final int TRIP_NODE_BLOCK = 17;
+  /** The most user roles in a trip: four travellers in the trip and each of four sub trips. */
+  static final int USER_ROLE_BLOCK = 20;
+
+  private static final long USERS = 1;
+  private static final long DESTINATIONS = 2;
+  private static final long CHAT_GROUPS = 3;
+  private static final long MESSAGES = 4;
+  private static final long TRIPS = 5;
+  private static final long PHOTOS = 6;
+  private static final long PASSWORD = 7;
+
+  /** Everything happens within two years of the start of 2019. */
+  private static final long EPOCH = 1546300800000L;
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  private static final long YEAR = 365 * DAY;
+
+  private static final List<String> TRAVELLER_TYPES =
+      Arrays.asList(
+          "Backpacker", "Gap Year", "Frequent Weekender", "Thrillseeker",
+          "Functional/Business Traveller", "Groupies", "Holidaymaker");
+  private static final List<String> DESTINATION_TYPES =
+      Arrays.asList("Town", "City", "Attraction", "Event", "Island", "Park", "Landmark");
+  private static final List<String> SYLLABLES =
+      Arrays.asList(
+          "ka", "ro", "ma", "ti", "wa", "nu", "ha", "pe", "lo", "ri", "an", "el", "mar", "ton",
+          "ber", "vik", "sen", "dor", "lin", "que", "sa", "mo", "ta", "kai");
+  private static final List<String> FEATURES =
+      Arrays.asList(
+          "Beach", "Bay", "Falls", "Harbour", "Hot Pools", "Lookout", "Museum", "Summit", "Track",
+          "Village", "Lake", "Market", "Gardens", "Castle", "Cathedral", "Springs");
+  private static final List<String> DISTRICTS =
+      Arrays.asList("North", "South", "East", "West", "Central", "Coastal", "Highlands", "Lakes");
+  private static final List<String> GENDERS = Arrays.asList("Male", "Female", "Other");
+  private static final List<String> WORDS =
+      Arrays.asList(
+          "when", "are", "we", "leaving", "the", "bus", "train", "flight", "hostel", "is", "booked",
+          "meet", "at", "station", "tomorrow", "morning", "tonight", "can", "someone", "bring",
+          "tickets", "snacks", "map", "sounds", "good", "great", "photos", "from", "yesterday",
+          "running", "late", "see", "you", "there", "beach", "lunch", "dinner", "museum", "walk");
+
+  private final DataSettings settings;
+  private final PlaceholderPhotos photos;
+  private final List<String> firstNames;
+  private final List<String> lastNames;
+  private final List<String> countries;
+  private final String passwordHash;
+
+  /**
+   * Creates a data set. Names of people come from the same lists as the example data tasks.
+   *
+   * @param settings the sizes and seed of the data set.
+   * @param photos the images the photos are copies of.
+   * @throws IOException if the lists of names could not be read.
+   */
+  public SyntheticDataset(DataSettings settings, PlaceholderPhotos photos) throws IOException {
+    this.settings = settings;
+    this.photos = photos;
+    this.firstNames = readNames("./app/tasks/SampleData/FirstNames.txt");
+    this.lastNames = readNames("./app/tasks/SampleData/LastNames.txt");
+
+    // Sorted so the country ids are the same on every run
+    this.countries = new ArrayList<>(Arrays.asList(Locale.getISOCountries()));
+    Collections.sort(countries);
+
+    // Hashing a password for every user would take hours, so they all share a hash. The salt is
+    // seeded so the hash is the same on every run
+    SplittableRandom random = random(PASSWORD, 0);
+    StringBuilder salt = new StringBuilder("$2a$10$");
+    String alphabet = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    for (int i = 0; i < 22; i++) {
+      salt.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    this.passwordHash = BCrypt.hashpw(settings.getPassword(), salt.toString());
+  }
+
+  private static List<String> readNames(String path) throws IOException {
+    List<String> names = new ArrayList<>();
+    for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+      if (!line.trim().isEmpty()) {
+        names.add(line.trim());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Gets the random numbers of a row.
+   *
+   * @param table the table of the row.
+   * @param id the id of the row.
+   * @return the random numbers, the same every time for the same seed, table and id.
+   */
+  private SplittableRandom random(long table, long id) {
+    return new SplittableRandom(
+        settings.getSeed() * 0x9E3779B97F4A7C15L + table * 0xBF58476D1CE4E5B9L + id);
+  }
+
+  private static <T> T pick(SplittableRandom random, List<T> values) {
+    return values.get(random.nextInt(values.size()));
+  }
+
+  private int randomUser(SplittableRandom random) {
+    return 1 + random.nextInt(settings.getUsers());
+  }
+
+  private int randomDestination(SplittableRandom random) {
+    return 1 + random.nextInt(settings.getDestinations());
+  }
+
+  private static int roleId(RoleType roleType) {
+    return roleType.ordinal() + 1;
+  }
+
+  /**
+   * Writes the roles, traveller types, destination types, countries, nationalities and passports.
+   *
+   * @param writer the writer to insert with.
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void writeReferenceData(BatchWriter writer) throws SQLException {
+    for (RoleType roleType : RoleType.values()) {
+      writer.insert("role", "role_id,role_type", roleId(roleType), roleType.name());
+    }
+    for (int i = 0; i < TRAVELLER_TYPES.size(); i++) {
+      writer.insert(
+          "traveller_type", "traveller_type_id,traveller_type_name", i + 1, TRAVELLER_TYPES.get(i));
+    }
+    for (int i = 0; i < DESTINATION_TYPES.size(); i++) {
+      writer.insert(
+          "destination_type",
+          "destination_type_id,destination_type_name",
+          i + 1,
+          DESTINATION_TYPES.get(i));
+    }
+    for (int i = 0; i < countries.size(); i++) {
+      String code = countries.get(i);
+      String name = new Locale("", code).getDisplayCountry(Locale.ENGLISH);
+      writer.insert("country", "country_id,country_name,isocode,is_valid", i + 1, name, code, true);
+      writer.insert(
+          "nationality",
+          "nationality_id,nationality_country_country_id,nationality_name",
+          i + 1,
+          i + 1,
+          name);
+      writer.insert(
+          "passport", "passport_id,passport_country,country_country_id", i + 1, name, i + 1);
+    }
+  }
+
+  /**
+   * Writes a user with their roles, traveller types, nationality and passport. The first user is
+   * also an administrator.
+   *
+   * @param writer the writer to insert with.
+   * @param userId the id of the user.
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void writeUser(BatchWriter writer, long userId) throws SQLException {
+    SplittableRandom random = random(USERS, userId);
+    String firstName = pick(random, firstNames);
+    String lastName = pick(random, lastNames);
+    long joined = EPOCH + (long) (random.nextDouble() * YEAR);
+    long bornBeforeEpoch = (18 + random.nextInt(60)) * YEAR + random.nextInt(365) * DAY;
+
+    writer.insert(
+        "user",
+        "user_id,first_name,middle_name,last_name,date_of_birth,gender,email,password_hash,token,"
+            + "timestamp",
+        userId,
+        firstName,
+        "",
+        lastName,
+        new Timestamp(EPOCH - bornBeforeEpoch),
+        pick(random, GENDERS),
+        firstName.toLowerCase(Locale.ENGLISH) + "." + userId + "@example.com",
+        passwordHash,
+        Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()),
+        new Timestamp(joined));
+
+    writer.insert(
+        "role_user", "role_role_id,user_user_id", roleId(RoleType.TRAVELLER), userId);
+    if (userId == 1) {
+      writer.insert("role_user", "role_role_id,user_user_id", roleId(RoleType.ADMIN), userId);
+      writer.insert(
+          "role_user", "role_role_id,user_user_id", roleId(RoleType.SUPER_ADMIN), userId);
+    }
+
+    int firstType = random.nextInt(TRAVELLER_TYPES.size());
+    writer.insert(
+        "traveller_type_user",
+        "traveller_type_traveller_type_id,user_user_id",
+        firstType + 1,
+        userId);
+    if (random.nextBoolean()) {
+      int secondType = (firstType + 1 + random.nextInt(TRAVELLER_TYPES.size() - 1))
+          % TRAVELLER_TYPES.size();
+      writer.insert(
+          "traveller_type_user",
+          "traveller_type_traveller_type_id,user_user_id",
+          secondType + 1,
+          userId);
+    }
+
+    int country = 1 + random.nextInt(countries.size());
+    writer.insert(
+        "nationality_user", "nationality_nationality_id,user_user_id", country, userId);
+    if (random.nextInt(10) < 6) {
+      writer.insert("passport_user", "passport_passport_id,user_user_id", country, userId);
+    }
+  }
+
+  /**
+   * Writes a destination with its traveller types. Most destinations are public.
+   *
+   * @param writer the writer to insert with.
+   * @param destinationId the id of the destination.
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void writeDestination(BatchWriter writer, long destinationId) throws SQLException {
+    SplittableRandom random = random(DESTINATIONS, destinationId);
+    StringBuilder place = new StringBuilder();
+    for (int i = 2 + random.nextInt(2); i > 0; i--) {
+      place.append(pick(random, SYLLABLES));
+    }
+    place.setCharAt(0, Character.toUpperCase(place.charAt(0)));
+    // The id keeps names unique, as destinations are unique by name, country, type and owner
+    String name = place + " " + pick(random, FEATURES) + " " + destinationId;
+
+    writer.insert(
+        "destination",
+        "destination_id,destination_name,destination_type_destination_type_id,"
+            + "destination_district,destination_lat,destination_lon,"
+            + "destination_country_country_id,destination_owner,is_public",
+        destinationId,
+        name,
+        1 + random.nextInt(DESTINATION_TYPES.size()),
+        pick(random, DISTRICTS),
+        -60 + random.nextDouble() * 130,
+        -180 + random.nextDouble() * 360,
+        1 + random.nextInt(countries.size()),
+        randomUser(random),
+        random.nextInt(10) < 8);
+
+    int firstType = random.nextInt(TRAVELLER_TYPES.size());
+    writer.insert(
+        "traveller_type_destination",
+        "traveller_type_traveller_type_id,destination_destination_id",
+        firstType + 1,
+        destinationId);
+    if (random.nextBoolean()) {
+      int secondType = (firstType + 1 + random.nextInt(TRAVELLER_TYPES.size() - 1))
+          % TRAVELLER_TYPES.size();
+      writer.insert(
+          "traveller_type_destination",
+          "traveller_type_traveller_type_id,destination_destination_id",
+          secondType + 1,
+          destinationId);
+    }
+  }
+
+  /**
+   * Picks distinct users.
+   *
+   * @param random the random numbers of the row the users belong to.
+   * @param count the number of users, fewer than the users in the data set.
+   * @return the ids of the users.
+   */
+  private int[] distinctUsers(SplittableRandom random, int count) {
+    int[] users = new int[count];
+    for (int i = 0; i < count; i++) {
+      int user;
+      boolean taken;
+      do {
+        user = randomUser(random);
+        taken = false;
+        for (int j = 0; j < i; j++) {
+          taken |= users[j] == user;
+        }
+      } while (taken);
+      users[i] = user;
+    }
+    return users;
+  }
+
+  /**
+   * Gets the members of a chat group, between two and five users.
+   *
+   * @param chatGroupId the id of the chat group.
+   * @return the ids of the members.
+   */
+  private int[] membersOf(long chatGroupId) {
+    SplittableRandom random = random(CHAT_GROUPS, chatGroupId);
+    return distinctUsers(random, 2 + random.nextInt(4));
+  }
+
+  /**
+   * Writes a chat group with its members.
+   *
+   * @param writer the writer to insert with.
+   * @param chatGroupId the id of the chat group.
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void writeChatGroup(BatchWriter writer, long chatGroupId) throws SQLException {
+    writer.insert("chat_group", "chat_group_id,name", chatGroupId, "Chat " + chatGroupId);
+    for (int member : membersOf(chatGroupId)) {
+      writer.insert(
+          "chat_group_user", "chat_group_chat_group_id,user_user_id", chatGroupId, member);
+    }
+  }
+
+  /**
+   * Writes a chat message, sent by one of the members of a random chat group. Messages are spread
+   * over a year in the order of their ids.
+   *
+   * @param writer the writer to insert with.
+   * @param messageId the id of the message.
+   * @throws SQLException if the row could not be inserted.
+   */
+  public void writeMessage(BatchWriter writer, long messageId) throws SQLException {
+    SplittableRandom random = random(MESSAGES, messageId);
+    long chatGroupId = 1 + random.nextInt(settings.getChatGroups());
+    int[] members = membersOf(chatGroupId);
+
+    StringBuilder contents = new StringBuilder(pick(random, WORDS));
+    contents.setCharAt(0, Character.toUpperCase(contents.charAt(0)));
+    for (int i = 2 + random.nextInt(12); i > 0; i--) {
+      contents.append(' ').append(pick(random, WORDS));
+    }
+
+    writer.insert(
+        "message",
+        "message_id,chat_group_chat_group_id,contents,user_user_id,timestamp",
+        messageId,
+        chatGroupId,
+        contents.toString(),
+        members[random.nextInt(members.length)],
+        new Timestamp(EPOCH + messageId * YEAR / Math.max(1, settings.getMessages())));
+  }
+
+  /**
+   * Writes a trip of two to four stops, some of which are sub trips of two or three stops, with
+   * one owner and up to three members. Like the trip repository does, the travellers of a trip are
+   * added to its sub trips as members.
+   *
+   * @param writer the writer to insert with.
+   * @param tripNumber the number of the trip, from one.
+   * @throws SQLException if the rows could not be inserted.
+   */
+  public void writeTrip(BatchWriter writer, long tripNumber) throws SQLException {
+    SplittableRandom random = random(TRIPS, tripNumber);
+    long nextNodeId = (tripNumber - 1) * TRIP_NODE_BLOCK + 1;
+    long nextUserRoleId = (tripNumber - 1) * USER_ROLE_BLOCK + 1;
+    int[] travellers = distinctUsers(random, 1 + random.nextInt(4));
+
+    // Lay the trip out first, so nodes are written before the links between them
+    long tripId = nextNodeId++;
+    List<long[]> links = new ArrayList<>();
+    List<Long> composites = new ArrayList<>();
+    composites.add(tripId);
+    writer.insert(
+        "trip_node", "dtype,trip_node_id,name", "TripComposite", tripId, "Trip " + tripNumber);
+
+    long arrival = EPOCH + random.nextInt(730) * DAY;
+    int previousDestination = 0;
+    int stops = 2 + random.nextInt(3);
+    for (int stop = 0; stop < stops; stop++) {
+      long nodeId = nextNodeId++;
+      links.add(new long[] {nodeId, tripId, stop});
+      if (random.nextInt(4) > 0) {
+        previousDestination = nextDestination(random, previousDestination);
+        arrival = writeStop(writer, random, nodeId, previousDestination, arrival);
+        continue;
+      }
+
+      composites.add(nodeId);
+      writer.insert(
+          "trip_node",
+          "dtype,trip_node_id,name",
+          "TripComposite",
+          nodeId,
+          "Trip " + tripNumber + " part " + (stop + 1));
+      int subStops = 2 + random.nextInt(2);
+      for (int subStop = 0; subStop < subStops; subStop++) {
+        long leafId = nextNodeId++;
+        links.add(new long[] {leafId, nodeId, subStop});
+        previousDestination = nextDestination(random, previousDestination);
+        arrival = writeStop(writer, random, leafId, previousDestination, arrival);
+      }
+    }
+
+    for (long[] link : links) {
+      writer.insert(
+          "trip_node_parent",
+          "trip_node_child_id,trip_node_parent_id,child_index",
+          link[0],
+          link[1],
+          link[2]);
+    }
+
+    for (long composite : composites) {
+      for (int i = 0; i < travellers.length; i++) {
+        RoleType roleType =
+            composite == tripId && i == 0 ? RoleType.TRIP_OWNER : RoleType.TRIP_MEMBER;
+        long userRoleId = nextUserRoleId++;
+        writer.insert(
+            "user_role",
+            "user_role_id,user_user_id,role_role_id",
+            userRoleId,
+            travellers[i],
+            roleId(roleType));
+        writer.insert(
+            "trip_node_user_role",
+            "trip_node_trip_node_id,user_role_user_role_id",
+            composite,
+            userRoleId);
+        writer.insert(
+            "trip_node_user", "trip_node_trip_node_id,user_user_id", composite, travellers[i]);
+      }
+    }
+  }
+
+  /**
+   * Picks the destination of the next stop of a trip, which can't be the same as the last one.
+   *
+   * @param random the random numbers of the trip.
+   * @param previousDestination the destination of the last stop, or 0 if there is none.
+   * @return the id of the destination.
+   */
+  private int nextDestination(SplittableRandom random, int previousDestination) {
+    int destination;
+    do {
+      destination = randomDestination(random);
+    } while (destination == previousDestination);
+    return destination;
+  }
+
+  /**
+   * Writes a stop of a trip, of one to three nights.
+   *
+   * @param writer the writer to insert with.
+   * @param random the random numbers of the trip.
+   * @param nodeId the id of the stop.
+   * @param destinationId the id of the destination of the stop.
+   * @param arrival the time the stop arrives.
+   * @return the time the next stop arrives.
+   */
+  private long writeStop(
+      BatchWriter writer, SplittableRandom random, long nodeId, int destinationId, long arrival)
+      throws SQLException {
+    long departure = arrival + (1 + random.nextInt(3)) * DAY;
+    writer.insert(
+        "trip_node",
+        "dtype,trip_node_id,destination_destination_id,arrival_date,arrival_time,"
+            + "departure_date,departure_time",
+        "TripDestinationLeaf",
+        nodeId,
+        destinationId,
+        new Timestamp(arrival),
+        36000 + random.nextInt(8) * 3600,
+        new Timestamp(departure),
+        28800 + random.nextInt(8) * 3600);
+    return departure + DAY;
+  }
+
+  /**
+   * Writes a personal photo of a random user, and copies a placeholder image and its thumbnail into
+   * the photo store under the names of the photo.
+   *
+   * @param writer the writer to insert with.
+   * @param photoId the id of the photo.
+   * @throws SQLException if the row could not be inserted.
+   * @throws IOException if the files could not be stored.
+   */
+  public void writePhoto(BatchWriter writer, long photoId) throws SQLException, IOException {
+    SplittableRandom random = random(PHOTOS, photoId);
+    String name = Long.toHexString(random.nextLong()) + Long.toHexString(photoId);
+    String filename = name + PlaceholderPhotos.EXTENSION;
+    String thumbnailName = name + PlaceholderPhotos.THUMB + PlaceholderPhotos.EXTENSION;
+    photos.store(random.nextInt(photos.size()), filename, thumbnailName);
+
+    writer.insert(
+        "personal_photo",
+        "photo_id,user_user_id,is_public,is_primary,is_cover,filename_hash,thumbnail_name",
+        photoId,
+        randomUser(random),
+        random.nextInt(10) < 7,
+        false,
+        false,
+        filename,
+        thumbnailName);
+  }
+}
@@ -1,5 +1,6 @@
 package controllers;
 
+import akka.stream.Materializer;
 import exceptions.FailedToSignUpException;
 import exceptions.ServerErrorException;
 import models.*;
@@ -17,6 +18,7 @@ import testingUtilities.TestState;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -322,6 +324,62 @@ public class PhotoControllerTest {
     Assert.assertEquals(retrievedUser.getProfilePhoto().getPhotoId(), photo.getPhotoId());
   }
 
+  @Test
+  public void getThumbnailsGood() {
+    ByteBuffer body = getThumbnails(user.getToken(), 200, photo.getPhotoId() + ",90000");
+    Assert.assertEquals(photo.getPhotoId(), body.getInt());
+    byte[] contentType = new byte[body.get()];
+    body.get(contentType);
+    Assert.assertEquals("image/jpeg", new String(contentType));
+    int length = body.getInt();
+    Assert.assertTrue(length > 0);
+    Assert.assertEquals(length, body.remaining());
+  }
+
+  @Test
+  public void getThumbnailsPrivatePhotosLeftOut() {
+    ByteBuffer body = getThumbnails(otherUser.getToken(), 200, Integer.toString(photo.getPhotoId()));
+    Assert.assertEquals(0, body.remaining());
+  }
+
+  @Test
+  public void getThumbnailsBadIds() {
+    getThumbnails(user.getToken(), 400, "1,two");
+  }
+
+  @Test
+  public void getThumbnailsTooMany() {
+    StringJoiner ids = new StringJoiner(",");
+    for (int i = 1; i <= 101; i++) {
+      ids.add(Integer.toString(i));
+    }
+    getThumbnails(user.getToken(), 400, ids.toString());
+  }
+
+  @Test
+  public void getThumbnailsUnauthorised() {
+    Result result =
+        fakeClient.makeRequestWithNoToken(
+            "GET", "/api/users/photos/thumbnails?ids=" + photo.getPhotoId());
+    Assert.assertEquals(401, result.status());
+  }
+
+  /**
+   * Gets a batch of thumbnails and checks the status code.
+   *
+   * @param token the token of the requesting user.
+   * @param statusCode the expected status code.
+   * @param ids the comma separated ids of the photos.
+   * @return the body of the response.
+   */
+  private ByteBuffer getThumbnails(String token, int statusCode, String ids) {
+    Result result =
+        fakeClient.makeRequestWithToken("GET", "/api/users/photos/thumbnails?ids=" + ids, token);
+    Assert.assertEquals(statusCode, result.status());
+    return Helpers.contentAsBytes(result, application.injector().instanceOf(Materializer.class))
+        .toByteBuffer();
+  }
+
   /**
    * Deletes a photo and checks that the correct status code is found.
    *
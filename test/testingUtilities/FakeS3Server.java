@@ -0,0 +1,253 @@
+package testingUtilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * A stand in for an S3 compatible object store, which keeps objects in memory. It understands the
+ * path style requests made by the S3 client to put, copy, get, check, delete and list objects, and
+ * ignores request signatures.
+ */
+public class FakeS3Server {
+
+    private static final DateTimeFormatter LIST_DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final int pageSize;
+    private final Map<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    /**
+     * Starts a fake object store on a free port.
+     *
+     * @param pageSize the most objects returned by one list request.
+     * @throws IOException if the server could not be started.
+     */
+    public FakeS3Server(int pageSize) throws IOException {
+        this.pageSize = pageSize;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the keys of every object in a bucket.
+     *
+     * @param bucket the bucket.
+     * @return the keys, in order.
+     */
+    public List<String> getKeys(String bucket) {
+        return objects.keySet().stream()
+            .filter(path -> path.startsWith(bucket + "/"))
+            .map(path -> path.substring(bucket.length() + 1))
+            .collect(Collectors.toList());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(1), "UTF-8");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            // Requests for the bucket itself may have a trailing slash
+            String bucket = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+            if (!bucket.contains("/")) {
+                if (method.equals("GET") && "2".equals(query.get("list-type"))) {
+                    list(exchange, bucket, query);
+                } else {
+                    send(exchange, 400, new byte[0]);
+                }
+                return;
+            }
+
+            switch (method) {
+                case "PUT":
+                    String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                    if (copySource != null) {
+                        copy(exchange, URLDecoder.decode(copySource, "UTF-8").replaceFirst("^/", ""), path);
+                    } else {
+                        put(exchange, path);
+                    }
+                    break;
+                case "GET":
+                case "HEAD":
+                    get(exchange, path, method.equals("HEAD"));
+                    break;
+                case "DELETE":
+                    objects.remove(path);
+                    send(exchange, 204, null);
+                    break;
+                default:
+                    send(exchange, 405, new byte[0]);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void put(HttpExchange exchange, String path) throws IOException {
+        StoredObject object = new StoredObject(readAll(exchange.getRequestBody()), Instant.now());
+        objects.put(path, object);
+        exchange.getResponseHeaders().set("ETag", object.etag);
+        send(exchange, 200, new byte[0]);
+    }
+
+    private void copy(HttpExchange exchange, String from, String to) throws IOException {
+        StoredObject source = objects.get(from);
+        if (source == null) {
+            notFound(exchange, false);
+            return;
+        }
+        StoredObject copy = new StoredObject(source.data, Instant.now());
+        objects.put(to, copy);
+        sendXml(exchange, "<CopyObjectResult><LastModified>"
+            + LIST_DATE_FORMAT.format(copy.lastModified)
+            + "</LastModified><ETag>" + copy.etag + "</ETag></CopyObjectResult>");
+    }
+
+    private void get(HttpExchange exchange, String path, boolean headOnly) throws IOException {
+        StoredObject object = objects.get(path);
+        if (object == null) {
+            notFound(exchange, headOnly);
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", object.etag);
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set(
+            "Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified.atZone(ZoneOffset.UTC)));
+        if (headOnly) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(object.data.length));
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            send(exchange, 200, object.data);
+        }
+    }
+
+    private void list(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        String prefix = bucket + "/" + query.getOrDefault("prefix", "");
+        String after = query.containsKey("continuation-token") ? bucket + "/" + query.get("continuation-token") : "";
+
+        List<Map.Entry<String, StoredObject>> matching = objects.entrySet().stream()
+            .filter(entry -> entry.getKey().startsWith(prefix) && entry.getKey().compareTo(after) > 0)
+            .collect(Collectors.toList());
+        boolean truncated = matching.size() > pageSize;
+        List<Map.Entry<String, StoredObject>> page = matching.subList(0, Math.min(pageSize, matching.size()));
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+        xml.append("<Name>").append(bucket).append("</Name>");
+        xml.append("<Prefix>").append(query.getOrDefault("prefix", "")).append("</Prefix>");
+        xml.append("<KeyCount>").append(page.size()).append("</KeyCount>");
+        xml.append("<MaxKeys>").append(pageSize).append("</MaxKeys>");
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            String lastKey = page.get(page.size() - 1).getKey().substring(bucket.length() + 1);
+            xml.append("<NextContinuationToken>").append(lastKey).append("</NextContinuationToken>");
+        }
+        for (Map.Entry<String, StoredObject> entry : page) {
+            xml.append("<Contents><Key>").append(entry.getKey().substring(bucket.length() + 1)).append("</Key>")
+                .append("<LastModified>").append(LIST_DATE_FORMAT.format(entry.getValue().lastModified)).append("</LastModified>")
+                .append("<ETag>").append(entry.getValue().etag).append("</ETag>")
+                .append("<Size>").append(entry.getValue().data.length).append("</Size>")
+                .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        xml.append("</ListBucketResult>");
+        sendXml(exchange, xml.toString());
+    }
+
+    private void notFound(HttpExchange exchange, boolean headOnly) throws IOException {
+        if (headOnly) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, 404, ("<Error><Code>NoSuchKey</Code>"
+            + "<Message>The specified key does not exist.</Message></Error>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendXml(HttpExchange exchange, String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, 200, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(URLDecoder.decode(pair[0], "UTF-8"), pair.length > 1 ? URLDecoder.decode(pair[1], "UTF-8") : "");
+        }
+        return query;
+    }
+
+    /** An object kept by the fake store. */
+    private static class StoredObject {
+        private final byte[] data;
+        private final Instant lastModified;
+        private final String etag;
+
+        private StoredObject(byte[] data, Instant lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+            try {
+                StringBuilder hex = new StringBuilder("\"");
+                for (byte b : MessageDigest.getInstance("MD5").digest(data)) {
+                    hex.append(String.format("%02x", b));
+                }
+                this.etag = hex.append('"').toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package util;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import modules.admission.ConcurrencyLimit;
+import modules.admission.RateLimiter;
+import modules.admission.RouteClass;
+import org.junit.Assert;
+import org.junit.Test;
+import play.mvc.Http;
+
+/**
+ * Test that clients are held to the rate limits of their route classes, and that the concurrency
+ * limit sheds requests and adapts to how long database tasks wait for a thread.
+ */
+public class AdmissionTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RouteClass chat = new RouteClass(
+        "chat", Collections.singletonList("GET /api/chats/[^/]+/messages"), 2, 3, 100);
+
+    private RateLimiter rateLimiter() {
+        return new RateLimiter(Collections.singletonList(new RouteClass(
+            "auth", Collections.singletonList("POST /api/auth/users/login"), 1, 1, 100)));
+    }
+
+    private static Http.Request request(String route, String address, String token) {
+        String[] verbAndPath = route.split(" ");
+        Http.RequestBuilder request = new Http.RequestBuilder()
+            .method(verbAndPath[0])
+            .uri(verbAndPath[1])
+            .remoteAddress(address);
+        if (token != null) {
+            request.header("Authorization", token);
+        }
+        return request.build();
+    }
+
+    private ConcurrencyLimit concurrencyLimit() {
+        return new ConcurrencyLimit(ConfigFactory.parseString(
+            "min = 2, max = 10, increase = 1, decrease = 0.5,"
+                + " targetQueueWait = 10 milliseconds, adjustInterval = 1 hour"));
+    }
+
+    /**
+     * Test that a client may make its burst of requests at once, then must wait for the next token
+     */
+    @Test
+    public void burstIsAllowedThenClientMustWait() {
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, chat.tryTake("token", now));
+        }
+
+        Assert.assertEquals(SECOND / 2, chat.tryTake("token", now));
+        Assert.assertEquals(1, chat.getLimited());
+        Assert.assertEquals(0, chat.tryTake("token", now + SECOND / 2));
+        Assert.assertTrue(chat.tryTake("token", now + SECOND / 2) > 0);
+    }
+
+    /**
+     * Test that each client has its own bucket
+     */
+    @Test
+    public void clientsHaveSeparateBuckets() {
+        for (int i = 0; i < 3; i++) {
+            chat.tryTake("token", 0);
+        }
+
+        Assert.assertTrue(chat.tryTake("token", 0) > 0);
+        Assert.assertEquals(0, chat.tryTake("127.0.0.1", 0));
+        Assert.assertEquals(2, chat.getClients());
+    }
+
+    /**
+     * Test that the buckets of the clients seen longest ago are dropped once there are maxClients,
+     * and that a dropped client starts again with a full bucket
+     */
+    @Test
+    public void leastRecentlySeenClientsAreDropped() {
+        RouteClass routeClass = new RouteClass(
+            "chat", Collections.singletonList("GET /api/chats/[^/]+/messages"), 2, 1, 2);
+        Assert.assertEquals(0, routeClass.tryTake("first", 0));
+        Assert.assertEquals(0, routeClass.tryTake("second", 0));
+        Assert.assertTrue(routeClass.tryTake("first", 0) > 0);
+
+        Assert.assertEquals(0, routeClass.tryTake("third", 0));
+        Assert.assertEquals(2, routeClass.getClients());
+        Assert.assertTrue(routeClass.tryTake("first", 0) > 0);
+        Assert.assertEquals(0, routeClass.tryTake("second", 0));
+    }
+
+    /**
+     * Test that the limit can't be got around by sending made up tokens, as clients are told apart
+     * by their address
+     */
+    @Test
+    public void madeUpTokensShareTheBucketOfTheirAddress() {
+        RateLimiter rateLimiter = rateLimiter();
+        String route = "POST /api/auth/users/login";
+        RouteClass auth = rateLimiter.classify(request(route, "10.0.0.1", null)).get();
+
+        Assert.assertEquals(0, rateLimiter.tryAcquire(auth, request(route, "10.0.0.1", "a")));
+        Assert.assertTrue(rateLimiter.tryAcquire(auth, request(route, "10.0.0.1", "b")) > 0);
+        Assert.assertTrue(rateLimiter.tryAcquire(auth, request(route, "10.0.0.1", null)) > 0);
+        Assert.assertEquals(0, rateLimiter.tryAcquire(auth, request(route, "10.0.0.2", "a")));
+    }
+
+    /**
+     * Test that requests over the limit are shed until a request in flight is released
+     */
+    @Test
+    public void requestsOverTheLimitAreShed() {
+        ConcurrencyLimit limit = concurrencyLimit();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(limit.tryAcquire());
+        }
+
+        Assert.assertFalse(limit.tryAcquire());
+        Assert.assertEquals(1, limit.getShed());
+        limit.release();
+        Assert.assertTrue(limit.tryAcquire());
+    }
+
+    /**
+     * Test that the limit is cut back while tasks wait too long for a database thread, down to its
+     * floor, and raised again once they don't
+     */
+    @Test
+    public void limitAdaptsToDatabaseQueueWait() {
+        ConcurrencyLimit limit = concurrencyLimit();
+
+        limit.adjust(100 * 20 * MILLISECOND, 100, 0);
+        Assert.assertEquals(5, limit.getLimit());
+        // Tasks waiting while none got a thread
+        limit.adjust(100 * 20 * MILLISECOND, 100, 4);
+        Assert.assertEquals(2, limit.getLimit());
+
+        limit.adjust(100 * 20 * MILLISECOND + 100 * MILLISECOND, 200, 0);
+        Assert.assertEquals(3, limit.getLimit());
+        limit.adjust(100 * 20 * MILLISECOND + 100 * MILLISECOND, 200, 0);
+        Assert.assertEquals(4, limit.getLimit());
+    }
+}
@@ -0,0 +1,67 @@
+package util;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+import modules.profiling.BlockingCallDetector;
+import modules.profiling.BlockingCallDetector.Mode;
+import modules.profiling.BlockingCallException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test that JDBC calls made from threads serving requests are caught, and that the code making
+ * them is named.
+ */
+public class BlockingCallDetectorTest {
+
+    private BlockingCallDetector detectorOnThisThread(Mode mode) {
+        return new BlockingCallDetector(
+            mode, Collections.singletonList(Pattern.quote(Thread.currentThread().getName())));
+    }
+
+    /**
+     * Test that a call from a watched thread is failed in fail mode, naming the caller
+     */
+    @Test
+    public void failsCallsFromWatchedThreads() {
+        BlockingCallDetector detector = detectorOnThisThread(Mode.FAIL);
+
+        try {
+            detector.check();
+            Assert.fail("The call should have been failed");
+        } catch (BlockingCallException e) {
+            Assert.assertTrue(e.getCallSite(),
+                e.getCallSite().startsWith(BlockingCallDetectorTest.class.getName()));
+        }
+        Assert.assertEquals(1, detector.getDetected());
+    }
+
+    /**
+     * Test that calls are counted but let through in log mode
+     */
+    @Test
+    public void logsCallsFromWatchedThreads() throws Exception {
+        BlockingCallDetector detector = detectorOnThisThread(Mode.LOG);
+
+        detector.check();
+        detector.check();
+
+        Assert.assertEquals(2, detector.getDetected());
+    }
+
+    /**
+     * Test that calls from other threads, or with the detector off, are let through
+     */
+    @Test
+    public void ignoresOtherThreadsAndOffMode() throws Exception {
+        BlockingCallDetector other = new BlockingCallDetector(
+            Mode.FAIL, Collections.singletonList("application-akka\\.actor\\.default-dispatcher-\\d+"));
+        BlockingCallDetector off = detectorOnThisThread(Mode.OFF);
+
+        other.check();
+        off.check();
+
+        Assert.assertEquals(0, other.getDetected());
+        Assert.assertEquals(0, off.getDetected());
+    }
+}
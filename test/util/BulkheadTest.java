@@ -0,0 +1,129 @@
+package util;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.mvc.Http;
+import play.mvc.Result;
+import repository.AuthExecutionContext;
+import repository.BulkheadFullException;
+import repository.Bulkheads;
+import repository.DatabaseExecutionContext;
+import repository.TripExecutionContext;
+
+/**
+ * Test that each database bulkhead runs its tasks on its own threads, and turns tasks away once its
+ * queue is full without holding up the other bulkheads.
+ */
+public class BulkheadTest {
+    private ActorSystem actorSystem;
+    private DatabaseExecutionContext trips;
+    private DatabaseExecutionContext auth;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        String bulkhead = "{ connections = 1, queueLimit = 2, dispatcher {"
+            + " executor = thread-pool-executor, thread-pool-executor.fixed-pool-size = 1 } }";
+        Config config = ConfigFactory.parseString(
+            "bulkheads { trips " + bulkhead + ", auth " + bulkhead + " }");
+        actorSystem = ActorSystem.create("bulkheads", config);
+        trips = new TripExecutionContext(actorSystem, config);
+        auth = new AuthExecutionContext(actorSystem, config);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        TestKit.shutdownActorSystem(actorSystem);
+    }
+
+    private void block() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitCount(long expected, LongSupplier count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsLong() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, count.getAsLong());
+    }
+
+    /**
+     * Fills the trips bulkhead, with one task running and as many waiting as it allows.
+     */
+    private void fillTrips() throws InterruptedException {
+        trips.execute(this::block);
+        awaitCount(1, trips::getRunning);
+        trips.execute(this::block);
+        trips.execute(this::block);
+    }
+
+    /**
+     * Test that tasks over the queue limit are rejected straight away, and counted
+     */
+    @Test
+    public void rejectsTasksOverTheQueueLimit() throws Exception {
+        fillTrips();
+
+        try {
+            trips.execute(this::block);
+            Assert.fail("The task should have been rejected");
+        } catch (BulkheadFullException e) {
+            Assert.assertEquals("trips", e.getBulkhead());
+        }
+        Assert.assertEquals(2, trips.getQueueDepth());
+        Assert.assertEquals(1, trips.getRejected());
+
+        release.countDown();
+        awaitCount(3, trips::getCompleted);
+        Assert.assertEquals(0, trips.getQueueDepth());
+    }
+
+    /**
+     * Test that a full bulkhead does not hold up the tasks of another
+     */
+    @Test
+    public void fullBulkheadDoesNotBlockOthers() throws Exception {
+        fillTrips();
+
+        Assert.assertEquals("signed in",
+            supplyAsync(() -> "signed in", auth).toCompletableFuture().get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, auth.getRejected());
+        Assert.assertTrue(Bulkheads.getInstance().getAll().contains(auth));
+    }
+
+    /**
+     * Test that requests rejected inside a chain of stages are answered with a 503 asking the
+     * client to retry
+     */
+    @Test
+    public void rejectionsAreAnsweredWithServiceUnavailable() throws Exception {
+        fillTrips();
+
+        Result result = supplyAsync(() -> 1, auth)
+            .thenApplyAsync(id -> (Result) null, trips)
+            .exceptionally(new ExceptionUtil()::getResultFromError)
+            .toCompletableFuture()
+            .get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Http.Status.SERVICE_UNAVAILABLE, result.status());
+        Assert.assertEquals("1", result.header(Http.HeaderNames.RETRY_AFTER).orElse(null));
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import static org.awaitility.Awaitility.await;
+
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import akka.testkit.TestProbe;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import models.User;
+import modules.websocket.ClusterFrame;
+import modules.websocket.ClusterFrameDelivery;
+import modules.websocket.frames.PongFrame;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that frames reach users connected to another node of the cluster.
+ */
+public class ClusterFrameDeliveryTest {
+    private ActorSystem node1;
+    private ActorSystem node2;
+    private ClusterFrameDelivery delivery1;
+    private ClusterFrameDelivery delivery2;
+    private User user;
+
+    @Before
+    public void setUp() {
+        Config config = ConfigFactory.parseString(
+            "akka.actor.provider = cluster\n"
+                + "akka.remote.netty.tcp.hostname = \"127.0.0.1\"\n"
+                + "akka.remote.netty.tcp.port = 0\n"
+                + "akka.actor.warn-about-java-serializer-usage = off\n")
+            .withFallback(ConfigFactory.load());
+        node1 = ActorSystem.create("cluster", config);
+        node2 = ActorSystem.create("cluster", config);
+
+        Cluster cluster1 = Cluster.get(node1);
+        cluster1.join(cluster1.selfAddress());
+        Cluster.get(node2).join(cluster1.selfAddress());
+        await().atMost(20, TimeUnit.SECONDS).until(() -> cluster1.state().members().size() == 2);
+
+        delivery1 = new ClusterFrameDelivery(node1);
+        delivery2 = new ClusterFrameDelivery(node2);
+
+        user = new User("Bob", "Jose", "Smith", "secure-hash", "male", "bobsmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc123");
+        user.setUserId(1);
+    }
+
+    /**
+     * Test that a user connected to one node is seen as connected and sent frames from another
+     */
+    @Test
+    public void frameReachesOtherNode() {
+        TestProbe webSocket = new TestProbe(node2);
+        TestProbe out = new TestProbe(node2);
+        delivery2.register(user, webSocket.ref(), out.ref());
+        webSocket.expectMsgClass(DistributedPubSubMediator.SubscribeAck.class);
+
+        await().atMost(20, TimeUnit.SECONDS).until(() -> delivery1.isUserConnected(user));
+
+        // The subscription may take a little longer to reach the first node than the presence
+        await().atMost(20, TimeUnit.SECONDS).until(() -> {
+            delivery1.send(user, new PongFrame());
+            return webSocket.msgAvailable();
+        });
+        ClusterFrame frame = webSocket.expectMsgClass(ClusterFrame.class);
+        Assert.assertEquals("pong", frame.getFrame().getType());
+
+        delivery2.unregister(user, webSocket.ref(), out.ref());
+        await().atMost(20, TimeUnit.SECONDS).until(() -> !delivery1.isUserConnected(user));
+    }
+
+    @After
+    public void tearDown() {
+        node2.terminate();
+        node1.terminate();
+    }
+}
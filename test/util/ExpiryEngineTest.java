@@ -0,0 +1,170 @@
+package util;
+
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.EbeanServer;
+import io.ebean.EbeanServerFactory;
+import io.ebean.config.ServerConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import modules.photos.FlatPhotoStore;
+import modules.photos.PhotoStore;
+import modules.replicas.ReplicaRouter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.Database;
+import play.db.Databases;
+import play.db.evolutions.Evolutions;
+import tasks.expiry.ExpiryEngine;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryRun;
+
+/**
+ * Test that expired rows are deleted from the database in chunks, that cascading types take the
+ * rows that depend on them with them, and that rows which haven't expired are kept.
+ */
+public class ExpiryEngineTest {
+    private static final Instant NOW = Instant.parse("2019-08-01T00:00:00Z");
+    private static final Timestamp EXPIRED = Timestamp.from(NOW.minus(Duration.ofDays(1)));
+    private static final Timestamp NOT_EXPIRED = Timestamp.from(NOW.plus(Duration.ofDays(1)));
+
+    private Database database;
+    private EbeanServer server;
+    private PhotoStore photoStore;
+
+    @Before
+    public void setUp() throws IOException {
+        database = Databases.inMemory(
+            "default", ImmutableMap.of("MODE", "MySQL"), ImmutableMap.of());
+        Evolutions.applyEvolutions(database);
+
+        ServerConfig config = new ServerConfig();
+        config.setName("default");
+        config.setDataSource(database.getDataSource());
+        config.setPackages(Collections.singletonList("models"));
+        config.setDefaultServer(true);
+        server = EbeanServerFactory.create(config);
+
+        photoStore = new FlatPhotoStore(Files.createTempDirectory("photos"));
+        ReplicaRouter.initialise(ConfigFactory.load());
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown(false, false);
+        database.shutdown();
+    }
+
+    private int insert(String sql, Object... values) throws SQLException {
+        try (Connection connection = database.getConnection();
+            PreparedStatement statement =
+                connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private int count(String table) throws SQLException {
+        try (Connection connection = database.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private void insertDestinationPhoto(boolean deleted, Timestamp expiry) throws SQLException {
+        insert("INSERT INTO destination_photo (deleted, deleted_expiry) VALUES (?, ?)",
+            deleted, expiry);
+    }
+
+    private ExpiryRun.TypeStats stats(ExpiryRun run, String type) {
+        return run.getTypes().stream()
+            .filter(stats -> stats.getName().equals(type))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * Test that expired rows of a bulk type are deleted a chunk at a time with DELETE ... LIMIT,
+     * and that rows which are not deleted or have not expired are kept
+     */
+    @Test
+    public void bulkRowsAreDeletedInChunks() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            insertDestinationPhoto(true, EXPIRED);
+        }
+        insertDestinationPhoto(true, NOT_EXPIRED);
+        insertDestinationPhoto(false, null);
+
+        ExpiryRun run = new ExpiryEngine(ExpiryRegistry.defaults(), photoStore, 2, 10).run(NOW);
+
+        ExpiryRun.TypeStats stats = stats(run, ExpiryRegistry.DESTINATION_PHOTO);
+        Assert.assertEquals(5, stats.getRowsDeleted());
+        Assert.assertEquals(3, stats.getChunks());
+        Assert.assertFalse(stats.isTruncated());
+        Assert.assertEquals(2, count("destination_photo"));
+    }
+
+    /**
+     * Test that a run stops at its chunk limit, and the rows left over are deleted by the next run
+     */
+    @Test
+    public void rowsOverTheChunkLimitAreLeftForTheNextRun() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            insertDestinationPhoto(true, EXPIRED);
+        }
+        ExpiryEngine engine = new ExpiryEngine(ExpiryRegistry.defaults(), photoStore, 2, 2);
+
+        ExpiryRun.TypeStats first = stats(engine.run(NOW), ExpiryRegistry.DESTINATION_PHOTO);
+        Assert.assertEquals(4, first.getRowsDeleted());
+        Assert.assertTrue(first.isTruncated());
+        Assert.assertEquals(1, count("destination_photo"));
+
+        engine.run(NOW);
+        Assert.assertEquals(0, count("destination_photo"));
+    }
+
+    /**
+     * Test that an expired photo is deleted through Ebean, taking the destination photos that
+     * reference it with it, and that its files are removed from the photo store
+     */
+    @Test
+    public void cascadingRowsTakeTheirDependentsAndFiles() throws SQLException, IOException {
+        photoStore.put("photo.jpg", Files.createTempFile("upload", null));
+        photoStore.put("thumbnail.jpg", Files.createTempFile("upload", null));
+        int photoId = insert("INSERT INTO personal_photo"
+                + " (filename_hash, thumbnail_name, deleted, deleted_expiry) VALUES (?, ?, ?, ?)",
+            "photo.jpg", "thumbnail.jpg", true, EXPIRED);
+        insert("INSERT INTO destination_photo (personal_photo_photo_id) VALUES (?)", photoId);
+        insert("INSERT INTO personal_photo (filename_hash, deleted, deleted_expiry)"
+            + " VALUES (?, ?, ?)", "kept.jpg", true, NOT_EXPIRED);
+
+        ExpiryRun run = new ExpiryEngine(ExpiryRegistry.defaults(), photoStore, 10, 10).run(NOW);
+
+        ExpiryRun.TypeStats stats = stats(run, ExpiryRegistry.PHOTO);
+        Assert.assertEquals(1, stats.getRowsDeleted());
+        Assert.assertFalse(stats.isFailed());
+        Assert.assertEquals(1, count("personal_photo"));
+        Assert.assertEquals(0, count("destination_photo"));
+        Assert.assertFalse(photoStore.exists("photo.jpg"));
+        Assert.assertFalse(photoStore.exists("thumbnail.jpg"));
+    }
+}
@@ -0,0 +1,68 @@
+package util;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import tasks.expiry.ExpirableType;
+import tasks.expiry.ExpiryRegistry;
+
+/**
+ * Test that expirable types are purged after the types that reference them.
+ */
+public class ExpiryRegistryTest {
+
+    private List<String> names(ExpiryRegistry registry) {
+        return registry.getTypes().stream().map(ExpirableType::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Test that every type is purged after the types that reference it
+     */
+    @Test
+    public void typesArePurgedAfterReferencingTypes() {
+        ExpiryRegistry registry = new ExpiryRegistry();
+        registry.register(ExpirableType.bulk("user", "user", "id").purgedAfter("photo", "trip"));
+        registry.register(ExpirableType.bulk("photo", "personal_photo", "id").purgedAfter("destination-photo"));
+        registry.register(ExpirableType.bulk("trip", "trip_node", "id"));
+        registry.register(ExpirableType.bulk("destination-photo", "destination_photo", "id"));
+
+        List<String> names = names(registry);
+        Assert.assertEquals(4, names.size());
+        Assert.assertTrue(names.indexOf("destination-photo") < names.indexOf("photo"));
+        Assert.assertTrue(names.indexOf("photo") < names.indexOf("user"));
+        Assert.assertTrue(names.indexOf("trip") < names.indexOf("user"));
+    }
+
+    /**
+     * Test that the types of the application can be ordered, with users purged last
+     */
+    @Test
+    public void defaultTypesCanBeOrdered() {
+        List<String> names = names(ExpiryRegistry.defaults());
+        Assert.assertEquals(7, names.size());
+        Assert.assertEquals("user", names.get(names.size() - 1));
+        Assert.assertTrue(names.indexOf("trip") < names.indexOf("destination"));
+    }
+
+    /**
+     * Test that types purged after each other in a cycle are rejected
+     */
+    @Test(expected = IllegalStateException.class)
+    public void cyclesAreRejected() {
+        ExpiryRegistry registry = new ExpiryRegistry();
+        registry.register(ExpirableType.bulk("a", "a", "id").purgedAfter("b"));
+        registry.register(ExpirableType.bulk("b", "b", "id").purgedAfter("a"));
+        registry.getTypes();
+    }
+
+    /**
+     * Test that a type purged after a type that was never registered is rejected
+     */
+    @Test(expected = IllegalStateException.class)
+    public void unknownTypesAreRejected() {
+        ExpiryRegistry registry = new ExpiryRegistry();
+        registry.register(ExpirableType.bulk("a", "a", "id").purgedAfter("b"));
+        registry.getTypes();
+    }
+}
@@ -0,0 +1,85 @@
+package util;
+
+import static org.awaitility.Awaitility.await;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tasks.expiry.ExpiryEngine;
+import tasks.expiry.ExpiryRegistry;
+import tasks.expiry.ExpiryRun;
+import tasks.expiry.ExpiryScheduler;
+
+/**
+ * Test that rows are purged when they expire, and not at all if their deletion is undone.
+ */
+public class ExpirySchedulerTest {
+    private ExpiryScheduler scheduler;
+    private List<Map<String, List<Integer>>> purges;
+
+    @Before
+    public void setUp() {
+        purges = new CopyOnWriteArrayList<>();
+        ExpiryEngine engine = new ExpiryEngine(new ExpiryRegistry(), null, 100, 10) {
+            @Override
+            public ExpiryRun purge(Map<String, List<Integer>> idsByType, Instant now) {
+                purges.add(idsByType);
+                return null;
+            }
+        };
+        scheduler = ExpiryScheduler.getInstance();
+        scheduler.start(engine, 100, Runnable::run);
+    }
+
+    @Test
+    public void rowsArePurgedWhenTheyExpire() {
+        Instant now = Instant.now();
+        scheduler.schedule("photo", 1, Timestamp.from(now.minusSeconds(5)));
+        scheduler.schedule("photo", 2, Timestamp.from(now.plusMillis(500)));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> purges.size() == 2);
+        Assert.assertEquals(1, (int) purges.get(0).get("photo").get(0));
+        Assert.assertEquals(2, (int) purges.get(1).get("photo").get(0));
+        Assert.assertEquals(0, scheduler.getPending());
+    }
+
+    @Test
+    public void cancelledRowsAreNotPurged() throws Exception {
+        Instant now = Instant.now();
+        scheduler.schedule("photo", 1, Timestamp.from(now.minusSeconds(5)));
+        scheduler.cancel("photo", 1);
+        scheduler.schedule("user", 2, Timestamp.from(now.minusSeconds(5)));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !purges.isEmpty());
+        Thread.sleep(200);
+        List<String> types = new ArrayList<>();
+        purges.forEach(purge -> types.addAll(purge.keySet()));
+        Assert.assertEquals(1, types.size());
+        Assert.assertEquals("user", types.get(0));
+    }
+
+    @Test
+    public void rescheduledRowsArePurgedAtTheirNewExpiry() throws Exception {
+        Instant now = Instant.now();
+        // Not yet due, so the purge thread can't take it before it is rescheduled
+        scheduler.schedule("trip", 3, Timestamp.from(now.plusMillis(500)));
+        scheduler.schedule("trip", 3, Timestamp.from(now.plusSeconds(60)));
+
+        Thread.sleep(1500);
+        Assert.assertTrue(purges.isEmpty());
+        Assert.assertEquals(1, scheduler.getPending());
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import akka.util.ByteString;
+import java.util.Optional;
+import modules.websocket.frames.FrameCodec;
+import modules.websocket.frames.InboundFrame;
+import modules.websocket.frames.PingFrame;
+import modules.websocket.frames.PingMapFrame;
+import modules.websocket.frames.PongFrame;
+import modules.websocket.frames.SendChatMessageFrame;
+import org.junit.Assert;
+import org.junit.Test;
+import play.http.websocket.Message;
+import play.libs.Json;
+
+/**
+ * Test that websocket frames are read and written by the frame codecs.
+ */
+public class FrameCodecTest {
+
+    /**
+     * Test that inbound JSON frames are read into the class for their type
+     */
+    @Test
+    public void decodesJsonFramesByType() {
+        FrameCodec codec = FrameCodec.json();
+
+        Optional<InboundFrame> ping = codec.decode(new Message.Text("{\"type\":\"ping\"}"));
+        Optional<InboundFrame> chatMessage = codec.decode(new Message.Text(
+            "{\"type\":\"chat-message\",\"chatGroupId\":4,\"message\":\"Hi\",\"nonce\":\"n1\"}"));
+
+        Assert.assertTrue(ping.isPresent());
+        Assert.assertTrue(ping.get() instanceof PingFrame);
+        Assert.assertTrue(chatMessage.isPresent());
+        SendChatMessageFrame frame = (SendChatMessageFrame) chatMessage.get();
+        Assert.assertEquals(4, frame.getChatGroupId());
+        Assert.assertEquals("Hi", frame.getMessage());
+        Assert.assertEquals("n1", frame.getNonce());
+    }
+
+    /**
+     * Test that unknown or malformed frames are dropped and unknown properties are ignored
+     */
+    @Test
+    public void dropsUnknownFrames() {
+        FrameCodec codec = FrameCodec.json();
+
+        Assert.assertFalse(codec.decode(new Message.Text("{\"type\":\"not-a-frame\"}")).isPresent());
+        Assert.assertFalse(codec.decode(new Message.Text("{\"nonsense\":")).isPresent());
+        Assert.assertTrue(codec.decode(new Message.Text("{\"type\":\"ping\",\"extra\":1}"))
+            .get() instanceof PingFrame);
+    }
+
+    /**
+     * Test that outbound frames are written as the same JSON that was sent before the codec
+     */
+    @Test
+    public void encodesJsonText() {
+        Message message = FrameCodec.json().encode(new PongFrame());
+
+        Assert.assertTrue(message instanceof Message.Text);
+        Assert.assertEquals(Json.toJson(new PongFrame()), Json.parse(((Message.Text) message).data()));
+    }
+
+    /**
+     * Test that frames written with the CBOR codec are binary and can be read back
+     */
+    @Test
+    public void cborRoundTrip() {
+        FrameCodec codec = FrameCodec.cbor();
+
+        Message message = codec.encode(new PingMapFrame(3, 10, 20));
+        Assert.assertTrue(message instanceof Message.Binary);
+
+        ByteString bytes = ((Message.Binary) message).data();
+        PingMapFrame frame = (PingMapFrame) codec.decode(new Message.Binary(bytes)).get();
+        Assert.assertEquals(3, frame.getTripNodeId());
+        Assert.assertEquals(10, frame.getLatitude(), 0);
+        Assert.assertEquals(20, frame.getLongitude(), 0);
+    }
+
+    /**
+     * Test that the codec is picked from the first subprotocol the client asked for
+     */
+    @Test
+    public void negotiatesSubprotocol() {
+        Assert.assertSame(FrameCodec.cbor(),
+            FrameCodec.forSubprotocols(Optional.of("flockr.cbor, flockr.json")));
+        Assert.assertSame(FrameCodec.json(),
+            FrameCodec.forSubprotocols(Optional.of("flockr.json, flockr.cbor")));
+        Assert.assertSame(FrameCodec.json(), FrameCodec.forSubprotocols(Optional.empty()));
+    }
+}
@@ -0,0 +1,194 @@
+package util;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import models.Message;
+import modules.replicas.ReplicaRouter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import repository.MessageWriteBuffer;
+
+/**
+ * Test that chat messages are committed in batches, that a batch is written once it is full or
+ * its delay is up, and that messages which can't be written are failed for their senders.
+ */
+public class MessageWriteBufferTest {
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch insertStarted = new CountDownLatch(1);
+    private final CountDownLatch insertsAllowed = new CountDownLatch(1);
+    private volatile RuntimeException insertFailure;
+    private MessageWriteBuffer buffer;
+
+    /**
+     * A buffer that records the batches it inserts instead of writing them to a database
+     */
+    private class RecordingBuffer extends MessageWriteBuffer {
+        private int nextBlock = 0;
+
+        private RecordingBuffer(String settings) {
+            super(ConfigFactory.parseString(settings + ", idBlockSize = 2"));
+        }
+
+        @Override
+        protected int reserveIdBlock(int blockSize) {
+            nextBlock += blockSize;
+            return nextBlock;
+        }
+
+        @Override
+        protected void insert(List<Message> messages) {
+            insertStarted.countDown();
+            try {
+                insertsAllowed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (insertFailure != null) {
+                throw insertFailure;
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (Message message : messages) {
+                ids.add(message.getMessageId());
+            }
+            batches.add(ids);
+        }
+    }
+
+    private CompletionStage<Message> write(String contents) {
+        return buffer.write(new Message(null, contents, null));
+    }
+
+    private static Message await(CompletionStage<Message> written) throws Exception {
+        return written.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Before
+    public void setUp() {
+        ReplicaRouter.initialise(ConfigFactory.load());
+    }
+
+    @After
+    public void tearDown() {
+        insertsAllowed.countDown();
+        buffer.stop();
+    }
+
+    /**
+     * Test that messages queued while a batch is being written share the next batch, and are
+     * given IDs from the blocks reserved for the server
+     */
+    @Test
+    public void queuedMessagesShareOneBatch() throws Exception {
+        buffer = new RecordingBuffer("maxBatchSize = 10, maxDelay = 0 seconds, queueCapacity = 10");
+
+        // The first message is written on its own, and the rest queue up behind it
+        CompletionStage<Message> first = write("first");
+        insertStarted.await();
+        List<CompletionStage<Message>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queued.add(write("queued " + i));
+        }
+        insertsAllowed.countDown();
+
+        Assert.assertEquals(1, await(first).getMessageId());
+        for (CompletionStage<Message> message : queued) {
+            await(message);
+        }
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(Collections.singletonList(1), batches.get(0));
+        Assert.assertEquals(Arrays.asList(2, 3, 4), batches.get(1));
+        Assert.assertEquals(4, buffer.getMessagesWritten());
+        Assert.assertEquals(2, buffer.getBatchesWritten());
+    }
+
+    /**
+     * Test that a full batch is written without waiting out its delay
+     */
+    @Test
+    public void fullBatchIsWrittenStraightAway() throws Exception {
+        buffer = new RecordingBuffer("maxBatchSize = 3, maxDelay = 1 hour, queueCapacity = 10");
+        insertsAllowed.countDown();
+
+        List<CompletionStage<Message>> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            written.add(write("message " + i));
+        }
+
+        for (CompletionStage<Message> message : written) {
+            await(message);
+        }
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(3, batches.get(0).size());
+    }
+
+    /**
+     * Test that a batch that doesn't fill up is written once its delay is up
+     */
+    @Test
+    public void partialBatchIsWrittenAfterItsDelay() throws Exception {
+        buffer = new RecordingBuffer(
+            "maxBatchSize = 100, maxDelay = 20 milliseconds, queueCapacity = 10");
+        insertsAllowed.countDown();
+
+        await(write("alone"));
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(1, batches.get(0).size());
+    }
+
+    /**
+     * Test that a message is failed straight away when the queue is full, and never written
+     */
+    @Test
+    public void messageIsRejectedWhenQueueIsFull() throws Exception {
+        buffer = new RecordingBuffer("maxBatchSize = 1, maxDelay = 0 seconds, queueCapacity = 1");
+
+        // The first message is taken by the writer, which is held in its insert
+        CompletionStage<Message> writing = write("writing");
+        insertStarted.await();
+        CompletionStage<Message> queued = write("queued");
+        CompletionStage<Message> rejected = write("rejected");
+
+        Assert.assertTrue(rejected.toCompletableFuture().isCompletedExceptionally());
+        insertsAllowed.countDown();
+        await(writing);
+        await(queued);
+        Assert.assertEquals(2, buffer.getMessagesWritten());
+    }
+
+    /**
+     * Test that every sender waiting on a batch that fails is told of the failure
+     */
+    @Test
+    public void failedBatchFailsEveryMessageInIt() throws Exception {
+        buffer = new RecordingBuffer(
+            "maxBatchSize = 10, maxDelay = 5 milliseconds, queueCapacity = 10");
+        insertFailure = new IllegalStateException("database down");
+
+        List<CompletableFuture<Message>> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            written.add(write("message " + i).toCompletableFuture());
+        }
+        insertsAllowed.countDown();
+
+        for (CompletableFuture<Message> message : written) {
+            try {
+                message.get(5, TimeUnit.SECONDS);
+                Assert.fail("The message should have failed");
+            } catch (ExecutionException e) {
+                Assert.assertEquals("database down", e.getCause().getMessage());
+            }
+        }
+        Assert.assertEquals(0, buffer.getMessagesWritten());
+    }
+}
@@ -0,0 +1,90 @@
+package util;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import actions.MetricsScraper;
+import com.typesafe.config.ConfigFactory;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.mvc.Action;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+/**
+ * Test that the metrics can only be scraped from an allowed address or with the scrape token.
+ */
+public class MetricsScraperTest {
+    private MetricsScraper scraper;
+
+    @Before
+    public void setUp() {
+        scraper = scraper("secret-token");
+    }
+
+    private MetricsScraper scraper(String scrapeToken) {
+        MetricsScraper scraper = new MetricsScraper(ConfigFactory.parseString(
+            "metrics { allowedAddresses = [\"10.0.0.5\"], scrapeToken = \""
+                + scrapeToken + "\" }"));
+        scraper.delegate = new Action.Simple() {
+            @Override
+            public CompletionStage<Result> call(Http.Request request) {
+                return completedFuture(Results.ok());
+            }
+        };
+        return scraper;
+    }
+
+    private int scrape(MetricsScraper scraper, String address, String authorization)
+        throws Exception {
+        Http.RequestBuilder request = new Http.RequestBuilder()
+            .method("GET")
+            .uri("/metrics")
+            .remoteAddress(address);
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return scraper.call(request.build())
+            .toCompletableFuture()
+            .get(5, TimeUnit.SECONDS)
+            .status();
+    }
+
+    /**
+     * Test that a scraper on an allowed address needs no token
+     */
+    @Test
+    public void allowedAddressMayScrape() throws Exception {
+        Assert.assertEquals(Http.Status.OK, scrape(scraper, "10.0.0.5", null));
+    }
+
+    /**
+     * Test that a scraper anywhere else is refused without the scrape token
+     */
+    @Test
+    public void otherAddressesAreRefused() throws Exception {
+        Assert.assertEquals(Http.Status.FORBIDDEN, scrape(scraper, "203.0.113.9", null));
+        Assert.assertEquals(Http.Status.FORBIDDEN, scrape(scraper, "203.0.113.9", "secret-token"));
+        Assert.assertEquals(
+            Http.Status.FORBIDDEN, scrape(scraper, "203.0.113.9", "Bearer wrong-token"));
+    }
+
+    /**
+     * Test that a scraper anywhere may scrape with the scrape token as a bearer token
+     */
+    @Test
+    public void scrapeTokenAllowsAnyAddress() throws Exception {
+        Assert.assertEquals(Http.Status.OK, scrape(scraper, "203.0.113.9", "Bearer secret-token"));
+    }
+
+    /**
+     * Test that an empty scrape token lets no one in with an empty bearer token
+     */
+    @Test
+    public void emptyScrapeTokenAllowsNoToken() throws Exception {
+        Assert.assertEquals(Http.Status.FORBIDDEN, scrape(scraper(""), "203.0.113.9", "Bearer "));
+    }
+}
@@ -0,0 +1,200 @@
+package util;
+
+import static org.awaitility.Awaitility.await;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import models.TripComposite;
+import models.User;
+import modules.websocket.OutboundBufferSettings;
+import modules.websocket.OutboundBufferStats;
+import modules.websocket.OutboundFrameBuffer;
+import modules.websocket.OverflowPolicy;
+import modules.websocket.frames.ChatMessageAckFrame;
+import modules.websocket.frames.Frame;
+import modules.websocket.frames.PingMapFrame;
+import modules.websocket.frames.PresenceSnapshotFrame;
+import modules.websocket.frames.RemotePresenceSnapshotFrame;
+import modules.websocket.frames.ResyncFrame;
+import modules.websocket.frames.TripUpdatedFrame;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+
+/**
+ * Test that the outbound frame buffer applies the overflow policy of each frame type when a client
+ * is not reading its frames.
+ */
+public class OutboundFrameBufferTest {
+    private ActorSystem actorSystem;
+    private Materializer materializer;
+    private OutboundBufferSettings settings;
+    private OutboundBufferStats stats;
+
+    @Before
+    public void setUp() {
+        actorSystem = ActorSystem.create();
+        materializer = ActorMaterializer.create(actorSystem);
+
+        Map<String, OverflowPolicy> policies = new HashMap<>();
+        policies.put("ping-map", OverflowPolicy.DROP_OLDEST);
+        policies.put("tripUpdated", OverflowPolicy.COALESCE_LATEST);
+        policies.put("presence-snapshot", OverflowPolicy.COALESCE_LATEST);
+        settings = new OutboundBufferSettings(3, Duration.ofSeconds(5), OverflowPolicy.NEVER_DROP, policies);
+        stats = new OutboundBufferStats(1);
+    }
+
+    /**
+     * Sends frames through the buffer while the client is not reading, then lets the client read.
+     * The first frame is taken by the stalled client straight away and is not returned.
+     */
+    private List<Frame> sendToStalledClient(List<Frame> frames) throws Exception {
+        CompletableFuture<Void> clientReading = new CompletableFuture<>();
+        List<Frame> allFrames = new ArrayList<>();
+        allFrames.add(new ChatMessageAckFrame(1, 0, "stalled"));
+        allFrames.addAll(frames);
+
+        CompletionStage<List<Frame>> received = Source.from(allFrames)
+            .via(new OutboundFrameBuffer(settings, stats))
+            .mapAsync(1, frame -> clientReading.thenApply(ignored -> frame))
+            .runWith(Sink.seq(), materializer);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stats.getFramesQueued() == allFrames.size());
+        clientReading.complete(null);
+
+        List<Frame> receivedFrames = new ArrayList<>(received.toCompletableFuture().get(5, TimeUnit.SECONDS));
+        receivedFrames.remove(0);
+        return receivedFrames;
+    }
+
+    /**
+     * Test that the oldest map pings are dropped when the buffer is full
+     */
+    @Test
+    public void mapPingsDropOldest() throws Exception {
+        List<Frame> pings = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            pings.add(new PingMapFrame(i, 0, 0));
+        }
+
+        List<Frame> received = sendToStalledClient(pings);
+
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(4, ((PingMapFrame) received.get(0)).getTripNodeId());
+        Assert.assertEquals(6, ((PingMapFrame) received.get(2)).getTripNodeId());
+        Assert.assertEquals(Long.valueOf(3), stats.getFramesDropped().get("ping-map"));
+    }
+
+    /**
+     * Test that only the latest update of a trip is sent
+     */
+    @Test
+    public void tripUpdatesCoalesce() throws Exception {
+        TripComposite firstTrip = new TripComposite(5);
+        TripComposite latestTrip = new TripComposite(5);
+        TripComposite otherTrip = new TripComposite(6);
+
+        List<Frame> received = sendToStalledClient(Arrays.asList(
+            new TripUpdatedFrame(firstTrip),
+            new TripUpdatedFrame(otherTrip),
+            new TripUpdatedFrame(latestTrip)));
+
+        Assert.assertEquals(2, received.size());
+        Assert.assertSame(latestTrip, ((TripUpdatedFrame) received.get(0)).getTrip());
+        Assert.assertSame(otherTrip, ((TripUpdatedFrame) received.get(1)).getTrip());
+        Assert.assertEquals(1, stats.getFramesCoalesced());
+    }
+
+    /**
+     * Test that waiting presence snapshots are merged with the latest status of each user
+     */
+    @Test
+    public void presenceSnapshotsMerge() throws Exception {
+        User user1 = new User();
+        user1.setUserId(1);
+        User user2 = new User();
+        user2.setUserId(2);
+
+        List<Frame> received = sendToStalledClient(Arrays.asList(
+            new PresenceSnapshotFrame(Arrays.asList(user1, user2), Collections.emptyList()),
+            new PresenceSnapshotFrame(Collections.emptyList(), Collections.singletonList(user1))));
+
+        Assert.assertEquals(1, received.size());
+        PresenceSnapshotFrame snapshot = (PresenceSnapshotFrame) received.get(0);
+        Assert.assertEquals(Collections.singletonList(user2), snapshot.getConnected());
+        Assert.assertEquals(Collections.singletonList(user1), snapshot.getDisconnected());
+    }
+
+    private static User user(int userId) {
+        User user = new User("Bob", "Jose", "Smith", "secure-hash", "male", "bob" + userId + "@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc" + userId);
+        user.setUserId(userId);
+        return user;
+    }
+
+    /**
+     * Test that presence snapshots from this node and from other nodes of the cluster are merged
+     * by user id, and the merged snapshot is written like a snapshot from this node
+     */
+    @Test
+    public void localAndRemotePresenceSnapshotsMerge() throws Exception {
+        User user1 = user(1);
+        User user2 = user(2);
+        User user3 = user(3);
+        PresenceSnapshotFrame remote =
+            new PresenceSnapshotFrame(Collections.singletonList(user3), Collections.singletonList(user1));
+
+        List<Frame> received = sendToStalledClient(Arrays.asList(
+            new PresenceSnapshotFrame(Arrays.asList(user1, user2), Collections.emptyList()),
+            RemotePresenceSnapshotFrame.fromJson(Json.toJson(remote)),
+            new PresenceSnapshotFrame(Collections.emptyList(), Collections.singletonList(user2))));
+
+        Assert.assertEquals(1, received.size());
+        JsonNode snapshot = Json.toJson(received.get(0));
+        Assert.assertEquals("presence-snapshot", snapshot.get("type").asText());
+        Assert.assertEquals(1, snapshot.get("connected").size());
+        Assert.assertEquals(3, snapshot.get("connected").get(0).get("userId").asInt());
+        Assert.assertEquals(2, snapshot.get("disconnected").size());
+        Assert.assertEquals(1, snapshot.get("disconnected").get(0).get("userId").asInt());
+        Assert.assertEquals(2, snapshot.get("disconnected").get(1).get("userId").asInt());
+        Assert.assertEquals(2, stats.getFramesCoalesced());
+    }
+
+    /**
+     * Test that a client that falls behind on chat is told to resync and disconnected
+     */
+    @Test
+    public void chatOverflowResyncs() throws Exception {
+        List<Frame> acks = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            acks.add(new ChatMessageAckFrame(1, i, "nonce" + i));
+        }
+
+        List<Frame> received = sendToStalledClient(acks);
+
+        Assert.assertEquals(1, received.size());
+        Assert.assertTrue(received.get(0) instanceof ResyncFrame);
+        Assert.assertEquals(1, stats.getResyncs());
+        Assert.assertEquals(Long.valueOf(4), stats.getFramesDropped().get("chat-message-ack"));
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.terminate();
+    }
+}
@@ -0,0 +1,122 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+import modules.photos.CachingPhotoStore;
+import modules.photos.PhotoCache;
+import modules.photos.PhotoCacheMetrics;
+import modules.photos.ShardedPhotoStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the photo cache keeps the most recently used files within its size, and never serves
+ * a file that has changed.
+ */
+public class PhotoCacheTest {
+    private Path photoDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        photoDirectory = Files.createTempDirectory("photos");
+    }
+
+    private byte[] contents(int size, int value) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (value + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Test that files spanning several blocks are read back whole
+     */
+    @Test
+    public void filesAreReadBack() {
+        PhotoCache cache = new PhotoCache(64 * 1024, 32 * 1024);
+        byte[] thumbnail = contents(10000, 3);
+
+        cache.put("a_thumb.jpg", thumbnail, cache.getVersion());
+
+        Assert.assertArrayEquals(thumbnail, cache.get("a_thumb.jpg"));
+        Assert.assertNull(cache.get("b_thumb.jpg"));
+    }
+
+    /**
+     * Test that the least recently used files are evicted to make space
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        // Room for four files of two blocks each
+        PhotoCache cache = new PhotoCache(8 * 4096, 8 * 4096);
+        long evictions = PhotoCacheMetrics.getInstance().getEvictions();
+        for (int i = 0; i < 4; i++) {
+            cache.put(i + ".jpg", contents(5000, i), cache.getVersion());
+        }
+
+        cache.get("0.jpg");
+        cache.put("4.jpg", contents(5000, 4), cache.getVersion());
+
+        Assert.assertNotNull(cache.get("0.jpg"));
+        Assert.assertNull(cache.get("1.jpg"));
+        Assert.assertArrayEquals(contents(5000, 4), cache.get("4.jpg"));
+        Assert.assertEquals(evictions + 1, PhotoCacheMetrics.getInstance().getEvictions());
+    }
+
+    /**
+     * Test that a file loaded while another file was changed is not cached, as it may be stale
+     */
+    @Test
+    public void loadOverlappingInvalidationIsNotCached() {
+        PhotoCache cache = new PhotoCache(64 * 1024, 32 * 1024);
+        long version = cache.getVersion();
+
+        cache.invalidate("a.jpg");
+        cache.put("a.jpg", contents(100, 0), version);
+
+        Assert.assertNull(cache.get("a.jpg"));
+    }
+
+    /**
+     * Test that the caching store serves small files from memory and forgets deleted ones
+     */
+    @Test
+    public void deletedFilesAreInvalidated() throws IOException {
+        CachingPhotoStore store = new CachingPhotoStore(
+            new ShardedPhotoStore(photoDirectory), new PhotoCache(64 * 1024, 1024));
+        Path upload = Files.createTempFile("upload", null);
+        Files.write(upload, contents(500, 1));
+        store.put("a_thumb.jpg", upload);
+        upload = Files.createTempFile("upload", null);
+        Files.write(upload, contents(2000, 1));
+        store.put("a.jpg", upload);
+
+        Assert.assertArrayEquals(contents(500, 1), store.cachedContents("a_thumb.jpg").get());
+        Assert.assertEquals(Optional.empty(), store.cachedContents("a.jpg"));
+
+        long hits = PhotoCacheMetrics.getInstance().getHits();
+        store.cachedContents("a_thumb.jpg");
+        Assert.assertEquals(hits + 1, PhotoCacheMetrics.getInstance().getHits());
+
+        store.delete("a_thumb.jpg");
+        try {
+            store.cachedContents("a_thumb.jpg");
+            Assert.fail();
+        } catch (NoSuchFileException e) {
+            // Expected
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(photoDirectory)
+            .sorted((a, b) -> b.compareTo(a))
+            .forEach(path -> path.toFile().delete());
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import modules.photos.FlatPhotoStore;
+import modules.photos.MigratingPhotoStore;
+import modules.photos.PhotoStore;
+import modules.photos.PhotoStoreMigrator;
+import modules.photos.ShardedPhotoStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that photos are sharded, and that photos in the old flat layout are served and migrated.
+ */
+public class PhotoStoreTest {
+    private Path photoDirectory;
+    private FlatPhotoStore flatStore;
+    private ShardedPhotoStore shardedStore;
+
+    @Before
+    public void setUp() throws IOException {
+        photoDirectory = Files.createTempDirectory("photos");
+        flatStore = new FlatPhotoStore(photoDirectory);
+        shardedStore = new ShardedPhotoStore(photoDirectory);
+    }
+
+    private void put(PhotoStore store, String name, String contents) throws IOException {
+        Path file = Files.createTempFile("upload", null);
+        Files.write(file, contents.getBytes());
+        store.put(name, file);
+    }
+
+    private String read(PhotoStore store, String name) throws IOException {
+        try (InputStream contents = store.open(name)) {
+            byte[] bytes = new byte[(int) store.size(name)];
+            Assert.assertEquals(bytes.length, contents.read(bytes));
+            return new String(bytes);
+        }
+    }
+
+    private List<String> list(PhotoStore store) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String partition : store.partitions()) {
+            store.forEach(partition, photo -> names.add(photo.getName()));
+        }
+        return names;
+    }
+
+    /**
+     * Test that a photo and its thumbnail are kept in the same shard, two directories deep
+     */
+    @Test
+    public void photosAreSharded() throws IOException {
+        put(shardedStore, "abc.jpg", "photo");
+        put(shardedStore, "abc_thumb.jpg", "thumbnail");
+
+        String shard = ShardedPhotoStore.shardOf("abc.jpg");
+        Assert.assertTrue(shard.matches("[0-9a-f]{2}/[0-9a-f]{2}"));
+        Assert.assertEquals(shard, ShardedPhotoStore.shardOf("abc_thumb.jpg"));
+        Assert.assertTrue(Files.isRegularFile(photoDirectory.resolve(shard).resolve("abc.jpg")));
+        Assert.assertEquals("thumbnail", read(shardedStore, "abc_thumb.jpg"));
+        Assert.assertEquals(2, list(shardedStore).size());
+
+        shardedStore.copy("abc.jpg", "def.jpg");
+        Assert.assertEquals("photo", read(shardedStore, "def.jpg"));
+        Assert.assertTrue(shardedStore.delete("abc.jpg"));
+        Assert.assertFalse(shardedStore.exists("abc.jpg"));
+    }
+
+    /**
+     * Test that names that could refer to a file outside the store are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void pathsAreRejected() throws IOException {
+        shardedStore.exists("../../etc/passwd");
+    }
+
+    /**
+     * Test that photos not yet migrated are still read, and new photos are written sharded
+     */
+    @Test
+    public void migratingStoreReadsBothLayouts() throws IOException {
+        MigratingPhotoStore store = new MigratingPhotoStore(shardedStore, flatStore);
+        put(flatStore, "old.jpg", "old");
+        put(store, "new.jpg", "new");
+
+        Assert.assertEquals("old", read(store, "old.jpg"));
+        Assert.assertEquals("new", read(store, "new.jpg"));
+        Assert.assertTrue(Files.isRegularFile(photoDirectory.resolve("old.jpg")));
+        Assert.assertFalse(Files.exists(photoDirectory.resolve("new.jpg")));
+        Assert.assertEquals(2, list(store).size());
+
+        try {
+            store.open("missing.jpg");
+            Assert.fail();
+        } catch (NoSuchFileException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Test that the migrator moves every flat photo, and finishes the work of a stopped run
+     */
+    @Test
+    public void migratorMovesFlatPhotos() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            put(flatStore, "photo" + i + ".jpg", "photo" + i);
+        }
+        // Left in both layouts by a run that stopped part way through a move
+        put(shardedStore, "photo0.jpg", "photo0");
+
+        PhotoStoreMigrator migrator = new PhotoStoreMigrator(flatStore, shardedStore, 2, Duration.ZERO);
+        migrator.run();
+
+        Assert.assertTrue(migrator.isFinished());
+        Assert.assertEquals(4, migrator.getFilesMoved());
+        Assert.assertEquals(1, migrator.getFilesAlreadyMoved());
+        Assert.assertTrue(list(flatStore).isEmpty());
+        Assert.assertEquals(5, list(shardedStore).size());
+        Assert.assertEquals("photo3", read(shardedStore, "photo3.jpg"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(photoDirectory)
+            .sorted((a, b) -> b.compareTo(a))
+            .forEach(path -> path.toFile().delete());
+    }
+}
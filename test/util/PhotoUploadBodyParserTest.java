@@ -0,0 +1,208 @@
+package util;
+
+import static org.awaitility.Awaitility.await;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import modules.photos.FlatPhotoStore;
+import modules.photos.ImageFormat;
+import modules.photos.PhotoUploadBodyParser;
+import modules.photos.StagedPhoto;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.api.http.HttpErrorHandler;
+import play.libs.F;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import scala.concurrent.Future;
+
+/**
+ * Test that uploaded photos are checked and staged as they stream in.
+ */
+public class PhotoUploadBodyParserTest {
+    private static final String BOUNDARY = "photo-boundary";
+
+    private ActorSystem actorSystem;
+    private Materializer materializer;
+    private Path photoDirectory;
+    private PhotoUploadBodyParser parser;
+
+    @Before
+    public void setUp() throws IOException {
+        actorSystem = ActorSystem.create();
+        materializer = ActorMaterializer.create(actorSystem);
+        photoDirectory = Files.createTempDirectory("photos");
+
+        Config config = ConfigFactory.parseString(
+            "play.http.parser.maxMemoryBuffer = 100K\n"
+                + "photos.upload { maxSize = 64K, maxDimension = 1000, maxPixels = 500000 }");
+        HttpErrorHandler errorHandler = new HttpErrorHandler() {
+            @Override
+            public Future<play.api.mvc.Result> onClientError(
+                play.api.mvc.RequestHeader request, int statusCode, String message) {
+                return Future.successful(Results.status(statusCode, message).asScala());
+            }
+
+            @Override
+            public Future<play.api.mvc.Result> onServerError(
+                play.api.mvc.RequestHeader request, Throwable exception) {
+                return Future.successful(Results.internalServerError().asScala());
+            }
+        };
+        parser = new PhotoUploadBodyParser(
+            materializer,
+            config,
+            errorHandler,
+            new FlatPhotoStore(photoDirectory),
+            play.libs.Files.singletonTemporaryFileCreator());
+    }
+
+    private byte[] image(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends a form with the given file as its image to the parser, in small chunks.
+     */
+    private F.Either<Result, Http.MultipartFormData<StagedPhoto>> upload(byte[] file)
+        throws Exception {
+        ByteString body = ByteString.fromString(
+            "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"isPublic\"\r\n\r\n"
+                + "true\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"photo\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n")
+            .concat(ByteString.fromArray(file))
+            .concat(ByteString.fromString("\r\n--" + BOUNDARY + "--\r\n"));
+
+        Http.RequestHeader request = new Http.RequestBuilder()
+            .method("POST")
+            .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+            .build();
+
+        List<ByteString> chunks = new ArrayList<>();
+        for (int i = 0; i < body.size(); i += 1024) {
+            chunks.add(body.slice(i, Math.min(i + 1024, body.size())));
+        }
+
+        return parser.apply(request)
+            .run(Source.from(chunks), materializer)
+            .toCompletableFuture()
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    private long stagedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(photoDirectory.resolve(".staging"))) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Test that a photo is staged with its real format and dimensions, whatever it was sent as
+     */
+    @Test
+    public void photoIsStaged() throws Exception {
+        byte[] png = image(40, 30, "png");
+
+        F.Either<Result, Http.MultipartFormData<StagedPhoto>> parsed = upload(png);
+
+        Assert.assertTrue(parsed.right.isPresent());
+        Http.MultipartFormData.FilePart<StagedPhoto> part = parsed.right.get().getFile("image");
+        StagedPhoto photo = part.getRef();
+        Assert.assertEquals("image/png", part.getContentType());
+        Assert.assertEquals(ImageFormat.PNG, photo.getFormat());
+        Assert.assertEquals(40, photo.getWidth());
+        Assert.assertEquals(30, photo.getHeight());
+        Assert.assertEquals(png.length, photo.getSize());
+        Assert.assertEquals(64, photo.getSha256().length());
+        Assert.assertArrayEquals(png, Files.readAllBytes(photo.getPath()));
+        Assert.assertTrue(photo.getPath().startsWith(photoDirectory));
+        Assert.assertEquals("true", parsed.right.get().asFormUrlEncoded().get("isPublic")[0]);
+    }
+
+    /**
+     * Test that the dimensions of a JPEG are read from its header
+     */
+    @Test
+    public void jpegDimensionsAreRead() throws Exception {
+        F.Either<Result, Http.MultipartFormData<StagedPhoto>> parsed = upload(image(25, 60, "jpg"));
+
+        StagedPhoto photo = parsed.right.get().getFile("image").getRef();
+        Assert.assertEquals(ImageFormat.JPEG, photo.getFormat());
+        Assert.assertEquals(25, photo.getWidth());
+        Assert.assertEquals(60, photo.getHeight());
+    }
+
+    /**
+     * Test that a file that is not a JPEG or PNG is rejected and not kept
+     */
+    @Test
+    public void otherFormatsAreRejected() throws Exception {
+        F.Either<Result, Http.MultipartFormData<StagedPhoto>> parsed = upload(image(10, 10, "gif"));
+
+        Assert.assertEquals(Http.Status.BAD_REQUEST, parsed.left.get().status());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stagedFiles() == 0);
+    }
+
+    /**
+     * Test that photos that are too large, in bytes or in pixels, are rejected and not kept
+     */
+    @Test
+    public void largePhotosAreRejected() throws Exception {
+        byte[] tooLarge = new byte[128 * 1024];
+        System.arraycopy(image(10, 10, "png"), 0, tooLarge, 0, 64);
+        F.Either<Result, Http.MultipartFormData<StagedPhoto>> parsed = upload(tooLarge);
+        Assert.assertEquals(Http.Status.REQUEST_ENTITY_TOO_LARGE, parsed.left.get().status());
+
+        parsed = upload(image(1001, 10, "png"));
+        Assert.assertEquals(Http.Status.BAD_REQUEST, parsed.left.get().status());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stagedFiles() == 0);
+    }
+
+    /**
+     * Test that an upload with a Content-Length that is not a length is rejected before it is read
+     */
+    @Test
+    public void malformedContentLengthIsRejected() throws Exception {
+        for (String contentLength : new String[] {"lots", "-5", "99999999999999999999"}) {
+            Http.RequestHeader request = new Http.RequestBuilder()
+                .method("POST")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .header("Content-Length", contentLength)
+                .build();
+
+            F.Either<Result, Http.MultipartFormData<StagedPhoto>> parsed = parser.apply(request)
+                .run(Source.empty(), materializer)
+                .toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(Http.Status.BAD_REQUEST, parsed.left.get().status());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.terminate();
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestProbe;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.TripComposite;
+import models.User;
+import modules.websocket.ConnectedUsers;
+import modules.websocket.PingMapRelay;
+import modules.websocket.frames.ErrorFrame;
+import modules.websocket.frames.PingMapFrame;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import repository.TripRepository;
+
+/**
+ * Test that map pings are throttled, coalesced and relayed without reloading the trip.
+ */
+public class PingMapRelayTest {
+    private User user1;
+    private User user2;
+    private ConnectedUsers connectedUsers;
+    private ActorSystem actorSystem;
+    private TestProbe probe1;
+    private TestProbe probe2;
+    private AtomicInteger tripLoads;
+
+    @Before
+    public void setUp() {
+        connectedUsers = ConnectedUsers.getInstance();
+        user1 = new User("Bob", "Jose", "Smith", "secure-hash", "male", "bobsmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc123");
+        user1.setUserId(1);
+        user2 = new User("Jane", "Jose", "Smith", "secure-hash", "male", "janesmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc124");
+        user2.setUserId(2);
+        actorSystem = ActorSystem.apply();
+        probe1 = new TestProbe(actorSystem);
+        probe2 = new TestProbe(actorSystem);
+        connectedUsers.addConnectedUser(user1, probe1.ref());
+        connectedUsers.addConnectedUser(user2, probe2.ref());
+        tripLoads = new AtomicInteger();
+    }
+
+    /**
+     * Creates a trip repository that counts how many times a trip is loaded.
+     */
+    private TripRepository tripRepository(Optional<TripComposite> trip) {
+        return new TripRepository(
+            null, null, ConfigFactory.parseString("coalescing.trips.ttl = 0")) {
+            @Override
+            public CompletionStage<Optional<TripComposite>> getTripWithUsers(int tripId, int userId) {
+                tripLoads.incrementAndGet();
+                return CompletableFuture.completedFuture(trip);
+            }
+        };
+    }
+
+    /**
+     * Test that a burst of pings loads the trip once and relays the latest position
+     */
+    @Test
+    public void burstIsCoalesced() {
+        TripComposite trip = new TripComposite(Arrays.asList(user1, user2), "Trip");
+        trip.setTripNodeId(7);
+        ActorRef relay = actorSystem.actorOf(PingMapRelay.props(
+            user1, 7, probe1.ref(), tripRepository(Optional.of(trip)), Duration.ofMillis(200)));
+
+        for (int i = 1; i <= 10; i++) {
+            relay.tell(new PingMapFrame(7, i, i), ActorRef.noSender());
+        }
+
+        PingMapFrame lastPing = probe2.expectMsgClass(PingMapFrame.class);
+        int pingsRelayed = 1;
+        while (lastPing.getLatitude() != 10) {
+            lastPing = probe2.expectMsgClass(PingMapFrame.class);
+            pingsRelayed++;
+        }
+
+        Assert.assertTrue(pingsRelayed <= 2);
+        probe2.expectNoMessage(scala.concurrent.duration.Duration.create(300, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, tripLoads.get());
+    }
+
+    /**
+     * Test that pings for a trip the user is not on are rejected without loading the trip again
+     */
+    @Test
+    public void unknownTripIsRejectedOnce() {
+        ActorRef relay = actorSystem.actorOf(PingMapRelay.props(
+            user1, 8, probe1.ref(), tripRepository(Optional.empty()), Duration.ofMillis(200)));
+
+        relay.tell(new PingMapFrame(8, 1, 1), ActorRef.noSender());
+        probe1.expectMsgClass(ErrorFrame.class);
+
+        relay.tell(new PingMapFrame(8, 2, 2), ActorRef.noSender());
+        probe1.expectNoMessage(scala.concurrent.duration.Duration.create(300, TimeUnit.MILLISECONDS));
+        probe2.expectNoMessage(scala.concurrent.duration.Duration.create(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, tripLoads.get());
+    }
+
+    /**
+     * Test that the interval is worked out from the pings a second, and that rates which can't be
+     * throttled are refused
+     */
+    @Test
+    public void pingRateIsValidated() {
+        Assert.assertEquals(Duration.ofMillis(200), PingMapRelay.minInterval(ConfigFactory.empty()));
+        Assert.assertEquals(Duration.ofMillis(1), PingMapRelay.minInterval(
+            ConfigFactory.parseString("websocket.pingMap.maxPingsPerSecond = 1000")));
+
+        for (String maxPingsPerSecond : Arrays.asList("0", "-1", "1001")) {
+            try {
+                PingMapRelay.minInterval(ConfigFactory.parseString(
+                    "websocket.pingMap.maxPingsPerSecond = " + maxPingsPerSecond));
+                Assert.fail("A rate of " + maxPingsPerSecond + " pings a second should be refused");
+            } catch (ConfigException.BadValue e) {
+                Assert.assertTrue(e.getMessage().contains("websocket.pingMap.maxPingsPerSecond"));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        connectedUsers.clear();
+        actorSystem.terminate();
+    }
+}
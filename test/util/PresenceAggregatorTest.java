@@ -0,0 +1,113 @@
+package util;
+
+import akka.actor.ActorSystem;
+import akka.testkit.TestProbe;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import models.User;
+import modules.websocket.ConnectedUsers;
+import modules.websocket.LocalFrameDelivery;
+import modules.websocket.PresenceAggregator;
+import modules.websocket.frames.PresenceSnapshotFrame;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that presence changes are coalesced into snapshots.
+ */
+public class PresenceAggregatorTest {
+    private User user1;
+    private User user2;
+    private ConnectedUsers connectedUsers;
+    private PresenceAggregator presenceAggregator;
+    private ActorSystem actorSystem;
+    private TestProbe probe1;
+    private TestProbe probe2;
+
+    @Before
+    public void setUp() {
+        connectedUsers = ConnectedUsers.getInstance();
+        presenceAggregator = new PresenceAggregator(new LocalFrameDelivery(connectedUsers), Duration.ofSeconds(2));
+        user1 = new User("Bob", "Jose", "Smith", "secure-hash", "male", "bobsmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc123");
+        user1.setUserId(1);
+        user2 = new User("Jane", "Jose", "Smith", "secure-hash", "male", "janesmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc124");
+        user2.setUserId(2);
+        actorSystem = ActorSystem.apply();
+        probe1 = new TestProbe(actorSystem);
+        probe2 = new TestProbe(actorSystem);
+    }
+
+    /**
+     * Test that several notifications of the same connect are sent as one snapshot
+     */
+    @Test
+    public void connectIsSentOnce() {
+        connectedUsers.addConnectedUser(user1, probe1.ref());
+        connectedUsers.addConnectedUser(user2, probe2.ref());
+
+        // Notified once through trips and once through chats
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.flush();
+
+        PresenceSnapshotFrame frame = probe2.expectMsgClass(PresenceSnapshotFrame.class);
+        Assert.assertEquals("presence-snapshot", frame.getType());
+        Assert.assertEquals(1, frame.getConnected().size());
+        Assert.assertEquals(1, frame.getConnected().get(0).getUserId());
+        Assert.assertEquals(0, frame.getDisconnected().size());
+        probe2.expectNoMessage(scala.concurrent.duration.Duration.create(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, presenceAggregator.getFramesSaved());
+    }
+
+    /**
+     * Test that a disconnect followed by a reconnect in the same window is not sent
+     */
+    @Test
+    public void flapIsSuppressed() {
+        connectedUsers.addConnectedUser(user1, probe1.ref());
+        connectedUsers.addConnectedUser(user2, probe2.ref());
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.flush();
+        probe2.expectMsgClass(PresenceSnapshotFrame.class);
+
+        connectedUsers.removeConnectedUser(user1, probe1.ref());
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        connectedUsers.addConnectedUser(user1, probe1.ref());
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.flush();
+
+        probe2.expectNoMessage(scala.concurrent.duration.Duration.create(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, presenceAggregator.getFlapsSuppressed());
+    }
+
+    /**
+     * Test that a disconnect is sent to the peers that are still connected
+     */
+    @Test
+    public void disconnectIsSent() {
+        connectedUsers.addConnectedUser(user1, probe1.ref());
+        connectedUsers.addConnectedUser(user2, probe2.ref());
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.flush();
+        probe2.expectMsgClass(PresenceSnapshotFrame.class);
+
+        connectedUsers.removeConnectedUser(user1, probe1.ref());
+        presenceAggregator.recordStatusChange(user1, new HashSet<>(Collections.singletonList(user2)));
+        presenceAggregator.flush();
+
+        PresenceSnapshotFrame frame = probe2.expectMsgClass(PresenceSnapshotFrame.class);
+        Assert.assertEquals(0, frame.getConnected().size());
+        Assert.assertEquals(1, frame.getDisconnected().get(0).getUserId());
+    }
+
+    @After
+    public void tearDown() {
+        connectedUsers.clear();
+        actorSystem.terminate();
+    }
+}
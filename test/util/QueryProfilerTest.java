@@ -0,0 +1,154 @@
+package util;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import modules.metrics.RequestMetrics;
+import modules.metrics.RouteMetrics;
+import modules.profiling.BlockingCallDetector;
+import modules.profiling.ProfilingDataSource;
+import modules.profiling.QueryProfile;
+import modules.profiling.QueryProfiler;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import repository.DatabaseExecutionContext;
+import repository.TripExecutionContext;
+
+/**
+ * Test that queries are counted against the request that ran them, and that repeated queries and
+ * requests over their budget are caught.
+ */
+public class QueryProfilerTest {
+    private Config config;
+    private ActorSystem actorSystem;
+    private QueryProfiler profiler;
+    private ProfilingDataSource dataSource;
+    private Connection keepAlive;
+    private RouteMetrics route;
+
+    @Before
+    public void setUp() throws SQLException {
+        config = ConfigFactory.parseString(
+            "bulkheads.trips { connections = 2, queueLimit = 10, dispatcher { executor = thread-pool-executor,"
+                + " thread-pool-executor.fixed-pool-size = 2 } }");
+        actorSystem = ActorSystem.create("profiling", config);
+        profiler = new QueryProfiler(Duration.ofSeconds(1), 3, true);
+
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:profiling");
+        dataSource = new ProfilingDataSource(
+            h2, profiler, new BlockingCallDetector(BlockingCallDetector.Mode.OFF, Collections.emptyList()));
+
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE trip_node (trip_node_id INT PRIMARY KEY, name VARCHAR(20))");
+            statement.execute("INSERT INTO trip_node VALUES (1, 'one'), (2, 'two'), (3, 'three')");
+        }
+
+        RequestMetrics.getInstance().clear();
+        route = RequestMetrics.getInstance().forRoute("GET /api/trips/$tripId<[^/]+>");
+    }
+
+    private String findName(int tripNodeId) {
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement query = connection.prepareStatement(
+                "SELECT name FROM trip_node WHERE trip_node_id = ?")) {
+            query.setInt(1, tripNodeId);
+            try (ResultSet results = query.executeQuery()) {
+                return results.next() ? results.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Test that queries for different rows have the same shape
+     */
+    @Test
+    public void shapesIgnoreValues() {
+        Assert.assertEquals(
+            "SELECT * FROM trip_node t0 WHERE t0.trip_node_id IN (?...) AND name = ? AND depth > ?",
+            QueryProfiler.shapeOf(
+                "SELECT * FROM trip_node t0\n WHERE t0.trip_node_id IN (?, ?,?) AND name = 'it''s' AND depth > 12"));
+    }
+
+    /**
+     * Test that queries run on the database threads are counted against the request that submitted
+     * them, and that running the same query for each row is caught
+     */
+    @Test
+    public void queriesFollowTheRequest() throws Exception {
+        DatabaseExecutionContext executionContext = new TripExecutionContext(actorSystem, config);
+        QueryProfile profile = new QueryProfile(route, -1);
+
+        QueryProfile previous = QueryProfile.enter(profile);
+        try {
+            supplyAsync(() -> findName(1), executionContext)
+                .thenApplyAsync(name -> findName(2), executionContext)
+                .thenApplyAsync(name -> findName(3), executionContext)
+                .toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+        } finally {
+            QueryProfile.exit(previous);
+        }
+        findName(1);
+
+        Assert.assertEquals(3, profile.getQueries());
+        Assert.assertEquals(1, profile.getRepeatedShapes(3).size());
+        Assert.assertEquals(3, profile.getShapeCount("SELECT name FROM trip_node WHERE trip_node_id = ?"));
+        Assert.assertFalse(QueryProfile.current().isPresent());
+
+        profiler.finish(profile, Results.ok());
+        Assert.assertEquals(3, route.getQueries());
+        Assert.assertEquals(1, route.getRepeatedQueryRequests());
+    }
+
+    /**
+     * Test that a request over its query budget fails when budgets are enforced
+     */
+    @Test
+    public void budgetIsEnforced() {
+        QueryProfile withinBudget = new QueryProfile(route, 2);
+        QueryProfile overBudget = new QueryProfile(route, 2);
+
+        QueryProfile previous = QueryProfile.enter(withinBudget);
+        findName(1);
+        findName(2);
+        QueryProfile.enter(overBudget);
+        findName(1);
+        findName(2);
+        findName(3);
+        QueryProfile.exit(previous);
+
+        Assert.assertEquals(Http.Status.OK, profiler.finish(withinBudget, Results.ok()).status());
+        Result result = profiler.finish(overBudget, Results.ok());
+        Assert.assertEquals(Http.Status.INTERNAL_SERVER_ERROR, result.status());
+
+        QueryProfiler lenientProfiler = new QueryProfiler(Duration.ofSeconds(1), 3, false);
+        Assert.assertEquals(Http.Status.OK, lenientProfiler.finish(overBudget, Results.ok()).status());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        keepAlive.close();
+        RequestMetrics.getInstance().clear();
+        actorSystem.terminate();
+    }
+}
@@ -0,0 +1,161 @@
+package util;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sql.DataSource;
+import modules.replicas.ReplicaRouter;
+import modules.replicas.ReplicaRoutingDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that reads are routed to the replica, and to the primary when the session has just
+ * written or the replica is behind or down, using two H2 databases.
+ */
+public class ReplicaRoutingTest {
+    private static final String SETTINGS = "stickiness = 200 milliseconds, maxLag = 2 seconds,"
+        + " lagCheckInterval = 1 minute, retryAfter = 1 minute, ";
+
+    private DataSource primary;
+    private DataSource replica;
+    private final AtomicReference<String> session = new AtomicReference<>();
+
+    private DataSource database(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+            statement.execute("DELETE FROM node");
+            statement.execute("INSERT INTO node VALUES ('" + name + "')");
+        }
+        return dataSource;
+    }
+
+    private ReplicaRouter router(DataSource replica, String lagQuery) {
+        Config config = ConfigFactory.parseString(SETTINGS + "lagQuery = \"" + lagQuery + "\"");
+        return new ReplicaRouter(replica, config, () -> Optional.ofNullable(session.get()));
+    }
+
+    private String readFrom(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet result = statement.executeQuery("SELECT name FROM node")) {
+            result.next();
+            return result.getString(1);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @After
+    public void tearDown() {
+        session.set(null);
+    }
+
+    /**
+     * Test that reads go to the primary until the lag has been checked, then to the replica
+     */
+    @Test
+    public void readsFromReplicaOnceItsLagIsKnown() throws SQLException {
+        ReplicaRouter router = router(replica, "SELECT 0");
+        DataSource reads = new ReplicaRoutingDataSource(router, primary);
+
+        Assert.assertEquals("primary", readFrom(reads));
+        router.checkLag();
+        Assert.assertEquals("replica", readFrom(reads));
+        Assert.assertEquals(1, router.getReplicaReads());
+        Assert.assertEquals(1, router.getPrimaryReads());
+    }
+
+    /**
+     * Test that a session reads from the primary for a while after it writes, and other sessions
+     * carry on reading from the replica
+     */
+    @Test
+    public void sessionReadsItsOwnWritesFromPrimary() throws Exception {
+        ReplicaRouter router = router(replica, "SELECT 0");
+        DataSource reads = new ReplicaRoutingDataSource(router, primary);
+        router.checkLag();
+
+        session.set("writer");
+        router.recordWrite();
+        Assert.assertEquals("primary", readFrom(reads));
+
+        session.set("reader");
+        Assert.assertEquals("replica", readFrom(reads));
+
+        Thread.sleep(300);
+        session.set("writer");
+        Assert.assertEquals("replica", readFrom(reads));
+    }
+
+    /**
+     * Test that reads go to the primary while the replica is too far behind
+     */
+    @Test
+    public void readsFromPrimaryWhileReplicaLags() throws SQLException {
+        ReplicaRouter router = router(replica, "SELECT 5");
+        DataSource reads = new ReplicaRoutingDataSource(router, primary);
+        router.checkLag();
+
+        Assert.assertEquals(5.0, router.getLagSeconds(), 0.001);
+        Assert.assertFalse(router.isReplicaAvailable());
+        Assert.assertEquals("primary", readFrom(reads));
+    }
+
+    /**
+     * Test that reads fall back to the primary when the replica can't be connected to
+     */
+    @Test
+    public void fallsBackToPrimaryWhenReplicaFails() throws SQLException {
+        ReplicaRouter router = router(replica, "SELECT 0");
+        DataSource reads = new ReplicaRoutingDataSource(router, primary);
+        router.checkLag();
+        try (Connection connection = replica.getConnection();
+            Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        JdbcDataSource down = (JdbcDataSource) replica;
+        down.setURL("jdbc:h2:mem:replica;IFEXISTS=TRUE");
+
+        Assert.assertEquals("primary", readFrom(reads));
+        Assert.assertEquals(1, router.getFailures());
+        Assert.assertFalse(router.isReplicaAvailable());
+    }
+
+    /**
+     * Test that tasks run on the primary read from it whatever the replica's state
+     */
+    @Test
+    public void tasksOnPrimaryReadFromPrimary() throws Exception {
+        ReplicaRouter router = router(replica, "SELECT 0");
+        DataSource reads = new ReplicaRoutingDataSource(router, primary);
+        router.checkLag();
+        AtomicReference<String> read = new AtomicReference<>();
+
+        ReplicaRouter.onPrimary(() -> {
+            try {
+                read.set(readFrom(reads));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).run();
+
+        Assert.assertEquals("primary", read.get());
+        Assert.assertEquals("replica", readFrom(reads));
+    }
+}
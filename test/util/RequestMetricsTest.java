@@ -0,0 +1,116 @@
+package util;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import filters.MetricsFilter;
+import java.util.concurrent.TimeUnit;
+import modules.metrics.PrometheusWriter;
+import modules.metrics.RequestMetrics;
+import modules.metrics.RouteMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.streams.Accumulator;
+import play.mvc.EssentialAction;
+import play.mvc.Http;
+import play.mvc.Results;
+
+/**
+ * Test that requests are recorded by route and written in the Prometheus text format.
+ */
+public class RequestMetricsTest {
+    private ActorSystem actorSystem;
+    private Materializer materializer;
+    private RequestMetrics requestMetrics;
+
+    @Before
+    public void setUp() {
+        actorSystem = ActorSystem.create();
+        materializer = ActorMaterializer.create(actorSystem);
+        requestMetrics = RequestMetrics.getInstance();
+        requestMetrics.clear();
+    }
+
+    /**
+     * Test that routes are shown with their parameters as in conf/routes
+     */
+    @Test
+    public void routesShowParameters() {
+        RouteMetrics route = requestMetrics.forRoute("GET /api/users/$userId<[^/]+>/photos/$photoId<[^/]+>");
+
+        Assert.assertEquals("GET /api/users/:userId/photos/:photoId", route.getRoute());
+        Assert.assertSame(route, requestMetrics.forRoute("GET /api/users/$userId<[^/]+>/photos/$photoId<[^/]+>"));
+    }
+
+    /**
+     * Test that latencies, statuses and sizes are written for each route
+     */
+    @Test
+    public void routesAreWritten() {
+        RouteMetrics route = requestMetrics.forRoute("GET /api/users/$userId<[^/]+>");
+        for (int i = 1; i <= 100; i++) {
+            route.started();
+            route.finished(i <= 90 ? 200 : 404, TimeUnit.MILLISECONDS.toNanos(i), -1, 10);
+        }
+        route.started();
+
+        PrometheusWriter writer = new PrometheusWriter();
+        requestMetrics.write(writer);
+        String text = writer.toString();
+
+        Assert.assertTrue(text.contains("# TYPE http_request_duration_seconds summary\n"));
+        Assert.assertTrue(text.contains("http_request_duration_seconds_count{route=\"GET /api/users/:userId\"} 100\n"));
+        Assert.assertTrue(text.contains("http_requests_total{route=\"GET /api/users/:userId\",status=\"200\"} 90\n"));
+        Assert.assertTrue(text.contains("http_requests_total{route=\"GET /api/users/:userId\",status=\"404\"} 10\n"));
+        Assert.assertTrue(text.contains("http_requests_in_flight{route=\"GET /api/users/:userId\"} 1\n"));
+        Assert.assertTrue(text.contains("http_response_bytes_total{route=\"GET /api/users/:userId\"} 1000\n"));
+        Assert.assertTrue(text.contains("http_request_bytes_total{route=\"GET /api/users/:userId\"} 0\n"));
+
+        double median = route.getLatencies().getValueAtPercentile(50) / 1000.0;
+        Assert.assertEquals(50, median, 1);
+    }
+
+    /**
+     * Test that the filter records the requests it passes on
+     */
+    @Test
+    public void filterRecordsRequests() throws Exception {
+        EssentialAction action = new MetricsFilter().apply(
+            EssentialAction.of(request -> Accumulator.done(Results.created("hello"))));
+        Http.RequestHeader request = new Http.RequestBuilder()
+            .method("POST")
+            .uri("/somewhere")
+            .header(Http.HeaderNames.CONTENT_LENGTH, "42")
+            .build();
+
+        action.apply(request).run(materializer).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        RouteMetrics route = requestMetrics.forRoute(RequestMetrics.UNMATCHED);
+        Assert.assertEquals(Long.valueOf(1), route.getStatuses().get(201));
+        Assert.assertEquals(42, route.getRequestBytes());
+        Assert.assertEquals(5, route.getResponseBytes());
+        Assert.assertEquals(0, route.getInFlight());
+    }
+
+    /**
+     * Test that label values are escaped
+     */
+    @Test
+    public void labelsAreEscaped() {
+        String text = new PrometheusWriter()
+            .gauge("example", "An example")
+            .sample("example", 1.5, "label", "a \"quoted\" \\ value")
+            .toString();
+
+        Assert.assertEquals("# HELP example An example\n# TYPE example gauge\n"
+            + "example{label=\"a \\\"quoted\\\" \\\\ value\"} 1.5\n", text);
+    }
+
+    @After
+    public void tearDown() {
+        requestMetrics.clear();
+        actorSystem.terminate();
+    }
+}
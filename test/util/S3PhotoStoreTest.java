@@ -0,0 +1,109 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import modules.photos.S3PhotoStore;
+import modules.photos.ShardedPhotoStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import testingUtilities.FakeS3Server;
+
+/**
+ * Test the S3 photo store against a local stand in for an S3 compatible object store.
+ */
+public class S3PhotoStoreTest {
+    private static final String BUCKET = "photos";
+
+    private FakeS3Server server;
+    private S3PhotoStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeS3Server(2);
+        store = new S3PhotoStore(
+            S3PhotoStore.createClient(server.getEndpoint(), "us-east-1", "access", "secret", true),
+            BUCKET);
+    }
+
+    private void put(String name, String contents) throws IOException {
+        Path file = Files.createTempFile("upload", null);
+        Files.write(file, contents.getBytes());
+        store.put(name, file);
+        Assert.assertFalse(Files.exists(file));
+    }
+
+    private String read(String name) throws IOException {
+        try (InputStream contents = store.open(name)) {
+            byte[] bytes = new byte[(int) store.size(name)];
+            int read = 0;
+            while (read < bytes.length) {
+                read += contents.read(bytes, read, bytes.length - read);
+            }
+            return new String(bytes);
+        }
+    }
+
+    /**
+     * Test that photos are stored under sharded keys and can be read, copied and deleted
+     */
+    @Test
+    public void photosAreStoredSharded() throws IOException {
+        put("abc.jpg", "photo");
+
+        Assert.assertTrue(server.getKeys(BUCKET).contains(ShardedPhotoStore.shardOf("abc.jpg") + "/abc.jpg"));
+        Assert.assertTrue(store.exists("abc.jpg"));
+        Assert.assertEquals("photo", read("abc.jpg"));
+
+        store.copy("abc.jpg", "def.jpg");
+        Assert.assertEquals("photo", read("def.jpg"));
+
+        Assert.assertTrue(store.delete("abc.jpg"));
+        Assert.assertFalse(store.exists("abc.jpg"));
+        Assert.assertFalse(store.delete("abc.jpg"));
+    }
+
+    /**
+     * Test that reading a missing photo fails the same way as the local stores
+     */
+    @Test(expected = NoSuchFileException.class)
+    public void missingPhotoIsNotFound() throws IOException {
+        store.open("missing.jpg");
+    }
+
+    /**
+     * Test that listing follows continuation tokens through a partition with several pages
+     */
+    @Test
+    public void partitionsArePaged() throws IOException {
+        // A photo, its thumbnail and a copy in another format share a shard, so fill more than a page
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            names.add("photo" + i + ".jpg");
+            names.add("photo" + i + "_thumb.jpg");
+            names.add("photo" + i + ".png");
+        }
+        for (String name : names) {
+            put(name, name);
+        }
+
+        List<String> listed = new ArrayList<>();
+        for (String partition : store.partitions()) {
+            store.forEach(partition, photo -> listed.add(photo.getName()));
+        }
+
+        Assert.assertEquals(names.size(), listed.size());
+        Assert.assertTrue(listed.containsAll(names));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import repository.SingleFlight;
+
+/**
+ * Test that concurrent reads of the same key share one load, and that finished reads are only
+ * kept for their time to live.
+ */
+public class SingleFlightTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private CompletableFuture<String> pending = new CompletableFuture<>();
+
+    private CompletionStage<String> load() {
+        loads.incrementAndGet();
+        return pending;
+    }
+
+    /**
+     * Test that callers asking for a key while it is being read share the read
+     */
+    @Test
+    public void concurrentReadsShareOneLoad() throws Exception {
+        SingleFlight<Integer, String> reads = new SingleFlight<>("test", Duration.ZERO);
+
+        CompletionStage<String> first = reads.get(1, this::load);
+        CompletionStage<String> second = reads.get(1, this::load);
+        CompletionStage<String> other = reads.get(2, this::load);
+        pending.complete("destination");
+
+        Assert.assertEquals("destination", first.toCompletableFuture().get());
+        Assert.assertEquals("destination", second.toCompletableFuture().get());
+        Assert.assertEquals("destination", other.toCompletableFuture().get());
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(1, reads.getCoalesced());
+    }
+
+    /**
+     * Test that without a time to live, a read after the last one finished loads again
+     */
+    @Test
+    public void finishedReadsAreNotKeptWithoutTtl() {
+        SingleFlight<Integer, String> reads = new SingleFlight<>("test", Duration.ZERO);
+        pending.complete("destination");
+
+        reads.get(1, this::load);
+        reads.get(1, this::load);
+
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(0, reads.getCached());
+    }
+
+    /**
+     * Test that finished reads are kept for their time to live, until the key is forgotten
+     */
+    @Test
+    public void finishedReadsAreKeptUntilForgotten() {
+        SingleFlight<Integer, String> reads = new SingleFlight<>("test", Duration.ofMinutes(1));
+        pending.complete("destination");
+
+        reads.get(1, this::load);
+        reads.get(1, this::load);
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, reads.getCached());
+
+        reads.forget(1);
+        reads.get(1, this::load);
+        Assert.assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that a failed read is shared with the callers waiting on it, but not kept
+     */
+    @Test
+    public void failedReadsAreNotKept() throws Exception {
+        SingleFlight<Integer, String> reads = new SingleFlight<>("test", Duration.ofMinutes(1));
+
+        CompletionStage<String> failed = reads.get(1, this::load);
+        CompletionStage<String> joined = reads.get(1, this::load);
+        pending.completeExceptionally(new IllegalStateException("database down"));
+        pending = CompletableFuture.completedFuture("destination");
+
+        Assert.assertTrue(failed.toCompletableFuture().isCompletedExceptionally());
+        try {
+            joined.toCompletableFuture().get();
+            Assert.fail("The read should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("database down", e.getCause().getMessage());
+        }
+        Assert.assertEquals("destination", reads.get(1, this::load).toCompletableFuture().get());
+        Assert.assertEquals(2, loads.get());
+    }
+}
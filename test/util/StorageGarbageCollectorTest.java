@@ -0,0 +1,95 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import modules.photos.FlatPhotoStore;
+import modules.photos.MigratingPhotoStore;
+import modules.photos.ShardedPhotoStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tasks.storage.StorageGarbageCollector;
+import tasks.storage.StorageGcReport;
+
+/**
+ * Test that only old files no photo refers to are deleted from photo storage.
+ */
+public class StorageGarbageCollectorTest {
+    private Path photoDirectory;
+    private ExecutorService executor;
+    private StorageGarbageCollector garbageCollector;
+
+    @Before
+    public void setUp() throws IOException {
+        photoDirectory = Files.createTempDirectory("photos");
+        executor = Executors.newFixedThreadPool(2);
+        // Files are in both layouts part way through a migration
+        garbageCollector = new StorageGarbageCollector(
+            new MigratingPhotoStore(new ShardedPhotoStore(photoDirectory), new FlatPhotoStore(photoDirectory)),
+            Duration.ofHours(1),
+            () -> new HashSet<>(Arrays.asList("kept.jpg", "kept_thumb.jpg")),
+            executor,
+            executor);
+    }
+
+    private Path shardedFile(String name) {
+        return photoDirectory.resolve(ShardedPhotoStore.shardOf(name)).resolve(name);
+    }
+
+    private Path createFile(Path path, Duration age) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[100]);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+        return path;
+    }
+
+    @Test
+    public void oldOrphansAreDeleted() throws Exception {
+        Path kept = createFile(photoDirectory.resolve("kept.jpg"), Duration.ofDays(2));
+        Path keptThumb = createFile(shardedFile("kept_thumb.jpg"), Duration.ofDays(2));
+        Path orphan = createFile(photoDirectory.resolve("orphan.jpg"), Duration.ofDays(2));
+        Path nestedOrphan = createFile(shardedFile("orphan.png"), Duration.ofDays(2));
+        Path recentOrphan = createFile(shardedFile("uploading.jpg"), Duration.ofMinutes(1));
+
+        StorageGcReport report = garbageCollector.collect().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(Files.exists(kept));
+        Assert.assertTrue(Files.exists(keptThumb));
+        Assert.assertTrue(Files.exists(recentOrphan));
+        Assert.assertFalse(Files.exists(orphan));
+        Assert.assertFalse(Files.exists(nestedOrphan));
+        Assert.assertEquals(5, report.getFilesScanned());
+        Assert.assertEquals(2, report.getFilesDeleted());
+        Assert.assertEquals(1, report.getOrphansTooRecent());
+        Assert.assertEquals(200, report.getBytesReclaimed());
+    }
+
+    @Test
+    public void missingDirectoryIsIgnored() throws Exception {
+        Files.delete(photoDirectory);
+
+        StorageGcReport report = garbageCollector.collect().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(0, report.getFilesScanned());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        if (Files.exists(photoDirectory)) {
+            Files.walk(photoDirectory)
+                .sorted((a, b) -> b.compareTo(a))
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+}
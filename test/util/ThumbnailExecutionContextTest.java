@@ -0,0 +1,87 @@
+package util;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import modules.photos.ThumbnailExecutionContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that thumbnails are rendered on their own threads, and that uploads are turned away once
+ * too many renders are waiting.
+ */
+public class ThumbnailExecutionContextTest {
+    private ActorSystem actorSystem;
+    private ThumbnailExecutionContext context;
+
+    @Before
+    public void setUp() {
+        Config config = ConfigFactory.parseString(
+            "photos.thumbnail {\n"
+                + "  queueLimit = 1\n"
+                + "  dispatcher {\n"
+                + "    executor = \"thread-pool-executor\"\n"
+                + "    thread-pool-executor.fixed-pool-size = 1\n"
+                + "  }\n"
+                + "}");
+        actorSystem = ActorSystem.create("thumbnails", config);
+        context = new ThumbnailExecutionContext(actorSystem, config);
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.terminate();
+    }
+
+    /**
+     * Test that renders run on the thumbnail dispatcher rather than the thread submitting them
+     */
+    @Test
+    public void rendersRunOnThumbnailThreads() throws Exception {
+        String thread = CompletableFuture
+            .supplyAsync(() -> Thread.currentThread().getName(), context)
+            .get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(thread, thread.contains("photos.thumbnail.dispatcher"));
+    }
+
+    /**
+     * Test that a render is rejected once queueLimit renders are waiting for a thread, and accepted
+     * again once they have run
+     */
+    @Test
+    public void rendersOverTheQueueLimitAreRejected() throws Exception {
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch renderAllowed = new CountDownLatch(1);
+        context.execute(() -> {
+            rendering.countDown();
+            try {
+                renderAllowed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        rendering.await();
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        context.execute(queuedRan::countDown);
+
+        try {
+            context.execute(() -> { });
+            Assert.fail("The render should have been rejected");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, context.getRejected());
+        }
+        Assert.assertEquals(1, context.getQueueDepth());
+
+        renderAllowed.countDown();
+        Assert.assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> { }, context).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import modules.photos.ImageFormat;
+import modules.photos.ThumbnailRenderer;
+import modules.photos.UploadRejectedException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.mvc.Http;
+
+/**
+ * Test that thumbnails are rendered from the centre of a photo within the pixel budget.
+ */
+public class ThumbnailRendererTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("thumbnails");
+    }
+
+    /**
+     * Writes a photo that is red, with a green square in the middle.
+     */
+    private Path photo(int width, int height, ImageFormat format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width, height);
+        int side = Math.min(width, height);
+        graphics.setColor(Color.GREEN);
+        graphics.fillRect((width - side) / 2, (height - side) / 2, side, side);
+        graphics.dispose();
+
+        Path file = directory.resolve("photo" + format.getExtension());
+        ImageIO.write(image, format.getFormatName(), file.toFile());
+        return file;
+    }
+
+    /**
+     * Test that a large photo is rendered as a square of its centre, and the budget is handed back
+     */
+    @Test
+    public void thumbnailIsCentreSquare() throws IOException {
+        ThumbnailRenderer renderer = new ThumbnailRenderer(300, 1_000_000, Duration.ofSeconds(1), 10000, 50_000_000);
+        Path thumbnail = directory.resolve("thumb.png");
+
+        renderer.render(photo(3000, 1000, ImageFormat.PNG), thumbnail, ImageFormat.PNG);
+
+        BufferedImage image = ImageIO.read(thumbnail.toFile());
+        Assert.assertEquals(300, image.getWidth());
+        Assert.assertEquals(300, image.getHeight());
+        Assert.assertEquals(Color.GREEN.getRGB(), image.getRGB(0, 0));
+        Assert.assertEquals(Color.GREEN.getRGB(), image.getRGB(299, 299));
+        Assert.assertEquals(0, renderer.getPixelsInUse());
+    }
+
+    /**
+     * Test that a photo smaller than the thumbnail is scaled up, and JPEGs are written as JPEGs
+     */
+    @Test
+    public void smallJpegIsScaledUp() throws IOException {
+        ThumbnailRenderer renderer = new ThumbnailRenderer(300, 1_000_000, Duration.ofSeconds(1), 10000, 50_000_000);
+        Path thumbnail = directory.resolve("thumb.jpg");
+
+        renderer.render(photo(100, 200, ImageFormat.JPEG), thumbnail, ImageFormat.JPEG);
+
+        BufferedImage image = ImageIO.read(thumbnail.toFile());
+        Assert.assertEquals(300, image.getWidth());
+        Assert.assertEquals(300, image.getHeight());
+        byte[] bytes = Files.readAllBytes(thumbnail);
+        Assert.assertEquals((byte) 0xff, bytes[0]);
+        Assert.assertEquals((byte) 0xd8, bytes[1]);
+    }
+
+    /**
+     * Test that a photo larger than the whole budget still renders, on its own
+     */
+    @Test
+    public void renderLargerThanBudgetRuns() throws IOException {
+        ThumbnailRenderer renderer = new ThumbnailRenderer(300, 1000, Duration.ofSeconds(1), 10000, 50_000_000);
+        Path thumbnail = directory.resolve("thumb.png");
+
+        renderer.render(photo(600, 600, ImageFormat.PNG), thumbnail, ImageFormat.PNG);
+
+        Assert.assertTrue(Files.size(thumbnail) > 0);
+        Assert.assertEquals(0, renderer.getPixelsInUse());
+    }
+
+    /**
+     * Test that the dimensions are checked before the photo is decoded
+     */
+    @Test
+    public void largePhotoIsRejected() throws IOException {
+        ThumbnailRenderer renderer = new ThumbnailRenderer(300, 1_000_000, Duration.ofSeconds(1), 1000, 50_000_000);
+
+        try {
+            renderer.render(photo(1200, 300, ImageFormat.PNG), directory.resolve("thumb.png"), ImageFormat.PNG);
+            Assert.fail();
+        } catch (UploadRejectedException e) {
+            Assert.assertEquals(Http.Status.BAD_REQUEST, e.getStatus());
+        }
+        Assert.assertEquals(0, renderer.getPixelsInUse());
+    }
+
+    /**
+     * Test that a file that is not an image is rejected
+     */
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        ThumbnailRenderer renderer = new ThumbnailRenderer(300, 1_000_000, Duration.ofSeconds(1), 10000, 50_000_000);
+        Path file = directory.resolve("photo.png");
+        Files.write(file, "not a photo".getBytes());
+
+        try {
+            renderer.render(file, directory.resolve("thumb.png"), ImageFormat.PNG);
+            Assert.fail();
+        } catch (UploadRejectedException e) {
+            Assert.assertEquals(Http.Status.BAD_REQUEST, e.getStatus());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,156 @@
+package util;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestProbe;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import models.ChatGroup;
+import models.Message;
+import models.TripComposite;
+import models.User;
+import modules.websocket.ConnectedUsers;
+import modules.websocket.PresenceAggregator;
+import modules.websocket.WebSocket;
+import modules.websocket.frames.ChatMessageAckFrame;
+import modules.websocket.frames.ChatMessageErrorFrame;
+import modules.websocket.frames.ChatMessageFrame;
+import modules.websocket.frames.SendChatMessageFrame;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import repository.ChatRepository;
+import repository.TripRepository;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Test that chat messages sent over a websocket are only sent to the chat group once they are
+ * saved, and that the sender is told when they can't be.
+ */
+public class WebSocketChatTest {
+    private static final FiniteDuration NO_MESSAGE = FiniteDuration.create(200, "ms");
+    private static final Config CONFIG =
+        ConfigFactory.parseString("coalescing { trips.ttl = 0, chats.ttl = 0 }");
+
+    private User sender;
+    private User receiver;
+    private ConnectedUsers connectedUsers;
+    private ActorSystem actorSystem;
+    private TestProbe senderSocket;
+    private TestProbe receiverSocket;
+    private CompletableFuture<ChatGroup> chatRead;
+    private CompletableFuture<Message> messageWrite;
+
+    @Before
+    public void setUp() {
+        connectedUsers = ConnectedUsers.getInstance();
+        PresenceAggregator.initialise(CONFIG);
+        sender = new User("Bob", "Jose", "Smith", "secure-hash", "male", "bobsmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc123");
+        sender.setUserId(1);
+        receiver = new User("Jane", "Jose", "Smith", "secure-hash", "male", "janesmith@gmail.com", new ArrayList<>(), new ArrayList<>(), null, new ArrayList<>(), new ArrayList<>(), "abc124");
+        receiver.setUserId(2);
+        actorSystem = ActorSystem.apply();
+        senderSocket = new TestProbe(actorSystem);
+        receiverSocket = new TestProbe(actorSystem);
+        connectedUsers.addConnectedUser(receiver, receiverSocket.ref());
+        chatRead = new CompletableFuture<>();
+        messageWrite = new CompletableFuture<>();
+    }
+
+    @After
+    public void tearDown() {
+        connectedUsers.removeConnectedUser(receiver, receiverSocket.ref());
+        actorSystem.terminate();
+    }
+
+    /**
+     * Creates a websocket for the sender, with repositories that read and write chats as the test
+     * completes them.
+     */
+    private ActorRef webSocket() {
+        TripRepository tripRepository = new TripRepository(null, null, CONFIG) {
+            @Override
+            public CompletionStage<List<TripComposite>> getTripsByUserId(int travellerId) {
+                return CompletableFuture.completedFuture(Collections.emptyList());
+            }
+        };
+        ChatRepository chatRepository = new ChatRepository(null, null, CONFIG) {
+            @Override
+            public CompletionStage<List<ChatGroup>> getChatsByUserId(int userId) {
+                return CompletableFuture.completedFuture(Collections.emptyList());
+            }
+
+            @Override
+            public CompletionStage<ChatGroup> getChatById(int chatGroupId) {
+                return chatRead;
+            }
+
+            @Override
+            public CompletionStage<Message> createMessage(Message message) {
+                message.setMessageId(42);
+                return messageWrite;
+            }
+        };
+        return actorSystem.actorOf(
+            WebSocket.props(senderSocket.ref(), sender, tripRepository, chatRepository, CONFIG));
+    }
+
+    private ChatGroup chatGroup() {
+        return new ChatGroup("chat", Arrays.asList(sender, receiver), new ArrayList<>());
+    }
+
+    /**
+     * Test that a message is sent to the chat group and acknowledged only once it is saved
+     */
+    @Test
+    public void messageIsSentOnceSaved() {
+        ActorRef webSocket = webSocket();
+        webSocket.tell(new SendChatMessageFrame(0, "hello", "nonce"), ActorRef.noSender());
+        ChatGroup chatGroup = chatGroup();
+        chatRead.complete(chatGroup);
+
+        receiverSocket.expectNoMessage(NO_MESSAGE);
+        messageWrite.complete(new Message(chatGroup, "hello", sender));
+
+        ChatMessageFrame received = receiverSocket.expectMsgClass(ChatMessageFrame.class);
+        Assert.assertEquals("hello", received.getMessage());
+        ChatMessageAckFrame ack = senderSocket.expectMsgClass(ChatMessageAckFrame.class);
+        Assert.assertEquals("nonce", ack.getNonce());
+    }
+
+    /**
+     * Test that a message that fails to be saved is sent to no one, and the sender is told
+     */
+    @Test
+    public void unsavedMessageIsNotSent() {
+        ActorRef webSocket = webSocket();
+        webSocket.tell(new SendChatMessageFrame(0, "hello", "nonce"), ActorRef.noSender());
+        chatRead.complete(chatGroup());
+        messageWrite.completeExceptionally(new IllegalStateException("queue full"));
+
+        ChatMessageErrorFrame error = senderSocket.expectMsgClass(ChatMessageErrorFrame.class);
+        Assert.assertEquals("nonce", error.getNonce());
+        receiverSocket.expectNoMessage(NO_MESSAGE);
+    }
+
+    /**
+     * Test that the sender is told when the chat group can't be read
+     */
+    @Test
+    public void failedChatReadIsReported() {
+        ActorRef webSocket = webSocket();
+        webSocket.tell(new SendChatMessageFrame(0, "hello", "nonce"), ActorRef.noSender());
+        chatRead.completeExceptionally(new IllegalStateException("database down"));
+
+        ChatMessageErrorFrame error = senderSocket.expectMsgClass(ChatMessageErrorFrame.class);
+        Assert.assertEquals("nonce", error.getNonce());
+        receiverSocket.expectNoMessage(NO_MESSAGE);
+    }
+}